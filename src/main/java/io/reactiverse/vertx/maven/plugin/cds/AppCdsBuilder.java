@@ -0,0 +1,282 @@
+/*
+ *
+ *   Copyright (c) 2016-2017 Red Hat, Inc.
+ *
+ *   Red Hat licenses this file to you under the Apache License, version
+ *   2.0 (the "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *   implied.  See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package io.reactiverse.vertx.maven.plugin.cds;
+
+import io.reactiverse.vertx.maven.plugin.utils.TrainingRun;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds an application class data sharing (AppCDS) archive for a fat jar, so the JVM maps the classes of the
+ * application instead of loading them at startup. The classes are listed during a training run of the jar
+ * ({@code -XX:DumpLoadedClassList}), and the archive is dumped from this list ({@code -Xshare:dump}). The archive, and
+ * a launch script using it, are written next to the jar.
+ * <p>
+ * The JVM rejects an archive when the jar has been modified since the dump, so the archive is dumped again for each
+ * new jar. The training run is only repeated when the dependency set changes: the class list is kept next to the
+ * jar, with the fingerprint of the dependencies it has been recorded with. When the fingerprint changes, the class
+ * list and the archive are deleted before anything else.
+ * <p>
+ * AppCDS requires the JVM running the build to be a Java 10+ JVM, the archive must be used with the same JVM.
+ */
+public class AppCdsBuilder {
+
+    private final File jar;
+
+    private final Log log;
+
+    private String dependencies = "";
+
+    private String readyPattern = TrainingRun.DEFAULT_READY_PATTERN;
+
+    private long timeout = 60000;
+
+    /**
+     * Creates a new builder.
+     *
+     * @param jar the fat jar
+     * @param log the logger
+     */
+    public AppCdsBuilder(File jar, Log log) {
+        this.jar = jar;
+        this.log = log;
+    }
+
+    /**
+     * Checks whether the JVM running the build can dump an archive from a class list.
+     *
+     * @return {@code true} on Java 10 and later
+     */
+    public static boolean isSupported() {
+        return !System.getProperty("java.specification.version", "1.8").startsWith("1.")
+            && !"9".equals(System.getProperty("java.specification.version"));
+    }
+
+    /**
+     * Computes the fingerprint of a dependency set: the coordinates, sizes and modification dates of the artifacts,
+     * and the version of the JVM running the build.
+     *
+     * @param artifacts the artifacts
+     * @return the fingerprint
+     */
+    public static String fingerprint(Collection<Artifact> artifacts) {
+        List<String> lines = new ArrayList<>();
+        for (Artifact artifact : artifacts) {
+            File file = artifact.getFile();
+            lines.add(artifact + "|" + (file == null ? "" : file.length() + "|" + file.lastModified()));
+        }
+        Collections.sort(lines);
+        lines.add("java:" + System.getProperty("java.vm.version"));
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : hash) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 not supported", e);
+        }
+    }
+
+    /**
+     * Sets the fingerprint of the dependency set of the jar. The class list is recorded again when it changes.
+     *
+     * @param dependencies the fingerprint
+     * @return the current {@link AppCdsBuilder}
+     */
+    public AppCdsBuilder setDependencies(String dependencies) {
+        this.dependencies = dependencies;
+        return this;
+    }
+
+    /**
+     * Sets the pattern of the output line stopping the training run.
+     *
+     * @param readyPattern the regular expression
+     * @return the current {@link AppCdsBuilder}
+     */
+    public AppCdsBuilder setReadyPattern(String readyPattern) {
+        this.readyPattern = readyPattern;
+        return this;
+    }
+
+    /**
+     * Sets the maximum duration of the training run and of the dump.
+     *
+     * @param timeout the timeout in milliseconds
+     * @return the current {@link AppCdsBuilder}
+     */
+    public AppCdsBuilder setTimeout(long timeout) {
+        this.timeout = timeout;
+        return this;
+    }
+
+    /**
+     * @return the archive file, next to the jar
+     */
+    public File getArchive() {
+        return sibling(".jsa");
+    }
+
+    /**
+     * @return the class list file, next to the jar
+     */
+    public File getClassList() {
+        return sibling(".classlist");
+    }
+
+    /**
+     * @return the file containing the fingerprint of the dependencies the class list has been recorded with
+     */
+    public File getFingerprint() {
+        return sibling(".classlist.sha1");
+    }
+
+    /**
+     * @return the launch script, next to the jar
+     */
+    public File getLaunchScript() {
+        return sibling(".sh");
+    }
+
+    /**
+     * Builds the archive, recording the class list first if the dependency set has changed.
+     *
+     * @return the archive
+     * @throws IOException if the training run or the dump fails
+     */
+    public File build() throws IOException {
+        File classList = getClassList();
+        File archive = getArchive();
+        File fingerprint = getFingerprint();
+        if (classList.isFile() && fingerprint.isFile()
+            && dependencies.equals(new String(Files.readAllBytes(fingerprint.toPath()), StandardCharsets.UTF_8))) {
+            log.info("Dependencies unchanged, reusing the class list " + classList.getName());
+        } else {
+            // Invalidate the class list and the archive before the training run, so they are never left stale
+            Files.deleteIfExists(fingerprint.toPath());
+            Files.deleteIfExists(classList.toPath());
+            Files.deleteIfExists(archive.toPath());
+            record(classList);
+            Files.write(fingerprint.toPath(), dependencies.getBytes(StandardCharsets.UTF_8));
+        }
+
+        Files.deleteIfExists(archive.toPath());
+        dump(classList, archive);
+        writeLaunchScript(archive);
+        return archive;
+    }
+
+    private void record(File classList) throws IOException {
+        log.info("Launching " + jar.getName() + " to record the classes loaded at startup");
+        TrainingRun run = new TrainingRun(jar, log)
+            .setJvmArguments(Arrays.asList("-Xshare:off", "-XX:DumpLoadedClassList=" + classList.getAbsolutePath()))
+            .setReadyPattern(readyPattern)
+            .setTimeout(timeout);
+        run.run();
+        if (!classList.isFile() || classList.length() == 0) {
+            Files.deleteIfExists(classList.toPath());
+            throw new IOException("The training run of " + jar.getName() + " did not record any class, check the " +
+                "output with -X");
+        }
+    }
+
+    private void dump(File classList, File archive) throws IOException {
+        // The jar is referenced by its absolute path, as in the launch script
+        List<String> command = new ArrayList<>(Arrays.asList(TrainingRun.getJavaExecutable(), "-Xshare:dump",
+            "-XX:SharedClassListFile=" + classList.getAbsolutePath(),
+            "-XX:SharedArchiveFile=" + archive.getAbsolutePath(),
+            "-cp", jar.getAbsolutePath()));
+        log.debug("Dumping the class data sharing archive: " + command);
+        Process process = new ProcessBuilder(command)
+            .directory(jar.getAbsoluteFile().getParentFile())
+            .redirectErrorStream(true)
+            .start();
+        // The output is drained on another thread, so a hanging dump does not prevent the timeout from applying
+        List<String> output = Collections.synchronizedList(new ArrayList<>());
+        Thread reader = new Thread(() -> {
+            try (BufferedReader input = new BufferedReader(new InputStreamReader(process.getInputStream(),
+                StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = input.readLine()) != null) {
+                    output.add(line);
+                    log.debug("[dump] " + line);
+                }
+            } catch (IOException e) {
+                log.debug("Dump output closed: " + e.getMessage());
+            }
+        }, "vertx-maven-plugin-dump");
+        reader.setDaemon(true);
+        reader.start();
+        try {
+            if (!process.waitFor(timeout, TimeUnit.MILLISECONDS)) {
+                process.destroyForcibly();
+                throw new IOException("The dump of " + archive.getName() + " did not complete within " + timeout +
+                    " ms");
+            }
+            reader.join(timeout);
+        } catch (InterruptedException e) {
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while dumping " + archive.getName());
+        }
+        if (process.exitValue() != 0 || !archive.isFile()) {
+            synchronized (output) {
+                output.forEach(log::error);
+            }
+            throw new IOException("Unable to dump the class data sharing archive " + archive.getName() +
+                " (exit code " + process.exitValue() + ")");
+        }
+        log.info("Class data sharing archive written to " + archive.getAbsolutePath());
+    }
+
+    private void writeLaunchScript(File archive) throws IOException {
+        File script = getLaunchScript();
+        List<String> lines = Arrays.asList(
+            "#!/bin/sh",
+            "# Launches " + jar.getName() + " with its class data sharing archive, which must be used with the JVM",
+            "# that created it (" + System.getProperty("java.vm.name") + " " + System.getProperty("java.version")
+                + ").",
+            "# The JVM ignores the archive if the jar has been modified since.",
+            "DIR=\"$(cd \"$(dirname \"$0\")\" && pwd)\"",
+            "exec java -XX:SharedArchiveFile=\"$DIR/" + archive.getName() + "\" -Xshare:auto $JAVA_OPTS -jar \"$DIR/" +
+                jar.getName() + "\" \"$@\"");
+        Files.write(script.toPath(), lines, StandardCharsets.UTF_8);
+        if (!script.setExecutable(true)) {
+            log.debug("Unable to make " + script.getName() + " executable");
+        }
+    }
+
+    private File sibling(String extension) {
+        String name = jar.getName();
+        if (name.endsWith(".jar")) {
+            name = name.substring(0, name.length() - ".jar".length());
+        }
+        return new File(jar.getAbsoluteFile().getParentFile(), name + extension);
+    }
+}
@@ -0,0 +1,30 @@
+package io.reactiverse.vertx.maven.plugin.components;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Implementations of this service combine the copies of a binary descriptor found in the project and in the
+ * dependencies embedded in a fat jar, when the format of the descriptor is not line-based (such as the Log4j2 plugin
+ * cache). Without a combiner, only the first copy of the descriptor is kept.
+ * <p>
+ * Combiners are Plexus components: they are discovered by the package goal, and registered with a hint naming the
+ * format.
+ */
+public interface BinaryDescriptorCombiner {
+
+    /**
+     * @return the path of the descriptor in the archive, starting with {@code /}
+     */
+    String path();
+
+    /**
+     * Combines the copies of the descriptor.
+     *
+     * @param descriptors the content of the copies, the one from the project (if any) first, then the ones from the
+     *                    dependencies in declaration order
+     * @return the content of the combined descriptor
+     * @throws IOException if a copy cannot be parsed
+     */
+    byte[] combine(List<byte[]> descriptors) throws IOException;
+}
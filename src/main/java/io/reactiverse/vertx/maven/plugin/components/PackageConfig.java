@@ -1,12 +1,18 @@
 package io.reactiverse.vertx.maven.plugin.components;
 
+import io.reactiverse.vertx.maven.plugin.model.CombinationStrategy;
 import io.reactiverse.vertx.maven.plugin.mojos.AbstractVertxMojo;
 import io.reactiverse.vertx.maven.plugin.mojos.Archive;
+import io.reactiverse.vertx.maven.plugin.mojos.Layer;
+import io.reactiverse.vertx.maven.plugin.zip.JarIndexCache;
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.project.MavenProject;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
+import java.util.zip.Deflater;
 
 /**
  * Configuration of the {@link PackageService}
@@ -17,6 +23,30 @@ public class PackageConfig extends ServiceConfig {
 
     private String classifier;
 
+    private int threads = 1;
+
+    private int compressionThreads = 1;
+
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
+    private boolean incremental;
+
+    private List<Layer> layers = new ArrayList<>();
+
+    private CombinationStrategy combinationStrategy;
+
+    private boolean serviceIndex;
+
+    private List<BinaryDescriptorCombiner> binaryDescriptorCombiners = new ArrayList<>();
+
+    private List<String> entryOrder = new ArrayList<>();
+
+    private boolean shrink;
+
+    private boolean duplicateReport;
+
+    private List<String> shrinkKeeps = new ArrayList<>();
+
     public PackageConfig setArchive(Archive archive) {
         super.setArchive(archive);
         return this;
@@ -31,6 +61,156 @@ public class PackageConfig extends ServiceConfig {
     }
 
 
+    /**
+     * @return the number of threads used to read the dependencies, {@code 1} to read them on the calling thread
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    public PackageConfig setThreads(int threads) {
+        this.threads = threads;
+        return this;
+    }
+
+    /**
+     * @return the number of threads used to compress the entries, {@code 1} to compress them on the writing thread
+     */
+    public int getCompressionThreads() {
+        return compressionThreads;
+    }
+
+    public PackageConfig setCompressionThreads(int compressionThreads) {
+        this.compressionThreads = compressionThreads;
+        return this;
+    }
+
+    /**
+     * @return the deflate level of the entries compressed while packaging, from 0 to 9, -1 for the default level
+     */
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    public PackageConfig setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+        return this;
+    }
+
+    /**
+     * @return whether or not the package can be updated from the previous build instead of being rebuilt from
+     * scratch
+     */
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    public PackageConfig setIncremental(boolean incremental) {
+        this.incremental = incremental;
+        return this;
+    }
+
+    /**
+     * @return the custom dependency layers of the layered package, in declaration order
+     */
+    public List<Layer> getLayers() {
+        return layers;
+    }
+
+    public PackageConfig setLayers(List<Layer> layers) {
+        this.layers = layers == null ? new ArrayList<>() : layers;
+        return this;
+    }
+
+    /**
+     * @return the strategy used to combine the service descriptors while embedding the dependencies, {@code null}
+     * if the descriptors have already been combined in the output directory
+     */
+    public CombinationStrategy getCombinationStrategy() {
+        return combinationStrategy;
+    }
+
+    public PackageConfig setCombinationStrategy(CombinationStrategy combinationStrategy) {
+        this.combinationStrategy = combinationStrategy;
+        return this;
+    }
+
+    /**
+     * @return whether or not the fat jar contains the index of the service providers, computed from the combined
+     * descriptors
+     */
+    public boolean isServiceIndex() {
+        return serviceIndex;
+    }
+
+    public PackageConfig setServiceIndex(boolean serviceIndex) {
+        this.serviceIndex = serviceIndex;
+        return this;
+    }
+
+    /**
+     * @return the combiners of the binary descriptors, used along the combination strategy
+     */
+    public List<BinaryDescriptorCombiner> getBinaryDescriptorCombiners() {
+        return binaryDescriptorCombiners;
+    }
+
+    public PackageConfig setBinaryDescriptorCombiners(List<BinaryDescriptorCombiner> binaryDescriptorCombiners) {
+        this.binaryDescriptorCombiners = binaryDescriptorCombiners == null ? new ArrayList<>()
+            : binaryDescriptorCombiners;
+        return this;
+    }
+
+    /**
+     * @return the names of the entries written first in the fat jar, in this order (typically the classes in the
+     * order they are loaded at startup), empty to keep the default layout
+     */
+    public List<String> getEntryOrder() {
+        return entryOrder;
+    }
+
+    public PackageConfig setEntryOrder(List<String> entryOrder) {
+        this.entryOrder = entryOrder == null ? new ArrayList<>() : entryOrder;
+        return this;
+    }
+
+    /**
+     * @return whether or not the classes of the dependencies that are not reachable from the entry points of the
+     * application are removed from the fat jar
+     */
+    public boolean isShrink() {
+        return shrink;
+    }
+
+    public PackageConfig setShrink(boolean shrink) {
+        this.shrink = shrink;
+        return this;
+    }
+
+    /**
+     * @return whether or not the entries provided by several dependencies are reported
+     */
+    public boolean isDuplicateReport() {
+        return duplicateReport;
+    }
+
+    public PackageConfig setDuplicateReport(boolean duplicateReport) {
+        this.duplicateReport = duplicateReport;
+        return this;
+    }
+
+    /**
+     * @return the patterns of the class names kept when the fat jar is shrunk, in addition to the reachable classes
+     */
+    public List<String> getShrinkKeeps() {
+        return shrinkKeeps;
+    }
+
+    public PackageConfig setShrinkKeeps(List<String> shrinkKeeps) {
+        this.shrinkKeeps = shrinkKeeps == null ? new ArrayList<>() : shrinkKeeps;
+        return this;
+    }
+
     @Override
     public PackageConfig setMojo(AbstractVertxMojo mojo) {
         super.setMojo(mojo);
@@ -55,4 +235,10 @@ public class PackageConfig extends ServiceConfig {
         super.setOutput(output);
         return this;
     }
+
+    @Override
+    public PackageConfig setJarIndexCache(JarIndexCache jarIndexCache) {
+        super.setJarIndexCache(jarIndexCache);
+        return this;
+    }
 }
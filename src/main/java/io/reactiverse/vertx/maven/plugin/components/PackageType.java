@@ -11,6 +11,8 @@ public enum PackageType {
 
     JAR,
 
-    EXPLODED
+    EXPLODED,
+
+    LAYERED
 
 }
@@ -2,6 +2,7 @@ package io.reactiverse.vertx.maven.plugin.components;
 
 import io.reactiverse.vertx.maven.plugin.mojos.AbstractVertxMojo;
 import io.reactiverse.vertx.maven.plugin.mojos.Archive;
+import io.reactiverse.vertx.maven.plugin.zip.JarIndexCache;
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.project.MavenProject;
 
@@ -21,6 +22,7 @@ public class ServiceConfig {
     private Set<Artifact> artifacts;
     private File output;
     private Archive archive;
+    private JarIndexCache jarIndexCache;
 
     public AbstractVertxMojo getMojo() {
         return mojo;
@@ -66,4 +68,16 @@ public class ServiceConfig {
         this.archive = archive;
         return this;
     }
+
+    /**
+     * @return the cache of the dependency jar indexes, an in-memory cache if not set
+     */
+    public JarIndexCache getJarIndexCache() {
+        return jarIndexCache == null ? JarIndexCache.forDirectory(null) : jarIndexCache;
+    }
+
+    public ServiceConfig setJarIndexCache(JarIndexCache jarIndexCache) {
+        this.jarIndexCache = jarIndexCache;
+        return this;
+    }
 }
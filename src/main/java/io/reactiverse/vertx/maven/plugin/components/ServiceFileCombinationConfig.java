@@ -3,6 +3,7 @@ package io.reactiverse.vertx.maven.plugin.components;
 import io.reactiverse.vertx.maven.plugin.model.CombinationStrategy;
 import io.reactiverse.vertx.maven.plugin.mojos.AbstractVertxMojo;
 import io.reactiverse.vertx.maven.plugin.mojos.Archive;
+import io.reactiverse.vertx.maven.plugin.zip.JarIndexCache;
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.project.MavenProject;
 
@@ -17,6 +18,7 @@ public class ServiceFileCombinationConfig extends ServiceConfig {
 
     private CombinationStrategy strategy;
 
+    private int threads = 1;
 
     @Override
     public ServiceFileCombinationConfig setMojo(AbstractVertxMojo mojo) {
@@ -51,9 +53,27 @@ public class ServiceFileCombinationConfig extends ServiceConfig {
         return strategy;
     }
 
+    /**
+     * @return the number of dependencies whose descriptors are read concurrently
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    public ServiceFileCombinationConfig setThreads(int threads) {
+        this.threads = threads;
+        return this;
+    }
+
     @Override
     public ServiceFileCombinationConfig setArchive(Archive archive) {
         super.setArchive(archive);
         return this;
     }
+
+    @Override
+    public ServiceFileCombinationConfig setJarIndexCache(JarIndexCache jarIndexCache) {
+        super.setJarIndexCache(jarIndexCache);
+        return this;
+    }
 }
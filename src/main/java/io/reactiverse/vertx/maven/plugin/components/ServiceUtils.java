@@ -11,8 +11,13 @@ import org.apache.maven.project.MavenProject;
 import org.apache.maven.shared.artifact.filter.PatternExcludesArtifactFilter;
 import org.apache.maven.shared.artifact.filter.PatternIncludesArtifactFilter;
 import org.apache.maven.shared.artifact.filter.resolve.ScopeFilter;
+import org.apache.maven.shared.artifact.filter.resolve.transform.ArtifactIncludeFilterTransformer;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.util.*;
+import java.util.jar.Attributes;
+import java.util.jar.Manifest;
 
 /**
  * @author <a href="http://escoffier.me">Clement Escoffier</a>
@@ -70,6 +75,44 @@ public class ServiceUtils {
         return copy;
     }
 
+    /**
+     * Selects the artifacts matching the given dependency set.
+     *
+     * @param artifacts the project artifacts
+     * @param set       the dependency set
+     * @param logger    the logger
+     * @return the selected artifacts, in the same order as in the given set
+     */
+    public static Set<Artifact> getDependencies(Set<Artifact> artifacts, DependencySet set, Log logger) {
+        ScopeFilter scopeFilter = newScopeFilter(set.getScope());
+        ArtifactFilter filter = new ArtifactIncludeFilterTransformer().transform(scopeFilter);
+        return filterArtifacts(artifacts, set.getIncludes(), set.getExcludes(),
+            set.isUseTransitiveDependencies(), logger, filter);
+    }
+
+    /**
+     * Generates the content of a manifest file containing the given entries.
+     *
+     * @param entries the main attributes, may be {@code null}
+     * @return the manifest content
+     * @throws IOException if the manifest cannot be written
+     */
+    public static byte[] createManifest(Map<String, String> entries) throws IOException {
+        Manifest manifest = new Manifest();
+        Attributes attributes = manifest.getMainAttributes();
+        attributes.put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        if (entries != null) {
+            for (Map.Entry<String, String> entry : entries.entrySet()) {
+                attributes.put(new Attributes.Name(entry.getKey()), entry.getValue());
+            }
+        }
+
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        manifest.write(bout);
+        bout.close();
+        return bout.toByteArray();
+    }
+
     public static ScopeFilter newScopeFilter(String scope) {
         Set<String> scopes = new HashSet<>();
 
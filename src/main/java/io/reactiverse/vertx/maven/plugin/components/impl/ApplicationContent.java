@@ -0,0 +1,189 @@
+/*
+ *
+ *   Copyright (c) 2016-2017 Red Hat, Inc.
+ *
+ *   Red Hat licenses this file to you under the Apache License, version
+ *   2.0 (the "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *   implied.  See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package io.reactiverse.vertx.maven.plugin.components.impl;
+
+import io.reactiverse.vertx.maven.plugin.components.PackageConfig;
+import io.reactiverse.vertx.maven.plugin.components.PackagingException;
+import io.reactiverse.vertx.maven.plugin.mojos.Archive;
+import io.reactiverse.vertx.maven.plugin.mojos.FileItem;
+import io.reactiverse.vertx.maven.plugin.mojos.FileSet;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.shared.utils.io.DirectoryScanner;
+import org.codehaus.plexus.util.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The files provided by the project itself (file sets, classes and file items), as they are laid out in the
+ * application package. Unlike the dependencies, these files override the entries already present in the package.
+ * <p>
+ * Entry names are relative to the root of the package (no leading {@code /}), directories end with {@code /}.
+ */
+public class ApplicationContent {
+
+    private final Map<String, File> files = new LinkedHashMap<>();
+
+    private final Map<String, String> relocations = new LinkedHashMap<>();
+
+    /**
+     * Collects the content of the given archive provided by the project.
+     *
+     * @param config the package configuration
+     * @param log    the logger
+     * @return the collected content
+     * @throws PackagingException if a file item cannot be found
+     */
+    public static ApplicationContent collect(PackageConfig config, Log log) throws PackagingException {
+        ApplicationContent content = new ApplicationContent();
+        Archive archive = config.getArchive();
+        MavenProject project = config.getProject();
+
+        for (FileSet fs : archive.getFileSets()) {
+            content.addFileSet(log, project, fs);
+        }
+
+        if (archive.isIncludeClasses()) {
+            File classes = new File(project.getBuild().getOutputDirectory());
+            if (classes.isDirectory()) {
+                content.addDirectory(classes, "");
+            }
+        }
+
+        for (FileItem item : archive.getFiles()) {
+            content.addFileItem(project, item);
+        }
+        return content;
+    }
+
+    /**
+     * @return the files to write in the package, indexed by entry name, in insertion order
+     */
+    public Map<String, File> getFiles() {
+        return files;
+    }
+
+    /**
+     * @return the entries coming from the dependencies that must be stored under another name, indexed by their
+     * original name.
+     */
+    public Map<String, String> getRelocations() {
+        return relocations;
+    }
+
+    private void addFileSet(Log log, MavenProject project, FileSet fs) {
+        File directory = new File(fs.getDirectory());
+        if (!directory.isAbsolute()) {
+            directory = new File(project.getBasedir(), fs.getDirectory());
+        }
+
+        if (!directory.isDirectory()) {
+            log.warn("File set root directory (" + directory.getAbsolutePath() + ") does not exist " +
+                "- skipping");
+            return;
+        }
+
+        String output = fs.getOutputDirectory();
+        if (output == null) {
+            output = "/";
+        } else if (!output.startsWith("/")) {
+            output = "/" + output;
+        }
+
+        DirectoryScanner scanner = new DirectoryScanner();
+        scanner.setBasedir(directory);
+        List<String> excludes = new ArrayList<>(fs.getExcludes());
+        if (fs.isUseDefaultExcludes()) {
+            excludes.addAll(FileUtils.getDefaultExcludesAsList());
+        }
+        if (!excludes.isEmpty()) {
+            scanner.setExcludes(excludes.toArray(new String[0]));
+        }
+        if (!fs.getIncludes().isEmpty()) {
+            scanner.setIncludes(fs.getIncludes().toArray(new String[0]));
+        }
+        scanner.scan();
+        for (String path : scanner.getIncludedFiles()) {
+            String name = output + path.replace("\\", "/");
+            log.debug("Adding " + name + " to the archive");
+            files.put(name.substring(1), new File(directory, path));
+        }
+    }
+
+    private void addDirectory(File root, String prefix) throws PackagingException {
+        Path base = root.toPath();
+        try (Stream<Path> stream = Files.walk(base)) {
+            List<Path> paths = stream.filter(p -> !p.equals(base)).sorted().collect(Collectors.toList());
+            for (Path path : paths) {
+                String name = prefix + base.relativize(path).toString().replace("\\", "/");
+                if (Files.isDirectory(path)) {
+                    name = name + "/";
+                }
+                files.put(name, path.toFile());
+            }
+        } catch (IOException e) {
+            throw new PackagingException("Unable to read the content of " + root.getAbsolutePath(), e);
+        }
+    }
+
+    private void addFileItem(MavenProject project, FileItem item) throws PackagingException {
+        String path;
+        if (item.getOutputDirectory() == null) {
+            path = "";
+        } else {
+            path = item.getOutputDirectory();
+            if (path.startsWith("/")) {
+                path = path.substring(1);
+            }
+            if (!path.isEmpty() && !path.endsWith("/")) {
+                path = path + "/";
+            }
+        }
+
+        File source = new File(project.getBasedir(), item.getSource());
+        String name = item.getDestName();
+        if (source.isFile()) {
+            if (name == null) {
+                name = source.getName();
+            }
+            files.put(path + name, source);
+            return;
+        }
+
+        // The file item refers to an entry of the archive.
+        String original = item.getSource().startsWith("/") ? item.getSource().substring(1) : item.getSource();
+        if (name == null) {
+            name = original.substring(original.lastIndexOf('/') + 1);
+        }
+        File file = files.remove(original);
+        if (file != null) {
+            files.put(path + name, file);
+        } else if (original.isEmpty()) {
+            throw new PackagingException("Unable to handle the file item " + item.getSource() + ", " +
+                "file not found in the project or in the archive.");
+        } else {
+            relocations.put(original, path + name);
+        }
+    }
+}
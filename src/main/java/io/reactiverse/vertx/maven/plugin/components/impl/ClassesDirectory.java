@@ -0,0 +1,122 @@
+/*
+ *
+ *   Copyright (c) 2016-2017 Red Hat, Inc.
+ *
+ *   Red Hat licenses this file to you under the Apache License, version
+ *   2.0 (the "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *   implied.  See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package io.reactiverse.vertx.maven.plugin.components.impl;
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Keeps a directory of a package that is not archived (exploded or layered application) in sync with the files
+ * provided by the project. Only the files that changed since the previous build are written, and the files that are
+ * not part of the application anymore are removed.
+ */
+public class ClassesDirectory {
+
+    /**
+     * The name of the manifest.
+     */
+    public static final String MANIFEST = "META-INF/MANIFEST.MF";
+
+    private ClassesDirectory() {
+        // Avoid direct instantiation.
+    }
+
+    /**
+     * Updates the given directory: copies the project files that changed since the previous build (based on their
+     * size and last modification date), writes the generated files whose content changed, and removes the other
+     * files.
+     *
+     * @param log       the logger
+     * @param directory the directory
+     * @param files     the project files, indexed by name relative to the directory
+     * @param generated the content of the generated files, indexed by name. They win over the project files, like
+     *                  the manifest written first in the jar packages.
+     * @throws IOException if the directory cannot be updated
+     */
+    public static void sync(Log log, File directory, Map<String, File> files, Map<String, byte[]> generated)
+        throws IOException {
+        Path base = directory.toPath();
+        Files.createDirectories(base);
+        Set<Path> expected = new HashSet<>();
+        for (Map.Entry<String, byte[]> entry : generated.entrySet()) {
+            Path target = base.resolve(entry.getKey());
+            expect(expected, base, target);
+            write(target.toFile(), entry.getValue());
+        }
+
+        for (Map.Entry<String, File> entry : files.entrySet()) {
+            Path target = base.resolve(entry.getKey());
+            Path source = entry.getValue().toPath();
+            if (expected.contains(target)) {
+                continue;
+            }
+            expect(expected, base, target);
+            if (Files.isDirectory(source)) {
+                Files.createDirectories(target);
+            } else if (!Files.isRegularFile(target)
+                || Files.size(source) != Files.size(target)
+                || !Files.getLastModifiedTime(source).equals(Files.getLastModifiedTime(target))) {
+                log.debug("Copying " + entry.getKey() + " to " + directory.getName());
+                Files.createDirectories(target.getParent());
+                Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+            }
+        }
+
+        List<Path> stale;
+        try (Stream<Path> stream = Files.walk(base)) {
+            // Reverse order, so the content of a directory is deleted before the directory
+            stale = stream.filter(path -> !path.equals(base) && !expected.contains(path))
+                .sorted(Comparator.reverseOrder())
+                .collect(Collectors.toList());
+        }
+        for (Path path : stale) {
+            log.debug("Removing " + base.relativize(path) + " from " + directory.getName());
+            Files.delete(path);
+        }
+    }
+
+    private static void expect(Set<Path> expected, Path base, Path target) {
+        expected.add(target);
+        for (Path parent = target.getParent(); !parent.equals(base); parent = parent.getParent()) {
+            expected.add(parent);
+        }
+    }
+
+    /**
+     * Writes the given file, unless it already has the given content.
+     *
+     * @param file    the file
+     * @param content the content
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(File file, byte[] content) throws IOException {
+        if (file.isFile() && Arrays.equals(Files.readAllBytes(file.toPath()), content)) {
+            return;
+        }
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.write(file.toPath(), content);
+    }
+}
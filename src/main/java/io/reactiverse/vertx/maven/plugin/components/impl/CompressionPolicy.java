@@ -0,0 +1,163 @@
+/*
+ *
+ *   Copyright (c) 2016-2017 Red Hat, Inc.
+ *
+ *   Red Hat licenses this file to you under the Apache License, version
+ *   2.0 (the "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *   implied.  See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package io.reactiverse.vertx.maven.plugin.components.impl;
+
+import io.reactiverse.vertx.maven.plugin.components.PackageConfig;
+import io.reactiverse.vertx.maven.plugin.model.CompressionMethod;
+import io.reactiverse.vertx.maven.plugin.mojos.CompressionOptions;
+import io.reactiverse.vertx.maven.plugin.mojos.CompressionRule;
+import io.reactiverse.vertx.maven.plugin.utils.GlobMatcher;
+import io.reactiverse.vertx.maven.plugin.zip.ZipReader;
+import io.reactiverse.vertx.maven.plugin.zip.ZipRecord;
+import io.reactiverse.vertx.maven.plugin.zip.ZipWriter;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Decides how each entry of an archive is written, according to the {@link CompressionOptions} of the archive.
+ * <p>
+ * The entries written from their content follow the matching rule, or are deflated with the level of the package if
+ * no rule matches. The entries copied from another archive are copied verbatim, unless a rule asks for another
+ * method: they are then inflated and written again. As the level of a deflated entry is unknown, a deflated entry is
+ * never compressed again only to change its level.
+ */
+class CompressionPolicy {
+
+    static final List<String> DEFAULT_STORED_PATTERNS = Collections.unmodifiableList(Arrays.asList(
+        // Archives and compressed files
+        "**/*.jar", "**/*.war", "**/*.zip", "**/*.gz", "**/*.tgz", "**/*.bz2", "**/*.xz", "**/*.zst", "**/*.br",
+        "**/*.7z",
+        // Images, fonts and media
+        "**/*.png", "**/*.jpg", "**/*.jpeg", "**/*.gif", "**/*.webp", "**/*.woff", "**/*.woff2", "**/*.mp3",
+        "**/*.mp4", "**/*.ogg", "**/*.webm"));
+
+    private final List<Rule> rules = new ArrayList<>();
+
+    private final int level;
+
+    private final String signature;
+
+    private CompressionPolicy(CompressionOptions options, int level) {
+        this.level = level;
+        StringBuilder builder = new StringBuilder();
+        for (CompressionRule rule : options.getRules()) {
+            int method = rule.getMethod() == CompressionMethod.STORED ? ZipRecord.STORED : ZipRecord.DEFLATED;
+            int ruleLevel = rule.getLevel() != null ? rule.getLevel() : level;
+            rules.add(new Rule(GlobMatcher.compile(rule.getPatterns()), method, ruleLevel));
+            builder.append(rule.getPatterns()).append('=').append(method).append(':').append(ruleLevel).append('\n');
+        }
+        if (options.isStoreClasses()) {
+            rules.add(new Rule(GlobMatcher.compile(Collections.singletonList("**/*.class")), ZipRecord.STORED, level));
+            builder.append("classes\n");
+        }
+        if (options.isUseDefaultStoredPatterns()) {
+            rules.add(new Rule(GlobMatcher.compile(DEFAULT_STORED_PATTERNS), ZipRecord.STORED, level));
+            builder.append("defaults\n");
+        }
+        this.signature = builder.toString();
+    }
+
+    /**
+     * Creates the policy of the given package configuration.
+     *
+     * @param config the configuration
+     * @return the policy
+     */
+    static CompressionPolicy create(PackageConfig config) {
+        CompressionOptions options = config.getArchive() != null ? config.getArchive().getCompression() : null;
+        return new CompressionPolicy(options != null ? options : new CompressionOptions(),
+            config.getCompressionLevel());
+    }
+
+    /**
+     * @return whether or not all the entries are deflated with the level of the package
+     */
+    boolean isEmpty() {
+        return rules.isEmpty();
+    }
+
+    /**
+     * @return a description of the rules, changing when the written entries may change
+     */
+    String signature() {
+        return signature;
+    }
+
+    /**
+     * Adds an entry, written with the method and level of the first matching rule.
+     *
+     * @param writer  the writer
+     * @param name    the entry name
+     * @param content the uncompressed content
+     * @param time    the last modification time
+     * @throws IOException if the entry cannot be written
+     */
+    void addEntry(ZipWriter writer, String name, byte[] content, long time) throws IOException {
+        Rule rule = find(name);
+        if (rule == null) {
+            writer.addEntry(name, content, time, ZipRecord.DEFLATED, level);
+        } else {
+            writer.addEntry(name, content, time, rule.method, rule.level);
+        }
+    }
+
+    /**
+     * Copies an entry from another archive, verbatim unless the first matching rule uses another method.
+     *
+     * @param writer the writer
+     * @param record the record of the entry in the source archive
+     * @param source the source archive
+     * @param name   the name of the entry in the written archive
+     * @throws IOException if the entry cannot be copied
+     */
+    void copy(ZipWriter writer, ZipRecord record, ZipReader source, String name) throws IOException {
+        Rule rule = record.isDirectory() ? null : find(name);
+        if (rule == null || rule.method == record.getMethod()) {
+            writer.copy(record, source, name);
+        } else {
+            writer.addEntry(name, source.read(record), ZipWriter.fromDosTime(record.getDosTime()), rule.method,
+                rule.level);
+        }
+    }
+
+    private Rule find(String name) {
+        String path = "/" + name;
+        for (Rule rule : rules) {
+            if (rule.patterns.matches(path)) {
+                return rule;
+            }
+        }
+        return null;
+    }
+
+    private static class Rule {
+
+        private final GlobMatcher patterns;
+
+        private final int method;
+
+        private final int level;
+
+        Rule(GlobMatcher patterns, int method, int level) {
+            this.patterns = patterns;
+            this.method = method;
+            this.level = level;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ *
+ *   Copyright (c) 2016-2017 Red Hat, Inc.
+ *
+ *   Red Hat licenses this file to you under the Apache License, version
+ *   2.0 (the "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *   implied.  See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package io.reactiverse.vertx.maven.plugin.components.impl;
+
+import io.reactiverse.vertx.maven.plugin.mojos.DependencySet;
+import io.reactiverse.vertx.maven.plugin.utils.GlobMatcher;
+import org.codehaus.plexus.util.FileUtils;
+
+import java.util.*;
+
+/**
+ * Decides which entries of a dependency are embedded in the application package, according to the options of the
+ * {@link DependencySet}.
+ */
+public class DependencyEntryFilter {
+
+    static final List<String> DEFAULT_EXCLUDES;
+
+    static {
+        DEFAULT_EXCLUDES = new ArrayList<>(FileUtils.getDefaultExcludesAsList());
+        DEFAULT_EXCLUDES.add("**/*.DSA");
+        DEFAULT_EXCLUDES.add("**/*.RSA");
+        DEFAULT_EXCLUDES.add("**/INDEX.LIST");
+        DEFAULT_EXCLUDES.add("**/*.SF");
+    }
+
+    private final DependencySet set;
+
+    private final GlobMatcher includes;
+
+    private final GlobMatcher excludes;
+
+    private final Set<String> removed;
+
+    /**
+     * Creates a new filter. The patterns of the dependency set are compiled once, so the set must not be modified
+     * afterwards.
+     *
+     * @param set the dependency set
+     */
+    public DependencyEntryFilter(DependencySet set) {
+        this.set = set;
+        this.includes = GlobMatcher.compile(set.getOptions().getIncludes());
+        List<String> excludes = new ArrayList<>();
+        if (set.getOptions().isUseDefaultExcludes()) {
+            excludes.addAll(DEFAULT_EXCLUDES);
+        }
+        if (set.getOptions().getExcludes() != null) {
+            excludes.addAll(set.getExcludes());
+        }
+        this.excludes = GlobMatcher.compile(excludes);
+        this.removed = Collections.emptySet();
+    }
+
+    private DependencyEntryFilter(DependencyEntryFilter filter, Set<String> removed) {
+        this.set = filter.set;
+        this.includes = filter.includes;
+        this.excludes = filter.excludes;
+        this.removed = removed;
+    }
+
+    /**
+     * Creates a filter excluding the given entries in addition to the ones excluded by this filter.
+     *
+     * @param paths the paths of the entries to exclude, absolute (starting with {@code /})
+     * @return the new filter, this filter if there is no entry to exclude
+     */
+    public DependencyEntryFilter remove(Collection<String> paths) {
+        if (paths.isEmpty()) {
+            return this;
+        }
+        Set<String> all = new TreeSet<>(removed);
+        all.addAll(paths);
+        return new DependencyEntryFilter(this, all);
+    }
+
+    /**
+     * Checks whether the given entry must be excluded.
+     *
+     * @param name the entry path, absolute (starting with {@code /}) as in a ShrinkWrap archive
+     * @return {@code true} if the entry must not be embedded
+     */
+    public boolean toExclude(String name) {
+        // If includes are set, the entries that are not explicitly included are excluded
+        if (!includes.isEmpty() && !includes.matches(name)) {
+            return true;
+        }
+
+        return name.equalsIgnoreCase("/META-INF/MANIFEST.MF") || excludes.matches(name) || removed.contains(name);
+    }
+
+    /**
+     * @return a string identifying the configuration of this filter, two filters with the same signature select the
+     * same entries
+     */
+    public String signature() {
+        return "includes=" + set.getOptions().getIncludes()
+            + ";excludes=" + set.getOptions().getExcludes()
+            + ";defaultExcludes=" + set.getOptions().isUseDefaultExcludes()
+            + ";artifactExcludes=" + set.getExcludes()
+            + (removed.isEmpty() ? "" : ";removed=" + removed);
+    }
+
+    /**
+     * Converts a zip entry name to the path used to filter the entries (absolute path without trailing {@code /}).
+     *
+     * @param entry the zip entry name
+     * @return the path
+     */
+    public static String toPath(String entry) {
+        String path = entry.endsWith("/") ? entry.substring(0, entry.length() - 1) : entry;
+        return path.startsWith("/") ? path : "/" + path;
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ *
+ *   Copyright (c) 2016-2017 Red Hat, Inc.
+ *
+ *   Red Hat licenses this file to you under the Apache License, version
+ *   2.0 (the "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *   implied.  See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package io.reactiverse.vertx.maven.plugin.components.impl;
+
+import io.reactiverse.vertx.maven.plugin.components.BinaryDescriptorCombiner;
+import io.reactiverse.vertx.maven.plugin.components.PackageConfig;
+import io.reactiverse.vertx.maven.plugin.model.CombinationStrategy;
+import io.reactiverse.vertx.maven.plugin.utils.GlobMatcher;
+import io.reactiverse.vertx.maven.plugin.zip.JarIndexCache;
+import io.reactiverse.vertx.maven.plugin.zip.ZipReader;
+import io.reactiverse.vertx.maven.plugin.zip.ZipRecord;
+import org.apache.maven.project.MavenProject;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+/**
+ * Collects the service descriptors of the dependencies while the fat jar engines embed them, and merges them with
+ * the descriptors of the project. The descriptors are read from the index of the dependencies already used to select
+ * the embedded entries, and the merged descriptors are written directly into the archive instead of the output
+ * directory.
+ * <p>
+ * Besides the line-based descriptors matching the combination patterns, the descriptors handled by a
+ * {@link BinaryDescriptorCombiner} are collected as they are, and combined by their combiner.
+ * <p>
+ * Instances are not thread-safe: {@link #scan(File)} can be called concurrently, but
+ * {@link #add(File, Descriptors)} must be called in dependency order, from a single thread.
+ */
+class DescriptorCollector {
+
+    private final MavenProject project;
+
+    private final List<String> patterns;
+
+    private final GlobMatcher matcher;
+
+    private final JarIndexCache cache;
+
+    private final Map<String, BinaryDescriptorCombiner> combiners = new LinkedHashMap<>();
+
+    private final Map<String, List<String>> locals;
+
+    private final Map<String, byte[]> binaryLocals = new HashMap<>();
+
+    private final Set<File> collected = new HashSet<>();
+
+    private final Map<String, List<List<String>>> fromDependencies = new LinkedHashMap<>();
+
+    private final Map<String, List<byte[]>> binaryFromDependencies = new LinkedHashMap<>();
+
+    private Map<String, List<String>> combined = Collections.emptyMap();
+
+    private DescriptorCollector(MavenProject project, List<String> patterns, JarIndexCache cache,
+                                List<BinaryDescriptorCombiner> combiners) {
+        this.project = project;
+        this.patterns = patterns;
+        this.matcher = GlobMatcher.compile(patterns);
+        this.cache = cache;
+        this.locals = ServiceFileCombinationImpl.findLocalDescriptors(project, patterns);
+        File classes = new File(project.getBuild().getOutputDirectory());
+        for (BinaryDescriptorCombiner combiner : combiners) {
+            this.combiners.putIfAbsent(combiner.path(), combiner);
+            File local = new File(classes, combiner.path().substring(1));
+            if (local.isFile()) {
+                try {
+                    binaryLocals.put(combiner.path(), Files.readAllBytes(local.toPath()));
+                } catch (IOException e) {
+                    throw new RuntimeException("Cannot read " + local.getAbsolutePath(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates the collector of the given package configuration.
+     *
+     * @param config the configuration
+     * @return the collector, {@code null} if the descriptors must not be combined while packaging
+     */
+    static DescriptorCollector create(PackageConfig config) {
+        if (config.getCombinationStrategy() != CombinationStrategy.COMBINE) {
+            return null;
+        }
+        List<String> patterns = config.getArchive().getDescriptorCombinationPatterns();
+        if (patterns.isEmpty() && config.getBinaryDescriptorCombiners().isEmpty()) {
+            return null;
+        }
+        return new DescriptorCollector(config.getProject(), patterns, config.getJarIndexCache(),
+            config.getBinaryDescriptorCombiners());
+    }
+
+    /**
+     * @return the patterns of the line-based descriptors and the paths of the binary descriptors, identifying the
+     * entries combined instead of being embedded
+     */
+    List<String> getCombinedEntries() {
+        List<String> entries = new ArrayList<>(patterns);
+        combiners.keySet().forEach(path -> entries.add("binary:" + path));
+        return entries;
+    }
+
+    /**
+     * Checks whether the given entry is combined instead of being embedded, when provided by a dependency.
+     *
+     * @param path the archive path (starting with {@code /})
+     * @return {@code true} if the entry is a descriptor
+     */
+    boolean isCombined(String path) {
+        return combiners.containsKey(path) || matcher.matches(path);
+    }
+
+    /**
+     * Checks whether the given entry is a descriptor of the project. Such entries must not be written from the
+     * project files, they are replaced by the merged descriptors.
+     *
+     * @param name the entry name, without leading {@code /}
+     * @return {@code true} if the entry is a descriptor of the project
+     */
+    boolean isLocal(String name) {
+        return locals.containsKey("/" + name) || binaryLocals.containsKey("/" + name);
+    }
+
+    /**
+     * Gets the descriptors of the given dependency. These entries must not be embedded, they are replaced by the
+     * merged descriptors.
+     *
+     * @param dependency the dependency
+     * @return the descriptors
+     * @throws IOException if the dependency cannot be read
+     */
+    Descriptors scan(File dependency) throws IOException {
+        Descriptors descriptors = new Descriptors(cache.getDescriptors(dependency, patterns));
+        if (combiners.isEmpty()) {
+            return descriptors;
+        }
+        List<ZipRecord> records = new ArrayList<>();
+        for (ZipRecord record : cache.get(dependency).getRecords()) {
+            if (!record.isDirectory() && combiners.containsKey("/" + record.getName())) {
+                records.add(record);
+            }
+        }
+        if (!records.isEmpty()) {
+            // Only the binary descriptors are read
+            try (ZipReader reader = new ZipReader(dependency, records)) {
+                for (ZipRecord record : records) {
+                    descriptors.binary.put("/" + record.getName(), reader.read(record));
+                }
+            }
+        }
+        return descriptors;
+    }
+
+    /**
+     * Records the descriptors of a dependency. A dependency embedded by several dependency sets is only recorded
+     * once.
+     *
+     * @param dependency  the dependency
+     * @param descriptors the descriptors returned by {@link #scan(File)}
+     */
+    void add(File dependency, Descriptors descriptors) {
+        if (!collected.add(dependency.getAbsoluteFile())) {
+            return;
+        }
+        descriptors.text.forEach((path, lines) ->
+            fromDependencies.computeIfAbsent(path, p -> new ArrayList<>()).add(lines));
+        descriptors.binary.forEach((path, content) ->
+            binaryFromDependencies.computeIfAbsent(path, p -> new ArrayList<>()).add(content));
+    }
+
+    /**
+     * Merges the recorded descriptors with the ones of the project.
+     *
+     * @return the content of the merged descriptors, indexed by entry name (without leading {@code /})
+     * @throws IOException if a binary descriptor cannot be combined
+     */
+    Map<String, byte[]> combine() throws IOException {
+        Map<String, byte[]> result = new LinkedHashMap<>();
+        combined = ServiceFileCombinationImpl.merge(project, locals, fromDependencies);
+        combined.forEach((path, lines) -> {
+            StringBuilder content = new StringBuilder();
+            lines.forEach(line -> content.append(line).append('\n'));
+            result.put(path.substring(1), content.toString().getBytes(StandardCharsets.UTF_8));
+        });
+
+        for (Map.Entry<String, BinaryDescriptorCombiner> entry : combiners.entrySet()) {
+            String path = entry.getKey();
+            List<byte[]> copies = new ArrayList<>();
+            if (binaryLocals.containsKey(path)) {
+                copies.add(binaryLocals.get(path));
+            }
+            copies.addAll(binaryFromDependencies.getOrDefault(path, Collections.emptyList()));
+            if (copies.size() == 1) {
+                result.put(path.substring(1), copies.get(0));
+            } else if (!copies.isEmpty()) {
+                try {
+                    result.put(path.substring(1), entry.getValue().combine(copies));
+                } catch (IOException e) {
+                    throw new IOException("Unable to combine the copies of " + path, e);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the lines of the descriptors merged by {@link #combine()}, indexed by archive path (starting with
+     * {@code /})
+     */
+    Map<String, List<String>> getCombined() {
+        return combined;
+    }
+
+    /**
+     * The descriptors of a dependency, indexed by archive path (starting with {@code /}).
+     */
+    static class Descriptors {
+
+        static final Descriptors NONE = new Descriptors(Collections.emptyMap());
+
+        private final Map<String, List<String>> text;
+
+        private final Map<String, byte[]> binary = new HashMap<>();
+
+        Descriptors(Map<String, List<String>> text) {
+            this.text = text;
+        }
+
+        /**
+         * @param path the archive path
+         * @return whether or not the entry is a descriptor, combined instead of being embedded
+         */
+        boolean contains(String path) {
+            return text.containsKey(path) || binary.containsKey(path);
+        }
+    }
+}
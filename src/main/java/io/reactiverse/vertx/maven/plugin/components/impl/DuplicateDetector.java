@@ -0,0 +1,204 @@
+/*
+ *
+ *   Copyright (c) 2016-2017 Red Hat, Inc.
+ *
+ *   Red Hat licenses this file to you under the Apache License, version
+ *   2.0 (the "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *   implied.  See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package io.reactiverse.vertx.maven.plugin.components.impl;
+
+import io.reactiverse.vertx.maven.plugin.components.PackagingException;
+import io.reactiverse.vertx.maven.plugin.zip.JarIndexCache;
+import io.reactiverse.vertx.maven.plugin.zip.ZipReader;
+import io.reactiverse.vertx.maven.plugin.zip.ZipRecord;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Detects the entries provided by several dependencies of a package. The entries are recorded by name and by
+ * content, the content being identified by the CRC and the size read from the central directory of the
+ * dependencies, and confirmed by a SHA-256 digest of the content when they match. The detector reports:
+ * <ul>
+ * <li>the conflicts: entries provided by several dependencies with different contents, only the first one being
+ * embedded (or loaded, when the dependencies are kept as jars)</li>
+ * <li>the duplicates: entries provided by several dependencies with the same content, embedded once</li>
+ * <li>the copies: entries with the same content as an entry embedded under another name. As two entries of a jar
+ * cannot share their content, they are only reported.</li>
+ * </ul>
+ */
+class DuplicateDetector {
+
+    private final Log log;
+
+    private final JarIndexCache cache;
+
+    private final Map<String, Embedded> byName = new HashMap<>();
+
+    private final Map<Long, List<Embedded>> byContent = new HashMap<>();
+
+    private final Map<File, ZipReader> readers = new HashMap<>();
+
+    private int conflicts;
+
+    private int duplicates;
+
+    private long duplicateBytes;
+
+    private int copies;
+
+    private long copyBytes;
+
+    private DuplicateDetector(Log log, JarIndexCache cache) {
+        this.log = log;
+        this.cache = cache;
+    }
+
+    /**
+     * Analyzes the entries of the given dependencies, and reports the conflicts and the duplicate bytes.
+     *
+     * @param log          the logger
+     * @param cache        the cache of the dependency indexes
+     * @param dependencies the dependencies, in declaration order
+     * @param ignored      the paths (starting with {@code /}) of the entries that are not embedded from the
+     *                     dependencies: entries provided by the project, combined descriptors...
+     * @throws PackagingException if a dependency cannot be read
+     */
+    static void detect(Log log, JarIndexCache cache, List<EmbeddableDependency> dependencies,
+                       Predicate<String> ignored) throws PackagingException {
+        DuplicateDetector detector = new DuplicateDetector(log, cache);
+        try {
+            detector.run(dependencies, ignored);
+        } catch (IOException e) {
+            throw new PackagingException(e);
+        } finally {
+            detector.close();
+        }
+    }
+
+    private void run(List<EmbeddableDependency> dependencies, Predicate<String> ignored) throws IOException {
+        for (EmbeddableDependency dependency : dependencies) {
+            for (ZipRecord record : cache.get(dependency.getFile()).getRecords()) {
+                String path = DependencyEntryFilter.toPath(record.getName());
+                if (record.isDirectory() || dependency.getFilter().toExclude(path) || ignored.test(path)) {
+                    continue;
+                }
+                add(new Embedded(dependency, record));
+            }
+        }
+
+        log.info("Duplicate content: " + duplicates + " entries provided by several dependencies (" + duplicateBytes
+            + " bytes embedded once), " + copies + " entries identical to an entry stored under another name ("
+            + copyBytes + " bytes), " + conflicts + " conflicting entries");
+    }
+
+    private void add(Embedded entry) throws IOException {
+        String name = entry.record.getName();
+        Embedded first = byName.putIfAbsent(name, entry);
+        if (first != null) {
+            if (first.file.equals(entry.file)) {
+                // The same dependency selected by several dependency sets
+                return;
+            }
+            if (isSameContent(first, entry)) {
+                duplicates++;
+                duplicateBytes += entry.record.getSize();
+            } else {
+                conflicts++;
+                String message = "Conflicting content for " + name + " in " + first.dependency.getArtifact()
+                    + " and " + entry.dependency.getArtifact() + ", the first one is embedded";
+                // Licenses, notices and other metadata commonly differ, only the other conflicts are reported
+                if (name.startsWith("META-INF/")) {
+                    log.debug(message);
+                } else {
+                    log.warn(message);
+                }
+            }
+            return;
+        }
+
+        if (entry.record.getSize() == 0) {
+            return;
+        }
+        List<Embedded> candidates = byContent.computeIfAbsent(entry.record.getCrc() << 32 ^ entry.record.getSize(),
+            key -> new ArrayList<>());
+        for (Embedded candidate : candidates) {
+            if (isSameContent(candidate, entry)) {
+                log.debug(name + " from " + entry.dependency.getArtifact() + " has the same content as "
+                    + candidate.record.getName() + " from " + candidate.dependency.getArtifact());
+                copies++;
+                copyBytes += entry.record.getSize();
+                return;
+            }
+        }
+        candidates.add(entry);
+    }
+
+    private boolean isSameContent(Embedded a, Embedded b) throws IOException {
+        return a.record.getCrc() == b.record.getCrc()
+            && a.record.getSize() == b.record.getSize()
+            && Arrays.equals(digest(a), digest(b));
+    }
+
+    private byte[] digest(Embedded entry) throws IOException {
+        if (entry.digest == null) {
+            ZipReader reader = readers.get(entry.file);
+            if (reader == null) {
+                // The records come from the index, no need to read the central directory again
+                reader = new ZipReader(entry.file, cache.get(entry.file).getRecords());
+                readers.put(entry.file, reader);
+            }
+            try {
+                entry.digest = MessageDigest.getInstance("SHA-256").digest(reader.read(entry.record));
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 not supported", e);
+            }
+        }
+        return entry.digest;
+    }
+
+    private void close() {
+        readers.forEach((file, reader) -> {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                log.debug("Unable to close " + file.getAbsolutePath(), e);
+            }
+        });
+    }
+
+    /**
+     * An entry of a dependency, with its digest once computed.
+     */
+    private static class Embedded {
+
+        private final EmbeddableDependency dependency;
+
+        private final File file;
+
+        private final ZipRecord record;
+
+        private byte[] digest;
+
+        Embedded(EmbeddableDependency dependency, ZipRecord record) {
+            this.dependency = dependency;
+            this.file = dependency.getFile().getAbsoluteFile();
+            this.record = record;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ *
+ *   Copyright (c) 2016-2017 Red Hat, Inc.
+ *
+ *   Red Hat licenses this file to you under the Apache License, version
+ *   2.0 (the "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *   implied.  See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package io.reactiverse.vertx.maven.plugin.components.impl;
+
+import io.reactiverse.vertx.maven.plugin.components.PackageConfig;
+import io.reactiverse.vertx.maven.plugin.components.ServiceUtils;
+import io.reactiverse.vertx.maven.plugin.mojos.DependencySet;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A dependency to embed in the application package, with the filter of the {@link DependencySet} selecting it.
+ */
+public class EmbeddableDependency {
+
+    private final Artifact artifact;
+
+    private final DependencyEntryFilter filter;
+
+    private EmbeddableDependency(Artifact artifact, DependencyEntryFilter filter) {
+        this.artifact = artifact;
+        this.filter = filter;
+    }
+
+    /**
+     * Lists the dependencies to embed, in the declaration order of the dependency sets of the archive. As the first
+     * dependency providing an entry wins, this order must be preserved when the entries are written.
+     *
+     * @param config the package configuration
+     * @param log    the logger
+     * @return the dependencies to embed
+     */
+    public static List<EmbeddableDependency> collect(PackageConfig config, Log log) {
+        List<EmbeddableDependency> list = new ArrayList<>();
+        for (DependencySet ds : config.getArchive().getDependencySets()) {
+            DependencyEntryFilter filter = new DependencyEntryFilter(ds);
+            Set<Artifact> artifacts = ServiceUtils.getDependencies(config.getArtifacts(), ds, log);
+            for (Artifact artifact : artifacts) {
+                File file = artifact.getFile();
+                if (file.isFile()) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("Adding Dependency :" + artifact);
+                    }
+                    list.add(new EmbeddableDependency(artifact, filter));
+                } else {
+                    log.info("Cannot embed artifact " + artifact
+                        + " - the file does not exist");
+                }
+            }
+        }
+        return list;
+    }
+
+    public Artifact getArtifact() {
+        return artifact;
+    }
+
+    public File getFile() {
+        return artifact.getFile();
+    }
+
+    public DependencyEntryFilter getFilter() {
+        return filter;
+    }
+
+    /**
+     * Creates a copy of this dependency excluding the given entries in addition to the ones excluded by its
+     * dependency set.
+     *
+     * @param paths the paths of the entries to exclude, absolute (starting with {@code /})
+     * @return the dependency
+     */
+    EmbeddableDependency remove(Collection<String> paths) {
+        return paths.isEmpty() ? this : new EmbeddableDependency(artifact, filter.remove(paths));
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ *
+ *   Copyright (c) 2016-2017 Red Hat, Inc.
+ *
+ *   Red Hat licenses this file to you under the Apache License, version
+ *   2.0 (the "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *   implied.  See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package io.reactiverse.vertx.maven.plugin.components.impl;
+
+import io.reactiverse.vertx.maven.plugin.components.*;
+import io.reactiverse.vertx.maven.plugin.mojos.AbstractVertxMojo;
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.component.annotations.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * An "exploded" package service, building a directory ready to run the application:
+ * <ul>
+ * <li>{@code classes}: the files provided by the project (file sets, classes including the combined SPI
+ * descriptors, file items) and the manifest</li>
+ * <li>{@code lib}: the dependencies, see {@link LibraryDirectory}</li>
+ * <li>{@code launch.args}: the JVM arguments (class path and main class) in the {@code @argfile} format</li>
+ * <li>{@code bin/launch} and {@code bin/launch.bat}: the launch scripts</li>
+ * </ul>
+ * The directory is updated in place: only the files that changed since the previous build are written, and the
+ * files that are not part of the application anymore are removed.
+ */
+@Component(
+    role = PackageService.class,
+    hint = "exploded")
+public class ExplodedPackageService implements PackageService {
+
+    /**
+     * The directory containing the project files.
+     */
+    public static final String CLASSES = "classes";
+
+    /**
+     * The file containing the JVM arguments.
+     */
+    public static final String LAUNCH_ARGS = "launch.args";
+
+    @Override
+    public PackageType type() {
+        return PackageType.EXPLODED;
+    }
+
+    @Override
+    public File doPackage(PackageConfig config) throws PackagingException {
+        Log logger = Objects.requireNonNull(config.getMojo().getLog());
+
+        ApplicationContent content = ApplicationContent.collect(config, logger);
+        if (!content.getRelocations().isEmpty()) {
+            throw new PackagingException("Unable to handle the file item "
+                + content.getRelocations().keySet().iterator().next() + ", file not found in the project.");
+        }
+
+        File root = config.getOutput();
+        File classes = new File(root, CLASSES);
+        List<EmbeddableDependency> dependencies = EmbeddableDependency.collect(config, logger);
+        if (config.isDuplicateReport()) {
+            DuplicateDetector.detect(logger, config.getJarIndexCache(), dependencies,
+                path -> content.getFiles().containsKey(path.substring(1)));
+        }
+        List<String> libraries = new LibraryDirectory(new File(root, LibraryDirectory.LIB), logger)
+            .populate(dependencies);
+
+        Map<String, String> manifest = config.getArchive().getManifest();
+        try {
+            ClassesDirectory.sync(logger, classes, content.getFiles(),
+                Collections.singletonMap(ClassesDirectory.MANIFEST, ServiceUtils.createManifest(manifest)));
+
+            List<File> classPath = new ArrayList<>();
+            classPath.add(classes.getAbsoluteFile());
+            libraries.forEach(name -> classPath.add(new File(root, LibraryDirectory.LIB + "/" + name)
+                .getAbsoluteFile()));
+            String mainClass = manifest.getOrDefault("Main-Class",
+                AbstractVertxMojo.IO_VERTX_CORE_LAUNCHER);
+            write(new File(root, LAUNCH_ARGS), createArgFile(classPath, mainClass));
+
+            File sh = new File(root, "bin/launch");
+            write(sh, String.join("\n", Arrays.asList(
+                "#!/bin/sh",
+                "# Launches the application, generated by the vertx-maven-plugin",
+                "APP_HOME=$(cd \"$(dirname \"$0\")/..\" && pwd)",
+                "if [ -n \"$JAVA_HOME\" ]; then JAVA=\"$JAVA_HOME/bin/java\"; else JAVA=java; fi",
+                "# The @argfile syntax requires Java 9+, Java 8 gets the class path from the CLASSPATH variable",
+                "if \"$JAVA\" -version 2>&1 | grep -q 'version \"1\\.'; then",
+                "  CLASSPATH=$(sed -n '2{s/^\"//;s/\"$//;s/\\\\\\\\/\\\\/g;p;}' \"$APP_HOME/" + LAUNCH_ARGS + "\")",
+                "  export CLASSPATH",
+                "  exec \"$JAVA\" $JAVA_OPTS \"$(sed -n 3p \"$APP_HOME/" + LAUNCH_ARGS + "\")\" \"$@\"",
+                "fi",
+                "exec \"$JAVA\" $JAVA_OPTS @\"$APP_HOME/" + LAUNCH_ARGS + "\" \"$@\"",
+                "")));
+            if (!sh.setExecutable(true, false)) {
+                logger.debug("Unable to make " + sh.getAbsolutePath() + " executable");
+            }
+            write(new File(root, "bin/launch.bat"), String.join("\r\n", Arrays.asList(
+                "@echo off",
+                "rem Launches the application (requires Java 9+), generated by the vertx-maven-plugin",
+                "set APP_HOME=%~dp0..",
+                "if defined JAVA_HOME (set JAVA=\"%JAVA_HOME%\\bin\\java\") else (set JAVA=java)",
+                "%JAVA% %JAVA_OPTS% @\"%APP_HOME%\\" + LAUNCH_ARGS + "\" %*",
+                "")));
+        } catch (IOException e) {
+            throw new PackagingException("Unable to build the exploded application in " + root.getAbsolutePath(), e);
+        }
+        return root;
+    }
+
+    /**
+     * Reads the class path of the exploded application built in the given directory.
+     *
+     * @param root the directory
+     * @return the class path, in order, {@code null} if the directory does not contain an exploded application
+     * @throws IOException if the arguments of the application cannot be read
+     */
+    public static List<File> getClassPath(File root) throws IOException {
+        File args = new File(root, LAUNCH_ARGS);
+        if (!args.isFile()) {
+            return null;
+        }
+        List<String> lines = Files.readAllLines(args.toPath(), StandardCharsets.UTF_8);
+        int index = lines.indexOf("-cp");
+        if (index == -1 || index + 1 >= lines.size()) {
+            return null;
+        }
+        return Arrays.stream(unquote(lines.get(index + 1)).split(File.pathSeparator))
+            .map(File::new)
+            .collect(Collectors.toList());
+    }
+
+    static String createArgFile(List<File> classPath, String mainClass) {
+        String cp = classPath.stream().map(File::getPath).collect(Collectors.joining(File.pathSeparator));
+        return "-cp\n" + quote(cp) + "\n" + mainClass + "\n";
+    }
+
+    private static String quote(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    private static String unquote(String value) {
+        if (value.length() < 2 || !value.startsWith("\"") || !value.endsWith("\"")) {
+            return value;
+        }
+        StringBuilder builder = new StringBuilder();
+        for (int i = 1; i < value.length() - 1; i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length() - 1) {
+                c = value.charAt(++i);
+            }
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+
+    private static void write(File file, String content) throws IOException {
+        ClassesDirectory.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ *
+ *   Copyright (c) 2016-2017 Red Hat, Inc.
+ *
+ *   Red Hat licenses this file to you under the Apache License, version
+ *   2.0 (the "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *   implied.  See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package io.reactiverse.vertx.maven.plugin.components.impl;
+
+import io.reactiverse.vertx.maven.plugin.components.*;
+import io.reactiverse.vertx.maven.plugin.mojos.AbstractVertxMojo;
+import io.reactiverse.vertx.maven.plugin.mojos.Layer;
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.component.annotations.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+/**
+ * A "layered" package service, building a directory split in layers, so the layers of a container image copying
+ * them are only rebuilt, pushed and pulled when their content changes. The layers, from the least to the most
+ * frequently changing, are:
+ * <ul>
+ * <li>{@code dependencies}: the release dependencies, in {@code dependencies/lib}</li>
+ * <li>the custom layers, each containing the dependencies selected by its {@link Layer#getDependencies()
+ * dependency set}, in {@code <name>/lib}</li>
+ * <li>{@code snapshot-dependencies}: the snapshot dependencies, in {@code snapshot-dependencies/lib}</li>
+ * <li>{@code resources}: the project files that are not classes (including the combined SPI descriptors) and the
+ * manifest, in {@code resources/classes}</li>
+ * <li>{@code application}: the project classes in {@code application/classes}, and the JVM arguments in
+ * {@code application/launch.args}</li>
+ * </ul>
+ * The {@code layers.idx} file lists the layers and their directories, in order. The class path of
+ * {@code launch.args} is relative to the package directory, so the application is launched from this directory
+ * with {@code java @application/launch.args} (Java 9+).
+ * <p>
+ * Like the exploded package, the directory is updated in place, see {@link ClassesDirectory} and
+ * {@link LibraryDirectory}.
+ */
+@Component(
+    role = PackageService.class,
+    hint = "layered")
+public class LayeredPackageService implements PackageService {
+
+    /**
+     * The name of the layer containing the release dependencies.
+     */
+    public static final String DEPENDENCIES = "dependencies";
+
+    /**
+     * The name of the layer containing the snapshot dependencies.
+     */
+    public static final String SNAPSHOT_DEPENDENCIES = "snapshot-dependencies";
+
+    /**
+     * The name of the layer containing the project files that are not classes.
+     */
+    public static final String RESOURCES = "resources";
+
+    /**
+     * The name of the layer containing the project classes.
+     */
+    public static final String APPLICATION = "application";
+
+    /**
+     * The name of the layer index.
+     */
+    public static final String LAYERS_INDEX = "layers.idx";
+
+    @Override
+    public PackageType type() {
+        return PackageType.LAYERED;
+    }
+
+    @Override
+    public File doPackage(PackageConfig config) throws PackagingException {
+        Log logger = Objects.requireNonNull(config.getMojo().getLog());
+
+        ApplicationContent content = ApplicationContent.collect(config, logger);
+        if (!content.getRelocations().isEmpty()) {
+            throw new PackagingException("Unable to handle the file item "
+                + content.getRelocations().keySet().iterator().next() + ", file not found in the project.");
+        }
+
+        List<String> layers = getLayerNames(config.getLayers());
+        List<EmbeddableDependency> embedded = EmbeddableDependency.collect(config, logger);
+        if (config.isDuplicateReport()) {
+            DuplicateDetector.detect(logger, config.getJarIndexCache(), embedded,
+                path -> content.getFiles().containsKey(path.substring(1)));
+        }
+        Map<String, List<EmbeddableDependency>> dependencies = splitDependencies(config, logger, layers, embedded);
+
+        File root = config.getOutput();
+        Map<File, String> libraries = new HashMap<>();
+        Set<String> taken = new HashSet<>();
+        for (Map.Entry<String, List<EmbeddableDependency>> entry : dependencies.entrySet()) {
+            String lib = entry.getKey() + "/" + LibraryDirectory.LIB;
+            List<EmbeddableDependency> list = entry.getValue();
+            List<String> names = new LibraryDirectory(new File(root, lib), logger).populate(list, taken);
+            Iterator<String> iterator = names.iterator();
+            list.stream().map(dependency -> dependency.getFile().getAbsoluteFile()).distinct()
+                .forEach(file -> libraries.put(file, lib + "/" + iterator.next()));
+        }
+
+        Map<String, File> resources = new LinkedHashMap<>();
+        Map<String, File> classes = new LinkedHashMap<>();
+        content.getFiles().forEach((name, file) -> {
+            if (!file.isDirectory()) {
+                (name.endsWith(".class") ? classes : resources).put(name, file);
+            }
+        });
+
+        Map<String, String> manifest = config.getArchive().getManifest();
+        try {
+            removeStaleLayers(logger, root, layers);
+
+            String resourcesDirectory = RESOURCES + "/" + ExplodedPackageService.CLASSES;
+            String classesDirectory = APPLICATION + "/" + ExplodedPackageService.CLASSES;
+            ClassesDirectory.sync(logger, new File(root, resourcesDirectory), resources,
+                Collections.singletonMap(ClassesDirectory.MANIFEST, ServiceUtils.createManifest(manifest)));
+            ClassesDirectory.sync(logger, new File(root, classesDirectory), classes, Collections.emptyMap());
+
+            // Dependencies keep their declaration order, the first one providing a class wins
+            List<File> classPath = new ArrayList<>();
+            classPath.add(new File(classesDirectory));
+            classPath.add(new File(resourcesDirectory));
+            embedded.stream()
+                .map(dependency -> libraries.get(dependency.getFile().getAbsoluteFile()))
+                .distinct()
+                .forEach(path -> classPath.add(new File(path)));
+            String mainClass = manifest.getOrDefault("Main-Class", AbstractVertxMojo.IO_VERTX_CORE_LAUNCHER);
+            ClassesDirectory.write(new File(root, APPLICATION + "/" + ExplodedPackageService.LAUNCH_ARGS),
+                ExplodedPackageService.createArgFile(classPath, mainClass).getBytes(StandardCharsets.UTF_8));
+
+            ClassesDirectory.write(new File(root, LAYERS_INDEX), createIndex(layers)
+                .getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new PackagingException("Unable to build the layered application in " + root.getAbsolutePath(), e);
+        }
+        return root;
+    }
+
+    /**
+     * Reads the layers of the layered application built in the given directory.
+     *
+     * @param root the directory
+     * @return the names of the layers, in order, {@code null} if the directory does not contain a layered application
+     * @throws IOException if the layer index cannot be read
+     */
+    public static List<String> getLayers(File root) throws IOException {
+        File index = new File(root, LAYERS_INDEX);
+        if (!index.isFile()) {
+            return null;
+        }
+        List<String> layers = new ArrayList<>();
+        for (String line : Files.readAllLines(index.toPath(), StandardCharsets.UTF_8)) {
+            if (line.startsWith("- \"") && line.endsWith("\":")) {
+                layers.add(line.substring(3, line.length() - 2));
+            }
+        }
+        return layers;
+    }
+
+    /**
+     * Computes the names of the layers, in order.
+     *
+     * @param custom the custom layers
+     * @return the names of the layers
+     * @throws PackagingException if a custom layer has no name or dependency set, or uses the name of another layer
+     */
+    static List<String> getLayerNames(List<Layer> custom) throws PackagingException {
+        List<String> names = new ArrayList<>();
+        names.add(DEPENDENCIES);
+        for (Layer layer : custom) {
+            String name = layer.getName();
+            if (name == null || name.trim().isEmpty() || name.contains("/") || name.contains("\\")) {
+                throw new PackagingException("Invalid layer name '" + name + "', the name of a custom layer must " +
+                    "be a valid directory name");
+            }
+            if (layer.getDependencies() == null) {
+                throw new PackagingException("The custom layer " + name + " does not have a dependency set");
+            }
+            if (names.contains(name) || Arrays.asList(SNAPSHOT_DEPENDENCIES, RESOURCES, APPLICATION).contains(name)) {
+                throw new PackagingException("Duplicate layer name " + name);
+            }
+            names.add(name);
+        }
+        names.add(SNAPSHOT_DEPENDENCIES);
+        names.add(RESOURCES);
+        names.add(APPLICATION);
+        return names;
+    }
+
+    /**
+     * Assigns the dependencies to the layers: the first custom layer selecting a dependency wins, the other
+     * dependencies go to the snapshot or release layer. Every dependency layer is listed, even empty, so the files of
+     * the previous build are removed.
+     */
+    private static Map<String, List<EmbeddableDependency>> splitDependencies(PackageConfig config, Log logger,
+                                                                             List<String> layers,
+                                                                             List<EmbeddableDependency> embedded) {
+        Map<String, List<EmbeddableDependency>> dependencies = new LinkedHashMap<>();
+        layers.subList(0, layers.size() - 2).forEach(name -> dependencies.put(name, new ArrayList<>()));
+
+        Map<String, Set<Artifact>> selected = new LinkedHashMap<>();
+        for (Layer layer : config.getLayers()) {
+            selected.put(layer.getName(), ServiceUtils.getDependencies(config.getArtifacts(), layer.getDependencies(),
+                logger));
+        }
+
+        for (EmbeddableDependency dependency : embedded) {
+            Artifact artifact = dependency.getArtifact();
+            String layer = selected.entrySet().stream()
+                .filter(entry -> entry.getValue().contains(artifact))
+                .map(Map.Entry::getKey)
+                .findFirst()
+                .orElse(artifact.isSnapshot() ? SNAPSHOT_DEPENDENCIES : DEPENDENCIES);
+            dependencies.get(layer).add(dependency);
+        }
+        return dependencies;
+    }
+
+    private static void removeStaleLayers(Log logger, File root, List<String> layers) throws IOException {
+        File[] directories = root.listFiles(File::isDirectory);
+        if (directories == null) {
+            return;
+        }
+        for (File directory : directories) {
+            if (!layers.contains(directory.getName())) {
+                logger.debug("Removing the layer " + directory.getName() + ", it's not part of the application " +
+                    "anymore");
+                FileUtils.deleteDirectory(directory);
+            }
+        }
+    }
+
+    private static String createIndex(List<String> layers) {
+        StringBuilder builder = new StringBuilder();
+        for (String layer : layers) {
+            builder.append("- \"").append(layer).append("\":\n")
+                .append("  - \"").append(layer).append("/\"\n");
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ *
+ *   Copyright (c) 2016-2017 Red Hat, Inc.
+ *
+ *   Red Hat licenses this file to you under the Apache License, version
+ *   2.0 (the "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *   implied.  See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package io.reactiverse.vertx.maven.plugin.components.impl;
+
+import io.reactiverse.vertx.maven.plugin.components.PackagingException;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * The directory containing the dependencies of a package that does not embed them (thin jar, exploded
+ * application). Dependencies are placed in the directory as hard links to the files of the local repository when
+ * the file system allows it, and copied otherwise. Files already up to date are left untouched, and the jars that
+ * are not dependencies anymore are removed.
+ * <p>
+ * Dependencies with the same content (same size and SHA-256 digest) under different coordinates share the same file
+ * of the directory, linked to the first one.
+ * <p>
+ * A file of the directory is never written in place, as it may be a link to the local repository: it is deleted
+ * and created again.
+ */
+public class LibraryDirectory {
+
+    /**
+     * The default name of the directory, relative to the package.
+     */
+    public static final String LIB = "lib";
+
+    private final File directory;
+
+    private final Log log;
+
+    private boolean linkSupported = true;
+
+    public LibraryDirectory(File directory, Log log) {
+        this.directory = directory;
+        this.log = log;
+    }
+
+    /**
+     * Places the given dependencies in the directory. An artifact selected by several dependency sets is placed
+     * once.
+     *
+     * @param dependencies the dependencies, in declaration order
+     * @return the names of the files of the directory, in declaration order
+     * @throws PackagingException if a dependency cannot be placed in the directory
+     */
+    public List<String> populate(List<EmbeddableDependency> dependencies) throws PackagingException {
+        return populate(dependencies, new HashSet<>());
+    }
+
+    /**
+     * Places the given dependencies in the directory, avoiding the given file names. Used when the dependencies
+     * are split in several directories merged at runtime.
+     *
+     * @param dependencies the dependencies, in declaration order
+     * @param taken        the names already used, updated by this method
+     * @return the names of the files of the directory, in declaration order
+     * @throws PackagingException if a dependency cannot be placed in the directory
+     */
+    public List<String> populate(List<EmbeddableDependency> dependencies, Set<String> taken)
+        throws PackagingException {
+        Map<File, String> names = new LinkedHashMap<>();
+        for (EmbeddableDependency dependency : dependencies) {
+            File file = dependency.getFile().getAbsoluteFile();
+            if (names.containsKey(file)) {
+                continue;
+            }
+            String name = getFileName(dependency.getArtifact(), taken);
+            taken.add(name);
+            names.put(file, name);
+        }
+
+        try {
+            Files.createDirectories(directory.toPath());
+            removeStaleFiles(new HashSet<>(names.values()));
+            // Dependencies with the same content (under different coordinates) share the same file
+            Map<Long, List<Path>> bySize = new HashMap<>();
+            Map<Path, byte[]> digests = new HashMap<>();
+            int shared = 0;
+            long sharedBytes = 0;
+            for (Map.Entry<File, String> entry : names.entrySet()) {
+                Path source = entry.getKey().toPath();
+                Path target = new File(directory, entry.getValue()).toPath();
+                long size = Files.size(source);
+                List<Path> candidates = bySize.computeIfAbsent(size, key -> new ArrayList<>());
+                Path identical = null;
+                for (Path candidate : candidates) {
+                    if (Arrays.equals(digest(digests, candidate), digest(digests, source))) {
+                        identical = candidate;
+                        break;
+                    }
+                }
+                if (identical != null) {
+                    log.debug(entry.getValue() + " has the same content as " + identical.getFileName());
+                    place(new File(directory, names.get(identical.toFile())).toPath(), target);
+                    shared++;
+                    sharedBytes += size;
+                } else {
+                    candidates.add(source);
+                    place(source, target);
+                }
+            }
+            if (shared > 0) {
+                log.info(shared + " dependencies of " + directory.getName() + " have the same content as another " +
+                    "dependency, sharing " + sharedBytes + " bytes");
+            }
+        } catch (IOException e) {
+            throw new PackagingException("Unable to populate the library directory " + directory.getAbsolutePath(),
+                e);
+        }
+        return new ArrayList<>(names.values());
+    }
+
+    /**
+     * Computes the name of the file of the given artifact in the directory. The name of the file in the local
+     * repository is used, prefixed with the group id when another dependency already uses it.
+     *
+     * @param artifact the artifact
+     * @param taken    the names already used
+     * @return the name
+     */
+    private static String getFileName(Artifact artifact, Set<String> taken) {
+        String name = artifact.getFile().getName();
+        if (taken.contains(name)) {
+            name = artifact.getGroupId() + "." + name;
+        }
+        return name;
+    }
+
+    private void removeStaleFiles(Set<String> names) throws IOException {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(".jar"));
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (!names.contains(file.getName())) {
+                log.debug("Removing " + file.getName() + " from " + directory.getName() + ", it's not a dependency " +
+                    "anymore");
+                Files.delete(file.toPath());
+            }
+        }
+    }
+
+    private static byte[] digest(Map<Path, byte[]> digests, Path file) throws IOException {
+        byte[] digest = digests.get(file);
+        if (digest == null) {
+            try (InputStream input = Files.newInputStream(file)) {
+                MessageDigest md = MessageDigest.getInstance("SHA-256");
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = input.read(buffer)) != -1) {
+                    md.update(buffer, 0, read);
+                }
+                digest = md.digest();
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 not supported", e);
+            }
+            digests.put(file, digest);
+        }
+        return digest;
+    }
+
+    private void place(Path source, Path target) throws IOException {
+        if (Files.exists(target)) {
+            if (Files.isSameFile(source, target)
+                || Files.size(source) == Files.size(target)
+                && Files.getLastModifiedTime(source).equals(Files.getLastModifiedTime(target))) {
+                return;
+            }
+            Files.delete(target);
+        }
+
+        if (linkSupported) {
+            try {
+                Files.createLink(target, source);
+                return;
+            } catch (UnsupportedOperationException | IOException e) {
+                // Different file stores, or a file system without hard links
+                log.debug("Unable to create hard links in " + directory.getAbsolutePath() + ", copying the " +
+                    "dependencies instead: " + e.getMessage());
+                linkSupported = false;
+            }
+        }
+        Files.copy(source, target, StandardCopyOption.COPY_ATTRIBUTES);
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ *
+ *   Copyright (c) 2016-2017 Red Hat, Inc.
+ *
+ *   Red Hat licenses this file to you under the Apache License, version
+ *   2.0 (the "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *   implied.  See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package io.reactiverse.vertx.maven.plugin.components.impl;
+
+import io.reactiverse.vertx.maven.plugin.components.BinaryDescriptorCombiner;
+import org.codehaus.plexus.component.annotations.Component;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Combines the Log4j2 plugin caches ({@code Log4j2Plugins.dat}), generated by the Log4j2 annotation processor in
+ * each jar providing plugins. When the fat jar contains a single cache listing all the plugins, Log4j2 does not need
+ * to scan the packages of the application at startup.
+ * <p>
+ * The cache is written with a {@link DataOutputStream}: the number of categories, then for each category its name,
+ * the number of plugins, and for each plugin its key, class name, name, and the {@code printable} and
+ * {@code defer} flags. Like Log4j2 when it loads several caches, the categories are compared ignoring case, and the
+ * first plugin registered with a given key wins.
+ */
+@Component(
+    role = BinaryDescriptorCombiner.class,
+    hint = "log4j2-plugins")
+public class Log4j2PluginCacheCombiner implements BinaryDescriptorCombiner {
+
+    public static final String PATH = "/META-INF/org/apache/logging/log4j/core/config/plugins/Log4j2Plugins.dat";
+
+    @Override
+    public String path() {
+        return PATH;
+    }
+
+    @Override
+    public byte[] combine(List<byte[]> descriptors) throws IOException {
+        Map<String, Map<String, Plugin>> categories = new TreeMap<>();
+        for (byte[] descriptor : descriptors) {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(descriptor));
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String category = in.readUTF().toLowerCase(Locale.ROOT);
+                Map<String, Plugin> plugins = categories.computeIfAbsent(category, c -> new LinkedHashMap<>());
+                int entries = in.readInt();
+                for (int j = 0; j < entries; j++) {
+                    Plugin plugin = new Plugin(in);
+                    plugins.putIfAbsent(plugin.key, plugin);
+                }
+            }
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(categories.size());
+            for (Map.Entry<String, Map<String, Plugin>> category : categories.entrySet()) {
+                out.writeUTF(category.getKey());
+                out.writeInt(category.getValue().size());
+                for (Plugin plugin : category.getValue().values()) {
+                    plugin.write(out);
+                }
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static class Plugin {
+
+        private final String key;
+        private final String className;
+        private final String name;
+        private final boolean printable;
+        private final boolean defer;
+
+        Plugin(DataInputStream in) throws IOException {
+            key = in.readUTF();
+            className = in.readUTF();
+            name = in.readUTF();
+            printable = in.readBoolean();
+            defer = in.readBoolean();
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeUTF(key);
+            out.writeUTF(className);
+            out.writeUTF(name);
+            out.writeBoolean(printable);
+            out.writeBoolean(defer);
+        }
+    }
+}
@@ -0,0 +1,349 @@
+/*
+ *
+ *   Copyright (c) 2016-2017 Red Hat, Inc.
+ *
+ *   Red Hat licenses this file to you under the Apache License, version
+ *   2.0 (the "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *   implied.  See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package io.reactiverse.vertx.maven.plugin.components.impl;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * The sidecar index written next to a fat jar built incrementally. It records where each entry of the jar comes
+ * from, so the next build can reuse the region of the jar containing the dependencies, and the compressed bytes of
+ * the unchanged project files.
+ * <p>
+ * The index is serialized in JSON, in a file named after the jar with the {@code .idx} extension.
+ */
+public class PackageIndex {
+
+    /**
+     * The version of the index format. Indexes with another version are ignored.
+     */
+    static final int VERSION = 1;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+        .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private int version = VERSION;
+    private String dependencies;
+    private int compressionLevel;
+    private String compressionPolicy;
+    private long jarLength;
+    private long jarLastModified;
+    private long dependencyStart;
+    private long dependencyEnd;
+    private List<Entry> entries = new ArrayList<>();
+    private Set<String> shadowed = new TreeSet<>();
+    private Map<String, Entry> byName;
+
+    /**
+     * Gets the index file of the given jar.
+     *
+     * @param jar the jar
+     * @return the index file, may not exist
+     */
+    public static File getIndexFile(File jar) {
+        return new File(jar.getParentFile(), jar.getName() + ".idx");
+    }
+
+    /**
+     * Loads the index of the given jar, if any. Indexes that cannot be read, written with another version, or
+     * describing another state of the jar are ignored.
+     *
+     * @param jar the jar
+     * @return the index, {@code null} if there is no usable index
+     */
+    public static PackageIndex load(File jar) {
+        File file = getIndexFile(jar);
+        if (!file.isFile() || !jar.isFile()) {
+            return null;
+        }
+        try {
+            PackageIndex index = MAPPER.readValue(file, PackageIndex.class);
+            if (index.version != VERSION
+                || index.jarLength != jar.length()
+                || index.jarLastModified != jar.lastModified()) {
+                return null;
+            }
+            return index;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes the index of the given jar. The jar must have been written completely.
+     *
+     * @param jar the jar
+     * @throws IOException if the index cannot be written
+     */
+    public void save(File jar) throws IOException {
+        jarLength = jar.length();
+        jarLastModified = jar.lastModified();
+        MAPPER.writeValue(getIndexFile(jar), this);
+    }
+
+    /**
+     * Computes the fingerprint of the dependencies embedded in the jar. Two builds with the same fingerprint write
+     * exactly the same dependency region, as long as the project files do not shadow other dependency entries.
+     *
+     * @param dependencies the embedded dependencies
+     * @param relocations  the dependency entries stored under another name
+     * @param descriptors  the patterns (or paths) of the descriptors combined instead of being embedded, empty if
+     *                     the descriptors are not combined while packaging
+     * @param order        the names of the entries written first, empty if the default layout is used
+     * @return the fingerprint
+     */
+    public static String fingerprint(List<EmbeddableDependency> dependencies, Map<String, String> relocations,
+                                     List<String> descriptors, List<String> order) {
+        StringBuilder builder = new StringBuilder();
+        for (EmbeddableDependency dependency : dependencies) {
+            File file = dependency.getFile();
+            builder.append(dependency.getArtifact()).append('|')
+                .append(file.getAbsolutePath()).append('|')
+                .append(file.length()).append('|')
+                .append(file.lastModified()).append('|')
+                .append(dependency.getFilter().signature()).append('\n');
+        }
+        relocations.forEach((source, target) -> builder.append(source).append("->").append(target).append('\n'));
+        descriptors.forEach(pattern -> builder.append("combine:").append(pattern).append('\n'));
+        order.forEach(name -> builder.append("order:").append(name).append('\n'));
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(builder.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : hash) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 not supported", e);
+        }
+    }
+
+    /**
+     * Checks whether the dependency region recorded in this index can be reused with the given project entries.
+     * It can't when a project entry now shadows an entry written from the dependencies, or when a project entry
+     * that was shadowing a dependency entry has been removed.
+     *
+     * @param projectEntries the names of the entries written before the dependencies
+     * @return {@code true} if the region can be copied as it is
+     */
+    public boolean isDependencyRegionReusable(Set<String> projectEntries) {
+        if (!projectEntries.containsAll(shadowed)) {
+            return false;
+        }
+        for (Entry entry : entries) {
+            if (entry.getOffset() >= dependencyStart && entry.getOffset() < dependencyEnd
+                && projectEntries.contains(entry.getName())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds the entry with the given name.
+     *
+     * @param name the name
+     * @return the entry, {@code null} if not found
+     */
+    public Entry getEntry(String name) {
+        if (byName == null) {
+            byName = new HashMap<>();
+            entries.forEach(entry -> byName.put(entry.getName(), entry));
+        }
+        return byName.get(name);
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public PackageIndex setVersion(int version) {
+        this.version = version;
+        return this;
+    }
+
+    public String getDependencies() {
+        return dependencies;
+    }
+
+    public PackageIndex setDependencies(String dependencies) {
+        this.dependencies = dependencies;
+        return this;
+    }
+
+    /**
+     * @return the deflate level used to compress the project files
+     */
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    public PackageIndex setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+        return this;
+    }
+
+    /**
+     * @return the signature of the compression policy used to write the entries
+     */
+    public String getCompressionPolicy() {
+        return compressionPolicy;
+    }
+
+    public PackageIndex setCompressionPolicy(String compressionPolicy) {
+        this.compressionPolicy = compressionPolicy;
+        return this;
+    }
+
+    public long getJarLength() {
+        return jarLength;
+    }
+
+    public PackageIndex setJarLength(long jarLength) {
+        this.jarLength = jarLength;
+        return this;
+    }
+
+    public long getJarLastModified() {
+        return jarLastModified;
+    }
+
+    public PackageIndex setJarLastModified(long jarLastModified) {
+        this.jarLastModified = jarLastModified;
+        return this;
+    }
+
+    public long getDependencyStart() {
+        return dependencyStart;
+    }
+
+    public PackageIndex setDependencyStart(long dependencyStart) {
+        this.dependencyStart = dependencyStart;
+        return this;
+    }
+
+    public long getDependencyEnd() {
+        return dependencyEnd;
+    }
+
+    public PackageIndex setDependencyEnd(long dependencyEnd) {
+        this.dependencyEnd = dependencyEnd;
+        return this;
+    }
+
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    public PackageIndex setEntries(List<Entry> entries) {
+        this.entries = entries;
+        this.byName = null;
+        return this;
+    }
+
+    public Set<String> getShadowed() {
+        return shadowed;
+    }
+
+    public PackageIndex setShadowed(Set<String> shadowed) {
+        this.shadowed = shadowed;
+        return this;
+    }
+
+    /**
+     * An entry of the jar.
+     */
+    public static class Entry {
+
+        private String name;
+        private String source;
+        private long size;
+        private long lastModified;
+        private long crc;
+        private long offset;
+
+        public String getName() {
+            return name;
+        }
+
+        public Entry setName(String name) {
+            this.name = name;
+            return this;
+        }
+
+        /**
+         * @return the source of the entry: the absolute path of a project file, the coordinates of a dependency,
+         * or {@code null} for generated entries (manifest, directories)
+         */
+        public String getSource() {
+            return source;
+        }
+
+        public Entry setSource(String source) {
+            this.source = source;
+            return this;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public Entry setSize(long size) {
+            this.size = size;
+            return this;
+        }
+
+        /**
+         * @return the last modification time of the project file, {@code 0} for the other entries
+         */
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        public Entry setLastModified(long lastModified) {
+            this.lastModified = lastModified;
+            return this;
+        }
+
+        public long getCrc() {
+            return crc;
+        }
+
+        public Entry setCrc(long crc) {
+            this.crc = crc;
+            return this;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public Entry setOffset(long offset) {
+            this.offset = offset;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ *
+ *   Copyright (c) 2016-2017 Red Hat, Inc.
+ *
+ *   Red Hat licenses this file to you under the Apache License, version
+ *   2.0 (the "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *   implied.  See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package io.reactiverse.vertx.maven.plugin.components.impl;
+
+import io.reactiverse.vertx.maven.plugin.components.PackageConfig;
+import io.reactiverse.vertx.maven.plugin.components.PackagingException;
+import io.reactiverse.vertx.maven.plugin.utils.ClassFile;
+import io.reactiverse.vertx.maven.plugin.utils.GlobMatcher;
+import io.reactiverse.vertx.maven.plugin.zip.JarIndexCache;
+import io.reactiverse.vertx.maven.plugin.zip.ZipReader;
+import io.reactiverse.vertx.maven.plugin.zip.ZipRecord;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+/**
+ * Removes the classes of the dependencies that are not reachable from the entry points of the application.
+ * <p>
+ * The entry points are the classes of the project, the {@code Main-Class} and the Java {@code Main-Verticle} of the
+ * manifest, the providers declared in the {@code META-INF/services} descriptors (of the project and of the
+ * dependencies), and the classes matching the keep patterns. The references of a class are read from its constant
+ * pool by {@link ClassFile}, including the string constants naming a class, as they are commonly loaded by
+ * reflection. The other reflective accesses must be covered by keep patterns.
+ * <p>
+ * Only the classes are removed: the resources, and the entries of {@code META-INF} (including the versioned classes
+ * of multi-release jars) are always kept.
+ */
+class ReachabilityShrinker {
+
+    private static final String SERVICES = "/META-INF/services/";
+
+    private final Log log;
+
+    private final JarIndexCache cache;
+
+    private final Map<String, Source> classes = new HashMap<>();
+
+    private final Map<File, ZipReader> readers = new HashMap<>();
+
+    private final Deque<String> queue = new ArrayDeque<>();
+
+    private final Set<String> reachable = new HashSet<>();
+
+    private ReachabilityShrinker(Log log, JarIndexCache cache) {
+        this.log = log;
+        this.cache = cache;
+    }
+
+    /**
+     * Computes the dependency classes that are not reachable, and excludes them from the dependencies.
+     *
+     * @param config       the package configuration
+     * @param content      the files provided by the project
+     * @param dependencies the dependencies to embed
+     * @param log          the logger
+     * @return the dependencies to embed, excluding their unreachable classes, in the same order
+     * @throws PackagingException if a class or a descriptor cannot be read
+     */
+    static List<EmbeddableDependency> shrink(PackageConfig config, ApplicationContent content,
+                                             List<EmbeddableDependency> dependencies, Log log)
+        throws PackagingException {
+        ReachabilityShrinker shrinker = new ReachabilityShrinker(log, config.getJarIndexCache());
+        try {
+            return shrinker.run(config, content, dependencies);
+        } catch (IOException e) {
+            throw new PackagingException(e);
+        } finally {
+            shrinker.close();
+        }
+    }
+
+    private List<EmbeddableDependency> run(PackageConfig config, ApplicationContent content,
+                                           List<EmbeddableDependency> dependencies) throws IOException {
+        Set<String> relocated = content.getRelocations().keySet();
+        List<String> roots = new ArrayList<>();
+
+        // The project classes win over the dependency classes, and are all kept
+        for (Map.Entry<String, File> entry : content.getFiles().entrySet()) {
+            String name = entry.getKey();
+            File file = entry.getValue();
+            if (isClass(name)) {
+                classes.put(toClassName(name), new Source(file));
+                roots.add(toClassName(name));
+            } else if (("/" + name).startsWith(SERVICES) && file.isFile()) {
+                roots.addAll(getProviders(Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)));
+            }
+        }
+
+        // Among the dependencies, the first one providing a class wins
+        Map<EmbeddableDependency, List<ZipRecord>> candidates = new LinkedHashMap<>();
+        for (EmbeddableDependency dependency : dependencies) {
+            File file = dependency.getFile();
+            List<ZipRecord> records = new ArrayList<>();
+            for (ZipRecord record : cache.get(file).getRecords()) {
+                String path = DependencyEntryFilter.toPath(record.getName());
+                if (record.isDirectory() || !isClass(record.getName()) || relocated.contains(record.getName())
+                    || dependency.getFilter().toExclude(path)) {
+                    continue;
+                }
+                records.add(record);
+                classes.putIfAbsent(toClassName(record.getName()), new Source(file, record));
+            }
+            candidates.put(dependency, records);
+            for (Map.Entry<String, List<String>> descriptor
+                : cache.getDescriptors(file, Collections.singletonList(SERVICES + "*")).entrySet()) {
+                if (!dependency.getFilter().toExclude(descriptor.getKey())) {
+                    roots.addAll(getProviders(descriptor.getValue()));
+                }
+            }
+        }
+
+        Map<String, String> manifest = config.getArchive().getManifest();
+        if (manifest.get("Main-Class") != null) {
+            roots.add(manifest.get("Main-Class").trim());
+        }
+        String verticle = manifest.get("Main-Verticle");
+        if (verticle != null) {
+            verticle = verticle.trim();
+            if (verticle.startsWith("java:")) {
+                roots.add(verticle.substring("java:".length()));
+            } else if (!verticle.contains(":")) {
+                roots.add(verticle);
+            }
+        }
+        GlobMatcher keeps = GlobMatcher.compile(config.getShrinkKeeps());
+        if (!keeps.isEmpty()) {
+            for (String name : classes.keySet()) {
+                if (keeps.matches(name.replace('/', '.'))) {
+                    roots.add(name);
+                }
+            }
+        }
+
+        for (String root : roots) {
+            visit(root.replace('.', '/'));
+        }
+        while (!queue.isEmpty()) {
+            String name = queue.poll();
+            for (String reference : ClassFile.read(read(classes.get(name))).getReferences()) {
+                visit(reference);
+            }
+        }
+
+        // The unreachable classes are removed from all the dependencies providing them, the savings are reported
+        // for the dependency that would have provided the class
+        List<EmbeddableDependency> result = new ArrayList<>();
+        Set<String> reported = new HashSet<>();
+        int total = 0;
+        long saved = 0;
+        for (Map.Entry<EmbeddableDependency, List<ZipRecord>> entry : candidates.entrySet()) {
+            EmbeddableDependency dependency = entry.getKey();
+            List<String> removed = new ArrayList<>();
+            int count = 0;
+            long bytes = 0;
+            for (ZipRecord record : entry.getValue()) {
+                String name = toClassName(record.getName());
+                if (reachable.contains(name)) {
+                    continue;
+                }
+                removed.add(DependencyEntryFilter.toPath(record.getName()));
+                if (classes.get(name).record == record && reported.add(name)) {
+                    count++;
+                    bytes += record.getCompressedSize();
+                }
+            }
+            if (count > 0) {
+                log.info("Removing " + count + " unreachable classes from " + dependency.getArtifact() + " ("
+                    + bytes + " bytes saved)");
+            }
+            total += count;
+            saved += bytes;
+            result.add(dependency.remove(removed));
+        }
+        log.info("Shrinking removed " + total + " classes of " + classes.size() + " (" + saved + " bytes saved)");
+        return result;
+    }
+
+    private void visit(String name) {
+        if (classes.containsKey(name) && reachable.add(name)) {
+            queue.add(name);
+        }
+    }
+
+    private byte[] read(Source source) throws IOException {
+        if (source.record == null) {
+            return Files.readAllBytes(source.file.toPath());
+        }
+        ZipReader reader = readers.get(source.file);
+        if (reader == null) {
+            // The records come from the index, no need to read the central directory again
+            reader = new ZipReader(source.file, cache.get(source.file).getRecords());
+            readers.put(source.file, reader);
+        }
+        try {
+            return reader.read(source.record);
+        } catch (IOException e) {
+            throw new IOException("Unable to read " + source.record.getName() + " from "
+                + source.file.getAbsolutePath(), e);
+        }
+    }
+
+    private void close() {
+        readers.forEach((file, reader) -> {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                log.debug("Unable to close " + file.getAbsolutePath(), e);
+            }
+        });
+    }
+
+    private static List<String> getProviders(List<String> lines) {
+        Map<String, List<String>> descriptor = Collections.singletonMap(SERVICES + "service", lines);
+        return ServiceIndexGenerator.getProviders(descriptor).getOrDefault("service", Collections.emptyList());
+    }
+
+    private static boolean isClass(String name) {
+        return name.endsWith(".class") && !name.startsWith("META-INF/") && !name.endsWith("module-info.class");
+    }
+
+    private static String toClassName(String entry) {
+        return entry.substring(0, entry.length() - ".class".length());
+    }
+
+    /**
+     * Where the bytes of a class are read from: a project file, or an entry of a dependency.
+     */
+    private static class Source {
+
+        private final File file;
+
+        private final ZipRecord record;
+
+        Source(File file) {
+            this(file, null);
+        }
+
+        Source(File file, ZipRecord record) {
+            this.file = file;
+            this.record = record;
+        }
+    }
+}
@@ -5,7 +5,8 @@ import io.reactiverse.vertx.maven.plugin.components.ServiceFileCombiner;
 import io.reactiverse.vertx.maven.plugin.components.ServiceUtils;
 import io.reactiverse.vertx.maven.plugin.model.CombinationStrategy;
 import io.reactiverse.vertx.maven.plugin.mojos.DependencySet;
-import org.apache.commons.io.IOUtils;
+import io.reactiverse.vertx.maven.plugin.utils.OrderedParallelExecutor;
+import io.reactiverse.vertx.maven.plugin.zip.JarIndexCache;
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.artifact.resolver.filter.ArtifactFilter;
 import org.apache.maven.plugin.logging.Log;
@@ -13,22 +14,13 @@ import org.apache.maven.project.MavenProject;
 import org.apache.maven.shared.artifact.filter.resolve.ScopeFilter;
 import org.apache.maven.shared.artifact.filter.resolve.transform.ArtifactIncludeFilterTransformer;
 import org.apache.maven.shared.utils.io.DirectoryScanner;
-import org.apache.maven.shared.utils.io.SelectorUtils;
 import org.codehaus.plexus.component.annotations.Component;
-import org.jboss.shrinkwrap.api.ArchivePath;
-import org.jboss.shrinkwrap.api.Node;
-import org.jboss.shrinkwrap.api.ShrinkWrap;
-import org.jboss.shrinkwrap.api.asset.Asset;
-import org.jboss.shrinkwrap.api.spec.JavaArchive;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.util.*;
 import java.util.stream.Collectors;
 
-import static com.google.common.io.Closeables.closeQuietly;
-
 /**
  * This component is used to perform Services relocation - typically moving came Service Providers found in
  * META-INF/services to a single file
@@ -71,7 +63,7 @@ public class ServiceFileCombinationImpl implements ServiceFileCombiner {
                 .filter(f -> f.getName().endsWith(".jar"))
                 .collect(Collectors.toList());
 
-            combine(config.getProject(), patterns, logger, files);
+            combine(config.getProject(), patterns, logger, files, config.getJarIndexCache(), config.getThreads());
         } catch (Exception e) {
             throw new RuntimeException("Unable to combine SPI files for " + config.getProject().getArtifactId(), e);
         }
@@ -85,10 +77,14 @@ public class ServiceFileCombinationImpl implements ServiceFileCombiner {
      * @param patterns     the set of patterns
      * @param logger       the logger
      * @param dependencies the dependencies
+     * @param cache        the cache of the dependency indexes
+     * @param threads      the number of dependencies read concurrently
      */
-    private void combine(MavenProject project, List<String> patterns, Log logger, List<File> dependencies) {
+    private void combine(MavenProject project, List<String> patterns, Log logger, List<File> dependencies,
+                         JarIndexCache cache, int threads) throws Exception {
         Map<String, List<String>> locals = findLocalDescriptors(project, patterns);
-        Map<String, List<List<String>>> deps = findDescriptorsFromDependencies(dependencies, patterns);
+        Map<String, List<List<String>>> deps = findDescriptorsFromDependencies(dependencies, patterns, cache,
+            threads);
 
         // Keys are path relative to the archive root.
         if (logger.isDebugEnabled()) {
@@ -96,13 +92,7 @@ public class ServiceFileCombinationImpl implements ServiceFileCombiner {
             logger.debug("Descriptors declared in dependencies: " + deps.keySet());
         }
 
-        Set<String> descriptorsToMerge = new LinkedHashSet<>(locals.keySet());
-        descriptorsToMerge.addAll(deps.keySet());
-
-        Map<String, List<String>> descriptors = new HashMap<>();
-        for (String spi : descriptorsToMerge) {
-            descriptors.put(spi, merge(project, spi, locals.get(spi), deps.get(spi)));
-        }
+        Map<String, List<String>> descriptors = merge(project, locals, deps);
 
         // Write the new files in target/classes
         File out = new File(project.getBuild().getOutputDirectory());
@@ -118,7 +108,28 @@ public class ServiceFileCombinationImpl implements ServiceFileCombiner {
         });
     }
 
-    private List<String> merge(MavenProject project, String name, List<String> local, List<List<String>> deps) {
+    /**
+     * Merges the descriptors of the project with the ones of the dependencies.
+     *
+     * @param project the Maven project
+     * @param locals  the descriptors of the project, indexed by archive path
+     * @param deps    the descriptors of the dependencies, indexed by archive path, in dependency order
+     * @return the merged descriptors, indexed by archive path (starting with {@code /})
+     */
+    static Map<String, List<String>> merge(MavenProject project, Map<String, List<String>> locals,
+                                           Map<String, List<List<String>>> deps) {
+        Set<String> descriptorsToMerge = new LinkedHashSet<>(locals.keySet());
+        descriptorsToMerge.addAll(deps.keySet());
+
+        Map<String, List<String>> descriptors = new LinkedHashMap<>();
+        for (String spi : descriptorsToMerge) {
+            descriptors.put(spi, merge(project, spi, locals.get(spi), deps.get(spi)));
+        }
+        return descriptors;
+    }
+
+    private static List<String> merge(MavenProject project, String name, List<String> local,
+                                      List<List<String>> deps) {
         if (name.equals("org.codehaus.groovy.runtime.ExtensionModule")) {
             return GroovyExtensionCombiner.merge(project.getArtifactId(), project.getVersion(), local, deps);
         } else {
@@ -151,7 +162,14 @@ public class ServiceFileCombinationImpl implements ServiceFileCombiner {
         }
     }
 
-    private Map<String, List<String>> findLocalDescriptors(MavenProject project, List<String> patterns) {
+    /**
+     * Reads the descriptors of the project matching the given patterns from the output directory.
+     *
+     * @param project  the Maven project
+     * @param patterns the patterns
+     * @return the content (lines) of the descriptors, indexed by archive path (starting with {@code /})
+     */
+    static Map<String, List<String>> findLocalDescriptors(MavenProject project, List<String> patterns) {
         Map<String, List<String>> map = new LinkedHashMap<>();
 
         File classes = new File(project.getBuild().getOutputDirectory());
@@ -180,44 +198,30 @@ public class ServiceFileCombinationImpl implements ServiceFileCombiner {
         return map;
     }
 
-    private Map<String, List<List<String>>> findDescriptorsFromDependencies(List<File> deps, List<String> patterns) {
+    /**
+     * Reads the descriptors of the dependencies. Only the central directory of the jars and the matching entries are
+     * read, and the jars are read concurrently. The descriptors are recorded in the order of the dependencies, so the
+     * result does not depend on the number of threads.
+     */
+    private Map<String, List<List<String>>> findDescriptorsFromDependencies(List<File> deps, List<String> patterns,
+                                                                            JarIndexCache cache, int threads)
+        throws Exception {
         Map<String, List<List<String>>> map = new LinkedHashMap<>();
 
-        for (File file : deps) {
-            JavaArchive archive = ShrinkWrap.createFromZipFile(JavaArchive.class, file);
-            Map<ArchivePath, Node> content = archive.getContent(path -> {
-                for (String pattern : patterns) {
-                    if (SelectorUtils.match(pattern, path.get())) {
-                        return true;
-                    }
+        new OrderedParallelExecutor(threads).process(deps,
+            file -> {
+                try {
+                    // The descriptors are read from the jar only once, and then retrieved from the index
+                    return cache.getDescriptors(file, patterns);
+                } catch (IOException e) {
+                    throw new IOException("Cannot read " + file.getAbsolutePath(), e);
                 }
-                return false;
-            });
-
-            for (Map.Entry<ArchivePath, Node> entry : content.entrySet()) {
-                Asset asset = entry.getValue().getAsset();
-                if (asset != null) {
-                    List<String> lines;
-                    InputStream input = null;
-                    String path = entry.getKey().get();
-                    try {
-                        input = asset.openStream();
-                        lines = IOUtils.readLines(input, "UTF-8");
-                    } catch (IOException e) {
-                        throw new RuntimeException("Cannot read " + path, e);
-                    } finally {
-                        closeQuietly(input);
-                    }
-
-                    List<List<String>> items = map.get(path);
-                    if (items == null) {
-                        items = new ArrayList<>();
-                    }
-                    items.add(lines);
-                    map.put(path, items);
+            },
+            (file, content) -> {
+                for (Map.Entry<String, List<String>> entry : content.entrySet()) {
+                    map.computeIfAbsent(entry.getKey(), path -> new ArrayList<>()).add(entry.getValue());
                 }
-            }
-        }
+            });
         return map;
     }
 }
@@ -0,0 +1,111 @@
+/*
+ *
+ *   Copyright (c) 2016-2017 Red Hat, Inc.
+ *
+ *   Red Hat licenses this file to you under the Apache License, version
+ *   2.0 (the "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *   implied.  See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package io.reactiverse.vertx.maven.plugin.components.impl;
+
+import io.reactiverse.vertx.maven.plugin.components.PackagingException;
+import io.reactiverse.vertx.maven.plugin.runtime.ServiceIndex;
+import org.apache.commons.io.IOUtils;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Generates the service index of a fat jar from the combined service descriptors (see {@link ServiceIndex}), and
+ * reports the providers whose class is not in the archive.
+ */
+class ServiceIndexGenerator {
+
+    private static final String SERVICES = "/META-INF/services/";
+
+    /**
+     * The entry of the runtime helper, embedded with the index.
+     */
+    static final String HELPER = ServiceIndex.class.getName().replace('.', '/') + ".class";
+
+    private ServiceIndexGenerator() {
+        // Avoid direct instantiation
+    }
+
+    /**
+     * Generates the entries to add to the archive: the index, and the runtime helper reading it.
+     *
+     * @param log         the logger
+     * @param descriptors the combined descriptors, indexed by archive path (starting with {@code /})
+     * @param archived    checks whether an entry (without leading {@code /}) is in the archive
+     * @return the content of the entries, indexed by entry name
+     * @throws PackagingException if the runtime helper cannot be read
+     */
+    static Map<String, byte[]> generate(Log log, Map<String, List<String>> descriptors, Predicate<String> archived)
+        throws PackagingException {
+        Map<String, List<String>> index = getProviders(descriptors);
+        int missing = 0;
+        for (Map.Entry<String, List<String>> entry : index.entrySet()) {
+            for (String provider : entry.getValue()) {
+                if (!archived.test(provider.replace('.', '/') + ".class")) {
+                    log.warn("The provider " + provider + " of the service " + entry.getKey() + " is not in the " +
+                        "archive");
+                    missing++;
+                }
+            }
+        }
+        log.info("Service index generated for " + index.size() + " services" +
+            (missing > 0 ? ", " + missing + " providers not found in the archive" : ""));
+
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put(ServiceIndex.LOCATION, ServiceIndex.write(index));
+        try (InputStream input = ServiceIndex.class.getResourceAsStream("/" + HELPER)) {
+            if (input == null) {
+                throw new PackagingException("Unable to find the class " + ServiceIndex.class.getName());
+            }
+            entries.put(HELPER, IOUtils.toByteArray(input));
+        } catch (IOException e) {
+            throw new PackagingException(e);
+        }
+        return entries;
+    }
+
+    /**
+     * Extracts the providers of each service from the descriptors, using the {@link ServiceLoader} syntax: comments
+     * start with {@code #}, and blank lines are ignored.
+     *
+     * @param descriptors the descriptors, indexed by archive path
+     * @return the providers of each service, without duplicates, in descriptor order
+     */
+    static Map<String, List<String>> getProviders(Map<String, List<String>> descriptors) {
+        Map<String, List<String>> index = new TreeMap<>();
+        descriptors.forEach((path, lines) -> {
+            String service = path.startsWith(SERVICES) ? path.substring(SERVICES.length()) : "";
+            if (service.isEmpty() || service.contains("/")) {
+                return;
+            }
+            Set<String> providers = new LinkedHashSet<>();
+            for (String line : lines) {
+                int comment = line.indexOf('#');
+                String provider = (comment == -1 ? line : line.substring(0, comment)).trim();
+                if (!provider.isEmpty()) {
+                    providers.add(provider);
+                }
+            }
+            index.put(service, new ArrayList<>(providers));
+        });
+        return index;
+    }
+}
@@ -2,24 +2,24 @@ package io.reactiverse.vertx.maven.plugin.components.impl;
 
 import io.reactiverse.vertx.maven.plugin.components.*;
 import io.reactiverse.vertx.maven.plugin.mojos.Archive;
-import io.reactiverse.vertx.maven.plugin.mojos.DependencySet;
 import io.reactiverse.vertx.maven.plugin.mojos.FileItem;
 import io.reactiverse.vertx.maven.plugin.mojos.FileSet;
+import io.reactiverse.vertx.maven.plugin.utils.OrderedParallelExecutor;
+import io.reactiverse.vertx.maven.plugin.zip.JarIndexCache;
+import io.reactiverse.vertx.maven.plugin.zip.ZipRecord;
+import io.reactiverse.vertx.maven.plugin.zip.ZipWriter;
 import org.apache.commons.io.IOUtils;
-import org.apache.maven.artifact.Artifact;
-import org.apache.maven.artifact.resolver.filter.ArtifactFilter;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.project.MavenProject;
-import org.apache.maven.shared.artifact.filter.resolve.ScopeFilter;
-import org.apache.maven.shared.artifact.filter.resolve.transform.ArtifactIncludeFilterTransformer;
 import org.apache.maven.shared.utils.io.DirectoryScanner;
-import org.apache.maven.shared.utils.io.SelectorUtils;
 import org.codehaus.plexus.component.annotations.Component;
 import org.codehaus.plexus.util.FileUtils;
 import org.jboss.shrinkwrap.api.ArchivePath;
+import org.jboss.shrinkwrap.api.ArchivePaths;
 import org.jboss.shrinkwrap.api.Node;
 import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.Asset;
 import org.jboss.shrinkwrap.api.asset.ByteArrayAsset;
 import org.jboss.shrinkwrap.api.exporter.ZipExporter;
 import org.jboss.shrinkwrap.api.importer.ZipImporter;
@@ -27,8 +27,7 @@ import org.jboss.shrinkwrap.api.spec.JavaArchive;
 
 import java.io.*;
 import java.util.*;
-import java.util.jar.Attributes;
-import java.util.jar.Manifest;
+import java.util.zip.Deflater;
 
 /**
  * @author <a href="http://escoffier.me">Clement Escoffier</a>
@@ -38,15 +37,7 @@ import java.util.jar.Manifest;
     hint = "fat-jar")
 public class ShrinkWrapFatJarPackageService implements PackageService {
 
-    private static final List<String> DEFAULT_EXCLUDES;
-
-    static {
-        DEFAULT_EXCLUDES = new ArrayList<>(FileUtils.getDefaultExcludesAsList());
-        DEFAULT_EXCLUDES.add("**/*.DSA");
-        DEFAULT_EXCLUDES.add("**/*.RSA");
-        DEFAULT_EXCLUDES.add("**/INDEX.LIST");
-        DEFAULT_EXCLUDES.add("**/*.SF");
-    }
+    private static final String MANIFEST = "/META-INF/MANIFEST.MF";
 
     @Override
     public PackageType type() {
@@ -62,26 +53,45 @@ public class ShrinkWrapFatJarPackageService implements PackageService {
 
         JavaArchive jar = ShrinkWrap.create(JavaArchive.class);
 
-        for (DependencySet ds : archive.getDependencySets()) {
-            ScopeFilter scopeFilter = ServiceUtils.newScopeFilter(ds.getScope());
-            ArtifactFilter filter = new ArtifactIncludeFilterTransformer().transform(scopeFilter);
-            Set<Artifact> artifacts = ServiceUtils.filterArtifacts(config.getArtifacts(),
-                ds.getIncludes(), ds.getExcludes(),
-                ds.isUseTransitiveDependencies(), logger, filter);
-
-            // Add dependencies
-            for (Artifact artifact : artifacts) {
-                File file = artifact.getFile();
-                if (file.isFile()) {
-                    if (logger.isDebugEnabled()) {
-                        logger.debug("Adding Dependency :" + artifact);
-                    }
-                    embedDependency(logger, ds, jar, file);
-                } else {
-                    logger.info("Cannot embed artifact " + artifact
-                        + " - the file does not exist");
+        // Add dependencies, collecting their descriptors instead of embedding them when they are combined
+        ApplicationContent application = ApplicationContent.collect(config, logger);
+        List<EmbeddableDependency> dependencies = EmbeddableDependency.collect(config, logger);
+        if (config.isShrink()) {
+            dependencies = ReachabilityShrinker.shrink(config, application, dependencies, logger);
+        }
+        DescriptorCollector descriptors = DescriptorCollector.create(config);
+        if (config.isDuplicateReport()) {
+            DuplicateDetector.detect(logger, config.getJarIndexCache(), dependencies,
+                path -> StreamingFatJarPackageService.isProvided(application, descriptors, path));
+        }
+        try {
+            if (config.getThreads() < 2) {
+                for (EmbeddableDependency dependency : dependencies) {
+                    DescriptorCollector.Descriptors found = collectDescriptors(descriptors, dependency.getFile());
+                    embedDependency(logger, dependency.getFilter(), jar, dependency.getFile(),
+                        config.getJarIndexCache(), found);
                 }
+            } else {
+                // Dependencies are read concurrently, and merged in declaration order so the first one providing an
+                // entry still wins.
+                new OrderedParallelExecutor(config.getThreads()).process(dependencies,
+                    dependency -> readDependency(logger, dependency.getFilter(), dependency.getFile(),
+                        config.getJarIndexCache(), descriptors),
+                    (dependency, content) -> {
+                        if (descriptors != null) {
+                            descriptors.add(dependency.getFile(), content.descriptors);
+                        }
+                        jar.merge(content.archive, path -> {
+                            if (jar.contains(path)) {
+                                logger.debug(path.get() + " already embedded in the jar");
+                                return false;
+                            }
+                            return true;
+                        });
+                    });
             }
+        } catch (Exception e) {
+            throw new PackagingException(e);
         }
 
         for (FileSet fs : archive.getFileSets()) {
@@ -101,6 +111,30 @@ public class ShrinkWrapFatJarPackageService implements PackageService {
             embedFile(config, jar, item);
         }
 
+        // Combined descriptors, replacing the ones of the project
+        if (descriptors != null) {
+            Map<String, byte[]> combined;
+            try {
+                combined = descriptors.combine();
+            } catch (IOException e) {
+                throw new PackagingException(e);
+            }
+            combined.forEach((name, content) -> {
+                jar.delete("/" + name);
+                jar.add(new ByteArrayAsset(content), "/" + name);
+            });
+            if (config.isServiceIndex()) {
+                ServiceIndexGenerator.generate(logger, descriptors.getCombined(), name -> jar.contains("/" + name))
+                    .forEach((name, content) -> {
+                        if (!jar.contains("/" + name)) {
+                            jar.add(new ByteArrayAsset(content), "/" + name);
+                        }
+                    });
+            }
+        } else if (config.isServiceIndex()) {
+            logger.warn("The service index requires the service descriptors to be combined, not generated");
+        }
+
         // Generate manifest
         try {
             generateManifest(jar, archive.getManifest());
@@ -121,7 +155,13 @@ public class ShrinkWrapFatJarPackageService implements PackageService {
                 theCreatedFile = new File(jarFile.getParentFile(), jarFile.getName() + ".tmp");
             }
 
-            jar.as(ZipExporter.class).exportTo(theCreatedFile);
+            CompressionPolicy compression = CompressionPolicy.create(config);
+            if (config.getCompressionThreads() > 1 || config.getCompressionLevel() != Deflater.DEFAULT_COMPRESSION
+                || !compression.isEmpty() || !config.getEntryOrder().isEmpty()) {
+                export(jar, theCreatedFile, config, compression);
+            } else {
+                jar.as(ZipExporter.class).exportTo(theCreatedFile);
+            }
 
             if (useTmpFile) {
                 boolean delete = jarFile.delete();
@@ -216,69 +256,77 @@ public class ShrinkWrapFatJarPackageService implements PackageService {
     }
 
 
-    private boolean toExclude(DependencySet set, ArchivePath path) {
-        String name = path.get();
-
-        // Check whether the file is explicitly includes
-        List<String> includes = set.getOptions().getIncludes();
-        if (includes != null && !includes.isEmpty()) {
-            boolean included = false;
-
-            // Check for each include pattern whether or not the path is explicitly included
-            for (String pattern : includes) {
-                if (SelectorUtils.match(pattern, name)) {
-                    included = true;
-                }
-            }
-
-            // If the path is not included, exclude the file
-            // otherwise apply the excludes pattern on it.
-            if (!included) {
-                return true;
-            }
+    /**
+     * Import from file and make sure the file is closed.
+     *
+     * @param log         the logger
+     * @param filter      the filter of the dependency set
+     * @param jar         the archive
+     * @param file        the file, must not be {@code null}
+     * @param cache       the cache of the dependency indexes
+     * @param descriptors the descriptors of the dependency, combined instead of being embedded
+     */
+    private void embedDependency(Log log, DependencyEntryFilter filter, JavaArchive jar, File file,
+                                 JarIndexCache cache, DescriptorCollector.Descriptors descriptors) {
+        if (!hasEntriesToEmbed(log, filter, jar, file, cache, descriptors)) {
+            return;
         }
-
-        if (set.getOptions().isUseDefaultExcludes()) {
-            for (String pattern : DEFAULT_EXCLUDES) {
-                if (SelectorUtils.match(pattern, name)) {
-                    return true;
+        FileInputStream fis = null;
+        try {
+            fis = new FileInputStream(file);
+            jar.as(ZipImporter.class).importFrom(fis, path -> {
+                if (jar.contains(path)) {
+                    log.debug(path.get() + " already embedded in the jar");
+                    return false;
                 }
-            }
-        }
-
-        if (name.equalsIgnoreCase("/META-INF/MANIFEST.MF")) {
-            return true;
-        }
-
-        if (set.getOptions().getExcludes() != null) {
-            for (String pattern : set.getExcludes()) {
-                if (SelectorUtils.match(pattern, name)) {
+                if (descriptors.contains(path.get())) {
+                    return false;
+                }
+                if (!filter.toExclude(path.get())) {
                     return true;
+                } else {
+                    log.debug("Excluding " + path.get() + " from " + file.getName());
+                    return false;
                 }
-            }
+            });
+        } catch (FileNotFoundException e) {
+            throw new RuntimeException("Unable to read the file " + file.getAbsolutePath(), e);
+        } finally {
+            IOUtils.closeQuietly(fis);
         }
-
-        return false;
     }
 
     /**
-     * Import from file and make sure the file is closed.
+     * Imports the entries of the given dependency in a new archive, without checking for the entries already
+     * embedded. Used when the dependencies are read concurrently.
      *
-     * @param log  the logger
-     * @param set  the dependency set
-     * @param jar  the archive
-     * @param file the file, must not be {@code null}
+     * @param log       the logger
+     * @param filter    the filter of the dependency set
+     * @param file      the file, must not be {@code null}
+     * @param cache     the cache of the dependency indexes
+     * @param collector the descriptor collector, {@code null} if the descriptors are not combined
+     * @return the archive containing the entries to embed, and the descriptors of the dependency
+     * @throws IOException if the descriptors cannot be read
      */
-    private void embedDependency(Log log, DependencySet set, JavaArchive jar, File file) {
+    private ImportedDependency readDependency(Log log, DependencyEntryFilter filter, File file, JarIndexCache cache,
+                                              DescriptorCollector collector) throws IOException {
+        ImportedDependency imported = new ImportedDependency();
+        if (collector != null) {
+            imported.descriptors = collector.scan(file);
+        }
+        DescriptorCollector.Descriptors descriptors = imported.descriptors;
+        JavaArchive content = imported.archive;
+        if (!hasEntriesToEmbed(log, filter, null, file, cache, descriptors)) {
+            return imported;
+        }
         FileInputStream fis = null;
         try {
             fis = new FileInputStream(file);
-            jar.as(ZipImporter.class).importFrom(fis, path -> {
-                if (jar.contains(path)) {
-                    log.debug(path.get() + " already embedded in the jar");
+            content.as(ZipImporter.class).importFrom(fis, path -> {
+                if (descriptors.contains(path.get())) {
                     return false;
                 }
-                if (!toExclude(set, path)) {
+                if (!filter.toExclude(path.get())) {
                     return true;
                 } else {
                     log.debug("Excluding " + path.get() + " from " + file.getName());
@@ -290,26 +338,118 @@ public class ShrinkWrapFatJarPackageService implements PackageService {
         } finally {
             IOUtils.closeQuietly(fis);
         }
+        return imported;
     }
 
     /**
-     * Generate the manifest for the über jar.
+     * The result of {@link #readDependency(Log, DependencyEntryFilter, File, JarIndexCache, DescriptorCollector)}.
      */
-    private void generateManifest(JavaArchive jar, Map<String, String> entries) throws IOException,
-        MojoExecutionException {
-        Manifest manifest = new Manifest();
-        Attributes attributes = manifest.getMainAttributes();
-        attributes.put(Attributes.Name.MANIFEST_VERSION, "1.0");
-        if (entries != null) {
-            for (Map.Entry<String, String> entry : entries.entrySet()) {
-                attributes.put(new Attributes.Name(entry.getKey()), entry.getValue());
+    private static class ImportedDependency {
+
+        private final JavaArchive archive = ShrinkWrap.create(JavaArchive.class);
+
+        private DescriptorCollector.Descriptors descriptors = DescriptorCollector.Descriptors.NONE;
+    }
+
+    /**
+     * Checks, from the index of the given dependency, whether it contains at least one entry that is neither excluded,
+     * combined, nor already embedded. Dependencies without such entries are not imported at all.
+     *
+     * @param log         the logger
+     * @param filter      the filter of the dependency set
+     * @param jar         the archive, {@code null} to ignore the entries already embedded
+     * @param file        the file, must not be {@code null}
+     * @param cache       the cache of the dependency indexes
+     * @param descriptors the descriptors of the dependency, combined instead of being embedded
+     * @return {@code true} if the dependency must be imported
+     */
+    private boolean hasEntriesToEmbed(Log log, DependencyEntryFilter filter, JavaArchive jar, File file,
+                                      JarIndexCache cache, DescriptorCollector.Descriptors descriptors) {
+        List<ZipRecord> records;
+        try {
+            records = cache.get(file).getRecords();
+        } catch (IOException e) {
+            // Let the importer report the error
+            return true;
+        }
+        for (ZipRecord record : records) {
+            String path = DependencyEntryFilter.toPath(record.getName());
+            if (!descriptors.contains(path) && !filter.toExclude(path) && (jar == null || !jar.contains(path))) {
+                return true;
+            }
+        }
+        log.debug("Skipping " + file.getName() + ", all its entries are excluded or already embedded");
+        return false;
+    }
+
+    /**
+     * Retrieves the descriptors of the given dependency from the collector, and records them.
+     *
+     * @param descriptors the collector, {@code null} if the descriptors are not combined
+     * @param file        the dependency
+     * @return the descriptors of the dependency
+     * @throws IOException if the dependency cannot be read
+     */
+    private static DescriptorCollector.Descriptors collectDescriptors(DescriptorCollector descriptors, File file)
+        throws IOException {
+        if (descriptors == null) {
+            return DescriptorCollector.Descriptors.NONE;
+        }
+        DescriptorCollector.Descriptors found = descriptors.scan(file);
+        descriptors.add(file, found);
+        return found;
+    }
+
+    /**
+     * Writes the archive with a {@link ZipWriter}, which, unlike {@link ZipExporter}, supports a custom deflate level,
+     * stores the entries selected by the compression policy, and compresses the entries on several threads. The
+     * entries are written in the order of the archive content, except the manifest written first, followed by the
+     * entries of the entry order of the configuration. Like {@link ZipExporter}, the content is read from
+     * {@link JavaArchive#getContent()}: the node tree still holds the replaced assets when a path is overridden.
+     *
+     * @param jar         the archive
+     * @param output      the output file
+     * @param config      the package configuration
+     * @param compression the compression policy
+     * @throws IOException if the archive cannot be written
+     */
+    private void export(JavaArchive jar, File output, PackageConfig config, CompressionPolicy compression)
+        throws IOException {
+        long time = System.currentTimeMillis();
+        Map<ArchivePath, Node> content = jar.getContent();
+        try (ZipWriter writer = new ZipWriter(output)) {
+            writer.setLevel(config.getCompressionLevel()).setCompressionThreads(config.getCompressionThreads());
+            export(writer, compression, content.get(ArchivePaths.create(MANIFEST)), time);
+            for (String name : config.getEntryOrder()) {
+                export(writer, compression, content.get(ArchivePaths.create(name)), time);
+            }
+            for (Node node : content.values()) {
+                export(writer, compression, node, time);
             }
         }
+    }
+
+    private void export(ZipWriter writer, CompressionPolicy compression, Node node, long time) throws IOException {
+        if (node == null) {
+            return;
+        }
+        String name = node.getPath().get().substring(1);
+        Asset asset = node.getAsset();
+        if (asset == null) {
+            writer.addDirectory(name, time);
+        } else if (!writer.contains(name)) {
+            try (InputStream is = asset.openStream()) {
+                compression.addEntry(writer, name, IOUtils.toByteArray(is), time);
+            }
+        }
+    }
 
-        ByteArrayOutputStream bout = new ByteArrayOutputStream();
-        manifest.write(bout);
-        bout.close();
-        byte[] bytes = bout.toByteArray();
+    /**
+     * Generate the manifest for the über jar.
+     */
+    private void generateManifest(JavaArchive jar, Map<String, String> entries) throws IOException,
+        MojoExecutionException {
+        byte[] bytes = ServiceUtils.createManifest(entries);
         //TODO: merge existing manifest with current one
         jar.setManifest(new ByteArrayAsset(bytes));
 
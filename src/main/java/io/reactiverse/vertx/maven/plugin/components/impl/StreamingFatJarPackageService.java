@@ -0,0 +1,490 @@
+/*
+ *
+ *   Copyright (c) 2016-2017 Red Hat, Inc.
+ *
+ *   Red Hat licenses this file to you under the Apache License, version
+ *   2.0 (the "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *   implied.  See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package io.reactiverse.vertx.maven.plugin.components.impl;
+
+import io.reactiverse.vertx.maven.plugin.components.*;
+import io.reactiverse.vertx.maven.plugin.mojos.Archive;
+import io.reactiverse.vertx.maven.plugin.utils.OrderedParallelExecutor;
+import io.reactiverse.vertx.maven.plugin.zip.JarIndexCache;
+import io.reactiverse.vertx.maven.plugin.zip.ZipReader;
+import io.reactiverse.vertx.maven.plugin.zip.ZipRecord;
+import io.reactiverse.vertx.maven.plugin.zip.ZipWriter;
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.component.annotations.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
+
+/**
+ * A "fat jar" package service writing the archive directly to the disk. Unlike
+ * {@link ShrinkWrapFatJarPackageService}, the archive is never held in memory: the entries of the dependencies
+ * are copied verbatim (compressed bytes and CRC are reused) and only the names of the written entries are kept to
+ * avoid duplicates.
+ * <p>
+ * The content is the same as the one produced by {@link ShrinkWrapFatJarPackageService}: the files provided by the
+ * project (file sets, classes, file items) override the entries from the dependencies, and for the dependencies,
+ * the first one declaring an entry wins.
+ * <p>
+ * When the package configuration provides a combination strategy, the service descriptors of the dependencies are
+ * collected while the dependencies are scanned, and the merged descriptors are written at the end of the archive.
+ * <p>
+ * When an entry order is given (typically the classes in the order they are loaded at startup), these entries are
+ * written first, right after the manifest, so they are read from a contiguous region of the file.
+ * <p>
+ * The entries are written according to the {@link CompressionPolicy} of the archive. An entry of a dependency is
+ * only inflated when the policy selects another method than the one used in the dependency.
+ */
+@Component(
+    role = PackageService.class,
+    hint = "streaming-fat-jar")
+public class StreamingFatJarPackageService implements PackageService {
+
+    @Override
+    public PackageType type() {
+        return PackageType.FAT_JAR;
+    }
+
+    @Override
+    public File doPackage(PackageConfig config) throws PackagingException {
+        Log logger = Objects.requireNonNull(config.getMojo().getLog());
+        Archive archive = Objects.requireNonNull(config.getArchive());
+
+        ApplicationContent content = ApplicationContent.collect(config, logger);
+        DescriptorCollector descriptors = DescriptorCollector.create(config);
+        CompressionPolicy compression = CompressionPolicy.create(config);
+
+        byte[] manifest;
+        try {
+            manifest = ServiceUtils.createManifest(archive.getManifest());
+        } catch (IOException e) {
+            throw new PackagingException(e);
+        }
+
+        File jarFile = config.getOutput();
+        boolean useTmpFile = false;
+        File theCreatedFile = jarFile;
+        if (jarFile.isFile()) {
+            useTmpFile = true;
+            theCreatedFile = new File(jarFile.getParentFile(), jarFile.getName() + ".tmp");
+        }
+
+        List<EmbeddableDependency> dependencies = EmbeddableDependency.collect(config, logger);
+        if (config.isShrink()) {
+            dependencies = ReachabilityShrinker.shrink(config, content, dependencies, logger);
+        }
+        PackageIndex previous = null;
+        PackageIndex index = null;
+        if (config.isIncremental()) {
+            index = new PackageIndex()
+                .setDependencies(PackageIndex.fingerprint(dependencies, content.getRelocations(),
+                    descriptors == null ? Collections.emptyList() : descriptors.getCombinedEntries(),
+                    config.getEntryOrder()))
+                .setCompressionLevel(config.getCompressionLevel())
+                .setCompressionPolicy(compression.signature());
+            previous = PackageIndex.load(jarFile);
+            if (previous == null) {
+                logger.info("No usable package index for " + jarFile.getName() + ", building the jar from scratch");
+            }
+        }
+
+        Set<String> relocated = new HashSet<>();
+        Map<String, PackageIndex.Entry> sources = new HashMap<>();
+        try (ZipWriter writer = new ZipWriter(theCreatedFile);
+             ZipReader old = previous != null ? new ZipReader(jarFile) : null) {
+            writer.setLevel(config.getCompressionLevel()).setCompressionThreads(config.getCompressionThreads());
+            writer.addEntry("META-INF/MANIFEST.MF", manifest, System.currentTimeMillis());
+
+            List<String> order = config.getEntryOrder();
+            List<Scanned> scans = null;
+            Set<String> orderedFromDependencies = new HashSet<>();
+            if (!order.isEmpty()) {
+                // The dependencies are scanned first, to find the source of the entries written in the given order
+                List<Scanned> results = new ArrayList<>();
+                new OrderedParallelExecutor(config.getThreads()).process(dependencies,
+                    dependency -> scan(logger, dependency, config.getJarIndexCache(), descriptors),
+                    (dependency, scanned) -> results.add(scanned));
+                scans = results;
+                embedOrdered(logger, writer, compression, order, content, descriptors, dependencies, scans,
+                    relocated, sources, orderedFromDependencies);
+            }
+
+            // The project files override the entries from the dependencies, so they are written first
+            Map<String, ZipRecord> oldRecords = old == null ? Collections.emptyMap() : byName(old.getRecords());
+            boolean reuse = previous != null && previous.getCompressionLevel() == config.getCompressionLevel()
+                && compression.signature().equals(previous.getCompressionPolicy());
+            for (Map.Entry<String, File> entry : content.getFiles().entrySet()) {
+                String name = entry.getKey();
+                File file = entry.getValue();
+                if (writer.contains(name) || descriptors != null && descriptors.isLocal(name)) {
+                    continue;
+                }
+                sources.put(name, new PackageIndex.Entry().setSource(file.getAbsolutePath())
+                    .setLastModified(file.lastModified()));
+                ZipRecord unchanged = reuse ? findUnchanged(previous, oldRecords, name, file) : null;
+                if (unchanged != null) {
+                    writer.copy(unchanged, old, name);
+                } else {
+                    embedFile(writer, compression, name, file);
+                }
+            }
+
+            writer.flush();
+            long dependencyStart = writer.getPosition();
+            Set<String> projectEntries = new HashSet<>(writer.getNames());
+            projectEntries.removeAll(orderedFromDependencies);
+            if (previous != null && order.isEmpty() && previous.getDependencies().equals(index.getDependencies())
+                && compression.signature().equals(previous.getCompressionPolicy())
+                && previous.isDependencyRegionReusable(projectEntries)) {
+                logger.info("Dependencies unchanged, reusing the dependency region of " + jarFile.getName());
+                List<ZipRecord> region = new ArrayList<>();
+                for (ZipRecord record : old.getRecords()) {
+                    if (record.getOffset() >= previous.getDependencyStart()
+                        && record.getOffset() < previous.getDependencyEnd()) {
+                        region.add(record);
+                        PackageIndex.Entry source = previous.getEntry(record.getName());
+                        if (source != null) {
+                            sources.put(record.getName(), new PackageIndex.Entry().setSource(source.getSource()));
+                        }
+                    }
+                }
+                writer.copyRegion(old, previous.getDependencyStart(), previous.getDependencyEnd(), region);
+                if (descriptors != null) {
+                    // The descriptors are retrieved from the dependency indexes, the jars are not read
+                    for (EmbeddableDependency dependency : dependencies) {
+                        descriptors.add(dependency.getFile(), descriptors.scan(dependency.getFile()));
+                    }
+                }
+                index.getShadowed().addAll(previous.getShadowed());
+                // The relocations have been validated when the region has been written
+                relocated.addAll(content.getRelocations().keySet());
+            } else {
+                if (previous != null) {
+                    logger.info("Dependencies changed, embedding them again in " + jarFile.getName());
+                }
+                if (config.isDuplicateReport()) {
+                    DuplicateDetector.detect(logger, config.getJarIndexCache(), dependencies,
+                        path -> isProvided(content, descriptors, path));
+                }
+                Set<String> shadowed = index != null ? index.getShadowed() : new HashSet<>();
+                OrderedParallelExecutor.Merger<EmbeddableDependency, Scanned> embed = (dependency, scanned) -> {
+                    if (descriptors != null) {
+                        descriptors.add(dependency.getFile(), scanned.descriptors);
+                    }
+                    embedDependency(logger, writer, compression, dependency, scanned.records,
+                        content.getRelocations(), relocated, projectEntries, shadowed, sources);
+                };
+                if (scans != null) {
+                    for (int i = 0; i < dependencies.size(); i++) {
+                        embed.accept(dependencies.get(i), scans.get(i));
+                    }
+                } else {
+                    // The dependencies are scanned concurrently, but written in declaration order so the first one
+                    // providing an entry wins
+                    new OrderedParallelExecutor(config.getThreads()).process(dependencies,
+                        dependency -> scan(logger, dependency, config.getJarIndexCache(), descriptors), embed);
+                }
+            }
+            writer.flush();
+            long dependencyEnd = writer.getPosition();
+
+            if (descriptors != null) {
+                long time = System.currentTimeMillis();
+                for (Map.Entry<String, byte[]> descriptor : descriptors.combine().entrySet()) {
+                    if (writer.contains(descriptor.getKey())) {
+                        logger.debug(descriptor.getKey() + " provided by the project, not combined");
+                    } else {
+                        compression.addEntry(writer, descriptor.getKey(), descriptor.getValue(), time);
+                    }
+                }
+                if (config.isServiceIndex()) {
+                    for (Map.Entry<String, byte[]> entry : ServiceIndexGenerator.generate(logger,
+                        descriptors.getCombined(), writer::contains).entrySet()) {
+                        if (!writer.contains(entry.getKey())) {
+                            compression.addEntry(writer, entry.getKey(), entry.getValue(), time);
+                        }
+                    }
+                }
+                writer.flush();
+            } else if (config.isServiceIndex()) {
+                logger.warn("The service index requires the service descriptors to be combined, not generated");
+            }
+
+            if (index != null) {
+                index.setDependencyStart(dependencyStart).setDependencyEnd(dependencyEnd);
+                for (ZipRecord record : writer.getRecords()) {
+                    PackageIndex.Entry entry = sources.getOrDefault(record.getName(), new PackageIndex.Entry());
+                    index.getEntries().add(entry.setName(record.getName())
+                        .setSize(record.getSize())
+                        .setCrc(record.getCrc())
+                        .setOffset(record.getOffset()));
+                }
+            }
+        } catch (Exception e) {
+            throw new PackagingException(e);
+        }
+
+        for (String source : content.getRelocations().keySet()) {
+            if (!relocated.contains(source)) {
+                throw new PackagingException("Unable to handle the file item " + source + ", " +
+                    "file not found in the project or in the archive.");
+            }
+        }
+
+        if (useTmpFile) {
+            boolean delete = jarFile.delete();
+            boolean renameTo = theCreatedFile.renameTo(jarFile);
+            logger.debug("Main jar file deleted: " + delete);
+            logger.debug("Main jar file replaced by temporary file: " + renameTo);
+        }
+
+        if (index != null) {
+            try {
+                index.save(jarFile);
+            } catch (IOException e) {
+                logger.warn("Unable to write the package index of " + jarFile.getName() + ": " + e.getMessage());
+            }
+        }
+
+        return jarFile;
+    }
+
+    /**
+     * Checks whether the given dependency entry is not embedded because it is provided by the project, or combined.
+     *
+     * @param content     the project files
+     * @param descriptors the descriptor collector, {@code null} if the descriptors are not combined
+     * @param path        the entry path, starting with {@code /}
+     * @return {@code true} if the entry of the dependency is not embedded
+     */
+    static boolean isProvided(ApplicationContent content, DescriptorCollector descriptors, String path) {
+        String name = path.substring(1);
+        return content.getFiles().containsKey(name) || content.getRelocations().containsKey(name)
+            || descriptors != null && descriptors.isCombined(path);
+    }
+
+    private static Map<String, ZipRecord> byName(List<ZipRecord> records) {
+        Map<String, ZipRecord> map = new HashMap<>();
+        records.forEach(record -> map.put(record.getName(), record));
+        return map;
+    }
+
+    /**
+     * Looks for the entry written from the given project file by the previous build, if the file has not been
+     * modified since.
+     *
+     * @param previous the index of the previous build
+     * @param records  the records of the previous jar
+     * @param name     the entry name
+     * @param file     the project file
+     * @return the record of the previous jar, {@code null} if the file needs to be compressed again
+     */
+    private ZipRecord findUnchanged(PackageIndex previous, Map<String, ZipRecord> records, String name, File file) {
+        PackageIndex.Entry entry = previous.getEntry(name);
+        if (entry == null || !file.isFile()
+            || !file.getAbsolutePath().equals(entry.getSource())
+            || entry.getLastModified() != file.lastModified()
+            || entry.getSize() != file.length()) {
+            return null;
+        }
+        return records.get(name);
+    }
+
+    private void embedFile(ZipWriter writer, CompressionPolicy compression, String name, File file)
+        throws IOException {
+        if (file.isDirectory()) {
+            writer.addDirectory(name, file.lastModified());
+        } else {
+            compression.addEntry(writer, name, Files.readAllBytes(file.toPath()), file.lastModified());
+        }
+    }
+
+    /**
+     * Writes the entries of the given order, in this order, before the other entries. An entry is written from the
+     * project files if the project provides it, and otherwise from the first dependency providing it, so the content
+     * of the jar does not depend on the order. The names that are neither provided by the project nor by the
+     * dependencies are ignored.
+     *
+     * @param log              the logger
+     * @param writer           the writer
+     * @param compression      the compression policy
+     * @param order            the names of the entries, in order
+     * @param content          the project files
+     * @param descriptors      the descriptor collector, {@code null} if the descriptors are not combined
+     * @param dependencies     the dependencies
+     * @param scans            the records selected in each dependency, in the same order as the dependencies
+     * @param relocated        the set of relocated entries, updated by this method
+     * @param sources          the sources of the written entries, updated by this method
+     * @param fromDependencies the names of the entries written from the dependencies, updated by this method
+     * @throws IOException if an entry cannot be written
+     */
+    private void embedOrdered(Log log, ZipWriter writer, CompressionPolicy compression, List<String> order,
+                              ApplicationContent content, DescriptorCollector descriptors,
+                              List<EmbeddableDependency> dependencies, List<Scanned> scans, Set<String> relocated,
+                              Map<String, PackageIndex.Entry> sources, Set<String> fromDependencies)
+        throws IOException {
+        Set<String> names = new HashSet<>(order);
+        Map<String, Integer> owners = new HashMap<>();
+        Map<String, ZipRecord> records = new HashMap<>();
+        for (int i = 0; i < scans.size(); i++) {
+            for (ZipRecord record : scans.get(i).records) {
+                String name = content.getRelocations().getOrDefault(record.getName(), record.getName());
+                if (!record.isDirectory() && names.contains(name) && !owners.containsKey(name)) {
+                    owners.put(name, i);
+                    records.put(name, record);
+                }
+            }
+        }
+
+        Map<Integer, ZipReader> readers = new HashMap<>();
+        int count = 0;
+        try {
+            for (String name : order) {
+                File file = content.getFiles().get(name);
+                if (writer.contains(name)
+                    || file != null && (file.isDirectory() || descriptors != null && descriptors.isLocal(name))) {
+                    continue;
+                }
+                if (file != null) {
+                    sources.put(name, new PackageIndex.Entry().setSource(file.getAbsolutePath())
+                        .setLastModified(file.lastModified()));
+                    embedFile(writer, compression, name, file);
+                    count++;
+                } else if (owners.containsKey(name)) {
+                    int i = owners.get(name);
+                    EmbeddableDependency dependency = dependencies.get(i);
+                    ZipReader reader = readers.get(i);
+                    if (reader == null) {
+                        reader = new ZipReader(dependency.getFile(), scans.get(i).records);
+                        readers.put(i, reader);
+                    }
+                    ZipRecord record = records.get(name);
+                    compression.copy(writer, record, reader, name);
+                    sources.put(name, new PackageIndex.Entry().setSource(dependency.getArtifact().toString()));
+                    fromDependencies.add(name);
+                    if (!name.equals(record.getName())) {
+                        relocated.add(record.getName());
+                    }
+                    count++;
+                }
+            }
+        } finally {
+            for (ZipReader reader : readers.values()) {
+                reader.close();
+            }
+        }
+        log.info(count + " entries of " + order.size() + " written in the given order");
+    }
+
+    /**
+     * Retrieves the central directory of the given dependency from the index cache and selects the entries that are
+     * not excluded by the filter of its dependency set. When the descriptors are combined, the descriptors of the
+     * dependency are retrieved from the same index, and are not selected.
+     *
+     * @param log         the logger
+     * @param dependency  the dependency
+     * @param cache       the cache of the dependency indexes
+     * @param descriptors the descriptor collector, {@code null} if the descriptors are not combined
+     * @return the selected records, in the central directory order, and the descriptors
+     * @throws IOException if the dependency cannot be read
+     */
+    private Scanned scan(Log log, EmbeddableDependency dependency, JarIndexCache cache,
+                         DescriptorCollector descriptors) throws IOException {
+        File file = dependency.getFile();
+        Scanned scanned = new Scanned();
+        try {
+            if (descriptors != null) {
+                scanned.descriptors = descriptors.scan(file);
+            }
+            for (ZipRecord record : cache.get(file).getRecords()) {
+                String path = DependencyEntryFilter.toPath(record.getName());
+                if (scanned.descriptors.contains(path)) {
+                    log.debug("Combining " + path + " from " + file.getName());
+                } else if (dependency.getFilter().toExclude(path)) {
+                    log.debug("Excluding " + path + " from " + file.getName());
+                } else {
+                    scanned.records.add(record);
+                }
+            }
+        } catch (IOException e) {
+            throw new IOException("Unable to read the file " + file.getAbsolutePath(), e);
+        }
+        return scanned;
+    }
+
+    /**
+     * The result of {@link #scan(Log, EmbeddableDependency, JarIndexCache, DescriptorCollector)}.
+     */
+    private static class Scanned {
+
+        private final List<ZipRecord> records = new ArrayList<>();
+
+        private DescriptorCollector.Descriptors descriptors = DescriptorCollector.Descriptors.NONE;
+    }
+
+    /**
+     * Copies the given entries of a dependency, skipping the ones already written. The entries are copied verbatim,
+     * unless the compression policy selects another method.
+     *
+     * @param log            the logger
+     * @param writer         the writer
+     * @param compression    the compression policy
+     * @param dependency     the dependency
+     * @param records        the records to copy, selected by
+     *                       {@link #scan(Log, EmbeddableDependency, JarIndexCache, DescriptorCollector)}
+     * @param relocations    the entries to store under another name
+     * @param relocated      the set of relocated entries, updated by this method
+     * @param projectEntries the names of the entries written from the project files
+     * @param shadowed       the dependency entries not written because of a project entry, updated by this method
+     * @param sources        the sources of the written entries, updated by this method
+     * @throws IOException if the dependency cannot be read
+     */
+    private void embedDependency(Log log, ZipWriter writer, CompressionPolicy compression,
+                                 EmbeddableDependency dependency, List<ZipRecord> records,
+                                 Map<String, String> relocations, Set<String> relocated, Set<String> projectEntries,
+                                 Set<String> shadowed, Map<String, PackageIndex.Entry> sources) throws IOException {
+        File file = dependency.getFile();
+        String coordinates = dependency.getArtifact().toString();
+        // The records come from the index, no need to read the central directory again
+        try (ZipReader reader = new ZipReader(file, records)) {
+            for (ZipRecord record : records) {
+                String path = DependencyEntryFilter.toPath(record.getName());
+                String name = record.getName();
+                String relocation = relocations.get(path.substring(1));
+                if (relocation != null) {
+                    name = relocation;
+                }
+                if (writer.contains(name)) {
+                    log.debug(path + " already embedded in the jar");
+                    if (projectEntries.contains(name)) {
+                        shadowed.add(name);
+                    }
+                    continue;
+                }
+                compression.copy(writer, record, reader, name);
+                sources.put(name, new PackageIndex.Entry().setSource(coordinates));
+                if (relocation != null) {
+                    relocated.add(path.substring(1));
+                }
+            }
+        } catch (IOException e) {
+            throw new IOException("Unable to read the file " + file.getAbsolutePath(), e);
+        }
+    }
+}
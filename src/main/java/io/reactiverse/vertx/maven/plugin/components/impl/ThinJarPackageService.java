@@ -0,0 +1,105 @@
+/*
+ *
+ *   Copyright (c) 2016-2017 Red Hat, Inc.
+ *
+ *   Red Hat licenses this file to you under the Apache License, version
+ *   2.0 (the "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *   implied.  See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package io.reactiverse.vertx.maven.plugin.components.impl;
+
+import io.reactiverse.vertx.maven.plugin.components.*;
+import io.reactiverse.vertx.maven.plugin.zip.ZipWriter;
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.component.annotations.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * A "thin jar" package service. The jar only contains the files provided by the project (file sets, classes, file
+ * items), and its manifest references the dependencies placed in the {@code lib} directory next to it with the
+ * {@code Class-Path} attribute. See {@link LibraryDirectory} for the way dependencies are placed in this directory.
+ * <p>
+ * As the dependencies are not embedded, the entry filters of the dependency sets (such as the exclusion of the
+ * signature files) do not apply, and file items cannot refer to entries of the dependencies.
+ */
+@Component(
+    role = PackageService.class,
+    hint = "thin-jar")
+public class ThinJarPackageService implements PackageService {
+
+    @Override
+    public PackageType type() {
+        return PackageType.JAR;
+    }
+
+    @Override
+    public File doPackage(PackageConfig config) throws PackagingException {
+        Log logger = Objects.requireNonNull(config.getMojo().getLog());
+
+        ApplicationContent content = ApplicationContent.collect(config, logger);
+        if (!content.getRelocations().isEmpty()) {
+            throw new PackagingException("Unable to handle the file item "
+                + content.getRelocations().keySet().iterator().next() + ", file not found in the project.");
+        }
+
+        File jarFile = config.getOutput();
+        LibraryDirectory lib = new LibraryDirectory(new File(jarFile.getParentFile(), LibraryDirectory.LIB), logger);
+        List<String> libraries = lib.populate(EmbeddableDependency.collect(config, logger));
+
+        Map<String, String> entries = new LinkedHashMap<>(config.getArchive().getManifest());
+        String classPath = libraries.stream().map(name -> LibraryDirectory.LIB + "/" + name)
+            .collect(Collectors.joining(" "));
+        if (!classPath.isEmpty()) {
+            entries.merge("Class-Path", classPath, (existing, added) -> existing + " " + added);
+        }
+
+        File theCreatedFile = jarFile;
+        if (jarFile.isFile()) {
+            theCreatedFile = new File(jarFile.getParentFile(), jarFile.getName() + ".tmp");
+        }
+
+        CompressionPolicy compression = CompressionPolicy.create(config);
+        try (ZipWriter writer = new ZipWriter(theCreatedFile)) {
+            writer.setLevel(config.getCompressionLevel()).setCompressionThreads(config.getCompressionThreads());
+            writer.addEntry("META-INF/MANIFEST.MF", ServiceUtils.createManifest(entries),
+                System.currentTimeMillis());
+            for (Map.Entry<String, File> entry : content.getFiles().entrySet()) {
+                String name = entry.getKey();
+                File file = entry.getValue();
+                if (writer.contains(name)) {
+                    continue;
+                }
+                if (file.isDirectory()) {
+                    writer.addDirectory(name, file.lastModified());
+                } else {
+                    compression.addEntry(writer, name, Files.readAllBytes(file.toPath()), file.lastModified());
+                }
+            }
+        } catch (IOException e) {
+            throw new PackagingException(e);
+        }
+
+        if (theCreatedFile != jarFile) {
+            boolean delete = jarFile.delete();
+            boolean renameTo = theCreatedFile.renameTo(jarFile);
+            logger.debug("Main jar file deleted: " + delete);
+            logger.debug("Main jar file replaced by temporary file: " + renameTo);
+        }
+
+        return jarFile;
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ *
+ *   Copyright (c) 2016-2017 Red Hat, Inc.
+ *
+ *   Red Hat licenses this file to you under the Apache License, version
+ *   2.0 (the "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *   implied.  See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package io.reactiverse.vertx.maven.plugin.functions;
+
+import java.nio.file.Path;
+import java.util.Set;
+
+/**
+ * A step of the incremental build, run by the {@link io.reactiverse.vertx.maven.plugin.utils.IncrementalBuilder}
+ * when the watched files change.
+ */
+@FunctionalInterface
+public interface BuildTask {
+
+    /**
+     * Runs the step.
+     *
+     * @param changes the files created, modified or deleted since the previous build (directories are reported when
+     *                the events of their files are not available, e.g. when deleted)
+     * @throws Exception if the step fails, the next steps are not run
+     */
+    void build(Set<Path> changes) throws Exception;
+
+}
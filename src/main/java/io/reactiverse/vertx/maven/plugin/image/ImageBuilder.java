@@ -0,0 +1,376 @@
+/*
+ *
+ *   Copyright (c) 2016-2017 Red Hat, Inc.
+ *
+ *   Red Hat licenses this file to you under the Apache License, version
+ *   2.0 (the "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *   implied.  See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package io.reactiverse.vertx.maven.plugin.image;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.reactiverse.vertx.maven.plugin.utils.OrderedParallelExecutor;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Builds an OCI image layout from a layered application (see
+ * {@link io.reactiverse.vertx.maven.plugin.components.impl.LayeredPackageService}), without container daemon. Each
+ * layer directory becomes a gzip compressed tar layer, built concurrently. The layers of an optional base image,
+ * read from another OCI image layout, come first.
+ * <p>
+ * Layers are reproducible: entries are sorted and written with fixed metadata, so a layer whose files did not change
+ * has the same digest, and its blob is reused. To avoid compressing such a layer again, a cache recording the
+ * fingerprint (names, sizes and modification dates of the files) and the digest of each layer is written next to
+ * the image layout, with the {@code .idx} extension.
+ */
+public class ImageBuilder {
+
+    /**
+     * The version of the cache format, and of the layer format. Caches with another version are ignored.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * The creation date of the image, fixed so the configuration and manifest do not change from one build to the
+     * next.
+     */
+    static final String CREATED = "1970-01-01T00:00:00Z";
+
+    private final File application;
+
+    private final List<String> layers;
+
+    private final OciLayout layout;
+
+    private final Log log;
+
+    private String workingDirectory = "/app";
+
+    private String tag;
+
+    private File baseImage;
+
+    private int threads = 1;
+
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
+    /**
+     * Creates a new builder.
+     *
+     * @param application the directory of the layered application
+     * @param layers      the layers, in order, each layer being a directory of the application
+     * @param output      the directory of the image layout
+     * @param log         the logger
+     */
+    public ImageBuilder(File application, List<String> layers, File output, Log log) {
+        this.application = application;
+        this.layers = layers;
+        this.layout = new OciLayout(output);
+        this.log = log;
+    }
+
+    /**
+     * Sets the directory of the application in the image, also used as working directory.
+     *
+     * @param workingDirectory the absolute path
+     * @return the current {@link ImageBuilder}
+     */
+    public ImageBuilder setWorkingDirectory(String workingDirectory) {
+        this.workingDirectory = workingDirectory;
+        return this;
+    }
+
+    /**
+     * Sets the reference name of the image in the {@code index.json} file.
+     *
+     * @param tag the name, may be {@code null}
+     * @return the current {@link ImageBuilder}
+     */
+    public ImageBuilder setTag(String tag) {
+        this.tag = tag;
+        return this;
+    }
+
+    /**
+     * Sets the OCI image layout containing the base image. The first manifest of its index is used.
+     *
+     * @param baseImage the directory, {@code null} to build an image from scratch
+     * @return the current {@link ImageBuilder}
+     */
+    public ImageBuilder setBaseImage(File baseImage) {
+        this.baseImage = baseImage;
+        return this;
+    }
+
+    public ImageBuilder setThreads(int threads) {
+        this.threads = threads;
+        return this;
+    }
+
+    public ImageBuilder setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+        return this;
+    }
+
+    /**
+     * Builds the image.
+     *
+     * @return the digest of the image manifest
+     * @throws IOException if the image cannot be built
+     */
+    public String build() throws IOException {
+        String root = workingDirectory.replaceAll("^/+|/+$", "");
+        if (root.isEmpty()) {
+            throw new IOException("Invalid working directory " + workingDirectory + ", the application cannot be " +
+                "copied to the root of the image");
+        }
+
+        Set<String> used = new HashSet<>();
+        ObjectNode config;
+        ArrayNode manifestLayers = OciLayout.MAPPER.createArrayNode();
+        if (baseImage != null) {
+            OciLayout base = new OciLayout(baseImage);
+            JsonNode manifest = readBaseManifest(base);
+            config = (ObjectNode) base.readBlob(manifest.path("config").path("digest").asText()).deepCopy();
+            for (JsonNode layer : manifest.path("layers")) {
+                String digest = layer.path("digest").asText();
+                layout.importBlob(base, digest);
+                used.add(digest);
+                manifestLayers.add(layer.deepCopy());
+            }
+        } else {
+            config = OciLayout.MAPPER.createObjectNode();
+            config.putObject("rootfs").put("type", "layers").putArray("diff_ids");
+            config.putArray("history");
+        }
+
+        Map<String, LayerBlob> previous = loadCache();
+        Map<String, LayerBlob> built = new LinkedHashMap<>();
+        try {
+            new OrderedParallelExecutor(threads).process(layers,
+                layer -> buildLayer(layer, root, previous.get(layer)),
+                built::put);
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+        saveCache(built);
+
+        ObjectNode rootfs = config.with("rootfs");
+        rootfs.put("type", "layers");
+        ArrayNode diffIds = rootfs.withArray("diff_ids");
+        JsonNode history = config.get("history");
+        for (Map.Entry<String, LayerBlob> entry : built.entrySet()) {
+            LayerBlob blob = entry.getValue();
+            used.add(blob.digest);
+            manifestLayers.add(OciLayout.descriptor(OciLayout.LAYER_MEDIA_TYPE, blob.digest, blob.size));
+            diffIds.add(blob.diffId);
+            // Without history, the base image does not record the layers, adding entries would be inconsistent
+            if (history instanceof ArrayNode) {
+                ((ArrayNode) history).addObject()
+                    .put("created", CREATED)
+                    .put("created_by", "vertx-maven-plugin: " + entry.getKey() + " layer");
+            }
+        }
+
+        config.put("created", CREATED);
+        if (!config.has("architecture")) {
+            config.put("architecture", "amd64");
+        }
+        if (!config.has("os")) {
+            config.put("os", "linux");
+        }
+        ObjectNode runtime = config.with("config");
+        runtime.put("WorkingDir", workingDirectory);
+        runtime.putArray("Entrypoint").add("java").add("@application/launch.args");
+        // The command of the base image would be passed as arguments of the application
+        runtime.remove("Cmd");
+
+        ObjectNode configDescriptor = layout.addBlob(OciLayout.MAPPER.writeValueAsBytes(config),
+            OciLayout.CONFIG_MEDIA_TYPE);
+        used.add(configDescriptor.get("digest").asText());
+
+        ObjectNode manifest = OciLayout.MAPPER.createObjectNode();
+        manifest.put("schemaVersion", 2);
+        manifest.put("mediaType", OciLayout.MANIFEST_MEDIA_TYPE);
+        manifest.set("config", configDescriptor);
+        manifest.set("layers", manifestLayers);
+        ObjectNode manifestDescriptor = layout.addBlob(OciLayout.MAPPER.writeValueAsBytes(manifest),
+            OciLayout.MANIFEST_MEDIA_TYPE);
+        String digest = manifestDescriptor.get("digest").asText();
+        used.add(digest);
+        if (tag != null && !tag.trim().isEmpty()) {
+            manifestDescriptor.putObject("annotations").put(OciLayout.REF_NAME, tag);
+        }
+        layout.writeIndex(manifestDescriptor, used);
+        return digest;
+    }
+
+    private static JsonNode readBaseManifest(OciLayout base) throws IOException {
+        JsonNode manifests = base.readIndex().path("manifests");
+        if (manifests.size() == 0) {
+            throw new IOException("The base image layout " + base.getDirectory().getAbsolutePath() + " does not " +
+                "contain any image");
+        }
+        JsonNode descriptor = manifests.get(0);
+        JsonNode manifest = base.readBlob(descriptor.path("digest").asText());
+        if (manifest.has("manifests")) {
+            throw new IOException("The base image layout " + base.getDirectory().getAbsolutePath() + " contains a " +
+                "multi-platform image, copy a single platform image instead");
+        }
+        return manifest;
+    }
+
+    /**
+     * Builds the layer containing the given directory of the application, unless the cache indicates that its
+     * files did not change.
+     */
+    private LayerBlob buildLayer(String name, String root, LayerBlob cached) throws IOException {
+        File directory = new File(application, name);
+        List<Path> files;
+        try (Stream<Path> stream = Files.walk(directory.toPath())) {
+            // Sorted, so the layer does not depend on the order of the file system
+            files = stream.sorted(Comparator.comparing(path -> directory.toPath().relativize(path).toString()
+                .replace(File.separatorChar, '/'))).collect(Collectors.toList());
+        }
+        String fingerprint = fingerprint(directory, files);
+        if (cached != null && cached.fingerprint.equals(fingerprint) && layout.getBlob(cached.digest).isFile()) {
+            log.debug("Reusing the " + name + " layer " + cached.digest);
+            return cached;
+        }
+
+        File tmp = layout.getTemporaryBlob(name);
+        MessageDigest compressed = OciLayout.sha256();
+        MessageDigest uncompressed = OciLayout.sha256();
+        try (TarWriter tar = new TarWriter(new DigestOutputStream(new LevelGZIPOutputStream(
+            new DigestOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 64 * 1024), compressed),
+            compressionLevel), uncompressed), 0)) {
+            StringBuilder parent = new StringBuilder();
+            for (String segment : root.split("/+")) {
+                parent.append(parent.length() == 0 ? "" : "/").append(segment);
+                tar.addDirectory(parent.toString());
+            }
+            for (Path path : files) {
+                String entry = root + "/" + name;
+                String relative = directory.toPath().relativize(path).toString().replace(File.separatorChar, '/');
+                if (!relative.isEmpty()) {
+                    entry += "/" + relative;
+                }
+                if (Files.isDirectory(path)) {
+                    tar.addDirectory(entry);
+                } else {
+                    tar.addFile(entry, path.toFile(), Files.isExecutable(path));
+                }
+            }
+        }
+        LayerBlob blob = new LayerBlob(fingerprint, "sha256:" + OciLayout.hex(compressed.digest()),
+            "sha256:" + OciLayout.hex(uncompressed.digest()), tmp.length());
+        layout.commit(tmp, blob.digest);
+        log.debug("Built the " + name + " layer " + blob.digest);
+        return blob;
+    }
+
+    private String fingerprint(File directory, List<Path> files) throws IOException {
+        MessageDigest digest = OciLayout.sha256();
+        StringBuilder builder = new StringBuilder();
+        builder.append(VERSION).append('|').append(workingDirectory).append('|').append(compressionLevel).append('\n');
+        for (Path path : files) {
+            builder.append(directory.toPath().relativize(path)).append('|');
+            if (!Files.isDirectory(path)) {
+                builder.append(Files.size(path)).append('|')
+                    .append(Files.getLastModifiedTime(path).toMillis()).append('|')
+                    .append(Files.isExecutable(path));
+            }
+            builder.append('\n');
+        }
+        return OciLayout.hex(digest.digest(builder.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private File getCacheFile() {
+        File directory = layout.getDirectory();
+        return new File(directory.getParentFile(), directory.getName() + ".idx");
+    }
+
+    private Map<String, LayerBlob> loadCache() {
+        Map<String, LayerBlob> cache = new HashMap<>();
+        File file = getCacheFile();
+        if (!file.isFile()) {
+            return cache;
+        }
+        try {
+            JsonNode json = OciLayout.MAPPER.readTree(file);
+            if (json.path("version").asInt() != VERSION) {
+                return cache;
+            }
+            json.path("layers").fields().forEachRemaining(layer -> cache.put(layer.getKey(), new LayerBlob(
+                layer.getValue().path("fingerprint").asText(),
+                layer.getValue().path("digest").asText(),
+                layer.getValue().path("diffId").asText(),
+                layer.getValue().path("size").asLong())));
+        } catch (IOException | RuntimeException e) {
+            // Corrupted cache, the layers are built again
+            cache.clear();
+        }
+        return cache;
+    }
+
+    private void saveCache(Map<String, LayerBlob> built) throws IOException {
+        ObjectNode json = OciLayout.MAPPER.createObjectNode();
+        json.put("version", VERSION);
+        ObjectNode layers = json.putObject("layers");
+        built.forEach((name, blob) -> layers.putObject(name)
+            .put("fingerprint", blob.fingerprint)
+            .put("digest", blob.digest)
+            .put("diffId", blob.diffId)
+            .put("size", blob.size));
+        OciLayout.MAPPER.writeValue(getCacheFile(), json);
+    }
+
+    private static class LayerBlob {
+        private final String fingerprint;
+        private final String digest;
+        private final String diffId;
+        private final long size;
+
+        private LayerBlob(String fingerprint, String digest, String diffId, long size) {
+            this.fingerprint = fingerprint;
+            this.digest = digest;
+            this.diffId = diffId;
+            this.size = size;
+        }
+    }
+
+    /**
+     * A {@link GZIPOutputStream} using the given deflate level.
+     */
+    private static class LevelGZIPOutputStream extends GZIPOutputStream {
+        private LevelGZIPOutputStream(OutputStream out, int level) throws IOException {
+            super(out, 64 * 1024);
+            def.setLevel(level);
+        }
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ *
+ *   Copyright (c) 2016-2017 Red Hat, Inc.
+ *
+ *   Red Hat licenses this file to you under the Apache License, version
+ *   2.0 (the "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *   implied.  See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package io.reactiverse.vertx.maven.plugin.image;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * A directory in the <a href="https://github.com/opencontainers/image-spec/blob/main/image-layout.md">OCI image
+ * layout</a> format: the {@code oci-layout} marker, the {@code index.json} file referencing the image manifests, and
+ * the {@code blobs} directory containing the content-addressed blobs ({@code blobs/<algorithm>/<hex>}).
+ * <p>
+ * Blobs are never rewritten: a blob whose digest is already in the layout is reused.
+ */
+public class OciLayout {
+
+    public static final String MANIFEST_MEDIA_TYPE = "application/vnd.oci.image.manifest.v1+json";
+
+    public static final String INDEX_MEDIA_TYPE = "application/vnd.oci.image.index.v1+json";
+
+    public static final String CONFIG_MEDIA_TYPE = "application/vnd.oci.image.config.v1+json";
+
+    public static final String LAYER_MEDIA_TYPE = "application/vnd.oci.image.layer.v1.tar+gzip";
+
+    public static final String REF_NAME = "org.opencontainers.image.ref.name";
+
+    static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final File directory;
+
+    public OciLayout(File directory) {
+        this.directory = directory;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Gets the file of the blob with the given digest.
+     *
+     * @param digest the digest, such as {@code sha256:<hex>}
+     * @return the file, may not exist
+     */
+    public File getBlob(String digest) {
+        int index = digest.indexOf(':');
+        if (index <= 0 || digest.indexOf('/') != -1 || digest.indexOf('\\') != -1) {
+            throw new IllegalArgumentException("Invalid digest " + digest);
+        }
+        return new File(directory, "blobs/" + digest.substring(0, index) + "/" + digest.substring(index + 1));
+    }
+
+    /**
+     * Gets the temporary file used to write a blob, before its digest is known.
+     *
+     * @param name a name unique among the blobs being written
+     * @return the file
+     * @throws IOException if the blob directory cannot be created
+     */
+    File getTemporaryBlob(String name) throws IOException {
+        File blobs = new File(directory, "blobs/sha256");
+        Files.createDirectories(blobs.toPath());
+        return new File(blobs, ".tmp-" + name);
+    }
+
+    /**
+     * Moves a blob written in a temporary file to its location. If the layout already contains the blob, the
+     * temporary file is deleted.
+     *
+     * @param file   the temporary file
+     * @param digest the digest of the file
+     * @throws IOException if the blob cannot be moved
+     */
+    void commit(File file, String digest) throws IOException {
+        File blob = getBlob(digest);
+        if (blob.isFile() && blob.length() == file.length()) {
+            Files.delete(file.toPath());
+        } else {
+            Files.move(file.toPath(), blob.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Adds a blob with the given content, unless the layout already contains it.
+     *
+     * @param content   the content
+     * @param mediaType the media type of the blob
+     * @return the descriptor of the blob
+     * @throws IOException if the blob cannot be written
+     */
+    public ObjectNode addBlob(byte[] content, String mediaType) throws IOException {
+        String digest = "sha256:" + hex(sha256().digest(content));
+        File blob = getBlob(digest);
+        if (!blob.isFile() || blob.length() != content.length) {
+            Files.createDirectories(blob.getParentFile().toPath());
+            Files.write(blob.toPath(), content);
+        }
+        return descriptor(mediaType, digest, content.length);
+    }
+
+    /**
+     * Adds a blob of another layout, unless this layout already contains it. The blob is hard-linked when the file
+     * system allows it, and copied otherwise.
+     *
+     * @param source the other layout
+     * @param digest the digest of the blob
+     * @throws IOException if the blob cannot be found or added
+     */
+    public void importBlob(OciLayout source, String digest) throws IOException {
+        File from = source.getBlob(digest);
+        if (!from.isFile()) {
+            throw new IOException("The blob " + digest + " is missing from " + source.getDirectory().getAbsolutePath());
+        }
+        File to = getBlob(digest);
+        if (to.isFile() && to.length() == from.length()) {
+            return;
+        }
+        Files.createDirectories(to.getParentFile().toPath());
+        Files.deleteIfExists(to.toPath());
+        try {
+            Files.createLink(to.toPath(), from.toPath());
+        } catch (UnsupportedOperationException | IOException e) {
+            Files.copy(from.toPath(), to.toPath());
+        }
+    }
+
+    /**
+     * Reads a JSON blob.
+     *
+     * @param digest the digest of the blob
+     * @return the JSON content
+     * @throws IOException if the blob cannot be read
+     */
+    public JsonNode readBlob(String digest) throws IOException {
+        File blob = getBlob(digest);
+        if (!blob.isFile()) {
+            throw new IOException("The blob " + digest + " is missing from " + directory.getAbsolutePath());
+        }
+        return MAPPER.readTree(blob);
+    }
+
+    /**
+     * Reads the {@code index.json} file of the layout.
+     *
+     * @return the index
+     * @throws IOException if the layout does not have a readable index
+     */
+    public JsonNode readIndex() throws IOException {
+        File index = new File(directory, "index.json");
+        if (!index.isFile()) {
+            throw new IOException(directory.getAbsolutePath() + " is not an OCI image layout, index.json not found");
+        }
+        return MAPPER.readTree(index);
+    }
+
+    /**
+     * Writes the {@code oci-layout} and {@code index.json} files, referencing the given manifest, and removes the
+     * blobs that are not used anymore.
+     *
+     * @param manifest the descriptor of the manifest
+     * @param used     the digests of the blobs used by the image
+     * @throws IOException if the files cannot be written
+     */
+    public void writeIndex(ObjectNode manifest, Set<String> used) throws IOException {
+        ObjectNode layout = MAPPER.createObjectNode();
+        layout.put("imageLayoutVersion", "1.0.0");
+        write(new File(directory, "oci-layout"), MAPPER.writeValueAsBytes(layout));
+
+        ObjectNode index = MAPPER.createObjectNode();
+        index.put("schemaVersion", 2);
+        index.put("mediaType", INDEX_MEDIA_TYPE);
+        index.putArray("manifests").add(manifest);
+        write(new File(directory, "index.json"), MAPPER.writeValueAsBytes(index));
+
+        File[] algorithms = new File(directory, "blobs").listFiles(File::isDirectory);
+        if (algorithms == null) {
+            return;
+        }
+        for (File algorithm : algorithms) {
+            File[] blobs = algorithm.listFiles();
+            if (blobs == null) {
+                continue;
+            }
+            for (File blob : blobs) {
+                if (!used.contains(algorithm.getName() + ":" + blob.getName())) {
+                    Files.delete(blob.toPath());
+                }
+            }
+        }
+    }
+
+    private static void write(File file, byte[] content) throws IOException {
+        if (file.isFile() && Arrays.equals(Files.readAllBytes(file.toPath()), content)) {
+            return;
+        }
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.write(file.toPath(), content);
+    }
+
+    /**
+     * Creates a content descriptor.
+     *
+     * @param mediaType the media type
+     * @param digest    the digest
+     * @param size      the size in bytes
+     * @return the descriptor
+     */
+    public static ObjectNode descriptor(String mediaType, String digest, long size) {
+        ObjectNode descriptor = MAPPER.createObjectNode();
+        descriptor.put("mediaType", mediaType);
+        descriptor.put("digest", digest);
+        descriptor.put("size", size);
+        return descriptor;
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not supported", e);
+        }
+    }
+
+    static String hex(byte[] hash) {
+        StringBuilder builder = new StringBuilder();
+        for (byte b : hash) {
+            builder.append(String.format("%02x", b));
+        }
+        return builder.toString();
+    }
+}
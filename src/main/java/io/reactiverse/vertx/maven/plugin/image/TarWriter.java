@@ -0,0 +1,217 @@
+/*
+ *
+ *   Copyright (c) 2016-2017 Red Hat, Inc.
+ *
+ *   Red Hat licenses this file to you under the Apache License, version
+ *   2.0 (the "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *   implied.  See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package io.reactiverse.vertx.maven.plugin.image;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Writes a tar stream in the POSIX (ustar) format, using a PAX extended header for the names that do not fit in the
+ * ustar header. The entries are written with fixed metadata (owner {@code 0:0}, modification time, permissions), so
+ * the same files always produce the same bytes, and therefore the same layer digest.
+ */
+public class TarWriter implements Closeable {
+
+    private static final int BLOCK = 512;
+
+    private static final int NAME_LENGTH = 100;
+
+    private static final int PREFIX_LENGTH = 155;
+
+    private static final long MAX_SIZE = 077777777777L;
+
+    private final OutputStream out;
+
+    private final long time;
+
+    /**
+     * Creates a new writer.
+     *
+     * @param out  the output stream, closed when the writer is closed
+     * @param time the modification time of the entries, in seconds since the epoch
+     */
+    public TarWriter(OutputStream out, long time) {
+        this.out = out;
+        this.time = time;
+    }
+
+    /**
+     * Writes a directory entry.
+     *
+     * @param name the name of the directory, without the trailing {@code /}
+     * @throws IOException if the entry cannot be written
+     */
+    public void addDirectory(String name) throws IOException {
+        writeHeader(name + "/", 0755, 0, '5');
+    }
+
+    /**
+     * Writes a file entry, with the content of the given file.
+     *
+     * @param name       the name of the entry
+     * @param file       the file
+     * @param executable whether or not the entry is executable
+     * @throws IOException if the entry cannot be written
+     */
+    public void addFile(String name, File file, boolean executable) throws IOException {
+        long size = file.length();
+        writeHeader(name, executable ? 0755 : 0644, size, '0');
+        long written = Files.copy(file.toPath(), out);
+        if (written != size) {
+            throw new IOException("The file " + file.getAbsolutePath() + " has been modified while being archived");
+        }
+        pad(size);
+    }
+
+    private void writeHeader(String name, int mode, long size, char type) throws IOException {
+        if (size > MAX_SIZE) {
+            throw new IOException("Unable to archive " + name + ", the file is too large");
+        }
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        String prefix = "";
+        String shortName = name;
+        if (bytes.length > NAME_LENGTH || bytes.length != name.length()) {
+            int split = split(name);
+            if (split == -1) {
+                writePaxHeader(name);
+                shortName = truncate(name);
+            } else {
+                prefix = name.substring(0, split);
+                shortName = name.substring(split + 1);
+            }
+        }
+
+        byte[] header = header(shortName, mode, size, type);
+        put(header, 345, PREFIX_LENGTH, prefix);
+        checksum(header);
+        out.write(header);
+    }
+
+    private void writePaxHeader(String name) throws IOException {
+        byte[] record = paxRecord("path", name);
+        String simpleName = name.substring(name.lastIndexOf('/', name.length() - 2) + 1);
+        byte[] header = header("PaxHeaders/" + truncate(simpleName), 0644, record.length, 'x');
+        checksum(header);
+        out.write(header);
+        out.write(record);
+        pad(record.length);
+    }
+
+    private byte[] header(String name, int mode, long size, char type) {
+        byte[] header = new byte[BLOCK];
+        put(header, 0, NAME_LENGTH, name);
+        octal(header, 100, 8, mode);
+        octal(header, 108, 8, 0);
+        octal(header, 116, 8, 0);
+        octal(header, 124, 12, size);
+        octal(header, 136, 12, time);
+        header[156] = (byte) type;
+        put(header, 257, 6, "ustar");
+        put(header, 263, 2, "00");
+        return header;
+    }
+
+    private static void checksum(byte[] header) {
+        // The checksum is computed with the checksum field filled with spaces
+        for (int i = 148; i < 156; i++) {
+            header[i] = ' ';
+        }
+        long checksum = 0;
+        for (byte b : header) {
+            checksum += b & 0xFF;
+        }
+        octal(header, 148, 7, checksum);
+    }
+
+    /**
+     * Creates a PAX record: {@code "<length> <key>=<value>\n"}, the length including itself.
+     */
+    private static byte[] paxRecord(String key, String value) {
+        int content = (" " + key + "=" + value + "\n").getBytes(StandardCharsets.UTF_8).length;
+        int length = content + String.valueOf(content).length();
+        if (String.valueOf(length).length() != String.valueOf(content).length()) {
+            length++;
+        }
+        return (length + " " + key + "=" + value + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Finds the {@code /} splitting the given ASCII name in a ustar prefix and name.
+     *
+     * @return the index of the separator, -1 if the name cannot be split
+     */
+    private static int split(String name) {
+        if (name.getBytes(StandardCharsets.UTF_8).length != name.length()) {
+            return -1;
+        }
+        // The shortest prefix leaving at most 100 characters for the name
+        int index = name.indexOf('/', Math.max(1, name.length() - NAME_LENGTH - 1));
+        if (index == -1 || index > PREFIX_LENGTH || index == name.length() - 1) {
+            return -1;
+        }
+        return index;
+    }
+
+    private static String truncate(String name) {
+        StringBuilder builder = new StringBuilder();
+        for (char c : name.toCharArray()) {
+            if (c > 127 || builder.length() == NAME_LENGTH) {
+                break;
+            }
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+
+    private static void put(byte[] header, int offset, int length, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(bytes, 0, header, offset, Math.min(length, bytes.length));
+    }
+
+    private static void octal(byte[] header, int offset, int length, long value) {
+        String digits = Long.toOctalString(value);
+        StringBuilder builder = new StringBuilder();
+        for (int i = digits.length(); i < length - 1; i++) {
+            builder.append('0');
+        }
+        put(header, offset, length - 1, builder.append(digits).toString());
+        header[offset + length - 1] = 0;
+    }
+
+    private void pad(long size) throws IOException {
+        int remainder = (int) (size % BLOCK);
+        if (remainder != 0) {
+            out.write(new byte[BLOCK - remainder]);
+        }
+    }
+
+    /**
+     * Writes the end of archive marker (two empty blocks) and closes the output stream.
+     *
+     * @throws IOException if the stream cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            out.write(new byte[2 * BLOCK]);
+        } finally {
+            out.close();
+        }
+    }
+}
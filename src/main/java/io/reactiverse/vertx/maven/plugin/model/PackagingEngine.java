@@ -0,0 +1,46 @@
+/*
+ *
+ *   Copyright (c) 2016-2017 Red Hat, Inc.
+ *
+ *   Red Hat licenses this file to you under the Apache License, version
+ *   2.0 (the "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *   implied.  See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package io.reactiverse.vertx.maven.plugin.model;
+
+/**
+ * The engines able to build the "fat" jar.
+ */
+public enum PackagingEngine {
+    /**
+     * Builds the archive in memory with ShrinkWrap, and writes it once complete.
+     */
+    SHRINKWRAP("fat-jar"),
+    /**
+     * Writes the archive directly to the disk, the entries of the dependencies are copied without being inflated.
+     */
+    STREAMING("streaming-fat-jar");
+
+    private final String hint;
+
+    PackagingEngine(String hint) {
+        this.hint = hint;
+    }
+
+    /**
+     * @return the hint of the {@link io.reactiverse.vertx.maven.plugin.components.PackageService} implementing
+     * this engine
+     */
+    public String hint() {
+        return hint;
+    }
+}
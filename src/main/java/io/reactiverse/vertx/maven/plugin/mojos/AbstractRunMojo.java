@@ -17,6 +17,8 @@
 
 package io.reactiverse.vertx.maven.plugin.mojos;
 
+import io.reactiverse.vertx.maven.plugin.components.impl.ExplodedPackageService;
+import io.reactiverse.vertx.maven.plugin.functions.BuildTask;
 import io.reactiverse.vertx.maven.plugin.utils.*;
 import org.apache.commons.lang3.ClassUtils;
 import org.apache.maven.model.Resource;
@@ -35,8 +37,8 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.util.*;
-import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -80,6 +82,32 @@ public class AbstractRunMojo extends AbstractVertxMojo {
         defaultValue = "1000")
     long redeployTerminationPeriod;
 
+    /**
+     * The time (in milliseconds) without any change of the sources to wait for before rebuilding. The changes
+     * notified during this period (e.g. by a {@code git checkout}) are built together.
+     */
+    @Parameter(alias = "redeployQuietPeriod", property = "vertx.redeploy.quiet.period", defaultValue = "200")
+    long redeployQuietPeriod;
+
+    /**
+     * Whether or not the Java sources are compiled in process for the redeployment. Only the changed sources and
+     * their dependents are compiled, with the options of the {@code maven-compiler-plugin}. When disabled, or when
+     * the configuration of the {@code maven-compiler-plugin} cannot be honored in process, the plugin is run instead.
+     */
+    @Parameter(alias = "redeployIncrementalCompilation", property = "vertx.redeploy.incremental.compilation",
+        defaultValue = "true")
+    boolean redeployIncrementalCompilation;
+
+    /**
+     * Whether or not the classes whose method bodies only have changed are redefined in the running application,
+     * instead of redeploying it. The application is started with an agent receiving the classes from the plugin, and
+     * is redeployed when the changes cannot be applied this way.
+     */
+    @Parameter(alias = "redeployHotSwap", property = "vertx.redeploy.hot.swap", defaultValue = "false")
+    boolean redeployHotSwap;
+
+    private HotSwapper hotSwapper;
+
 
     /**
      * The default command to use when calling io.vertx.core.Launcher.
@@ -127,6 +155,13 @@ public class AbstractRunMojo extends AbstractVertxMojo {
      */
     protected List<String> optionalRunExtraArgs;
 
+    /**
+     * The directory of the exploded application (built with the {@code EXPLODED} package type) to launch. When set,
+     * and if the application has been built, it is launched with the class path of the exploded application
+     * instead of the project one.
+     */
+    protected File explodedApplication;
+
     @Override
     public void execute() throws MojoExecutionException, MojoFailureException {
         if (skip) {
@@ -158,8 +193,9 @@ public class AbstractRunMojo extends AbstractVertxMojo {
             argsList.add(VERTX_ARG_LAUNCHER_CLASS);
             argsList.add(launcher);
 
-            if (jvmArgs != null && !jvmArgs.isEmpty()) {
-                String javaOpts = jvmArgs.stream().collect(Collectors.joining(" "));
+            List<String> javaOptions = getRedeployJvmArgs();
+            if (!javaOptions.isEmpty()) {
+                String javaOpts = javaOptions.stream().collect(Collectors.joining(" "));
                 String argJavaOpts = VERTX_ARG_JAVA_OPT +
                     "=" + javaOpts;
                 argsList.add(argJavaOpts);
@@ -246,8 +282,9 @@ public class AbstractRunMojo extends AbstractVertxMojo {
 
             addRedeployExtraArgs(argsList);
 
-            if (jvmArgs != null && !jvmArgs.isEmpty()) {
-                String javaOpts = jvmArgs.stream().collect(Collectors.joining(" "));
+            List<String> javaOptions = getRedeployJvmArgs();
+            if (!javaOptions.isEmpty()) {
+                String javaOpts = javaOptions.stream().collect(Collectors.joining(" "));
                 argsList.add(VERTX_ARG_JAVA_OPT + "=" + javaOpts);
             }
         }
@@ -275,10 +312,48 @@ public class AbstractRunMojo extends AbstractVertxMojo {
      * @param redeployArg - the redeploy {@link StringBuilder} to which the values will be appended
      */
     private void computeOutputDirsWildcard(StringBuilder redeployArg) {
+        if (getHotSwapper() != null) {
+            // The hot swapper decides when to redeploy
+            redeployArg.append(hotSwapper.getRedeployPattern());
+            return;
+        }
         final String wildcardClassesDir = this.classesDirectory.toString() + "/**/*";
         redeployArg.append(wildcardClassesDir);
     }
 
+    /**
+     * @return the JVM options of the redeployed application: the configured ones, and the hot swap agent
+     */
+    private List<String> getRedeployJvmArgs() {
+        List<String> options = new ArrayList<>();
+        if (jvmArgs != null) {
+            options.addAll(jvmArgs);
+        }
+        if (getHotSwapper() != null) {
+            options.add(hotSwapper.getAgentOption());
+        }
+        return options;
+    }
+
+    /**
+     * Starts the hot swapper on first use.
+     *
+     * @return the hot swapper, {@code null} if disabled or if it cannot be started
+     */
+    private HotSwapper getHotSwapper() {
+        if (redeployHotSwap && hotSwapper == null) {
+            try {
+                hotSwapper = HotSwapper.start(classesDirectory,
+                    new File(project.getBuild().getDirectory(), "vertx-hot-swap"), getLog());
+                getLog().info("Hot swap of the classes enabled");
+            } catch (IOException e) {
+                getLog().warn("Unable to enable the hot swap of the classes: " + e.getMessage());
+                redeployHotSwap = false;
+            }
+        }
+        return hotSwapper;
+    }
+
 
     /**
      * This method will add the extra redeployment arguments as mentioned in
@@ -376,9 +451,9 @@ public class AbstractRunMojo extends AbstractVertxMojo {
                 //TODO - handle exceptions effectively
                 // TODO - Not sure about the runAsync here, it uses the default fork join pool
                 CompletableFuture.runAsync(() -> {
-                    List<Callable<Void>> chain = computeExecutionChain();
+                    List<BuildTask> chain = computeExecutionChain();
                     IncrementalBuilder incrementalBuilder = new IncrementalBuilder(inclDirs,
-                        chain, getLog(), redeployScanPeriod);
+                        chain, getLog(), redeployScanPeriod, redeployQuietPeriod);
                     incrementalBuilder.run();
                 });
 
@@ -391,27 +466,84 @@ public class AbstractRunMojo extends AbstractVertxMojo {
         }
     }
 
-    private List<Callable<Void>> computeExecutionChain() {
-        List<Callable<Void>> list = new ArrayList<>();
+    private List<BuildTask> computeExecutionChain() {
+        List<BuildTask> list = new ArrayList<>();
+        IncrementalCompiler compiler = createCompiler();
+        // The resources that are not filtered are copied directly, without running the resources plugin
+        list.add(new ResourceCopyCallback());
         if (MojoSpy.MOJOS.isEmpty()) {
             getLog().info("No plugin execution collected. The vertx:initialize goal has not " +
                 "been run beforehand. Only handling resources and java compilation");
-            list.add(new JavaBuildCallback());
-            list.add(new ResourceBuildCallback());
+            list.add(when(SourceChanges::hasClassesToBuild, compile(compiler, new JavaBuildCallback())));
+            list.add(when(SourceChanges::hasResourcesToProcess, new ResourceBuildCallback()));
         } else {
-            list = MojoSpy.MOJOS.stream()
+            MojoSpy.MOJOS.stream()
                 // Include only mojo in [generate-source, process-classes]
                 .filter(exec -> MojoSpy.PHASES.contains(exec.getLifecyclePhase()))
-                .map(this::toTask)
-                .collect(Collectors.toList());
+                .map(exec -> when(isResourceProcessing(exec) ? SourceChanges::hasResourcesToProcess
+                    : SourceChanges::hasClassesToBuild, isCompilation(exec) ? compile(compiler, toTask(exec))
+                    : toTask(exec)))
+                .forEach(list::add);
+        }
+        if (hotSwapper != null) {
+            list.add(hotSwapper);
         }
         return list;
     }
 
-    private Callable<Void> toTask(MojoExecution execution) {
+    private static boolean isResourceProcessing(MojoExecution execution) {
+        return "maven-resources-plugin".equals(execution.getArtifactId())
+            && "resources".equals(execution.getGoal());
+    }
+
+    private static boolean isCompilation(MojoExecution execution) {
+        return "maven-compiler-plugin".equals(execution.getArtifactId())
+            && "compile".equals(execution.getGoal());
+    }
+
+    private IncrementalCompiler createCompiler() {
+        if (!redeployIncrementalCompilation) {
+            return null;
+        }
+        try {
+            return IncrementalCompiler.create(project, getLog());
+        } catch (IOException e) {
+            getLog().warn("Unable to compile in process, the maven-compiler-plugin is used for the redeployment: "
+                + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Compiles the Java sources in process when possible.
+     *
+     * @param compiler the in-process compiler, {@code null} if not available
+     * @param fallback the step compiling the whole project
+     * @return the compilation step
+     */
+    private BuildTask compile(IncrementalCompiler compiler, BuildTask fallback) {
+        return compiler == null ? fallback : new IncrementalCompileCallback(compiler, fallback);
+    }
+
+    /**
+     * Restricts a build step to the changes it is relevant for.
+     *
+     * @param condition checks whether the step is relevant for the changes
+     * @param task      the step
+     * @return the restricted step
+     */
+    private BuildTask when(Predicate<SourceChanges> condition, BuildTask task) {
+        return changes -> {
+            if (condition.test(SourceChanges.classify(changes, project, classesDirectory))) {
+                task.build(changes);
+            }
+        };
+    }
+
+    private BuildTask toTask(MojoExecution execution) {
         MojoExecutor executor = new MojoExecutor(execution, project, mavenSession, buildPluginManager);
 
-        return () -> {
+        return changes -> {
             try {
                 //--- vertx-maven-plugin:1.0-SNAPSHOT:run (default-cli) @ vertx-demo
                 getLog().info(">>> "
@@ -421,7 +553,6 @@ public class AbstractRunMojo extends AbstractVertxMojo {
             } catch (Exception e) {
                 getLog().error("Error while doing incremental build", e);
             }
-            return null;
         };
     }
 
@@ -489,6 +620,11 @@ public class AbstractRunMojo extends AbstractVertxMojo {
      * @throws MojoExecutionException any error that might occur while building collection like resolution errors
      */
     protected List<URL> getClassPathUrls() throws MojoExecutionException {
+        List<URL> exploded = getExplodedClassPathUrls();
+        if (exploded != null) {
+            return exploded;
+        }
+
         List<URL> classPathUrls = new ArrayList<>();
 
         try {
@@ -517,6 +653,35 @@ public class AbstractRunMojo extends AbstractVertxMojo {
     }
 
 
+    /**
+     * Builds the class path of the exploded application, if any.
+     *
+     * @return the class path, {@code null} if there is no exploded application to launch
+     * @throws MojoExecutionException if the exploded application cannot be read
+     */
+    private List<URL> getExplodedClassPathUrls() throws MojoExecutionException {
+        if (explodedApplication == null) {
+            return null;
+        }
+        try {
+            List<File> classPath = ExplodedPackageService.getClassPath(explodedApplication);
+            if (classPath == null) {
+                getLog().warn("No exploded application found in " + explodedApplication.getAbsolutePath() + ", " +
+                    "using the project class path (build it with the EXPLODED package type)");
+                explodedApplication = null;
+                return null;
+            }
+            List<URL> urls = new ArrayList<>();
+            for (File file : classPath) {
+                urls.add(file.toURI().toURL());
+            }
+            return urls;
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to read the exploded application from "
+                + explodedApplication.getAbsolutePath(), e);
+        }
+    }
+
     /**
      * Method to check if the file is JSON file
      *
@@ -537,37 +702,92 @@ public class AbstractRunMojo extends AbstractVertxMojo {
         return configFile != null && (configFile.endsWith(".yaml") || configFile.endsWith(".yml"));
     }
 
+    /**
+     * Copies the changed resources that are not filtered to the classes directory.
+     */
+    public final class ResourceCopyCallback implements BuildTask {
+
+        @Override
+        public void build(Set<Path> changes) {
+            try {
+                SourceChanges classified = SourceChanges.classify(changes, project, classesDirectory);
+                getLog().debug("Incremental build of " + classified);
+                if (!classified.getCopies().isEmpty()) {
+                    int count = classified.copyResources(getLog());
+                    getLog().info("Copied " + count + " resources to " + classesDirectory);
+                }
+            } catch (Exception e) {
+                getLog().error("Error while copying the resources: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Compiles the changed Java sources and their dependents in process. The whole project is compiled by the
+     * fallback step when other sources have changed (e.g. the sources of a generator), or when the in-process
+     * compilation cannot complete.
+     */
+    public final class IncrementalCompileCallback implements BuildTask {
+
+        private final IncrementalCompiler compiler;
+
+        private final BuildTask fallback;
+
+        IncrementalCompileCallback(IncrementalCompiler compiler, BuildTask fallback) {
+            this.compiler = compiler;
+            this.fallback = fallback;
+        }
+
+        @Override
+        public void build(Set<Path> changes) throws Exception {
+            SourceChanges classified = SourceChanges.classify(changes, project, classesDirectory);
+            if (!classified.getOthers().isEmpty()) {
+                fallback.build(changes);
+                return;
+            }
+            long begin = System.currentTimeMillis();
+            try {
+                Set<Path> compiled = compiler.compile(classified.getSources());
+                getLog().info("Compiled " + compiled.size() + " sources in process in "
+                    + (System.currentTimeMillis() - begin) + " ms");
+            } catch (MojoExecutionException e) {
+                // The diagnostics have been logged
+                getLog().error("Error while doing incremental Java build: " + e.getMessage());
+            } catch (Exception e) {
+                getLog().warn("Unable to compile in process, compiling the project: " + e.getMessage());
+                fallback.build(changes);
+            }
+        }
+    }
+
     /**
      *
      */
-    public final class JavaBuildCallback implements Callable<Void> {
+    public final class JavaBuildCallback implements BuildTask {
 
         @Override
-        public Void call() {
+        public void build(Set<Path> changes) {
             try {
                 MojoUtils.compile(project, mavenSession, buildPluginManager);
             } catch (Exception e) {
                 getLog().error("Error while doing incremental Java build: " + e.getMessage(), e);
             }
-            return null;
         }
     }
 
     /**
      *
      */
-    public final class ResourceBuildCallback implements Callable<Void> {
+    public final class ResourceBuildCallback implements BuildTask {
 
         @Override
-        public Void call() {
+        public void build(Set<Path> changes) {
             try {
                 MojoUtils.copyResources(project, mavenSession, buildPluginManager);
             } catch (Exception e) {
                 getLog().error("Error while doing incremental resource processing: "
                     + e.getMessage(), e);
             }
-
-            return null;
         }
     }
 
@@ -18,6 +18,7 @@
 package io.reactiverse.vertx.maven.plugin.mojos;
 
 import io.reactiverse.vertx.maven.plugin.utils.WebJars;
+import io.reactiverse.vertx.maven.plugin.zip.JarIndexCache;
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.execution.MavenSession;
 import org.apache.maven.lifecycle.LifecycleExecutor;
@@ -206,6 +207,16 @@ public abstract class AbstractVertxMojo extends AbstractMojo implements Contextu
     @Parameter(property = "vertx.skip", defaultValue = "false")
     protected boolean skip;
 
+    /**
+     * The directory storing the index of the dependency jars (entries, descriptors, web jar classification). It is
+     * shared across builds, so the central directory of the dependencies is read only once. The index of a jar is
+     * invalidated when its size or last modification date changes. Set it to an empty value to keep the indexes in
+     * memory only.
+     */
+    @Parameter(property = "vertx.entryIndexCache",
+        defaultValue = "${settings.localRepository}/.cache/vertx-maven-plugin/entry-index")
+    protected File entryIndexCache;
+
     /**
      * The Plexus container.
      */
@@ -251,7 +262,7 @@ public abstract class AbstractVertxMojo extends AbstractMojo implements Contextu
             .stream()
             .filter(e -> e.getScope().equals("compile") || e.getScope().equals("runtime"))
             .filter(e -> e.getType().equalsIgnoreCase("jar"))
-            .filter(e -> !WebJars.isWebJar(getLog(), e.getFile()))
+            .filter(e -> !WebJars.isWebJar(getLog(), e.getFile(), getJarIndexCache()))
             .map(this::asMavenCoordinates)
             .distinct()
             .map(this::resolveArtifact)
@@ -304,6 +315,13 @@ public abstract class AbstractVertxMojo extends AbstractMojo implements Contextu
         return Optional.empty();
     }
 
+    /**
+     * @return the cache of the dependency jar indexes
+     */
+    public JarIndexCache getJarIndexCache() {
+        return JarIndexCache.forDirectory(entryIndexCache);
+    }
+
     /**
      * Retrieves the Plexus container.
      *
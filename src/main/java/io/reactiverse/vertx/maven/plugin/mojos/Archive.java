@@ -1,6 +1,8 @@
 package io.reactiverse.vertx.maven.plugin.mojos;
 
 
+import io.reactiverse.vertx.maven.plugin.components.PackageType;
+
 import java.util.*;
 
 
@@ -11,6 +13,10 @@ public class Archive {
 
     private String outputFileName;
 
+    private String classifier;
+
+    private PackageType packageType;
+
     private Map<String, String> manifest = new LinkedHashMap<>();
 
     private List<FileSet> fileSets = new ArrayList<>();
@@ -23,6 +29,8 @@ public class Archive {
 
     private List<String> descriptorCombinationPatterns = new ArrayList<>();
 
+    private CompressionOptions compression = new CompressionOptions();
+
     /**
      * Adds a dependency set
      *
@@ -149,6 +157,34 @@ public class Archive {
         return this;
     }
 
+    /**
+     * Gets the classifier of the archive, used when it is built along the main archive.
+     *
+     * @return the classifier, {@code null} for the main archive
+     */
+    public String getClassifier() {
+        return classifier;
+    }
+
+    public Archive setClassifier(String classifier) {
+        this.classifier = classifier;
+        return this;
+    }
+
+    /**
+     * Gets the type of package built from the archive.
+     *
+     * @return the type, {@code null} to use the package type of the plugin
+     */
+    public PackageType getPackageType() {
+        return packageType;
+    }
+
+    public Archive setPackageType(PackageType packageType) {
+        this.packageType = packageType;
+        return this;
+    }
+
     public Map<String, String> getManifest() {
         return manifest;
     }
@@ -188,4 +224,23 @@ public class Archive {
     public List<String> getDescriptorCombinationPatterns() {
         return descriptorCombinationPatterns;
     }
+
+    /**
+     * Gets how the entries of the archive are compressed.
+     *
+     * @return the options, never {@code null}
+     */
+    public CompressionOptions getCompression() {
+        return compression;
+    }
+
+    /**
+     * Sets how the entries of the archive are compressed.
+     *
+     * @param compression the options, must not be {@code null}
+     */
+    public Archive setCompression(CompressionOptions compression) {
+        this.compression = Objects.requireNonNull(compression);
+        return this;
+    }
 }
@@ -0,0 +1,82 @@
+package io.reactiverse.vertx.maven.plugin.mojos;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configures how the entries of an archive are compressed. The rules are checked in declaration order and the first
+ * one matching an entry wins. Then, the classes are stored if {@link #isStoreClasses()}, and the already compressed
+ * media are stored if {@link #isUseDefaultStoredPatterns()}. The other entries are deflated with the level of the
+ * package.
+ */
+public class CompressionOptions {
+
+    /**
+     * The rules, checked in order.
+     */
+    private List<CompressionRule> rules;
+
+    /**
+     * Whether the entries that do not shrink when deflated (nested archives, compressed files, images, fonts...)
+     * are stored. The default value is true.
+     */
+    private boolean useDefaultStoredPatterns = true;
+
+    /**
+     * Whether the classes are stored, so they can be loaded without being inflated. The default value is false.
+     */
+    private boolean storeClasses;
+
+    public List<CompressionRule> getRules() {
+        if (rules == null) {
+            rules = new ArrayList<>();
+        }
+        return rules;
+    }
+
+    public CompressionOptions addRule(CompressionRule rule) {
+        getRules().add(rule);
+        return this;
+    }
+
+    /**
+     * Sets the rules, checked in declaration order.
+     *
+     * @param rules the rules
+     * @return the current {@link CompressionOptions}
+     */
+    public CompressionOptions setRules(List<CompressionRule> rules) {
+        this.rules = rules;
+        return this;
+    }
+
+    /**
+     * Gets whether the entries that do not shrink when deflated, such as nested archives, compressed files, images
+     * or fonts, are stored. The default value is true.
+     *
+     * @return whether or not the default stored patterns are used
+     */
+    public boolean isUseDefaultStoredPatterns() {
+        return useDefaultStoredPatterns;
+    }
+
+    public CompressionOptions setUseDefaultStoredPatterns(boolean useDefaultStoredPatterns) {
+        this.useDefaultStoredPatterns = useDefaultStoredPatterns;
+        return this;
+    }
+
+    /**
+     * Gets whether the classes are stored, so the class loader reads them without inflating them. The archive is
+     * bigger, but the classes are loaded faster. The default value is false.
+     *
+     * @return whether or not the classes are stored
+     */
+    public boolean isStoreClasses() {
+        return storeClasses;
+    }
+
+    public CompressionOptions setStoreClasses(boolean storeClasses) {
+        this.storeClasses = storeClasses;
+        return this;
+    }
+}
@@ -0,0 +1,81 @@
+package io.reactiverse.vertx.maven.plugin.mojos;
+
+import io.reactiverse.vertx.maven.plugin.model.CompressionMethod;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Selects how the entries matching a set of patterns are written in the archive.
+ */
+public class CompressionRule {
+
+    /**
+     * The patterns of the entries, matched against the absolute path of the entry (starting with {@code /}), such
+     * as {@code **}{@code /*.png}.
+     */
+    private List<String> patterns;
+
+    /**
+     * The method used to write the matching entries.
+     */
+    private CompressionMethod method = CompressionMethod.DEFLATED;
+
+    /**
+     * The deflate level of the matching entries, {@code null} to use the level of the package.
+     */
+    private Integer level;
+
+    public List<String> getPatterns() {
+        if (patterns == null) {
+            patterns = new ArrayList<>();
+        }
+        return patterns;
+    }
+
+    public CompressionRule addPattern(String pattern) {
+        getPatterns().add(pattern);
+        return this;
+    }
+
+    /**
+     * Sets the patterns of the entries, matched against the absolute path of the entry.
+     *
+     * @param patterns the patterns
+     * @return the current {@link CompressionRule}
+     */
+    public CompressionRule setPatterns(List<String> patterns) {
+        this.patterns = patterns;
+        return this;
+    }
+
+    public CompressionMethod getMethod() {
+        return method;
+    }
+
+    /**
+     * Sets the method used to write the matching entries.
+     *
+     * @param method the method, must not be {@code null}
+     * @return the current {@link CompressionRule}
+     */
+    public CompressionRule setMethod(CompressionMethod method) {
+        this.method = method;
+        return this;
+    }
+
+    public Integer getLevel() {
+        return level;
+    }
+
+    /**
+     * Sets the deflate level of the matching entries, ignored when the entries are stored.
+     *
+     * @param level the level, from 0 to 9, -1 for the default level, {@code null} to use the level of the package
+     * @return the current {@link CompressionRule}
+     */
+    public CompressionRule setLevel(Integer level) {
+        this.level = level;
+        return this;
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ *
+ *   Copyright (c) 2016-2017 Red Hat, Inc.
+ *
+ *   Red Hat licenses this file to you under the Apache License, version
+ *   2.0 (the "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *   implied.  See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package io.reactiverse.vertx.maven.plugin.mojos;
+
+import io.reactiverse.vertx.maven.plugin.components.PackageType;
+import io.reactiverse.vertx.maven.plugin.components.impl.LayeredPackageService;
+import io.reactiverse.vertx.maven.plugin.image.ImageBuilder;
+import io.reactiverse.vertx.maven.plugin.utils.OrderedParallelExecutor;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * This goal builds a container image of the application in the OCI image layout format, without container daemon.
+ * The application is packaged as a layered application (see the {@code LAYERED} package type), and each layer
+ * becomes an image layer, so only the layers whose content changed are rebuilt, pushed and pulled.
+ * <p>
+ * The image can then be pushed or loaded with tools reading OCI image layouts, such as {@code skopeo} or
+ * {@code podman}.
+ *
+ * @since 1.0.0
+ */
+@Mojo(name = "image",
+    defaultPhase = LifecyclePhase.PACKAGE,
+    requiresDependencyCollection = ResolutionScope.COMPILE_PLUS_RUNTIME,
+    requiresDependencyResolution = ResolutionScope.COMPILE_PLUS_RUNTIME
+)
+public class ImageMojo extends PackageMojo {
+
+    /**
+     * The directory of the OCI image layout. Defaults to the name of the jar, without extension, followed by
+     * {@code -image}, in the build directory.
+     */
+    @Parameter(name = "imageOutput", property = "vertx.image.output")
+    protected File imageOutput;
+
+    /**
+     * The reference name of the image in the {@code index.json} file of the layout.
+     */
+    @Parameter(name = "imageTag", property = "vertx.image.tag", defaultValue = "${project.version}")
+    protected String imageTag;
+
+    /**
+     * The OCI image layout containing the base image, providing the Java runtime, for example copied with
+     * {@code skopeo copy docker://eclipse-temurin:17-jre oci:target/base}. The first image of the layout is used.
+     * If not set, the image only contains the application.
+     */
+    @Parameter(name = "baseImage", property = "vertx.image.base")
+    protected File baseImage;
+
+    /**
+     * The directory of the application in the image, also used as working directory.
+     */
+    @Parameter(name = "imageWorkingDirectory", property = "vertx.image.workingDirectory", defaultValue = "/app")
+    protected String imageWorkingDirectory;
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        if (skip) {
+            getLog().info("vertx:image skipped by configuration");
+            return;
+        }
+
+        packageType = PackageType.LAYERED;
+        super.execute();
+
+        File application = new File(projectBuildDir, computeExplodedName(project, classifier));
+        File output = imageOutput;
+        if (output == null) {
+            output = new File(projectBuildDir, application.getName() + "-image");
+        }
+        try {
+            List<String> layers = LayeredPackageService.getLayers(application);
+            if (layers == null) {
+                throw new MojoExecutionException("The layered application " + application.getAbsolutePath() +
+                    " has not been built");
+            }
+            String digest = new ImageBuilder(application, layers, output, getLog())
+                .setTag(imageTag)
+                .setBaseImage(baseImage)
+                .setWorkingDirectory(imageWorkingDirectory)
+                .setThreads(OrderedParallelExecutor.threads(packagingThreads))
+                .setCompressionLevel(compressionLevel)
+                .build();
+            getLog().info("Image " + digest + " written to " + output.getAbsolutePath());
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to build the image of the application", e);
+        }
+    }
+}
@@ -85,7 +85,7 @@ public class InitializeMojo extends AbstractVertxMojo {
         for (Artifact artifact : dependencies) {
             Optional<File> maybeFile = getArtifactFile(artifact);
             if (artifact.getType().equalsIgnoreCase("jar")  && maybeFile.isPresent()) {
-                if (WebJars.isWebJar(getLog(), maybeFile.get())) {
+                if (WebJars.isWebJar(getLog(), maybeFile.get(), getJarIndexCache())) {
                     try {
                         WebJars.extract(this, maybeFile.get(),
                             createWebRootDirIfNeeded(), stripWebJarVersion);
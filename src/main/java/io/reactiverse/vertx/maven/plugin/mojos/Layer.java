@@ -0,0 +1,58 @@
+package io.reactiverse.vertx.maven.plugin.mojos;
+
+/**
+ * A custom layer of a layered package, containing the dependencies selected by a {@link DependencySet}. The
+ * dependencies selected by several layers go to the first one.
+ */
+public class Layer {
+
+    /**
+     * Sets the name of the layer, also used as the name of its directory.
+     */
+    private String name;
+
+    /**
+     * Sets the dependencies of the layer. Only the scope and the include/exclude patterns are used.
+     */
+    private DependencySet dependencies;
+
+    /**
+     * Get sets the name of the layer, also used as the name of its directory.
+     *
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get sets the dependencies of the layer.
+     *
+     * @return the dependency set, {@code null} if not set
+     */
+    public DependencySet getDependencies() {
+        return dependencies;
+    }
+
+    /**
+     * Set sets the name of the layer, also used as the name of its directory.
+     *
+     * @param name the name
+     * @return the current {@link Layer}
+     */
+    public Layer setName(String name) {
+        this.name = name;
+        return this;
+    }
+
+    /**
+     * Set sets the dependencies of the layer.
+     *
+     * @param dependencies the dependency set
+     * @return the current {@link Layer}
+     */
+    public Layer setDependencies(DependencySet dependencies) {
+        this.dependencies = dependencies;
+        return this;
+    }
+}
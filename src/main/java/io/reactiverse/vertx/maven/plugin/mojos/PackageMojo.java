@@ -17,8 +17,14 @@
 
 package io.reactiverse.vertx.maven.plugin.mojos;
 
+import io.reactiverse.vertx.maven.plugin.cds.AppCdsBuilder;
 import io.reactiverse.vertx.maven.plugin.components.*;
 import io.reactiverse.vertx.maven.plugin.model.CombinationStrategy;
+import io.reactiverse.vertx.maven.plugin.model.PackagingEngine;
+import io.reactiverse.vertx.maven.plugin.utils.ClassLoadOrder;
+import io.reactiverse.vertx.maven.plugin.utils.OrderedParallelExecutor;
+import io.reactiverse.vertx.maven.plugin.utils.TrainingRun;
+import io.reactiverse.vertx.maven.plugin.zip.JarIndexCache;
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.artifact.DefaultArtifact;
 import org.apache.maven.artifact.handler.ArtifactHandler;
@@ -30,7 +36,9 @@ import org.apache.maven.project.MavenProject;
 import org.codehaus.plexus.component.repository.exception.ComponentLookupException;
 
 import java.io.File;
-import java.util.List;
+import java.io.IOException;
+import java.util.*;
+import java.util.stream.Collectors;
 
 
 /**
@@ -52,6 +60,15 @@ public class PackageMojo extends AbstractVertxMojo {
     @Parameter(name = "serviceProviderCombination", defaultValue = "COMBINE")
     protected CombinationStrategy serviceProviderCombination;
 
+    /**
+     * Whether or not the fat jar contains an index of the service providers, computed from the combined
+     * {@code META-INF/services} descriptors, and the {@code ServiceIndex} class looking up the providers from it
+     * instead of scanning the class path. The providers whose class is not in the fat jar are reported. Requires the
+     * {@code COMBINE} service provider combination.
+     */
+    @Parameter(name = "serviceIndex", property = "vertx.package.serviceIndex", defaultValue = "false")
+    protected boolean serviceIndex;
+
     /**
      * Classifier to add to the artifact generated. If given, the artifact will be attached with that classifier and
      * the main artifact will be deployed as the main artifact. If this is not given (default), it will replace the
@@ -70,8 +87,155 @@ public class PackageMojo extends AbstractVertxMojo {
     @Parameter(name = "attach", defaultValue = "true")
     protected boolean attach;
 
-    @Component
-    protected PackageService packageService;
+    /**
+     * The type of package to build. {@code FAT_JAR} embeds the dependencies in the jar, while {@code JAR} builds a
+     * thin jar containing only the project files, referencing the dependencies placed in the {@code lib} directory
+     * (next to the jar) with the {@code Class-Path} manifest attribute. Dependencies are hard-linked from the local
+     * repository when the file system allows it, and copied otherwise. {@code EXPLODED} builds a directory (named
+     * after the jar, without extension) containing the project files, the dependencies in {@code lib}, and launch
+     * scripts. {@code LAYERED} builds a directory (named the same way) split in layers for container images: release
+     * dependencies, custom {@code layers}, snapshot dependencies, resources and classes, described by a
+     * {@code layers.idx} file.
+     */
+    @Parameter(name = "packageType", property = "vertx.package.type", defaultValue = "FAT_JAR")
+    protected PackageType packageType;
+
+    /**
+     * The custom dependency layers of the {@code LAYERED} package, placed between the release and the snapshot
+     * dependencies. Each layer has a {@code name} and a {@code dependencies} set selecting its dependencies by scope
+     * and include/exclude patterns. A dependency selected by several layers goes to the first one.
+     */
+    @Parameter(name = "layers")
+    protected List<Layer> layers;
+
+    /**
+     * The engine used to build the fat jar. {@code SHRINKWRAP} builds the archive in memory, while
+     * {@code STREAMING} writes it directly to the disk and copies the entries of the dependencies without
+     * re-compressing them.
+     */
+    @Parameter(name = "packagingEngine", property = "vertx.package.engine", defaultValue = "SHRINKWRAP")
+    protected PackagingEngine packagingEngine;
+
+    /**
+     * The number of threads used to read the dependencies embedded in the fat jar. The entries are still merged in
+     * the dependency declaration order and written on a single thread, so the jar does not depend on this value. A
+     * value lower than 1 uses one thread per available processor.
+     */
+    @Parameter(name = "packagingThreads", property = "vertx.package.threads", defaultValue = "1")
+    protected int packagingThreads;
+
+    /**
+     * The deflate level used to compress the entries of the fat jar, from 0 (no compression) to 9 (best
+     * compression), -1 for the default level.
+     */
+    @Parameter(name = "compressionLevel", property = "vertx.package.compressionLevel", defaultValue = "-1")
+    protected int compressionLevel;
+
+    /**
+     * The number of threads used to compress the entries of the jar. When greater than 1, the entries are compressed
+     * in parallel and written in a fixed order, the large entries being split in blocks compressed concurrently. The
+     * content of the jar is the same, but not its bytes: the blocks are compressed independently. A value lower than
+     * 1 uses one thread per available processor.
+     */
+    @Parameter(name = "compressionThreads", property = "vertx.package.compressionThreads", defaultValue = "1")
+    protected int compressionThreads;
+
+    /**
+     * How the entries of the jar are compressed: rules mapping patterns to a method ({@code STORED} or
+     * {@code DEFLATED}) and a level, whether the classes are stored so they are loaded without being inflated, and
+     * whether the entries that do not shrink when deflated (nested archives, compressed files, images, fonts) are
+     * stored. By default, only these last entries are stored.
+     */
+    @Parameter(name = "compression")
+    protected CompressionOptions compression;
+
+    /**
+     * Whether or not the fat jar is updated incrementally. An index is written next to the jar (with the
+     * {@code .idx} extension). When the dependencies have not changed since the previous build, their entries are
+     * copied from the previous jar as a single block, and only the project files modified since the previous build
+     * are compressed again. Incremental packaging requires the {@code STREAMING} engine.
+     */
+    @Parameter(name = "incremental", property = "vertx.package.incremental", defaultValue = "false")
+    protected boolean incremental;
+
+    /**
+     * The file listing the entries written first in the fat jar, one entry name per line, typically the classes in
+     * the order they are loaded at startup. Placing them in a contiguous region of the jar reduces the I/O when the
+     * application starts with a cold page cache. The file is used when it exists, the other entries follow in the
+     * default order. The order recorded in {@code target} is lost on clean builds: store it out of {@code target},
+     * under version control, to reuse it across clean builds and get reproducible builds.
+     */
+    @Parameter(name = "classLoadOrder", property = "vertx.package.classLoadOrder",
+        defaultValue = "${project.build.directory}/class-load-order.txt")
+    protected File classLoadOrder;
+
+    /**
+     * Whether or not the class load order is recorded. The fat jar is launched for a training run with
+     * {@code -verbose:class}, the classes loaded from the jar are written to {@code classLoadOrder}, and the jar is
+     * packaged again with this order.
+     */
+    @Parameter(name = "recordClassLoadOrder", property = "vertx.package.recordClassLoadOrder", defaultValue = "false")
+    protected boolean recordClassLoadOrder;
+
+    /**
+     * The maximum duration of a training run, in milliseconds.
+     */
+    @Parameter(name = "trainingTimeout", property = "vertx.package.trainingTimeout", defaultValue = "60000")
+    protected long trainingTimeout;
+
+    /**
+     * The regular expression matching the output line written by the application once started, stopping the
+     * training run. It defaults to the message written by the Vert.x launcher once the verticle is deployed.
+     */
+    @Parameter(name = "trainingReadyPattern", property = "vertx.package.trainingReadyPattern",
+        defaultValue = TrainingRun.DEFAULT_READY_PATTERN)
+    protected String trainingReadyPattern;
+
+    /**
+     * Whether or not an application class data sharing (AppCDS) archive is created for the fat jar. The jar is
+     * launched for a training run recording the classes loaded at startup, then the archive ({@code .jsa}) and a
+     * launch script using it ({@code .sh}) are written next to the jar. The training run is only repeated when the
+     * dependency set changes, the archive is dumped again for each build as the JVM rejects it once the jar is
+     * modified. Requires Java 10 or later.
+     */
+    @Parameter(name = "appCds", property = "vertx.package.appCds", defaultValue = "false")
+    protected boolean appCds;
+
+    /**
+     * Whether or not the fat jar is shrunk: the classes of the dependencies that are not reachable from the classes of
+     * the project, the {@code Main-Class}, the {@code Main-Verticle}, the service providers and the
+     * {@code shrinkKeeps} patterns are not embedded. References are computed from the bytecode, including the string
+     * constants naming a class, the classes only loaded by other reflective means must be kept explicitly. The bytes
+     * saved for each dependency are reported.
+     */
+    @Parameter(name = "shrink", property = "vertx.package.shrink", defaultValue = "false")
+    protected boolean shrink;
+
+    /**
+     * The patterns of the class names ({@code com.acme.plugins.*}) always kept when the fat jar is shrunk, typically
+     * the classes only loaded by reflection.
+     */
+    @Parameter(name = "shrinkKeeps")
+    protected List<String> shrinkKeeps;
+
+    /**
+     * Whether or not the entries provided by several dependencies are reported: the entries with the same name and a
+     * different content (only the first one is used), and the number of duplicate bytes (the same content provided
+     * by several dependencies, or under several names). The entries with the same CRC and size are compared with a
+     * SHA-256 digest. When an incremental fat jar reuses the entries of the dependencies, they are not reported again.
+     */
+    @Parameter(name = "reportDuplicates", property = "vertx.package.reportDuplicates", defaultValue = "false")
+    protected boolean reportDuplicates;
+
+    /**
+     * Additional archives built along the main one, each attached to the project under its own {@code classifier}
+     * (required). An archive has a {@code packageType} (the {@code packageType} of the plugin by default),
+     * {@code fileSets}, {@code files}, {@code dependencySets} (all the dependencies by default), and
+     * {@code includeClasses}. Its manifest is completed with the entries of the main archive. The archives are built
+     * concurrently, and the dependencies are read once for all of them.
+     */
+    @Parameter(name = "archives")
+    protected List<Archive> archives;
 
     @Component
     protected ServiceFileCombiner combiner;
@@ -79,6 +243,8 @@ public class PackageMojo extends AbstractVertxMojo {
     @Parameter(alias = "skipScmMetadata", property = "vertx.skipScmMetadata", defaultValue = "false")
     protected boolean skipScmMetadata;
 
+    private List<BinaryDescriptorCombiner> binaryDescriptorCombiners;
+
     public static String computeOutputName(MavenProject project, String classifier) {
         String finalName = project.getBuild().getFinalName();
         if (finalName != null) {
@@ -100,6 +266,19 @@ public class PackageMojo extends AbstractVertxMojo {
         }
     }
 
+    /**
+     * Computes the name of the directory containing the exploded application: the name of the jar, without
+     * extension.
+     *
+     * @param project    the project
+     * @param classifier the classifier, may be {@code null}
+     * @return the name of the directory
+     */
+    public static String computeExplodedName(MavenProject project, String classifier) {
+        String name = computeOutputName(project, classifier);
+        return name.substring(0, name.length() - ".jar".length());
+    }
+
     @Override
     public void execute() throws MojoExecutionException, MojoFailureException {
         if (skip) {
@@ -118,8 +297,24 @@ public class PackageMojo extends AbstractVertxMojo {
                 "artifact");
         }
 
-        //TODO Archive should be a parameter.
-        Archive archive = ServiceUtils.getDefaultFatJar();
+        if (compressionLevel < -1 || compressionLevel > 9) {
+            throw new MojoExecutionException("Invalid compression level " + compressionLevel + ", the level must " +
+                "be between 0 and 9, or -1 for the default level");
+        }
+
+        Archive archive = ServiceUtils.getDefaultFatJar()
+            .setClassifier(classifier)
+            .setPackageType(packageType);
+        if (compression != null) {
+            for (CompressionRule rule : compression.getRules()) {
+                if (rule.getLevel() != null && (rule.getLevel() < -1 || rule.getLevel() > 9)) {
+                    throw new MojoExecutionException("Invalid compression level " + rule.getLevel() + " for the " +
+                        "entries matching " + rule.getPatterns() + ", the level must be between 0 and 9, or -1 for " +
+                        "the default level");
+                }
+            }
+            archive.setCompression(compression);
+        }
 
         if (launcher != null && !launcher.trim().isEmpty()) {
             archive.getManifest().putIfAbsent("Main-Class", launcher);
@@ -133,28 +328,56 @@ public class PackageMojo extends AbstractVertxMojo {
         customizers.forEach(customizer ->
             archive.getManifest().putAll(customizer.getEntries(this, project)));
 
-        // Manage SPI combination
-        combiner.doCombine(new ServiceFileCombinationConfig()
-            .setStrategy(serviceProviderCombination)
-            .setProject(project)
-            .setArchive(archive)
-            .setMojo(this)
-            .setArtifacts(project.getArtifacts()));
+        List<Archive> variants = getVariants(archive);
 
-        File jar;
-        try {
-            jar = packageService.doPackage(
-                new PackageConfig()
-                    .setArtifacts(project.getArtifacts())
-                    .setMojo(this)
-                    .setOutput(new File(projectBuildDir, computeOutputName(project, classifier)))
-                    .setProject(project)
-                    .setArchive(archive));
-        } catch (PackagingException e) {
-            throw new MojoExecutionException("Unable to build the fat jar", e);
+        // Manage SPI combination, the fat jar engines combine the descriptors while embedding the dependencies
+        if (packageType != PackageType.FAT_JAR
+            || variants.stream().anyMatch(variant -> variant.getPackageType() != PackageType.FAT_JAR)) {
+            combiner.doCombine(new ServiceFileCombinationConfig()
+                .setStrategy(serviceProviderCombination)
+                .setProject(project)
+                .setArchive(archive)
+                .setMojo(this)
+                .setArtifacts(project.getArtifacts())
+                .setThreads(OrderedParallelExecutor.threads(packagingThreads))
+                .setJarIndexCache(getJarIndexCache()));
+        }
+
+        PackageService packageService = getPackageService(packageType);
+        binaryDescriptorCombiners = getBinaryDescriptorCombiners();
+        List<String> order = Collections.emptyList();
+        if (packageType == PackageType.FAT_JAR && classLoadOrder != null && classLoadOrder.isFile()) {
+            try {
+                order = ClassLoadOrder.read(classLoadOrder);
+            } catch (IOException e) {
+                throw new MojoExecutionException("Unable to read the class load order " +
+                    classLoadOrder.getAbsolutePath(), e);
+            }
+            getLog().info("Writing the " + order.size() + " entries of " + classLoadOrder.getName() + " first");
+        }
+        File jar = variants.isEmpty() ? doPackage(packageService, archive, order)
+            : doPackage(packageService, archive, variants, order);
+
+        if (recordClassLoadOrder) {
+            if (packageType != PackageType.FAT_JAR) {
+                getLog().warn("The class load order can only be recorded for fat jars");
+            } else {
+                jar = doPackage(packageService, archive, recordClassLoadOrder(jar));
+            }
+        }
+
+        if (appCds) {
+            createAppCdsArchive(jar);
+        }
+
+        if (classifier != null && attach) {
+            attach(jar, classifier);
         }
 
-        if (jar.isFile() && classifier != null && attach) {
+    }
+
+    private void attach(File jar, String classifier) {
+        if (jar.isFile()) {
             ArtifactHandler handler = new DefaultArtifactHandler("jar");
             Artifact vertxJarArtifact = new DefaultArtifact(project.getGroupId(),
                 project.getArtifactId(), project.getVersion(), "compile",
@@ -162,7 +385,208 @@ public class PackageMojo extends AbstractVertxMojo {
             vertxJarArtifact.setFile(jar);
             this.project.addAttachedArtifact(vertxJarArtifact);
         }
+    }
+
+    /**
+     * Validates the archives built along the main one, and completes their configuration.
+     *
+     * @param main the main archive
+     * @return the archives, empty if there is none
+     * @throws MojoExecutionException if an archive has no classifier, or uses the classifier of another archive
+     */
+    private List<Archive> getVariants(Archive main) throws MojoExecutionException {
+        if (archives == null || archives.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Set<String> classifiers = new HashSet<>();
+        if (classifier != null) {
+            classifiers.add(classifier);
+        }
+        for (Archive variant : archives) {
+            String name = variant.getClassifier();
+            if (name == null || name.trim().isEmpty()) {
+                throw new MojoExecutionException("The archives built along the main one must have a classifier");
+            }
+            if (!classifiers.add(name)) {
+                throw new MojoExecutionException("Several archives use the classifier " + name);
+            }
+            if (variant.getPackageType() == null) {
+                variant.setPackageType(packageType);
+            }
+            if (variant.getDependencySets().isEmpty()) {
+                variant.addDependencySet(new DependencySet());
+            }
+            if (variant.getDescriptorCombinationPatterns().isEmpty()) {
+                variant.setDescriptorCombinationPatterns(new ArrayList<>(main.getDescriptorCombinationPatterns()));
+            }
+            main.getManifest().forEach(variant.getManifest()::putIfAbsent);
+        }
+        return archives;
+    }
+
+    /**
+     * Builds the main archive and the other archives concurrently. The indexes of the dependencies are read first,
+     * and shared by the builds through the index cache. The other archives are attached to the project as soon as
+     * they are built.
+     *
+     * @param packageService the package service of the main archive
+     * @param archive        the main archive
+     * @param variants       the other archives
+     * @param order          the names of the entries written first in the fat jars
+     * @return the main package
+     * @throws MojoExecutionException if an archive cannot be built
+     */
+    private File doPackage(PackageService packageService, Archive archive, List<Archive> variants,
+                           List<String> order) throws MojoExecutionException {
+        List<Archive> all = new ArrayList<>();
+        all.add(archive);
+        all.addAll(variants);
+        // The components are retrieved on the calling thread
+        Map<Archive, PackageService> services = new IdentityHashMap<>();
+        services.put(archive, packageService);
+        for (Archive variant : variants) {
+            services.put(variant, getPackageService(variant.getPackageType()));
+        }
+        readDependencies();
+
+        List<File> files = new ArrayList<>();
+        try {
+            new OrderedParallelExecutor(all.size()).process(all,
+                variant -> doPackage(services.get(variant), variant,
+                    variant.getPackageType() == PackageType.FAT_JAR ? order : Collections.emptyList()),
+                (variant, file) -> {
+                    files.add(file);
+                    if (variant != archive) {
+                        getLog().info("Archive " + variant.getClassifier() + " built in " + file.getName());
+                        attach(file, variant.getClassifier());
+                    }
+                });
+        } catch (MojoExecutionException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new MojoExecutionException("Unable to build the archives", e);
+        }
+        return files.get(0);
+    }
+
+    /**
+     * Reads the index of each dependency, so the archives built concurrently do not read the same dependencies.
+     */
+    private void readDependencies() {
+        JarIndexCache cache = getJarIndexCache();
+        List<File> files = project.getArtifacts().stream()
+            .map(Artifact::getFile)
+            .filter(file -> file != null && file.isFile())
+            .distinct()
+            .collect(Collectors.toList());
+        try {
+            new OrderedParallelExecutor(OrderedParallelExecutor.threads(packagingThreads))
+                .process(files, cache::get, (file, index) -> {
+                    // Only kept in the cache
+                });
+        } catch (Exception e) {
+            // The builds report the dependencies that cannot be read
+            getLog().debug("Unable to read the dependencies: " + e.getMessage());
+        }
+    }
+
+    private File doPackage(PackageService packageService, Archive archive, List<String> order)
+        throws MojoExecutionException {
+        PackageType type = archive.getPackageType();
+        try {
+            return packageService.doPackage(
+                new PackageConfig()
+                    .setArtifacts(project.getArtifacts())
+                    .setMojo(this)
+                    .setOutput(new File(projectBuildDir, isDirectory(type)
+                        ? computeExplodedName(project, archive.getClassifier())
+                        : computeOutputName(project, archive.getClassifier())))
+                    .setProject(project)
+                    .setArchive(archive)
+                    .setThreads(OrderedParallelExecutor.threads(packagingThreads))
+                    .setCompressionThreads(OrderedParallelExecutor.threads(compressionThreads))
+                    .setCompressionLevel(compressionLevel)
+                    .setIncremental(incremental)
+                    .setLayers(layers)
+                    .setCombinationStrategy(type == PackageType.FAT_JAR ? serviceProviderCombination : null)
+                    .setServiceIndex(serviceIndex)
+                    .setBinaryDescriptorCombiners(binaryDescriptorCombiners)
+                    .setEntryOrder(order)
+                    .setShrink(shrink && type == PackageType.FAT_JAR)
+                    .setShrinkKeeps(shrinkKeeps)
+                    .setDuplicateReport(reportDuplicates)
+                    .setJarIndexCache(getJarIndexCache()));
+        } catch (PackagingException e) {
+            throw new MojoExecutionException("Unable to build the " + describe(type)
+                + (archive.getClassifier() != null ? " " + archive.getClassifier() : ""), e);
+        }
+    }
+
+    /**
+     * Launches the fat jar for a training run, and writes the order in which its classes have been loaded.
+     *
+     * @param jar the fat jar
+     * @return the entry names of the loaded classes, in load order
+     * @throws MojoExecutionException if the training run fails or does not load any class from the jar
+     */
+    private List<String> recordClassLoadOrder(File jar) throws MojoExecutionException {
+        getLog().info("Launching " + jar.getName() + " to record the class load order");
+        List<String> order;
+        try {
+            List<String> output = new TrainingRun(jar, getLog())
+                .setJvmArguments(Collections.singletonList(ClassLoadOrder.JVM_OPTION))
+                .setReadyPattern(trainingReadyPattern)
+                .setTimeout(trainingTimeout)
+                .run();
+            order = ClassLoadOrder.parse(output, jar);
+            if (order.isEmpty()) {
+                throw new MojoExecutionException("No class loaded from " + jar.getName() + " during the training " +
+                    "run, check the output with -X");
+            }
+            ClassLoadOrder.write(classLoadOrder, order);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to record the class load order of " + jar.getName(), e);
+        }
+        getLog().info(order.size() + " classes recorded in " + classLoadOrder.getAbsolutePath());
+        return order;
+    }
+
+    private void createAppCdsArchive(File jar) throws MojoExecutionException {
+        if (packageType != PackageType.FAT_JAR) {
+            getLog().warn("The class data sharing archive can only be created for fat jars");
+            return;
+        }
+        if (!AppCdsBuilder.isSupported()) {
+            getLog().warn("The class data sharing archive requires Java 10 or later, skipping it");
+            return;
+        }
+        try {
+            new AppCdsBuilder(jar, getLog())
+                .setDependencies(AppCdsBuilder.fingerprint(project.getArtifacts()))
+                .setReadyPattern(trainingReadyPattern)
+                .setTimeout(trainingTimeout)
+                .build();
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to create the class data sharing archive of " + jar.getName(),
+                e);
+        }
+    }
+
+    private static String describe(PackageType type) {
+        if (type == PackageType.JAR) {
+            return "jar";
+        }
+        if (type == PackageType.EXPLODED) {
+            return "exploded application";
+        }
+        if (type == PackageType.LAYERED) {
+            return "layered application";
+        }
+        return "fat jar";
+    }
 
+    private static boolean isDirectory(PackageType type) {
+        return type == PackageType.EXPLODED || type == PackageType.LAYERED;
     }
 
     private List<ManifestCustomizerService> getManifestCustomizers() throws MojoExecutionException {
@@ -176,6 +600,44 @@ public class PackageMojo extends AbstractVertxMojo {
         return customizers;
     }
 
+    private List<BinaryDescriptorCombiner> getBinaryDescriptorCombiners() throws MojoExecutionException {
+        try {
+            return container.lookupList(BinaryDescriptorCombiner.class);
+        } catch (ComponentLookupException e) {
+            throw new MojoExecutionException("Unable to retrieve the " +
+                BinaryDescriptorCombiner.class.getName() + " components", e);
+        }
+    }
+
+    private PackageService getPackageService(PackageType type) throws MojoExecutionException {
+        if (type == PackageType.JAR) {
+            return lookupPackageService("thin-jar", type + " package type");
+        }
+        if (type == PackageType.EXPLODED) {
+            return lookupPackageService("exploded", type + " package type");
+        }
+        if (type == PackageType.LAYERED) {
+            return lookupPackageService("layered", type + " package type");
+        }
+
+        PackagingEngine engine = packagingEngine == null ? PackagingEngine.SHRINKWRAP : packagingEngine;
+        if (incremental && engine != PackagingEngine.STREAMING) {
+            getLog().info("Incremental packaging requires the " + PackagingEngine.STREAMING + " engine, using it " +
+                "instead of " + engine);
+            engine = PackagingEngine.STREAMING;
+        }
+        return lookupPackageService(engine.hint(), engine + " engine");
+    }
+
+    private PackageService lookupPackageService(String hint, Object description) throws MojoExecutionException {
+        try {
+            return container.lookup(PackageService.class, hint);
+        } catch (ComponentLookupException e) {
+            throw new MojoExecutionException("Unable to retrieve the " +
+                PackageService.class.getName() + " component for the " + description, e);
+        }
+    }
+
     public boolean isSkipScmMetadata() {
         return skipScmMetadata;
     }
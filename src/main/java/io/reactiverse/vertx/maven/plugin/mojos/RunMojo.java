@@ -25,6 +25,7 @@ import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.plugins.annotations.ResolutionScope;
 import org.codehaus.plexus.util.cli.CommandLineUtils;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -50,6 +51,14 @@ public class RunMojo extends AbstractRunMojo {
     @Parameter(name = "runArgs", property = "vertx.runArgs")
     protected List<String> runArgs;
 
+    /**
+     * Whether or not the application is launched from the exploded application built with the {@code EXPLODED}
+     * package type (in {@code target/${project.build.finalName}}). If the exploded application does not exist, the
+     * project class path is used.
+     */
+    @Parameter(name = "exploded", property = "vertx.run.exploded", defaultValue = "false")
+    protected boolean exploded;
+
     @Override
     public void execute() throws MojoExecutionException, MojoFailureException {
         if (optionalRunExtraArgs == null) {
@@ -70,6 +79,11 @@ public class RunMojo extends AbstractRunMojo {
             optionalRunExtraArgs.addAll(runArgs);
         }
 
+        if (exploded) {
+            explodedApplication = new File(project.getBuild().getDirectory(),
+                PackageMojo.computeExplodedName(project, null));
+        }
+
         super.execute();
     }
 }
@@ -48,7 +48,9 @@ public class StartMojo extends AbstractRunMojo {
 
     /**
      * this parameter is used to decide which mode the application should be started, it can have two values
-     * &quot;jar&quot; or &quot;exploded&quot; default mode is &quot;jar&quot;
+     * &quot;jar&quot; or &quot;exploded&quot; default mode is &quot;jar&quot;. In &quot;exploded&quot; mode, the
+     * application built with the {@code EXPLODED} package type is launched if it exists, otherwise the project
+     * class path is used.
      */
     @Parameter(alias = "mode", property = "vertx.start.mode", defaultValue = "jar")
     protected String runMode;
@@ -119,6 +121,8 @@ public class StartMojo extends AbstractRunMojo {
                     + fatjar.getAbsolutePath());
             }
         } else {
+            explodedApplication = new File(project.getBuild().getDirectory(),
+                PackageMojo.computeExplodedName(project, classifier));
             addClasspath(argsList);
             if (isVertxLauncher(launcher)) {
                 argsList.add(launcher);
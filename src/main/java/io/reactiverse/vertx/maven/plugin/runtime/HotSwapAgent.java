@@ -0,0 +1,109 @@
+/*
+ *
+ *   Copyright (c) 2016-2017 Red Hat, Inc.
+ *
+ *   Red Hat licenses this file to you under the Apache License, version
+ *   2.0 (the "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *   implied.  See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package io.reactiverse.vertx.maven.plugin.runtime;
+
+import java.io.*;
+import java.lang.instrument.ClassDefinition;
+import java.lang.instrument.Instrumentation;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Java agent redefining the classes of the application when requested by the plugin, during the redeployment. This
+ * class is the only content of the agent jar, and only depends on the JDK.
+ * <p>
+ * The agent arguments are the port of the control channel opened by the plugin on the loopback interface, and the
+ * token authenticating the agent: {@code port:token}. The agent connects to the plugin when the JVM starts, and
+ * sends the token. The plugin then sends the classes to redefine: their count, and for each class its binary name,
+ * the length of its content and its content. The agent replies with a boolean, {@code true} if the loaded classes
+ * have been redefined, and a message: the number of redefined classes, or the reason of the failure.
+ */
+public final class HotSwapAgent {
+
+    private HotSwapAgent() {
+        // Avoid direct instantiation
+    }
+
+    /**
+     * Starts the agent.
+     *
+     * @param arguments       the agent arguments: {@code port:token}
+     * @param instrumentation the instrumentation
+     */
+    public static void premain(String arguments, Instrumentation instrumentation) {
+        int separator = arguments.indexOf(':');
+        int port = Integer.parseInt(arguments.substring(0, separator));
+        String token = arguments.substring(separator + 1);
+        Thread thread = new Thread(() -> serve(port, token, instrumentation), "vertx-hot-swap-agent");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static void serve(int port, String token, Instrumentation instrumentation) {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            output.writeUTF(token);
+            output.flush();
+            while (true) {
+                int count = input.readInt();
+                Map<String, byte[]> classes = new HashMap<>();
+                for (int i = 0; i < count; i++) {
+                    String name = input.readUTF();
+                    byte[] content = new byte[input.readInt()];
+                    input.readFully(content);
+                    classes.put(name, content);
+                }
+                try {
+                    int redefined = redefine(instrumentation, classes);
+                    output.writeBoolean(true);
+                    output.writeUTF(redefined + " loaded classes redefined");
+                } catch (Throwable e) {
+                    // Typically an UnsupportedOperationException, the redeployment is used instead
+                    output.writeBoolean(false);
+                    output.writeUTF(String.valueOf(e));
+                }
+                output.flush();
+            }
+        } catch (IOException e) {
+            // The plugin has stopped, or the connection is refused
+        }
+    }
+
+    private static int redefine(Instrumentation instrumentation, Map<String, byte[]> classes) throws Exception {
+        if (!instrumentation.isRedefineClassesSupported()) {
+            throw new UnsupportedOperationException("The JVM does not support the redefinition of classes");
+        }
+        // The classes that are not loaded yet are loaded from the classes directory when needed
+        List<ClassDefinition> definitions = new ArrayList<>();
+        for (Class<?> clazz : instrumentation.getAllLoadedClasses()) {
+            byte[] content = classes.get(clazz.getName());
+            if (content != null) {
+                definitions.add(new ClassDefinition(clazz, content));
+            }
+        }
+        if (!definitions.isEmpty()) {
+            instrumentation.redefineClasses(definitions.toArray(new ClassDefinition[0]));
+        }
+        return definitions.size();
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ *
+ *   Copyright (c) 2016-2017 Red Hat, Inc.
+ *
+ *   Red Hat licenses this file to you under the Apache License, version
+ *   2.0 (the "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *   implied.  See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package io.reactiverse.vertx.maven.plugin.runtime;
+
+import java.io.*;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Looks up service providers from the index computed when the fat jar has been packaged, instead of iterating over
+ * the {@code META-INF/services} resources of the class path. This class is embedded in the fat jar when the service
+ * index is enabled, and only depends on the JDK.
+ * <p>
+ * The index ({@value #LOCATION}) contains one line per service: {@code service=provider,provider}, the providers
+ * being listed in the order of the combined descriptor. When there is no index, or when the index does not list the
+ * requested service, the lookup falls back to {@link ServiceLoader}.
+ */
+public final class ServiceIndex {
+
+    /**
+     * The location of the index in the archive.
+     */
+    public static final String LOCATION = "META-INF/vertx/service-index";
+
+    /**
+     * The indexes read by class loader. The class loaders are weakly referenced, so the ones of the redeployed
+     * applications can be collected.
+     */
+    private static final Map<ClassLoader, Map<String, List<String>>> INDEXES =
+        Collections.synchronizedMap(new WeakHashMap<>());
+
+    private ServiceIndex() {
+        // Avoid direct instantiation
+    }
+
+    /**
+     * Instantiates the providers of the given service, using the context class loader.
+     *
+     * @param service the service
+     * @param <S>     the type of service
+     * @return the providers, in the order of the descriptor
+     */
+    public static <S> List<S> load(Class<S> service) {
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        return load(service, loader != null ? loader : ServiceIndex.class.getClassLoader());
+    }
+
+    /**
+     * Instantiates the providers of the given service.
+     *
+     * @param service the service
+     * @param loader  the class loader used to read the index and load the providers
+     * @param <S>     the type of service
+     * @return the providers, in the order of the descriptor
+     * @throws ServiceConfigurationError if a provider cannot be instantiated
+     */
+    public static <S> List<S> load(Class<S> service, ClassLoader loader) {
+        List<String> providers = getProviders(service.getName(), loader);
+        List<S> instances = new ArrayList<>();
+        if (providers == null) {
+            for (S instance : ServiceLoader.load(service, loader)) {
+                instances.add(instance);
+            }
+            return instances;
+        }
+        for (String provider : providers) {
+            try {
+                Class<? extends S> clazz = Class.forName(provider, false, loader).asSubclass(service);
+                instances.add(clazz.getDeclaredConstructor().newInstance());
+            } catch (Exception | LinkageError e) {
+                throw new ServiceConfigurationError(service.getName() + ": Provider " + provider +
+                    " could not be instantiated", e);
+            }
+        }
+        return instances;
+    }
+
+    /**
+     * Gets the names of the providers of the given service from the index.
+     *
+     * @param service the name of the service
+     * @param loader  the class loader used to read the index
+     * @return the names of the providers, {@code null} if the index is missing or does not list the service
+     */
+    public static List<String> getProviders(String service, ClassLoader loader) {
+        Map<String, List<String>> index = INDEXES.computeIfAbsent(loader, ServiceIndex::readIndex);
+        return index.get(service);
+    }
+
+    private static Map<String, List<String>> readIndex(ClassLoader loader) {
+        URL url = loader.getResource(LOCATION);
+        if (url == null) {
+            return Collections.emptyMap();
+        }
+        try (InputStream input = url.openStream()) {
+            return read(input);
+        } catch (IOException e) {
+            throw new ServiceConfigurationError("Unable to read the service index " + url, e);
+        }
+    }
+
+    /**
+     * Reads an index.
+     *
+     * @param input the stream, not closed by this method
+     * @return the providers of each service
+     * @throws IOException if the stream cannot be read
+     */
+    public static Map<String, List<String>> read(InputStream input) throws IOException {
+        Map<String, List<String>> index = new HashMap<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            int separator = line.indexOf('=');
+            if (separator <= 0) {
+                continue;
+            }
+            String providers = line.substring(separator + 1);
+            index.put(line.substring(0, separator), providers.isEmpty() ? Collections.emptyList()
+                : Collections.unmodifiableList(Arrays.asList(providers.split(","))));
+        }
+        return index;
+    }
+
+    /**
+     * Writes an index.
+     *
+     * @param index the providers of each service
+     * @return the content of the index, the services being sorted by name
+     */
+    public static byte[] write(Map<String, List<String>> index) {
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<String, List<String>> entry : new TreeMap<>(index).entrySet()) {
+            builder.append(entry.getKey()).append('=');
+            builder.append(String.join(",", entry.getValue())).append('\n');
+        }
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ *
+ *   Copyright (c) 2016-2017 Red Hat, Inc.
+ *
+ *   Red Hat licenses this file to you under the Apache License, version
+ *   2.0 (the "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *   implied.  See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package io.reactiverse.vertx.maven.plugin.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The information read from a class file: its name, the name of its source file, its shape, and the names of the
+ * classes it possibly references.
+ * <p>
+ * The references are read from the constant pool, and are a superset of the actual references: each UTF-8 constant
+ * is considered as a class name (in internal or binary form), and the {@code L...;} types it contains (descriptors,
+ * signatures) are extracted. String constants naming a class are therefore included, as they are commonly loaded by
+ * reflection.
+ * <p>
+ * The shape of a class is what cannot change when a class is redefined in a running JVM: its modifiers, its super
+ * class and interfaces, and the modifiers, names and descriptors of its fields and methods. Two versions of a class
+ * with the same shape only differ by their method bodies (and constants, attributes...).
+ */
+public class ClassFile {
+
+    private final String name;
+
+    private final String sourceFile;
+
+    private final Set<String> references;
+
+    private final String shape;
+
+    private ClassFile(String name, String sourceFile, Set<String> references, String shape) {
+        this.name = name;
+        this.sourceFile = sourceFile;
+        this.references = references;
+        this.shape = shape;
+    }
+
+    /**
+     * Parses a class file.
+     *
+     * @param bytes the content of the class file
+     * @return the information read from the class file
+     * @throws IOException if the class file is malformed
+     */
+    public static ClassFile read(byte[] bytes) throws IOException {
+        Set<String> references = new HashSet<>();
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (input.readInt() != 0xCAFEBABE) {
+            throw new IOException("Not a class file");
+        }
+        input.readUnsignedShort();
+        input.readUnsignedShort();
+        int count = input.readUnsignedShort();
+        String[] utf8 = new String[count];
+        int[] classes = new int[count];
+        for (int i = 1; i < count; i++) {
+            int tag = input.readUnsignedByte();
+            switch (tag) {
+                case 1:
+                    utf8[i] = input.readUTF();
+                    addReferences(utf8[i], references);
+                    break;
+                case 7:
+                    classes[i] = input.readUnsignedShort();
+                    break;
+                case 8:
+                case 16:
+                case 19:
+                case 20:
+                    input.skipBytes(2);
+                    break;
+                case 15:
+                    input.skipBytes(3);
+                    break;
+                case 3:
+                case 4:
+                case 9:
+                case 10:
+                case 11:
+                case 12:
+                case 17:
+                case 18:
+                    input.skipBytes(4);
+                    break;
+                case 5:
+                case 6:
+                    // Long and double constants take two entries
+                    input.skipBytes(8);
+                    i++;
+                    break;
+                default:
+                    throw new IOException("Unknown constant pool tag " + tag);
+            }
+        }
+
+        StringBuilder shape = new StringBuilder();
+        shape.append(input.readUnsignedShort());
+        String name = utf8[classes[input.readUnsignedShort()]];
+        int superClass = input.readUnsignedShort();
+        shape.append(' ').append(superClass == 0 ? "" : utf8[classes[superClass]]);
+        int interfaces = input.readUnsignedShort();
+        for (int i = 0; i < interfaces; i++) {
+            shape.append(' ').append(utf8[classes[input.readUnsignedShort()]]);
+        }
+        // Fields and methods, the order of the methods does not matter
+        for (int kind = 0; kind < 2; kind++) {
+            int size = input.readUnsignedShort();
+            List<String> members = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                int access = input.readUnsignedShort();
+                String member = utf8[input.readUnsignedShort()];
+                members.add(access + " " + member + " " + utf8[input.readUnsignedShort()]);
+                skipAttributes(input);
+            }
+            if (kind == 1) {
+                Collections.sort(members);
+            }
+            members.forEach(member -> shape.append('\n').append(member));
+        }
+        String sourceFile = null;
+        int attributes = input.readUnsignedShort();
+        for (int i = 0; i < attributes; i++) {
+            String attribute = utf8[input.readUnsignedShort()];
+            int length = input.readInt();
+            if ("SourceFile".equals(attribute)) {
+                sourceFile = utf8[input.readUnsignedShort()];
+            } else {
+                input.skipBytes(length);
+            }
+        }
+        return new ClassFile(name, sourceFile, references, shape.toString());
+    }
+
+    private static void skipAttributes(DataInputStream input) throws IOException {
+        int attributes = input.readUnsignedShort();
+        for (int i = 0; i < attributes; i++) {
+            input.skipBytes(2);
+            input.skipBytes(input.readInt());
+        }
+    }
+
+    private static void addReferences(String constant, Set<String> references) {
+        if (constant.isEmpty()) {
+            return;
+        }
+        references.add(constant.replace('.', '/'));
+        int start = constant.indexOf('L');
+        while (start != -1) {
+            int end = constant.indexOf(';', start);
+            if (end == -1) {
+                break;
+            }
+            String type = constant.substring(start + 1, end);
+            int generic = type.indexOf('<');
+            references.add(generic == -1 ? type : type.substring(0, generic));
+            start = constant.indexOf('L', start + 1);
+        }
+    }
+
+    /**
+     * @return the name of the class, in internal form
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the name of the source file (without directory), {@code null} if not recorded by the compiler
+     */
+    public String getSourceFile() {
+        return sourceFile;
+    }
+
+    /**
+     * @return the shape of the class: two versions of a class can replace each other in a running JVM if they have
+     * the same shape
+     */
+    public String getShape() {
+        return shape;
+    }
+
+    /**
+     * @return the names of the classes possibly referenced by the class, in internal form
+     */
+    public Set<String> getReferences() {
+        return references;
+    }
+}
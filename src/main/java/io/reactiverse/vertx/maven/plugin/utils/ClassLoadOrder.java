@@ -0,0 +1,109 @@
+/*
+ *
+ *   Copyright (c) 2016-2017 Red Hat, Inc.
+ *
+ *   Red Hat licenses this file to you under the Apache License, version
+ *   2.0 (the "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *   implied.  See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package io.reactiverse.vertx.maven.plugin.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The order in which the classes of an application are loaded at startup, recorded from a training run with
+ * {@code -verbose:class}. The order is stored as a text file listing one entry name per line (such as
+ * {@code org/acme/Main.class}), lines starting with {@code #} being comments, so it can be kept and reused by the
+ * next builds without training again.
+ */
+public class ClassLoadOrder {
+
+    /**
+     * The JVM option logging the loaded classes. Java 8 prints {@code [Loaded <class> from <source>]}, later
+     * versions print {@code [class,load] <class> source: <source>} (same as {@code -Xlog:class+load}).
+     */
+    public static final String JVM_OPTION = "-verbose:class";
+
+    private static final Pattern JAVA_8 = Pattern.compile(".*\\[Loaded (\\S+) from (.+)]\\s*$");
+
+    private static final Pattern UNIFIED_LOGGING = Pattern.compile(".*\\[class,load\\s*]\\s*(\\S+) source: (.+)$");
+
+    private ClassLoadOrder() {
+        // Avoid direct instantiation
+    }
+
+    /**
+     * Extracts the classes loaded from the given jar from the output of a JVM started with {@link #JVM_OPTION}.
+     *
+     * @param output the lines written by the JVM
+     * @param jar    the jar, only the classes loaded from a source containing its name are kept
+     * @return the entry names of the classes, in load order, without duplicates
+     */
+    public static List<String> parse(List<String> output, File jar) {
+        Set<String> entries = new LinkedHashSet<>();
+        for (String line : output) {
+            Matcher matcher = JAVA_8.matcher(line);
+            if (!matcher.matches()) {
+                matcher = UNIFIED_LOGGING.matcher(line);
+                if (!matcher.matches()) {
+                    continue;
+                }
+            }
+            if (matcher.group(2).contains(jar.getName())) {
+                entries.add(matcher.group(1).replace('.', '/') + ".class");
+            }
+        }
+        return new ArrayList<>(entries);
+    }
+
+    /**
+     * Reads an order file.
+     *
+     * @param file the file
+     * @return the entry names, in order
+     * @throws IOException if the file cannot be read
+     */
+    public static List<String> read(File file) throws IOException {
+        List<String> entries = new ArrayList<>();
+        for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+            String entry = line.trim();
+            if (!entry.isEmpty() && !entry.startsWith("#")) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Writes an order file.
+     *
+     * @param file    the file, its parent directories are created if needed
+     * @param entries the entry names, in order
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(File file, List<String> entries) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add("# Class load order recorded by the vertx-maven-plugin, one entry per line");
+        lines.addAll(entries);
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            Files.createDirectories(parent.toPath());
+        }
+        Files.write(file.toPath(), lines, StandardCharsets.UTF_8);
+    }
+}
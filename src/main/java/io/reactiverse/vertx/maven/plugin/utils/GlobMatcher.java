@@ -0,0 +1,198 @@
+/*
+ *
+ *   Copyright (c) 2016-2017 Red Hat, Inc.
+ *
+ *   Red Hat licenses this file to you under the Apache License, version
+ *   2.0 (the "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *   implied.  See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package io.reactiverse.vertx.maven.plugin.utils;
+
+import java.util.*;
+
+/**
+ * A set of patterns compiled once, and matched against many paths. The patterns have the semantic of
+ * {@link org.apache.maven.shared.utils.io.SelectorUtils#match(String, String)}: {@code *} matches any sequence of
+ * characters (including {@code /}, so {@code **} is equivalent to {@code *}), {@code ?} matches exactly one character,
+ * and the match is case-sensitive.
+ * <p>
+ * Patterns without wildcard are looked up in a hash set. The other patterns are split in literal parts (prefix,
+ * suffix, and the parts between the {@code *}), and indexed by the last character of their suffix, so a path is only
+ * checked against the patterns that can end like it. Unlike {@code SelectorUtils}, matching a path does not allocate
+ * memory.
+ */
+public class GlobMatcher {
+
+    private static final GlobMatcher EMPTY = new GlobMatcher(Collections.emptySet(), Collections.emptyMap(),
+        new Glob[0]);
+
+    private final Set<String> exact;
+
+    private final Map<Character, Glob[]> byLastCharacter;
+
+    private final Glob[] others;
+
+    private GlobMatcher(Set<String> exact, Map<Character, Glob[]> byLastCharacter, Glob[] others) {
+        this.exact = exact;
+        this.byLastCharacter = byLastCharacter;
+        this.others = others;
+    }
+
+    /**
+     * Compiles the given patterns.
+     *
+     * @param patterns the patterns, may be {@code null}
+     * @return the matcher, matching a path if at least one of the patterns matches it
+     */
+    public static GlobMatcher compile(Collection<String> patterns) {
+        if (patterns == null || patterns.isEmpty()) {
+            return EMPTY;
+        }
+        Set<String> exact = new HashSet<>();
+        Map<Character, List<Glob>> byLastCharacter = new HashMap<>();
+        List<Glob> others = new ArrayList<>();
+        for (String pattern : new LinkedHashSet<>(patterns)) {
+            if (pattern.indexOf('*') == -1 && pattern.indexOf('?') == -1) {
+                exact.add(pattern);
+                continue;
+            }
+            Glob glob = new Glob(pattern);
+            char last = pattern.charAt(pattern.length() - 1);
+            if (last == '*' || last == '?') {
+                others.add(glob);
+            } else {
+                byLastCharacter.computeIfAbsent(last, c -> new ArrayList<>()).add(glob);
+            }
+        }
+        Map<Character, Glob[]> index = new HashMap<>();
+        byLastCharacter.forEach((c, list) -> index.put(c, list.toArray(new Glob[0])));
+        return new GlobMatcher(exact, index, others.toArray(new Glob[0]));
+    }
+
+    /**
+     * @return whether or not this matcher has no pattern, and therefore never matches
+     */
+    public boolean isEmpty() {
+        return exact.isEmpty() && byLastCharacter.isEmpty() && others.length == 0;
+    }
+
+    /**
+     * Checks whether or not at least one of the patterns matches the given path.
+     *
+     * @param path the path
+     * @return {@code true} if the path matches
+     */
+    public boolean matches(String path) {
+        if (exact.contains(path)) {
+            return true;
+        }
+        if (!path.isEmpty()) {
+            Glob[] candidates = byLastCharacter.get(path.charAt(path.length() - 1));
+            if (candidates != null && matches(candidates, path)) {
+                return true;
+            }
+        }
+        return matches(others, path);
+    }
+
+    private static boolean matches(Glob[] globs, String path) {
+        for (Glob glob : globs) {
+            if (glob.matches(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A pattern containing wildcards: {@code prefix*part*...*part*suffix}, each literal possibly containing
+     * {@code ?}. As the literals have a fixed length, placing each part at its first occurrence is enough to find a
+     * match.
+     */
+    private static class Glob {
+
+        private final String prefix;
+
+        private final String suffix;
+
+        private final String[] parts;
+
+        private final boolean star;
+
+        private final int minLength;
+
+        Glob(String pattern) {
+            int first = pattern.indexOf('*');
+            star = first != -1;
+            if (!star) {
+                prefix = pattern;
+                suffix = "";
+                parts = new String[0];
+            } else {
+                int last = pattern.lastIndexOf('*');
+                prefix = pattern.substring(0, first);
+                suffix = pattern.substring(last + 1);
+                List<String> list = new ArrayList<>();
+                for (String part : pattern.substring(first + 1, Math.max(first + 1, last)).split("\\*")) {
+                    if (!part.isEmpty()) {
+                        list.add(part);
+                    }
+                }
+                parts = list.toArray(new String[0]);
+            }
+            int length = prefix.length() + suffix.length();
+            for (String part : parts) {
+                length += part.length();
+            }
+            minLength = length;
+        }
+
+        boolean matches(String path) {
+            int length = path.length();
+            if (length < minLength || !star && length != minLength) {
+                return false;
+            }
+            if (!regionMatches(path, 0, prefix) || !regionMatches(path, length - suffix.length(), suffix)) {
+                return false;
+            }
+            int start = prefix.length();
+            int end = length - suffix.length();
+            for (String part : parts) {
+                int index = indexOf(path, part, start, end);
+                if (index == -1) {
+                    return false;
+                }
+                start = index + part.length();
+            }
+            return true;
+        }
+
+        private static int indexOf(String path, String part, int start, int end) {
+            for (int i = start; i + part.length() <= end; i++) {
+                if (regionMatches(path, i, part)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private static boolean regionMatches(String path, int offset, String literal) {
+            for (int i = 0; i < literal.length(); i++) {
+                char c = literal.charAt(i);
+                if (c != '?' && c != path.charAt(offset + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
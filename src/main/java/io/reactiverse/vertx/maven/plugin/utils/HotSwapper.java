@@ -0,0 +1,352 @@
+/*
+ *
+ *   Copyright (c) 2016-2017 Red Hat, Inc.
+ *
+ *   Red Hat licenses this file to you under the Apache License, version
+ *   2.0 (the "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *   implied.  See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package io.reactiverse.vertx.maven.plugin.utils;
+
+import io.reactiverse.vertx.maven.plugin.functions.BuildTask;
+import io.reactiverse.vertx.maven.plugin.runtime.HotSwapAgent;
+import org.apache.commons.io.IOUtils;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.SecureRandom;
+import java.util.*;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Last step of the incremental build, pushing the rebuilt classes to the running application instead of redeploying
+ * it, when possible.
+ * <p>
+ * The application is started with the {@link HotSwapAgent}, connecting to the control channel opened by this class
+ * on the loopback interface. Vert.x no longer watches the classes directory, but a trigger directory written by this
+ * class when the application must be redeployed. After each build, the classes directory is compared with its
+ * previous state:
+ * <ul>
+ * <li>when only classes have changed, and the shape (see {@link ClassFile#getShape()}) of the existing ones is
+ * unchanged, i.e. only method bodies have changed, the existing classes are redefined in the running application by
+ * the agent, and the new ones are loaded when used</li>
+ * <li>otherwise (deleted classes, changed shape, changed resources, agent not connected or failing), the
+ * redeployment is triggered</li>
+ * </ul>
+ * The path taken, and the time it took, are reported.
+ */
+public class HotSwapper implements BuildTask, Closeable {
+
+    private static final String AGENT = HotSwapAgent.class.getName().replace('.', '/') + ".class";
+
+    private static final int TIMEOUT = 10000;
+
+    private final Log log;
+
+    private final Path classes;
+
+    private final Path trigger;
+
+    private final File agent;
+
+    private final ServerSocket server;
+
+    private final String token;
+
+    private Map<Path, Entry> entries;
+
+    private Socket connection;
+
+    private int redeployments;
+
+    private HotSwapper(Log log, Path classes, Path trigger, File agent, ServerSocket server, String token) {
+        this.log = log;
+        this.classes = classes;
+        this.trigger = trigger;
+        this.agent = agent;
+        this.server = server;
+        this.token = token;
+    }
+
+    /**
+     * Writes the agent jar, opens the control channel, and records the current state of the classes directory.
+     *
+     * @param classesDirectory the classes directory of the application
+     * @param workDirectory    the directory where the agent jar and the redeployment trigger are written
+     * @param log              the logger
+     * @return the hot swapper
+     * @throws IOException if the agent jar cannot be written, or the control channel cannot be opened
+     */
+    public static HotSwapper start(File classesDirectory, File workDirectory, Log log) throws IOException {
+        Path trigger = workDirectory.toPath().resolve("redeploy");
+        Files.createDirectories(trigger);
+        File agent = new File(workDirectory, "hot-swap-agent.jar");
+        writeAgent(agent);
+
+        byte[] random = new byte[16];
+        new SecureRandom().nextBytes(random);
+        StringBuilder token = new StringBuilder();
+        for (byte b : random) {
+            token.append(String.format("%02x", b));
+        }
+        ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        HotSwapper swapper = new HotSwapper(log, classesDirectory.toPath().toAbsolutePath(), trigger, agent, server,
+            token.toString());
+        swapper.entries = swapper.scan(Collections.emptyMap());
+
+        Thread thread = new Thread(swapper::accept, "vertx-hot-swap-channel");
+        thread.setDaemon(true);
+        thread.start();
+        return swapper;
+    }
+
+    private static void writeAgent(File jar) throws IOException {
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().putValue("Premain-Class", HotSwapAgent.class.getName());
+        manifest.getMainAttributes().putValue("Can-Redefine-Classes", "true");
+        try (InputStream input = HotSwapAgent.class.getResourceAsStream("/" + AGENT);
+             JarOutputStream output = new JarOutputStream(new FileOutputStream(jar), manifest)) {
+            if (input == null) {
+                throw new IOException("Unable to find the class " + HotSwapAgent.class.getName());
+            }
+            output.putNextEntry(new JarEntry(AGENT));
+            IOUtils.copy(input, output);
+            output.closeEntry();
+        }
+    }
+
+    /**
+     * @return the JVM option starting the agent in the application
+     */
+    public String getAgentOption() {
+        return "-javaagent:" + agent.getAbsolutePath() + "=" + server.getLocalPort() + ":" + token;
+    }
+
+    /**
+     * @return the pattern of the files watched by Vert.x to trigger the redeployment
+     */
+    public String getRedeployPattern() {
+        return trigger.toString() + "/**/*";
+    }
+
+    /**
+     * @return {@code true} if the agent of the running application is connected
+     */
+    public synchronized boolean isConnected() {
+        return connection != null;
+    }
+
+    /**
+     * Accepts the connections of the agent: one per start of the application.
+     */
+    private void accept() {
+        while (!server.isClosed()) {
+            try {
+                Socket socket = server.accept();
+                socket.setSoTimeout(TIMEOUT);
+                if (!token.equals(new DataInputStream(socket.getInputStream()).readUTF())) {
+                    socket.close();
+                    continue;
+                }
+                Socket previous;
+                synchronized (this) {
+                    previous = connection;
+                    connection = socket;
+                }
+                IOUtils.closeQuietly(previous);
+                log.debug("Hot swap agent connected");
+            } catch (IOException e) {
+                if (!server.isClosed()) {
+                    log.debug("Hot swap agent connection failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void build(Set<Path> changes) throws Exception {
+        long begin = System.currentTimeMillis();
+        Map<Path, Entry> previous = entries;
+        entries = scan(previous);
+
+        Map<String, byte[]> redefined = new LinkedHashMap<>();
+        int added = 0;
+        String reason = null;
+        for (Map.Entry<Path, Entry> entry : entries.entrySet()) {
+            Entry before = previous.get(entry.getKey());
+            Entry after = entry.getValue();
+            if (before != null && before.isSameFile(after)) {
+                continue;
+            }
+            String name = classes.relativize(entry.getKey()).toString();
+            if (before == null && after.shape != null) {
+                // New classes (e.g. anonymous classes) are loaded from the classes directory when used
+                added++;
+                continue;
+            } else if (before == null) {
+                reason = "resource " + name + " added";
+            } else if (after.shape == null || before.shape == null) {
+                reason = "resource " + name + " changed";
+            } else if (!before.shape.equals(after.shape)) {
+                reason = "the fields, methods or hierarchy of " + after.name + " changed";
+            } else {
+                redefined.put(after.name.replace('/', '.'), Files.readAllBytes(entry.getKey()));
+                continue;
+            }
+            break;
+        }
+        if (reason == null) {
+            for (Path path : previous.keySet()) {
+                if (!entries.containsKey(path)) {
+                    reason = classes.relativize(path) + " deleted";
+                    break;
+                }
+            }
+        }
+        if (reason == null && redefined.isEmpty()) {
+            log.debug(added == 0 ? "No change of the classes directory" : added + " classes added");
+            return;
+        }
+
+        if (reason == null) {
+            String result = push(redefined);
+            if (result.startsWith("+")) {
+                log.info("Hot swapped " + redefined.size() + " classes (" + result.substring(1)
+                    + (added > 0 ? ", " + added + " classes added" : "") + ") in "
+                    + (System.currentTimeMillis() - begin) + " ms");
+                return;
+            }
+            reason = result;
+        }
+        redeploy();
+        log.info("Redeploying the application: " + reason + " (triggered in " + (System.currentTimeMillis() - begin)
+            + " ms)");
+    }
+
+    /**
+     * Sends the classes to the agent.
+     *
+     * @return the message of the agent prefixed with {@code +} on success, the reason of the failure otherwise
+     */
+    private synchronized String push(Map<String, byte[]> redefined) {
+        if (connection == null) {
+            return "the hot swap agent is not connected";
+        }
+        try {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()));
+            output.writeInt(redefined.size());
+            for (Map.Entry<String, byte[]> entry : redefined.entrySet()) {
+                output.writeUTF(entry.getKey());
+                output.writeInt(entry.getValue().length);
+                output.write(entry.getValue());
+            }
+            output.flush();
+            DataInputStream input = new DataInputStream(connection.getInputStream());
+            boolean success = input.readBoolean();
+            String message = input.readUTF();
+            return success ? "+" + message : "the classes cannot be redefined: " + message;
+        } catch (IOException e) {
+            // The application has stopped, it is restarted by the redeployment
+            IOUtils.closeQuietly(connection);
+            connection = null;
+            return "the hot swap agent is not reachable: " + e.getMessage();
+        }
+    }
+
+    /**
+     * Triggers the redeployment: a new file is written in the trigger directory, and the previous one is deleted.
+     */
+    private void redeploy() throws IOException {
+        redeployments++;
+        Files.write(trigger.resolve("redeploy-" + redeployments), String.valueOf(System.currentTimeMillis())
+            .getBytes("UTF-8"));
+        Files.deleteIfExists(trigger.resolve("redeploy-" + (redeployments - 1)));
+    }
+
+    /**
+     * Reads the state of the classes directory. The shapes of the classes are read again only for the changed files.
+     */
+    private Map<Path, Entry> scan(Map<Path, Entry> previous) throws IOException {
+        Map<Path, Entry> result = new LinkedHashMap<>();
+        if (!Files.isDirectory(classes)) {
+            return result;
+        }
+        List<Path> files;
+        try (Stream<Path> stream = Files.walk(classes)) {
+            files = stream.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+        for (Path file : files) {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            Entry entry = new Entry(attributes.size(), attributes.lastModifiedTime().toMillis());
+            Entry before = previous.get(file);
+            if (before != null && before.isSameFile(entry)) {
+                result.put(file, before);
+                continue;
+            }
+            if (file.toString().endsWith(".class")) {
+                try {
+                    ClassFile clazz = ClassFile.read(Files.readAllBytes(file));
+                    entry.name = clazz.getName();
+                    entry.shape = clazz.getShape();
+                } catch (IOException e) {
+                    // Not a valid class file, handled as a resource
+                    log.debug("Unable to read " + file + ": " + e.getMessage());
+                }
+            }
+            result.put(file, entry);
+        }
+        return result;
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+        synchronized (this) {
+            IOUtils.closeQuietly(connection);
+        }
+    }
+
+    /**
+     * A file of the classes directory, with the name and shape of the class if it is a class file.
+     */
+    private static class Entry {
+
+        private final long size;
+
+        private final long lastModified;
+
+        private String name;
+
+        private String shape;
+
+        Entry(long size, long lastModified) {
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        boolean isSameFile(Entry other) {
+            return size == other.size && lastModified == other.lastModified;
+        }
+    }
+}
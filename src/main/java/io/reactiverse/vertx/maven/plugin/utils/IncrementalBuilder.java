@@ -17,6 +17,7 @@
 
 package io.reactiverse.vertx.maven.plugin.utils;
 
+import io.reactiverse.vertx.maven.plugin.functions.BuildTask;
 import org.apache.commons.io.monitor.FileAlterationListenerAdaptor;
 import org.apache.commons.io.monitor.FileAlterationMonitor;
 import org.apache.commons.io.monitor.FileAlterationObserver;
@@ -25,47 +26,145 @@ import org.apache.maven.plugin.logging.Log;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.util.Hashtable;
-import java.util.List;
-import java.util.Set;
-import java.util.concurrent.Callable;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardWatchEventKinds.*;
 
 /**
+ * Watches the source directories, and runs the build chain when a file is created, modified or deleted.
+ * <p>
+ * The changes are not built one by one: they are collected until no change has been notified during the quiet period,
+ * and the whole batch is handed to the build tasks. Builds never overlap: the changes notified while a build runs are
+ * collected for a single follow-up build, started once the current one has completed.
+ * <p>
+ * The directories are watched with the {@link WatchService} of the file system (inotify on Linux), each directory of
+ * the tree being registered, so changes are notified as they happen instead of being detected by scanning the tree.
+ * The directories that cannot be watched (watch service unavailable or implemented by polling, watch limit reached,
+ * directory not created yet) are scanned every {@code watchTimeInterval} milliseconds with a
+ * {@link FileAlterationMonitor}.
+ *
  * @author kameshs
  */
 public class IncrementalBuilder extends FileAlterationListenerAdaptor implements Runnable, Closeable {
 
     private final Log logger;
 
-    private final List<Callable<Void>> chain;
+    private final List<BuildTask> chain;
+
+    private final long watchTimeInterval;
+
+    private final long quietPeriod;
+
+    private final ScheduledExecutorService scheduler;
+
+    private Set<Path> pending = new LinkedHashSet<>();
+
+    private ScheduledFuture<?> scheduled;
+
+    private boolean building;
+
+    private final WatchService watcher;
+
+    private final Map<WatchKey, Path> keys = new HashMap<>();
+
+    private final Map<Path, WatchKey> directories = new HashMap<>();
+
+    private volatile boolean closed;
 
     private FileAlterationMonitor monitor;
 
+    private boolean started;
+
     private Hashtable<Path, FileAlterationObserver> observers = new Hashtable<>();
 
+    /**
+     * Creates the builder.
+     *
+     * @param inclDirs          the directories to watch
+     * @param chain             the build tasks, run in order
+     * @param logger            the logger
+     * @param watchTimeInterval the period (in milliseconds) of the scan of the directories that cannot be watched
+     * @param quietPeriod       the time (in milliseconds) without change to wait for before building the changes
+     */
     public IncrementalBuilder(Set<Path> inclDirs,
-                              List<Callable<Void>> chain,
-                              Log logger, long watchTimeInterval) {
+                              List<BuildTask> chain,
+                              Log logger, long watchTimeInterval, long quietPeriod) {
         this.chain = chain;
         this.logger = logger;
-        this.monitor = new FileAlterationMonitor(watchTimeInterval);
-        inclDirs.forEach(this::buildObserver);
+        this.watchTimeInterval = watchTimeInterval;
+        this.quietPeriod = quietPeriod;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "vertx-incremental-build");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.watcher = createWatchService(logger);
+        for (Path path : inclDirs) {
+            if (watcher != null && watch(path)) {
+                logger.info("Watching path:" + path.toString());
+            } else {
+                buildObserver(path);
+            }
+        }
+    }
 
+    /**
+     * Creates the watch service of the default file system.
+     *
+     * @param logger the logger
+     * @return the watch service, {@code null} if it is not available or if it is implemented by polling the file
+     * system (less reactive than the monitor scanning the directories)
+     */
+    private static WatchService createWatchService(Log logger) {
+        try {
+            WatchService service = FileSystems.getDefault().newWatchService();
+            if (service.getClass().getSimpleName().startsWith("Polling")) {
+                service.close();
+                logger.debug("The watch service polls the file system, scanning the directories instead");
+                return null;
+            }
+            return service;
+        } catch (IOException | UnsupportedOperationException e) {
+            logger.debug("Watch service not available, scanning the directories instead: " + e.getMessage());
+            return null;
+        }
     }
 
     @Override
     public void run() {
-        try {
-            this.monitor.start();
-        } catch (Exception e) {
-            logger.error("Unable to start Incremental Builder", e);
+        if (watcher != null) {
+            Thread thread = new Thread(this::processEvents, "vertx-incremental-builder");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        startMonitor();
+    }
+
+    private synchronized void startMonitor() {
+        started = true;
+        if (monitor != null) {
+            try {
+                this.monitor.start();
+            } catch (Exception e) {
+                logger.error("Unable to start Incremental Builder", e);
+            }
         }
     }
 
     @Override
     public void close() throws IOException {
+        closed = true;
+        scheduler.shutdownNow();
+        if (watcher != null) {
+            watcher.close();
+        }
         if (this.monitor != null) {
             try {
                 this.monitor.stop();
@@ -75,6 +174,118 @@ public class IncrementalBuilder extends FileAlterationListenerAdaptor implements
         }
     }
 
+    /**
+     * Watches the given directory and its sub-directories.
+     *
+     * @param path the directory
+     * @return {@code true} if the whole tree is watched, {@code false} if the directory must be scanned instead
+     */
+    private synchronized boolean watch(Path path) {
+        if (!Files.isDirectory(path)) {
+            return false;
+        }
+        List<WatchKey> registered = new ArrayList<>();
+        try {
+            Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                    if (!directories.containsKey(dir)) {
+                        WatchKey key = dir.register(watcher, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+                        registered.add(key);
+                        keys.put(key, dir);
+                        directories.put(dir, key);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+            return true;
+        } catch (IOException | UnsupportedOperationException e) {
+            // Typically the limit of watches has been reached
+            logger.warn("Unable to watch " + path + ", scanning it every " + watchTimeInterval + " ms instead: "
+                + e.getMessage());
+            for (WatchKey key : registered) {
+                key.cancel();
+                directories.remove(keys.remove(key));
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Stops watching the given directory and its sub-directories.
+     *
+     * @param path the directory
+     */
+    private synchronized void unwatch(Path path) {
+        Iterator<Map.Entry<Path, WatchKey>> iterator = directories.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Path, WatchKey> entry = iterator.next();
+            if (entry.getKey().startsWith(path)) {
+                entry.getValue().cancel();
+                keys.remove(entry.getValue());
+                iterator.remove();
+            }
+        }
+    }
+
+    private synchronized Path getDirectory(WatchKey key) {
+        return keys.get(key);
+    }
+
+    private synchronized boolean isWatched(Path directory) {
+        return directories.containsKey(directory);
+    }
+
+    private void processEvents() {
+        while (!closed) {
+            WatchKey key;
+            try {
+                key = watcher.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ClosedWatchServiceException e) {
+                return;
+            }
+            Path directory = getDirectory(key);
+            if (directory == null) {
+                key.cancel();
+                continue;
+            }
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == OVERFLOW) {
+                    // Events have been lost, register the directories created meanwhile and rebuild
+                    logger.debug("Events lost in " + directory + ", rebuilding");
+                    if (!watch(directory)) {
+                        observe(directory);
+                    }
+                    triggerBuild(directory.toFile());
+                    continue;
+                }
+                Path path = directory.resolve((Path) event.context());
+                if (event.kind() == ENTRY_CREATE) {
+                    if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                        onDirectoryCreate(path.toFile());
+                    } else {
+                        onFileCreate(path.toFile());
+                    }
+                } else if (event.kind() == ENTRY_MODIFY) {
+                    if (!Files.isDirectory(path)) {
+                        onFileChange(path.toFile());
+                    }
+                } else if (isWatched(path)) {
+                    onDirectoryDelete(path.toFile());
+                } else {
+                    onFileDelete(path.toFile());
+                }
+            }
+            if (!key.reset()) {
+                // The directory has been deleted
+                unwatch(directory);
+            }
+        }
+    }
+
     /**
      * Adds an observer listening for changes in the given path.
      *
@@ -84,19 +295,51 @@ public class IncrementalBuilder extends FileAlterationListenerAdaptor implements
 
         logger.info("Observing path:" + path.toString());
 
+        if (this.monitor == null) {
+            this.monitor = new FileAlterationMonitor(watchTimeInterval);
+        }
+
         FileAlterationObserver observer = new FileAlterationObserver(path.toFile());
 
         observer.addListener(this);
 
+        if (started) {
+            // Added to a running monitor, which does not initialize it: the existing files must not be notified
+            try {
+                observer.initialize();
+            } catch (Exception e) {
+                logger.debug("Unable to initialize the observer of " + path + ": " + e.getMessage());
+            }
+        }
+
         observers.put(path, observer);
 
         this.monitor.addObserver(observer);
     }
 
+    /**
+     * Scans the given directory, which cannot be watched, starting the monitor if it was not needed so far.
+     *
+     * @param path the directory
+     */
+    private synchronized void observe(Path path) {
+        if (observers.containsKey(path)) {
+            return;
+        }
+        boolean running = monitor != null;
+        buildObserver(path);
+        if (started && !running) {
+            startMonitor();
+        }
+    }
+
     /**
      *
      */
     protected synchronized void syncMonitor() {
+        if (this.monitor == null) {
+            return;
+        }
         observers.forEach((path, observer)
             -> this.monitor.getObservers().forEach(observer2 -> {
             Path path1 = Paths.get(observer2.getDirectory().toString());
@@ -109,14 +352,34 @@ public class IncrementalBuilder extends FileAlterationListenerAdaptor implements
 
     @Override
     public void onDirectoryCreate(File directory) {
-        buildObserver(Paths.get(directory.toString()));
+        Path path = Paths.get(directory.toString());
+        if (watcher != null && isWatched(path.getParent())) {
+            if (!watch(path)) {
+                // Typically the limit of watches has been reached
+                observe(path);
+            }
+            // The files created before the directory was watched or observed
+            try (Stream<Path> files = Files.walk(path)) {
+                files.filter(Files::isRegularFile).forEach(file -> onFileCreate(file.toFile()));
+            } catch (IOException e) {
+                logger.debug("Unable to list the files of " + directory + ": " + e.getMessage());
+            }
+            return;
+        }
+        buildObserver(path);
         syncMonitor();
     }
 
 
     @Override
     public void onDirectoryDelete(File directory) {
-        observers.remove(Paths.get(directory.toString()));
+        Path path = Paths.get(directory.toString());
+        if (isWatched(path)) {
+            unwatch(path);
+            triggerBuild(directory);
+            return;
+        }
+        observers.remove(path);
         syncMonitor();
     }
 
@@ -150,13 +413,54 @@ public class IncrementalBuilder extends FileAlterationListenerAdaptor implements
         triggerBuild(file);
     }
 
+    /**
+     * Records a change, and (re)starts the quiet period. While a build runs, the change is only recorded: the
+     * follow-up build is scheduled when the build completes.
+     *
+     * @param file the changed file
+     */
     private void triggerBuild(File file) {
+        synchronized (scheduler) {
+            pending.add(file.toPath().toAbsolutePath());
+            if (building || closed) {
+                return;
+            }
+            if (scheduled != null) {
+                scheduled.cancel(false);
+            }
+            scheduled = scheduler.schedule(this::build, quietPeriod, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void build() {
+        Set<Path> changes;
+        synchronized (scheduler) {
+            scheduled = null;
+            if (pending.isEmpty()) {
+                // Already built by a build that started while being rescheduled
+                return;
+            }
+            building = true;
+            changes = pending;
+            pending = new LinkedHashSet<>();
+        }
         try {
-            for (Callable<Void> task : chain) {
-                task.call();
+            if (logger.isDebugEnabled()) {
+                logger.debug("Building " + changes.size() + " changes: " + changes);
+            }
+            Set<Path> batch = Collections.unmodifiableSet(changes);
+            for (BuildTask task : chain) {
+                task.build(batch);
             }
         } catch (Exception e) {
             //ignore
+        } finally {
+            synchronized (scheduler) {
+                building = false;
+                if (!pending.isEmpty() && !closed) {
+                    scheduled = scheduler.schedule(this::build, quietPeriod, TimeUnit.MILLISECONDS);
+                }
+            }
         }
     }
 
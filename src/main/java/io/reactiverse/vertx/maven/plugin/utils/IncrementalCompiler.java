@@ -0,0 +1,419 @@
+/*
+ *
+ *   Copyright (c) 2016-2017 Red Hat, Inc.
+ *
+ *   Red Hat licenses this file to you under the Apache License, version
+ *   2.0 (the "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *   implied.  See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package io.reactiverse.vertx.maven.plugin.utils;
+
+import org.apache.maven.artifact.DependencyResolutionRequiredException;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+
+import javax.tools.*;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Compiles the changed Java sources of the project in process, for the redeployment.
+ * <p>
+ * The system Java compiler and its file manager are kept for the whole session, so the class path is only opened
+ * and indexed once. Only the changed sources and their dependents are compiled: the sources of the classes
+ * referencing a class produced by a changed source, read from the constant pool of the compiled classes. The graph
+ * is built from the classes directory on the first compilation, and updated after each compilation. As the compiler
+ * inlines the constants, a class using a constant through another class is not recompiled when the constant changes.
+ * <p>
+ * The options are read from the configuration of the {@code compile} goal of the {@code maven-compiler-plugin}
+ * ({@code source}, {@code target}, {@code release}, {@code encoding}, {@code parameters}, {@code debug},
+ * {@code proc}, {@code annotationProcessors}, {@code compilerArgument} and {@code compilerArgs}). Configurations
+ * that cannot be honored in process (forked or non-javac compiler, {@code annotationProcessorPaths} requiring
+ * resolution) are not supported, and the plugin must be used instead.
+ * <p>
+ * Instances are not thread-safe.
+ */
+public class IncrementalCompiler implements Closeable {
+
+    private static final String COMPILER_PLUGIN = "maven-compiler-plugin";
+
+    private final Log log;
+
+    private final JavaCompiler compiler;
+
+    private final StandardJavaFileManager fileManager;
+
+    private final List<Path> sourceRoots;
+
+    private final Path output;
+
+    private final List<String> options;
+
+    private final Map<Path, Set<String>> classesBySource = new HashMap<>();
+
+    private final Map<String, Path> sourcesByClass = new HashMap<>();
+
+    private final Map<String, Set<String>> references = new HashMap<>();
+
+    private boolean initialized;
+
+    private IncrementalCompiler(Log log, JavaCompiler compiler, StandardJavaFileManager fileManager,
+                                List<Path> sourceRoots, Path output, List<String> options) {
+        this.log = log;
+        this.compiler = compiler;
+        this.fileManager = fileManager;
+        this.sourceRoots = sourceRoots;
+        this.output = output;
+        this.options = options;
+    }
+
+    /**
+     * Creates the compiler of the given project.
+     *
+     * @param project the project, with its compile class path resolved
+     * @param log     the logger
+     * @return the compiler, {@code null} if the compilation cannot be done in process (no system compiler, or
+     * unsupported configuration)
+     * @throws IOException if the class path cannot be set
+     */
+    public static IncrementalCompiler create(MavenProject project, Log log) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            log.info("No system Java compiler (running on a JRE), the maven-compiler-plugin is used for the "
+                + "redeployment");
+            return null;
+        }
+        Xpp3Dom configuration = MojoUtils.buildConfiguration(project, COMPILER_PLUGIN, "compile").orElse(null);
+        String unsupported = getUnsupportedConfiguration(configuration);
+        if (unsupported != null) {
+            log.info("The " + unsupported + " configuration of the maven-compiler-plugin is not supported by the "
+                + "in-process compilation, the maven-compiler-plugin is used for the redeployment");
+            return null;
+        }
+
+        Path basedir = project.getBasedir().toPath().toAbsolutePath();
+        Path output = Paths.get(project.getBuild().getOutputDirectory()).toAbsolutePath();
+        List<Path> roots = project.getCompileSourceRoots().stream()
+            .map(root -> basedir.resolve(root).normalize())
+            .collect(Collectors.toList());
+        List<File> classpath = new ArrayList<>();
+        try {
+            for (String element : project.getCompileClasspathElements()) {
+                classpath.add(new File(element));
+            }
+        } catch (DependencyResolutionRequiredException e) {
+            throw new IOException("The compile class path of the project is not resolved", e);
+        }
+        String generated = getValue(configuration, "generatedSourcesDirectory",
+            project.getBuild().getDirectory() + "/generated-sources/annotations");
+        Path generatedSources = basedir.resolve(generated);
+        Files.createDirectories(output);
+        Files.createDirectories(generatedSources);
+
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null);
+        fileManager.setLocation(StandardLocation.CLASS_PATH, classpath);
+        // The sources that are not compiled are read from their classes, never compiled implicitly
+        fileManager.setLocation(StandardLocation.SOURCE_PATH, Collections.emptyList());
+        fileManager.setLocation(StandardLocation.CLASS_OUTPUT, Collections.singletonList(output.toFile()));
+        fileManager.setLocation(StandardLocation.SOURCE_OUTPUT, Collections.singletonList(generatedSources.toFile()));
+
+        List<String> options = getOptions(project, configuration);
+        log.debug("In-process compilation options: " + options);
+        try {
+            // Validates the options, nothing is compiled
+            compiler.getTask(null, fileManager, null, options, null, null);
+        } catch (IllegalArgumentException e) {
+            log.info("The options of the maven-compiler-plugin are not supported by the system Java compiler ("
+                + e.getMessage() + "), the maven-compiler-plugin is used for the redeployment");
+            fileManager.close();
+            return null;
+        }
+        return new IncrementalCompiler(log, compiler, fileManager, roots, output, options);
+    }
+
+    private static String getUnsupportedConfiguration(Xpp3Dom configuration) {
+        if (configuration == null) {
+            return null;
+        }
+        if ("true".equals(getValue(configuration, "fork", null))) {
+            return "fork";
+        }
+        if (!"javac".equals(getValue(configuration, "compilerId", "javac"))) {
+            return "compilerId";
+        }
+        if (configuration.getChild("executable") != null) {
+            return "executable";
+        }
+        if (configuration.getChild("annotationProcessorPaths") != null) {
+            return "annotationProcessorPaths";
+        }
+        return null;
+    }
+
+    /**
+     * Computes the compiler options from the configuration of the plugin, with the same defaults.
+     *
+     * @param project       the project, providing the {@code maven.compiler.*} properties
+     * @param configuration the configuration of the plugin, may be {@code null}
+     * @return the options
+     */
+    static List<String> getOptions(MavenProject project, Xpp3Dom configuration) {
+        Properties properties = project.getProperties();
+        List<String> options = new ArrayList<>();
+        String release = getValue(configuration, "release", properties.getProperty("maven.compiler.release"));
+        if (release != null) {
+            options.add("--release");
+            options.add(release);
+        } else {
+            String source = getValue(configuration, "source", properties.getProperty("maven.compiler.source"));
+            if (source != null) {
+                options.add("-source");
+                options.add(source);
+            }
+            String target = getValue(configuration, "target", properties.getProperty("maven.compiler.target"));
+            if (target != null) {
+                options.add("-target");
+                options.add(target);
+            }
+        }
+        String encoding = getValue(configuration, "encoding", properties.getProperty("project.build.sourceEncoding"));
+        if (encoding != null) {
+            options.add("-encoding");
+            options.add(encoding);
+        }
+        if ("true".equals(getValue(configuration, "parameters", properties.getProperty("maven.compiler.parameters")))) {
+            options.add("-parameters");
+        }
+        if (!"false".equals(getValue(configuration, "debug", properties.getProperty("maven.compiler.debug")))) {
+            String level = getValue(configuration, "debuglevel", properties.getProperty("maven.compiler.debuglevel"));
+            options.add(level == null ? "-g" : "-g:" + level);
+        }
+        String proc = getValue(configuration, "proc", properties.getProperty("maven.compiler.proc"));
+        if (proc != null) {
+            options.add("-proc:" + proc);
+        }
+        if (configuration != null && configuration.getChild("annotationProcessors") != null) {
+            List<String> processors = new ArrayList<>();
+            for (Xpp3Dom processor : configuration.getChild("annotationProcessors").getChildren()) {
+                processors.add(processor.getValue().trim());
+            }
+            if (!processors.isEmpty()) {
+                options.add("-processor");
+                options.add(String.join(",", processors));
+            }
+        }
+        String argument = getValue(configuration, "compilerArgument", null);
+        if (argument != null) {
+            options.addAll(Arrays.asList(argument.split("\\s+")));
+        }
+        if (configuration != null && configuration.getChild("compilerArgs") != null) {
+            for (Xpp3Dom arg : configuration.getChild("compilerArgs").getChildren()) {
+                if (arg.getValue() != null) {
+                    options.add(arg.getValue().trim());
+                }
+            }
+        }
+        return options;
+    }
+
+    private static String getValue(Xpp3Dom configuration, String name, String defaultValue) {
+        Xpp3Dom child = configuration == null ? null : configuration.getChild(name);
+        if (child == null || child.getValue() == null || child.getValue().trim().isEmpty()) {
+            return defaultValue;
+        }
+        return child.getValue().trim();
+    }
+
+    /**
+     * Compiles the given changed sources and their dependents. The classes of the deleted sources are deleted, and
+     * so are the classes no longer produced by the recompiled sources. When the compilation fails, the classes
+     * directory is left untouched.
+     *
+     * @param changes the changed Java sources, existing or deleted
+     * @return the compiled sources
+     * @throws IOException            if the classes cannot be read or deleted
+     * @throws MojoExecutionException if the compilation fails, the diagnostics being logged
+     */
+    public Set<Path> compile(Set<Path> changes) throws IOException, MojoExecutionException {
+        initialize();
+
+        Set<Path> deleted = new LinkedHashSet<>();
+        Set<Path> sources = new LinkedHashSet<>();
+        Set<String> changedClasses = new HashSet<>();
+        for (Path change : changes) {
+            Path path = change.toAbsolutePath().normalize();
+            if (Files.isRegularFile(path)) {
+                if (path.toString().endsWith(".java")) {
+                    sources.add(path);
+                }
+            } else {
+                deleted.add(path);
+            }
+            // A deleted directory deletes all its sources
+            classesBySource.forEach((source, classes) -> {
+                if (source.startsWith(path)) {
+                    changedClasses.addAll(classes);
+                    if (!Files.exists(source)) {
+                        deleted.add(source);
+                    }
+                }
+            });
+        }
+        for (Map.Entry<String, Set<String>> entry : references.entrySet()) {
+            Path source = sourcesByClass.get(entry.getKey());
+            if (source != null && Files.isRegularFile(source)
+                && !Collections.disjoint(entry.getValue(), changedClasses)) {
+                sources.add(source);
+            }
+        }
+
+        Map<Path, Set<String>> produced = new HashMap<>();
+        if (!sources.isEmpty()) {
+            run(sources, produced);
+        }
+
+        for (Path source : deleted) {
+            removeClasses(source, Collections.emptySet());
+        }
+        for (Path source : sources) {
+            Set<String> classes = produced.getOrDefault(source, Collections.emptySet());
+            removeClasses(source, classes);
+            for (String name : classes) {
+                record(source, name, ClassFile.read(Files.readAllBytes(getClassFile(name))));
+            }
+        }
+        return sources;
+    }
+
+    private void run(Set<Path> sources, Map<Path, Set<String>> produced) throws MojoExecutionException {
+        // Records the classes produced by each source
+        JavaFileManager tracking = new ForwardingJavaFileManager<StandardJavaFileManager>(fileManager) {
+            @Override
+            public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind,
+                                                       FileObject sibling) throws IOException {
+                if (kind == JavaFileObject.Kind.CLASS && sibling != null
+                    && "file".equals(sibling.toUri().getScheme())) {
+                    produced.computeIfAbsent(Paths.get(sibling.toUri()).toAbsolutePath().normalize(),
+                        s -> new HashSet<>()).add(className.replace('.', '/'));
+                }
+                return super.getJavaFileForOutput(location, className, kind, sibling);
+            }
+        };
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        Iterable<? extends JavaFileObject> units = fileManager.getJavaFileObjectsFromFiles(
+            sources.stream().map(Path::toFile).collect(Collectors.toList()));
+        boolean success = compiler.getTask(null, tracking, diagnostics, options, null, units).call();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            String message = (diagnostic.getSource() == null ? "" : diagnostic.getSource().getName() + ":["
+                + diagnostic.getLineNumber() + "," + diagnostic.getColumnNumber() + "] ")
+                + diagnostic.getMessage(Locale.getDefault());
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                log.error(message);
+            } else if (diagnostic.getKind() == Diagnostic.Kind.WARNING
+                || diagnostic.getKind() == Diagnostic.Kind.MANDATORY_WARNING) {
+                log.warn(message);
+            } else {
+                log.debug(message);
+            }
+        }
+        if (!success) {
+            throw new MojoExecutionException("Compilation failure");
+        }
+    }
+
+    /**
+     * Builds the dependency graph from the classes directory.
+     */
+    private void initialize() throws IOException {
+        if (initialized) {
+            return;
+        }
+        initialized = true;
+        if (!Files.isDirectory(output)) {
+            return;
+        }
+        List<Path> files;
+        try (Stream<Path> stream = Files.walk(output)) {
+            files = stream.filter(file -> file.toString().endsWith(".class")).collect(Collectors.toList());
+        }
+        for (Path file : files) {
+            ClassFile clazz = ClassFile.read(Files.readAllBytes(file));
+            Path source = findSource(clazz);
+            if (source != null) {
+                record(source, clazz.getName(), clazz);
+            }
+        }
+        log.debug("Dependency graph built from " + files.size() + " classes");
+    }
+
+    private Path findSource(ClassFile clazz) {
+        String name = clazz.getName();
+        int index = name.lastIndexOf('/');
+        String pkg = index == -1 ? "" : name.substring(0, index + 1);
+        String file = clazz.getSourceFile();
+        if (file == null) {
+            // Compiled without debug information, the source is named after the top-level class
+            String simple = name.substring(index + 1);
+            file = (simple.contains("$") ? simple.substring(0, simple.indexOf('$')) : simple) + ".java";
+        }
+        for (Path root : sourceRoots) {
+            Path source = root.resolve(pkg + file);
+            if (Files.isRegularFile(source)) {
+                return source;
+            }
+        }
+        return null;
+    }
+
+    private void record(Path source, String name, ClassFile clazz) {
+        classesBySource.computeIfAbsent(source, s -> new HashSet<>()).add(name);
+        sourcesByClass.put(name, source);
+        Set<String> referenced = new HashSet<>(clazz.getReferences());
+        referenced.remove(name);
+        references.put(name, referenced);
+    }
+
+    /**
+     * Forgets the classes of the given source, and deletes the ones that have not been produced again.
+     */
+    private void removeClasses(Path source, Set<String> kept) throws IOException {
+        Set<String> classes = classesBySource.remove(source);
+        if (classes == null) {
+            return;
+        }
+        for (String name : classes) {
+            sourcesByClass.remove(name);
+            references.remove(name);
+            if (!kept.contains(name)) {
+                Files.deleteIfExists(getClassFile(name));
+            }
+        }
+    }
+
+    private Path getClassFile(String name) {
+        return output.resolve(name + ".class");
+    }
+
+    @Override
+    public void close() throws IOException {
+        fileManager.close();
+    }
+}
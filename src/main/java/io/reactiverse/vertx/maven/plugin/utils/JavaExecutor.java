@@ -80,7 +80,7 @@ public abstract class JavaExecutor implements Executor<Optional<Process>> {
      *
      * @return - the {@link Path} representing the Java executable path
      */
-    private Path findJava() {
+    static Path findJava() {
         String javaHome = System.getProperty("java.home");
         if (javaHome == null) {
             throw new RuntimeException("unable to locate java binary");
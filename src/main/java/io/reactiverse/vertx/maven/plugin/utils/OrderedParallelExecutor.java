@@ -0,0 +1,132 @@
+/*
+ *
+ *   Copyright (c) 2016-2017 Red Hat, Inc.
+ *
+ *   Red Hat licenses this file to you under the Apache License, version
+ *   2.0 (the "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *   implied.  See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package io.reactiverse.vertx.maven.plugin.utils;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Runs a task on each element of a list using a bounded fork-join pool, and hands the results to a
+ * <em>merger</em> in the order of the list. The merger always runs on the calling thread, so it does not need to be
+ * thread-safe.
+ * <p>
+ * To bound the memory used by pending results, at most {@code 2 * threads} tasks are in flight at a given time.
+ */
+public class OrderedParallelExecutor {
+
+    /**
+     * A task computing a result from an input.
+     *
+     * @param <I> the type of input
+     * @param <R> the type of result
+     */
+    @FunctionalInterface
+    public interface Task<I, R> {
+        R apply(I input) throws Exception;
+    }
+
+    /**
+     * Consumes the results, in order.
+     *
+     * @param <I> the type of input
+     * @param <R> the type of result
+     */
+    @FunctionalInterface
+    public interface Merger<I, R> {
+        void accept(I input, R result) throws Exception;
+    }
+
+    private final int threads;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param threads the number of threads, if lower than 2, the tasks are executed on the calling thread
+     */
+    public OrderedParallelExecutor(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Computes the number of threads to use from the configured value: values lower than 1 mean "one thread per
+     * available processor".
+     *
+     * @param configured the configured value
+     * @return the number of threads
+     */
+    public static int threads(int configured) {
+        if (configured < 1) {
+            return Runtime.getRuntime().availableProcessors();
+        }
+        return configured;
+    }
+
+    /**
+     * Processes the given inputs.
+     *
+     * @param inputs the inputs
+     * @param task   the task, executed concurrently
+     * @param merger the merger, called on the calling thread in the order of the inputs
+     * @param <I>    the type of input
+     * @param <R>    the type of result
+     * @throws Exception the first failure thrown by a task or by the merger
+     */
+    public <I, R> void process(List<I> inputs, Task<I, R> task, Merger<I, R> merger) throws Exception {
+        if (threads < 2 || inputs.size() < 2) {
+            for (I input : inputs) {
+                merger.accept(input, task.apply(input));
+            }
+            return;
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        Deque<Future<R>> pending = new ArrayDeque<>();
+        try {
+            int submitted = 0;
+            for (I input : inputs) {
+                while (submitted < inputs.size() && pending.size() < 2 * threads) {
+                    I next = inputs.get(submitted++);
+                    pending.add(pool.submit(() -> task.apply(next)));
+                }
+                merger.accept(input, get(pending.poll()));
+            }
+        } finally {
+            pending.forEach(future -> future.cancel(true));
+            pool.shutdownNow();
+        }
+    }
+
+    private static <R> R get(Future<R> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ *
+ *   Copyright (c) 2016-2017 Red Hat, Inc.
+ *
+ *   Red Hat licenses this file to you under the Apache License, version
+ *   2.0 (the "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *   implied.  See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package io.reactiverse.vertx.maven.plugin.utils;
+
+import org.apache.maven.model.Resource;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.DirectoryScanner;
+import org.codehaus.plexus.util.SelectorUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * A batch of source changes built by the {@link IncrementalBuilder}, classified by source root so that only the
+ * relevant build steps run:
+ * <ul>
+ * <li>changes of the Java sources (compile source roots) require the classes to be built</li>
+ * <li>changes of the filtered resources require the resources to be processed</li>
+ * <li>changes of the resources that are not filtered are copied directly to the output directory, see
+ * {@link #copyResources(Log)}</li>
+ * <li>the other changes (e.g. the sources of a generator, or an existing directory when the events of its files have
+ * been lost) require the whole build</li>
+ * </ul>
+ * The files matching the default excludes (editor backups, SCM metadata...) are ignored.
+ */
+public class SourceChanges {
+
+    private final Set<Path> sources = new LinkedHashSet<>();
+
+    private final Set<Path> filteredResources = new LinkedHashSet<>();
+
+    private final Map<Path, Set<Path>> copies = new LinkedHashMap<>();
+
+    private final Set<Path> others = new LinkedHashSet<>();
+
+    private SourceChanges() {
+        // Use classify
+    }
+
+    /**
+     * Classifies the given changes.
+     *
+     * @param changes         the changed files, absolute
+     * @param project         the project, providing the source roots and the resources
+     * @param outputDirectory the directory where the resources are copied
+     * @return the classified changes
+     */
+    public static SourceChanges classify(Set<Path> changes, MavenProject project, File outputDirectory) {
+        SourceChanges result = new SourceChanges();
+        Path basedir = project.getBasedir().toPath().toAbsolutePath();
+        List<Path> roots = new ArrayList<>();
+        for (String root : project.getCompileSourceRoots()) {
+            roots.add(basedir.resolve(root).normalize());
+        }
+        for (Path change : changes) {
+            Path path = change.toAbsolutePath().normalize();
+            if (Files.isDirectory(path)) {
+                result.others.add(path);
+            } else if (roots.stream().anyMatch(path::startsWith)) {
+                if (!isExcludedByDefault(getRelativePath(roots, path))) {
+                    result.sources.add(path);
+                }
+            } else if (!result.addResource(path, basedir, project.getResources(), outputDirectory.toPath())
+                && !isExcludedByDefault(basedir.relativize(path).toString())) {
+                result.others.add(path);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Records a changed resource.
+     *
+     * @return {@code false} if the file is not located in a resource directory
+     */
+    private boolean addResource(Path path, Path basedir, List<Resource> resources, Path output) {
+        boolean located = false;
+        for (Resource resource : resources) {
+            Path directory = basedir.resolve(resource.getDirectory()).normalize();
+            if (!path.startsWith(directory)) {
+                continue;
+            }
+            located = true;
+            String relative = directory.relativize(path).toString();
+            if (!isIncluded(resource, relative)) {
+                continue;
+            }
+            if (resource.isFiltering()) {
+                filteredResources.add(path);
+            } else {
+                Path target = resource.getTargetPath() == null ? output : output.resolve(resource.getTargetPath());
+                copies.computeIfAbsent(path, p -> new LinkedHashSet<>()).add(target.resolve(relative));
+            }
+        }
+        return located;
+    }
+
+    private static boolean isIncluded(Resource resource, String relative) {
+        if (isExcludedByDefault(relative)) {
+            return false;
+        }
+        boolean included = resource.getIncludes().isEmpty()
+            || resource.getIncludes().stream().anyMatch(pattern -> matches(pattern, relative));
+        return included && resource.getExcludes().stream().noneMatch(pattern -> matches(pattern, relative));
+    }
+
+    private static boolean isExcludedByDefault(String relative) {
+        return Arrays.stream(DirectoryScanner.DEFAULTEXCLUDES).anyMatch(pattern -> matches(pattern, relative));
+    }
+
+    private static boolean matches(String pattern, String relative) {
+        // Same normalization as the directory scanner used by the resources plugin
+        String normalized = pattern.trim().replace('/', File.separatorChar).replace('\\', File.separatorChar);
+        if (normalized.endsWith(File.separator)) {
+            normalized += "**";
+        }
+        return SelectorUtils.matchPath(normalized, relative, true);
+    }
+
+    private static String getRelativePath(List<Path> roots, Path path) {
+        for (Path root : roots) {
+            if (path.startsWith(root)) {
+                return root.relativize(path).toString();
+            }
+        }
+        return path.toString();
+    }
+
+    /**
+     * @return {@code true} if the changes require the classes to be built: Java sources or other changes
+     */
+    public boolean hasClassesToBuild() {
+        return !sources.isEmpty() || !others.isEmpty();
+    }
+
+    /**
+     * @return {@code true} if the changes require the resources to be processed: filtered resources or other changes
+     */
+    public boolean hasResourcesToProcess() {
+        return !filteredResources.isEmpty() || !others.isEmpty();
+    }
+
+    /**
+     * @return the changed Java sources
+     */
+    public Set<Path> getSources() {
+        return sources;
+    }
+
+    /**
+     * @return the changed filtered resources
+     */
+    public Set<Path> getFilteredResources() {
+        return filteredResources;
+    }
+
+    /**
+     * @return the changed resources that are not filtered, with their copies in the output directory
+     */
+    public Map<Path, Set<Path>> getCopies() {
+        return copies;
+    }
+
+    /**
+     * @return the changes that are neither Java sources nor resources
+     */
+    public Set<Path> getOthers() {
+        return others;
+    }
+
+    /**
+     * Copies the changed resources that are not filtered to the output directory, and deletes the copies of the
+     * deleted ones.
+     *
+     * @param log the logger
+     * @return the number of updated copies
+     * @throws IOException if a resource cannot be copied or deleted
+     */
+    public int copyResources(Log log) throws IOException {
+        int count = 0;
+        for (Map.Entry<Path, Set<Path>> entry : copies.entrySet()) {
+            Path source = entry.getKey();
+            for (Path target : entry.getValue()) {
+                if (Files.isRegularFile(source)) {
+                    Files.createDirectories(target.getParent());
+                    Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+                    log.debug("Copied " + source + " to " + target);
+                } else {
+                    // Deleted, the directories are deleted with their content
+                    org.apache.commons.io.FileUtils.deleteQuietly(target.toFile());
+                    log.debug("Deleted " + target);
+                }
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return sources.size() + " sources, " + filteredResources.size() + " filtered resources, " + copies.size()
+            + " resources, " + others.size() + " other changes";
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ *
+ *   Copyright (c) 2016-2017 Red Hat, Inc.
+ *
+ *   Red Hat licenses this file to you under the Apache License, version
+ *   2.0 (the "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *   implied.  See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package io.reactiverse.vertx.maven.plugin.utils;
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Launches a packaged application for a short training run, to observe its startup. The application is started with
+ * {@code java -jar}, and stopped as soon as a line of its output matches the readiness pattern (by default, the
+ * message logged by the Vert.x launcher once the verticle is deployed), or when the timeout expires.
+ */
+public class TrainingRun {
+
+    /**
+     * The message logged by the Vert.x launcher once the main verticle is deployed.
+     */
+    public static final String DEFAULT_READY_PATTERN = ".*Succeeded in deploying verticle.*";
+
+    private final File jar;
+
+    private final Log log;
+
+    private List<String> jvmArguments = Collections.emptyList();
+
+    private Pattern readyPattern = Pattern.compile(DEFAULT_READY_PATTERN);
+
+    private long timeout = 60000;
+
+    private volatile boolean ready;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param jar the application
+     * @param log the logger, receiving the output of the application in debug
+     */
+    public TrainingRun(File jar, Log log) {
+        this.jar = jar;
+        this.log = log;
+    }
+
+    /**
+     * Sets the arguments passed to the JVM, before {@code -jar}.
+     *
+     * @param jvmArguments the arguments
+     * @return the current {@link TrainingRun}
+     */
+    public TrainingRun setJvmArguments(List<String> jvmArguments) {
+        this.jvmArguments = jvmArguments == null ? Collections.emptyList() : jvmArguments;
+        return this;
+    }
+
+    /**
+     * Sets the pattern of the output line indicating the application has started.
+     *
+     * @param readyPattern the regular expression, matching the whole line
+     * @return the current {@link TrainingRun}
+     */
+    public TrainingRun setReadyPattern(String readyPattern) {
+        this.readyPattern = Pattern.compile(readyPattern);
+        return this;
+    }
+
+    /**
+     * Sets the maximum duration of the run.
+     *
+     * @param timeout the timeout in milliseconds
+     * @return the current {@link TrainingRun}
+     */
+    public TrainingRun setTimeout(long timeout) {
+        this.timeout = timeout;
+        return this;
+    }
+
+    /**
+     * @return whether or not the readiness pattern has been found during the last run
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * @return the path of the {@code java} executable of the JVM running the build, also used for the training runs
+     */
+    public static String getJavaExecutable() {
+        return JavaExecutor.findJava().toString();
+    }
+
+    /**
+     * Runs the application until it is ready, exits, or the timeout expires.
+     *
+     * @return the lines written by the application (standard and error outputs)
+     * @throws IOException if the application cannot be started
+     */
+    public List<String> run() throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(getJavaExecutable());
+        command.addAll(jvmArguments);
+        command.add("-jar");
+        command.add(jar.getAbsolutePath());
+        log.debug("Starting the training run: " + command);
+
+        Process process = new ProcessBuilder(command)
+            .directory(jar.getParentFile())
+            .redirectErrorStream(true)
+            .start();
+        List<String> lines = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(1);
+        ready = false;
+        Thread reader = new Thread(() -> {
+            try (BufferedReader input = new BufferedReader(new InputStreamReader(process.getInputStream(),
+                StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = input.readLine()) != null) {
+                    lines.add(line);
+                    log.debug("[training] " + line);
+                    if (!ready && readyPattern.matcher(line).matches()) {
+                        ready = true;
+                        done.countDown();
+                    }
+                }
+            } catch (IOException e) {
+                log.debug("Training run output closed: " + e.getMessage());
+            } finally {
+                done.countDown();
+            }
+        }, "vertx-maven-plugin-training");
+        reader.setDaemon(true);
+        reader.start();
+
+        try {
+            if (!done.await(timeout, TimeUnit.MILLISECONDS)) {
+                log.warn("The training run did not report its readiness within " + timeout + " ms, stopping it");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted during the training run");
+        } finally {
+            stop(process);
+            try {
+                reader.join(timeout);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (lines) {
+            return new ArrayList<>(lines);
+        }
+    }
+
+    private static void stop(Process process) {
+        if (!process.isAlive()) {
+            return;
+        }
+        // Let the shutdown hooks run, so the JVM writes what it recorded
+        process.destroy();
+        try {
+            if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor(10, TimeUnit.SECONDS);
+            }
+        } catch (InterruptedException e) {
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
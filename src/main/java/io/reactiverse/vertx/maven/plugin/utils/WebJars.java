@@ -18,6 +18,7 @@
 package io.reactiverse.vertx.maven.plugin.utils;
 
 import io.reactiverse.vertx.maven.plugin.mojos.AbstractVertxMojo;
+import io.reactiverse.vertx.maven.plugin.zip.JarIndexCache;
 import org.apache.commons.io.IOUtils;
 import org.apache.maven.plugin.logging.Log;
 
@@ -26,6 +27,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.Enumeration;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
@@ -98,6 +100,35 @@ public class WebJars {
         return false;
     }
 
+    /**
+     * Checks whether the given file is a WebJar or not, like {@link #isWebJar(Log, File)}, but relies on the index
+     * of the jar stored in the given cache instead of opening the jar.
+     *
+     * @param log   the logger
+     * @param file  the file.
+     * @param cache the cache of the jar indexes
+     * @return {@literal true} if it's a bundle, {@literal false} otherwise.
+     */
+    public static boolean isWebJar(Log log, File file, JarIndexCache cache) {
+        if (file == null || !file.isFile() || !file.getName().endsWith(".jar")) {
+            return false;
+        }
+        List<String> found;
+        try {
+            found = cache.get(file).getWebJarLibraries();
+        } catch (IOException e) {
+            log.error("Cannot check if the file " + file.getName()
+                + " is a webjar, cannot open it", e);
+            return false;
+        }
+
+        for (String lib : found) {
+            log.info("Web Library found in " + file.getName() + " : " + lib);
+        }
+
+        return !found.isEmpty();
+    }
+
     public static void extract(final AbstractVertxMojo mojo, File in, File out, boolean stripVersion) throws IOException {
         ZipFile file = new ZipFile(in);
         try {
@@ -0,0 +1,165 @@
+/*
+ *
+ *   Copyright (c) 2016-2017 Red Hat, Inc.
+ *
+ *   Red Hat licenses this file to you under the Apache License, version
+ *   2.0 (the "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *   implied.  See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package io.reactiverse.vertx.maven.plugin.zip;
+
+import io.reactiverse.vertx.maven.plugin.utils.WebJars;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+
+/**
+ * The index of a jar file: its central directory, the content of the descriptors read so far, and its web jar
+ * classification. An index is bound to a state of the file (size and last modification date), see
+ * {@link #isUpToDate(File)}.
+ * <p>
+ * Instances are retrieved from a {@link JarIndexCache}.
+ */
+public class JarIndex {
+
+    private final String path;
+    private final long length;
+    private final long lastModified;
+    private final List<ZipRecord> records;
+    private final List<String> webJarLibraries;
+    private final Set<String> descriptorPatterns;
+    private final Map<String, List<String>> descriptors;
+
+    JarIndex(File file, List<ZipRecord> records) {
+        this(file.getAbsolutePath(), file.length(), lastModified(file), records, computeWebJarLibraries(records),
+            Collections.emptySet(), Collections.emptyMap());
+    }
+
+    JarIndex(String path, long length, long lastModified, List<ZipRecord> records, List<String> webJarLibraries,
+             Set<String> descriptorPatterns, Map<String, List<String>> descriptors) {
+        this.path = path;
+        this.length = length;
+        this.lastModified = lastModified;
+        this.records = Collections.unmodifiableList(records);
+        this.webJarLibraries = Collections.unmodifiableList(webJarLibraries);
+        this.descriptorPatterns = Collections.unmodifiableSet(new LinkedHashSet<>(descriptorPatterns));
+        this.descriptors = Collections.unmodifiableMap(new LinkedHashMap<>(descriptors));
+    }
+
+    /**
+     * Checks whether this index still describes the given file.
+     *
+     * @param file the file
+     * @return {@code true} if the file has the same path, size and last modification date as the indexed one
+     */
+    public boolean isUpToDate(File file) {
+        return path.equals(file.getAbsolutePath())
+            && length == file.length()
+            && lastModified == lastModified(file);
+    }
+
+    /**
+     * Gets the last modification date of the given file, with the best precision offered by the file system.
+     * {@link File#lastModified()} is truncated to the second on some platforms, which is not enough to detect a
+     * jar rebuilt right after being indexed.
+     *
+     * @param file the file
+     * @return the last modification date, in nanoseconds
+     */
+    static long lastModified(File file) {
+        try {
+            return Files.getLastModifiedTime(file.toPath()).to(TimeUnit.NANOSECONDS);
+        } catch (IOException e) {
+            return TimeUnit.MILLISECONDS.toNanos(file.lastModified());
+        }
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * @return the last modification date of the indexed file, in nanoseconds
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * @return the records of the central directory, in order
+     */
+    public List<ZipRecord> getRecords() {
+        return records;
+    }
+
+    /**
+     * @return the web libraries ({@code name-version}) contained in the jar, empty if the jar is not a web jar
+     */
+    public List<String> getWebJarLibraries() {
+        return webJarLibraries;
+    }
+
+    /**
+     * @return the patterns of the descriptors whose content is stored in this index
+     */
+    public Set<String> getDescriptorPatterns() {
+        return descriptorPatterns;
+    }
+
+    /**
+     * @return the content of the descriptors matching one of the {@link #getDescriptorPatterns()}, indexed by
+     * archive path (starting with {@code /}), in the central directory order
+     */
+    public Map<String, List<String>> getDescriptors() {
+        return descriptors;
+    }
+
+    JarIndex withDescriptors(Set<String> patterns, Map<String, List<String>> content) {
+        Set<String> allPatterns = new LinkedHashSet<>(descriptorPatterns);
+        allPatterns.addAll(patterns);
+        Map<String, List<String>> all = new LinkedHashMap<>();
+        // Keep the central directory order
+        for (ZipRecord record : records) {
+            String name = "/" + record.getName();
+            if (descriptors.containsKey(name)) {
+                all.put(name, descriptors.get(name));
+            } else if (content.containsKey(name)) {
+                all.put(name, content.get(name));
+            }
+        }
+        return new JarIndex(path, length, lastModified, records, webJarLibraries, allPatterns, all);
+    }
+
+    private static List<String> computeWebJarLibraries(List<ZipRecord> records) {
+        Set<String> found = new LinkedHashSet<>();
+        boolean base = false;
+        for (ZipRecord record : records) {
+            // Like WebJars#isWebJar, requires the webjars directory entry
+            if (record.getName().equals(WebJars.WEBJAR_LOCATION)) {
+                base = true;
+            }
+            Matcher matcher = WebJars.WEBJAR_REGEX.matcher(record.getName());
+            if (matcher.matches()) {
+                found.add(matcher.group(1) + "-" + matcher.group(2));
+            }
+        }
+        return base ? new ArrayList<>(found) : Collections.emptyList();
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ *
+ *   Copyright (c) 2016-2017 Red Hat, Inc.
+ *
+ *   Red Hat licenses this file to you under the Apache License, version
+ *   2.0 (the "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *   implied.  See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package io.reactiverse.vertx.maven.plugin.zip;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.reactiverse.vertx.maven.plugin.utils.GlobMatcher;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A cache of {@link JarIndex}, shared across builds. The dependencies stored in the local repository are immutable,
+ * so instead of reading their central directory (and the descriptors they contain) on every build, the index of
+ * each jar is stored on disk, and kept in memory for the duration of the Maven session.
+ * <p>
+ * An index is identified by the absolute path of the jar, and is invalidated when the size or the last
+ * modification date of the jar change. The index files are written in JSON.
+ * <p>
+ * Instances are thread-safe.
+ */
+public class JarIndexCache {
+
+    /**
+     * The version of the index format. Index files with another version are ignored.
+     */
+    static final int VERSION = 1;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final Map<String, JarIndexCache> CACHES = new ConcurrentHashMap<>();
+
+    private static final JarIndexCache IN_MEMORY = new JarIndexCache(null);
+
+    private final File directory;
+
+    private final Map<String, JarIndex> indexes = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new cache.
+     *
+     * @param directory the directory storing the index files, {@code null} to only keep the indexes in memory
+     */
+    public JarIndexCache(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Gets the cache stored in the given directory. Instances are shared in the JVM, so mojos executed in the same
+     * session share the indexes kept in memory.
+     *
+     * @param directory the directory, {@code null} for a cache only kept in memory
+     * @return the cache
+     */
+    public static JarIndexCache forDirectory(File directory) {
+        if (directory == null) {
+            return IN_MEMORY;
+        }
+        return CACHES.computeIfAbsent(directory.getAbsolutePath(), key -> new JarIndexCache(directory));
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Gets the index of the given jar, reading its central directory if the index is not in the cache or is out of
+     * date.
+     *
+     * @param jar the jar file
+     * @return the index
+     * @throws IOException if the jar cannot be read
+     */
+    public JarIndex get(File jar) throws IOException {
+        String key = jar.getAbsolutePath();
+        JarIndex index = indexes.get(key);
+        if (index != null && index.isUpToDate(jar)) {
+            return index;
+        }
+
+        index = load(jar);
+        if (index == null) {
+            try (ZipReader reader = new ZipReader(jar)) {
+                index = new JarIndex(jar, reader.getRecords());
+            }
+            save(index);
+        }
+        indexes.put(key, index);
+        return index;
+    }
+
+    /**
+     * Gets the content of the descriptors of the given jar matching at least one of the given patterns. Descriptors
+     * are read from the jar the first time a pattern is requested, and then stored in the index.
+     *
+     * @param jar      the jar file
+     * @param patterns the patterns, matched against the archive path (starting with {@code /}) using
+     *                 {@link GlobMatcher}
+     * @return the content (lines) of the matching descriptors, indexed by archive path, in the central directory
+     * order
+     * @throws IOException if the jar cannot be read
+     */
+    public Map<String, List<String>> getDescriptors(File jar, List<String> patterns) throws IOException {
+        JarIndex index = get(jar);
+        Set<String> missing = new LinkedHashSet<>(patterns);
+        missing.removeAll(index.getDescriptorPatterns());
+        if (!missing.isEmpty()) {
+            GlobMatcher matcher = GlobMatcher.compile(missing);
+            Map<String, List<String>> content = new HashMap<>();
+            try (ZipReader reader = new ZipReader(jar, index.getRecords())) {
+                for (ZipRecord record : index.getRecords()) {
+                    String path = "/" + record.getName();
+                    if (!record.isDirectory() && !index.getDescriptors().containsKey(path)
+                        && matcher.matches(path)) {
+                        content.put(path, readLines(reader.read(record)));
+                    }
+                }
+            }
+            index = index.withDescriptors(missing, content);
+            save(index);
+            indexes.put(jar.getAbsolutePath(), index);
+        }
+
+        GlobMatcher matcher = GlobMatcher.compile(patterns);
+        Map<String, List<String>> result = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> entry : index.getDescriptors().entrySet()) {
+            if (matcher.matches(entry.getKey())) {
+                result.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return result;
+    }
+
+    private static List<String> readLines(byte[] content) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(content),
+            StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    private File getIndexFile(String path) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(path.getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder();
+            for (byte b : hash) {
+                name.append(String.format("%02x", b));
+            }
+            return new File(directory, name.substring(0, 2) + File.separator + name + ".json");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 not supported", e);
+        }
+    }
+
+    private JarIndex load(File jar) {
+        if (directory == null) {
+            return null;
+        }
+        File file = getIndexFile(jar.getAbsolutePath());
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            JsonNode json = MAPPER.readTree(file);
+            if (json.path("version").asInt() != VERSION) {
+                return null;
+            }
+            List<ZipRecord> records = new ArrayList<>();
+            for (JsonNode entry : json.path("entries")) {
+                records.add(new ZipRecord(entry.get(0).asText(), entry.get(1).asInt(), entry.get(2).asInt(),
+                    entry.get(3).asLong(), entry.get(4).asLong(), entry.get(5).asLong(), entry.get(6).asLong(),
+                    entry.get(7).asLong()));
+            }
+            List<String> webJars = new ArrayList<>();
+            json.path("webJars").forEach(lib -> webJars.add(lib.asText()));
+            Set<String> patterns = new LinkedHashSet<>();
+            json.path("descriptorPatterns").forEach(pattern -> patterns.add(pattern.asText()));
+            Map<String, List<String>> descriptors = new LinkedHashMap<>();
+            json.path("descriptors").fields().forEachRemaining(descriptor -> {
+                List<String> lines = new ArrayList<>();
+                descriptor.getValue().forEach(line -> lines.add(line.asText()));
+                descriptors.put(descriptor.getKey(), lines);
+            });
+            JarIndex index = new JarIndex(json.path("path").asText(), json.path("length").asLong(),
+                json.path("lastModified").asLong(), records, webJars, patterns, descriptors);
+            return index.isUpToDate(jar) ? index : null;
+        } catch (IOException | RuntimeException e) {
+            // Corrupted or incompatible index, it will be rebuilt
+            return null;
+        }
+    }
+
+    private void save(JarIndex index) {
+        if (directory == null) {
+            return;
+        }
+        ObjectNode json = MAPPER.createObjectNode();
+        json.put("version", VERSION);
+        json.put("path", index.getPath());
+        json.put("length", index.getLength());
+        json.put("lastModified", index.getLastModified());
+        ArrayNode entries = json.putArray("entries");
+        for (ZipRecord record : index.getRecords()) {
+            entries.addArray()
+                .add(record.getName())
+                .add(record.getMethod())
+                .add(record.getFlags())
+                .add(record.getDosTime())
+                .add(record.getCrc())
+                .add(record.getCompressedSize())
+                .add(record.getSize())
+                .add(record.getOffset());
+        }
+        ArrayNode webJars = json.putArray("webJars");
+        index.getWebJarLibraries().forEach(webJars::add);
+        ArrayNode patterns = json.putArray("descriptorPatterns");
+        index.getDescriptorPatterns().forEach(patterns::add);
+        ObjectNode descriptors = json.putObject("descriptors");
+        index.getDescriptors().forEach((path, lines) -> {
+            ArrayNode array = descriptors.putArray(path);
+            lines.forEach(array::add);
+        });
+
+        File file = getIndexFile(index.getPath());
+        File tmp = null;
+        try {
+            Files.createDirectories(file.getParentFile().toPath());
+            // Write to a temporary file first, so concurrent builds never read a partial index
+            tmp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+            MAPPER.writeValue(tmp, json);
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // The cache is an optimization, failing to write it must not break the build, the index is still kept
+            // in memory
+            if (tmp != null) {
+                tmp.delete();
+            }
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ *
+ *   Copyright (c) 2016-2017 Red Hat, Inc.
+ *
+ *   Red Hat licenses this file to you under the Apache License, version
+ *   2.0 (the "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *   implied.  See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package io.reactiverse.vertx.maven.plugin.zip;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+
+/**
+ * Deflates content on worker threads. Small contents are deflated as a whole by a single worker. Large contents are
+ * split in blocks deflated concurrently (as {@code pigz} does): each block is primed with the last 32Kb of the
+ * previous one as dictionary and ends with a sync flush, so the concatenation of the blocks is a valid deflate
+ * stream.
+ */
+public class ParallelDeflater implements Closeable {
+
+    /**
+     * The size of the blocks deflated concurrently.
+     */
+    static final int BLOCK_SIZE = 128 * 1024;
+
+    /**
+     * The size of the deflate window, i.e. the size of the dictionary given to each block.
+     */
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+
+    private final ExecutorService pool;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param threads the number of worker threads
+     */
+    public ParallelDeflater(int threads) {
+        AtomicInteger count = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "vertx-maven-plugin-deflater-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Submits the given content.
+     *
+     * @param content the content, must not be modified until the compressed bytes have been retrieved
+     * @param level   the deflate level, from 0 to 9, -1 for the default level
+     * @return the compressed content, available once the workers are done
+     */
+    public Compressed submit(byte[] content, int level) {
+        List<Future<byte[]>> blocks = new ArrayList<>();
+        int offset = 0;
+        do {
+            int start = offset;
+            int length = Math.min(BLOCK_SIZE, content.length - start);
+            boolean last = start + length >= content.length;
+            blocks.add(pool.submit(() -> deflate(content, start, length, last, level)));
+            offset += length;
+        } while (offset < content.length);
+        return new Compressed(blocks);
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Deflates a block of the given content.
+     *
+     * @param content the content
+     * @param offset  the offset of the block
+     * @param length  the length of the block
+     * @param last    whether or not it's the last block of the content
+     * @param level   the deflate level
+     * @return the compressed block
+     */
+    static byte[] deflate(byte[] content, int offset, int length, boolean last, int level) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            if (offset > 0) {
+                int size = Math.min(DICTIONARY_SIZE, offset);
+                deflater.setDictionary(content, offset - size, size);
+            }
+            deflater.setInput(content, offset, length);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.max(64, length / 2));
+            byte[] buffer = new byte[8192];
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    int count = deflater.deflate(buffer);
+                    bytes.write(buffer, 0, count);
+                }
+            } else {
+                int count;
+                do {
+                    count = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    bytes.write(buffer, 0, count);
+                } while (count == buffer.length);
+            }
+            return bytes.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Content being compressed.
+     */
+    public static class Compressed {
+
+        private final List<Future<byte[]>> blocks;
+
+        private Compressed(List<Future<byte[]>> blocks) {
+            this.blocks = blocks;
+        }
+
+        /**
+         * Waits for the workers and returns the compressed bytes.
+         *
+         * @return the compressed bytes
+         * @throws IOException if the compression failed or has been interrupted
+         */
+        public byte[] get() throws IOException {
+            try {
+                if (blocks.size() == 1) {
+                    return blocks.get(0).get();
+                }
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                for (Future<byte[]> block : blocks) {
+                    bytes.write(block.get());
+                }
+                return bytes.toByteArray();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while compressing");
+            } catch (ExecutionException e) {
+                throw new IOException("Unable to compress the content", e.getCause());
+            }
+        }
+
+        /**
+         * Cancels the compression.
+         */
+        public void cancel() {
+            blocks.forEach(block -> block.cancel(true));
+        }
+    }
+}
@@ -0,0 +1,336 @@
+/*
+ *
+ *   Copyright (c) 2016-2017 Red Hat, Inc.
+ *
+ *   Red Hat licenses this file to you under the Apache License, version
+ *   2.0 (the "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *   implied.  See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package io.reactiverse.vertx.maven.plugin.zip;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Reads a zip file from its central directory. Unlike {@link java.util.zip.ZipFile}, it gives access to the raw
+ * (compressed) bytes of the entries, so they can be copied to another archive without being inflated.
+ */
+public class ZipReader implements Closeable {
+
+    static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    static final int END_SIGNATURE = 0x06054b50;
+    static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    static final int ZIP64_EXTRA_ID = 0x0001;
+
+    static final int LOCAL_HEADER_SIZE = 30;
+    static final int CENTRAL_HEADER_SIZE = 46;
+    static final int END_SIZE = 22;
+    static final int ZIP64_LOCATOR_SIZE = 20;
+
+    static final long MAX_32 = 0xFFFFFFFFL;
+    static final int MAX_16 = 0xFFFF;
+
+    /**
+     * The general purpose flag telling the entry name is encoded in UTF-8, CP437 being used otherwise.
+     */
+    static final int FLAG_UTF8 = 1 << 11;
+
+    private static final Charset CP437 = Charset.forName("IBM437");
+
+    private final File file;
+    private final FileChannel channel;
+    private final List<ZipRecord> records;
+
+    /**
+     * Opens the given zip file and reads its central directory.
+     *
+     * @param file the file, must not be {@code null}
+     * @throws IOException if the file cannot be read or is not a valid zip file
+     */
+    public ZipReader(File file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            this.records = Collections.unmodifiableList(readCentralDirectory());
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens the given zip file, the central directory is not read, the given records are used instead.
+     *
+     * @param file    the file, must not be {@code null}
+     * @param records the records of the file, typically coming from a {@link JarIndex}
+     * @throws IOException if the file cannot be opened
+     */
+    public ZipReader(File file, List<ZipRecord> records) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        this.records = Collections.unmodifiableList(records);
+    }
+
+    /**
+     * @return the read file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return the records of the archive, in the central directory order
+     */
+    public List<ZipRecord> getRecords() {
+        return records;
+    }
+
+    /**
+     * Computes the offset of the (compressed) data of the given record. It requires reading the local file header
+     * as its extra field may differ from the one stored in the central directory.
+     *
+     * @param record the record
+     * @return the offset of the first byte of data
+     * @throws IOException if the local header cannot be read
+     */
+    public long getDataOffset(ZipRecord record) throws IOException {
+        ByteBuffer header = read(record.getOffset(), LOCAL_HEADER_SIZE);
+        if (header.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+            throw new ZipException("Invalid local header for " + record.getName() + " in " + file.getName());
+        }
+        int nameLength = header.getShort(26) & MAX_16;
+        int extraLength = header.getShort(28) & MAX_16;
+        return record.getOffset() + LOCAL_HEADER_SIZE + nameLength + extraLength;
+    }
+
+    /**
+     * Copies the raw (compressed) bytes of the given record to the given stream.
+     *
+     * @param record the record
+     * @param out    the output stream
+     * @throws IOException if the bytes cannot be copied
+     */
+    public void copyRaw(ZipRecord record, OutputStream out) throws IOException {
+        copyRange(getDataOffset(record), record.getCompressedSize(), out);
+    }
+
+    /**
+     * Copies a range of bytes of the archive to the given stream.
+     *
+     * @param position the position of the first byte
+     * @param length   the number of bytes to copy
+     * @param out      the output stream
+     * @throws IOException if the bytes cannot be copied
+     */
+    public void copyRange(long position, long length, OutputStream out) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(length, 64 * 1024));
+        long remaining = length;
+        long current = position;
+        while (remaining > 0) {
+            buffer.clear();
+            if (remaining < buffer.capacity()) {
+                buffer.limit((int) remaining);
+            }
+            int read = channel.read(buffer, current);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of " + file.getName());
+            }
+            out.write(buffer.array(), 0, read);
+            current += read;
+            remaining -= read;
+        }
+    }
+
+    /**
+     * Reads and inflates (if needed) the content of the given record.
+     *
+     * @param record the record
+     * @return the uncompressed content
+     * @throws IOException if the content cannot be read
+     */
+    public byte[] read(ZipRecord record) throws IOException {
+        if (record.getSize() > Integer.MAX_VALUE || record.getCompressedSize() > Integer.MAX_VALUE) {
+            throw new ZipException(record.getName() + " is too large to be read in memory");
+        }
+        ByteBuffer raw = read(getDataOffset(record), (int) record.getCompressedSize());
+        if (record.getMethod() == ZipRecord.STORED) {
+            return raw.array();
+        }
+        if (record.getMethod() != ZipRecord.DEFLATED) {
+            throw new ZipException("Unsupported compression method " + record.getMethod() + " for "
+                + record.getName() + " in " + file.getName());
+        }
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(raw.array());
+            byte[] content = new byte[(int) record.getSize()];
+            int offset = 0;
+            while (offset < content.length) {
+                int inflated = inflater.inflate(content, offset, content.length - offset);
+                if (inflated == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                offset += inflated;
+            }
+            if (offset != content.length) {
+                throw new ZipException("Invalid compressed data for " + record.getName() + " in " + file.getName());
+            }
+            return content;
+        } catch (DataFormatException e) {
+            throw new ZipException("Invalid compressed data for " + record.getName() + " in " + file.getName()
+                + ": " + e.getMessage());
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Opens a stream on the uncompressed content of the given record.
+     *
+     * @param record the record
+     * @return the stream
+     * @throws IOException if the content cannot be read
+     */
+    public InputStream openStream(ZipRecord record) throws IOException {
+        return new ByteArrayInputStream(read(record));
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        long current = position;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, current);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of " + file.getName());
+            }
+            current += read;
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private List<ZipRecord> readCentralDirectory() throws IOException {
+        long size = channel.size();
+        if (size < END_SIZE) {
+            throw new ZipException(file.getName() + " is not a zip file");
+        }
+
+        // The end of central directory record is followed by a comment of at most 64Kb
+        int tail = (int) Math.min(size, END_SIZE + MAX_16);
+        ByteBuffer buffer = read(size - tail, tail);
+        int end = -1;
+        for (int i = tail - END_SIZE; i >= 0; i--) {
+            if (buffer.getInt(i) == END_SIGNATURE) {
+                end = i;
+                break;
+            }
+        }
+        if (end < 0) {
+            throw new ZipException(file.getName() + " is not a zip file, end of central directory not found");
+        }
+
+        long count = buffer.getShort(end + 10) & MAX_16;
+        long directorySize = buffer.getInt(end + 12) & MAX_32;
+        long directoryOffset = buffer.getInt(end + 16) & MAX_32;
+
+        long endPosition = size - tail + end;
+        if ((count == MAX_16 || directorySize == MAX_32 || directoryOffset == MAX_32)
+            && endPosition >= ZIP64_LOCATOR_SIZE) {
+            ByteBuffer locator = read(endPosition - ZIP64_LOCATOR_SIZE, ZIP64_LOCATOR_SIZE);
+            if (locator.getInt(0) == ZIP64_LOCATOR_SIGNATURE) {
+                ByteBuffer zip64 = read(locator.getLong(8), 56);
+                if (zip64.getInt(0) != ZIP64_END_SIGNATURE) {
+                    throw new ZipException("Invalid zip64 end of central directory in " + file.getName());
+                }
+                count = zip64.getLong(32);
+                directorySize = zip64.getLong(40);
+                directoryOffset = zip64.getLong(48);
+            }
+        }
+
+        if (directorySize > Integer.MAX_VALUE) {
+            throw new ZipException("The central directory of " + file.getName() + " is too large");
+        }
+        ByteBuffer directory = read(directoryOffset, (int) directorySize);
+        List<ZipRecord> list = new ArrayList<>((int) Math.min(count, MAX_16));
+        int position = 0;
+        for (long i = 0; i < count; i++) {
+            if (directory.getInt(position) != CENTRAL_HEADER_SIGNATURE) {
+                throw new ZipException("Invalid central directory header in " + file.getName());
+            }
+            int flags = directory.getShort(position + 8) & MAX_16;
+            int method = directory.getShort(position + 10) & MAX_16;
+            long dosTime = directory.getInt(position + 12) & MAX_32;
+            long crc = directory.getInt(position + 16) & MAX_32;
+            long compressedSize = directory.getInt(position + 20) & MAX_32;
+            long uncompressedSize = directory.getInt(position + 24) & MAX_32;
+            int nameLength = directory.getShort(position + 28) & MAX_16;
+            int extraLength = directory.getShort(position + 30) & MAX_16;
+            int commentLength = directory.getShort(position + 32) & MAX_16;
+            long offset = directory.getInt(position + 42) & MAX_32;
+
+            byte[] name = new byte[nameLength];
+            directory.position(position + CENTRAL_HEADER_SIZE);
+            directory.get(name);
+
+            if (uncompressedSize == MAX_32 || compressedSize == MAX_32 || offset == MAX_32) {
+                // Look for the zip64 extended information
+                int extra = position + CENTRAL_HEADER_SIZE + nameLength;
+                int extraEnd = extra + extraLength;
+                while (extra + 4 <= extraEnd) {
+                    int id = directory.getShort(extra) & MAX_16;
+                    int length = directory.getShort(extra + 2) & MAX_16;
+                    if (id == ZIP64_EXTRA_ID) {
+                        int field = extra + 4;
+                        if (uncompressedSize == MAX_32) {
+                            uncompressedSize = directory.getLong(field);
+                            field += 8;
+                        }
+                        if (compressedSize == MAX_32) {
+                            compressedSize = directory.getLong(field);
+                            field += 8;
+                        }
+                        if (offset == MAX_32) {
+                            offset = directory.getLong(field);
+                        }
+                        break;
+                    }
+                    extra += 4 + length;
+                }
+            }
+
+            Charset charset = (flags & FLAG_UTF8) != 0 ? StandardCharsets.UTF_8 : CP437;
+            list.add(new ZipRecord(new String(name, charset), method, flags, dosTime, crc,
+                compressedSize, uncompressedSize, offset));
+            position += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+        }
+        return list;
+    }
+}
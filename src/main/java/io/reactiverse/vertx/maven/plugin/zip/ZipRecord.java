@@ -0,0 +1,132 @@
+/*
+ *
+ *   Copyright (c) 2016-2017 Red Hat, Inc.
+ *
+ *   Red Hat licenses this file to you under the Apache License, version
+ *   2.0 (the "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *   implied.  See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package io.reactiverse.vertx.maven.plugin.zip;
+
+/**
+ * The metadata of a zip entry, as stored in the central directory. The record does not hold the content of the
+ * entry, only what is required to copy the (compressed) bytes from one archive to another.
+ */
+public class ZipRecord {
+
+    /**
+     * Compression method used for uncompressed entries.
+     */
+    public static final int STORED = 0;
+
+    /**
+     * Compression method used for deflated entries.
+     */
+    public static final int DEFLATED = 8;
+
+    private final String name;
+    private final int method;
+    private final int flags;
+    private final long dosTime;
+    private final long crc;
+    private final long compressedSize;
+    private final long size;
+    private final long offset;
+
+    public ZipRecord(String name, int method, int flags, long dosTime, long crc, long compressedSize, long size,
+                     long offset) {
+        this.name = name;
+        this.method = method;
+        this.flags = flags;
+        this.dosTime = dosTime;
+        this.crc = crc;
+        this.compressedSize = compressedSize;
+        this.size = size;
+        this.offset = offset;
+    }
+
+    /**
+     * @return the entry name, directories end with {@code /}
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the compression method, {@link #STORED} or {@link #DEFLATED}
+     */
+    public int getMethod() {
+        return method;
+    }
+
+    /**
+     * @return the general purpose flags
+     */
+    public int getFlags() {
+        return flags;
+    }
+
+    /**
+     * @return the last modification time in MS-DOS format
+     */
+    public long getDosTime() {
+        return dosTime;
+    }
+
+    public long getCrc() {
+        return crc;
+    }
+
+    public long getCompressedSize() {
+        return compressedSize;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return the offset of the local file header in the archive
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    public boolean isDirectory() {
+        return name.endsWith("/");
+    }
+
+    /**
+     * Creates a copy of this record located at another offset.
+     *
+     * @param offset the new offset
+     * @return the new record
+     */
+    public ZipRecord relocate(long offset) {
+        return new ZipRecord(name, method, flags, dosTime, crc, compressedSize, size, offset);
+    }
+
+    /**
+     * Creates a copy of this record with another name.
+     *
+     * @param name the new name
+     * @return the new record
+     */
+    public ZipRecord rename(String name) {
+        return new ZipRecord(name, method, flags, dosTime, crc, compressedSize, size, offset);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,534 @@
+/*
+ *
+ *   Copyright (c) 2016-2017 Red Hat, Inc.
+ *
+ *   Red Hat licenses this file to you under the Apache License, version
+ *   2.0 (the "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *   implied.  See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package io.reactiverse.vertx.maven.plugin.zip;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import static io.reactiverse.vertx.maven.plugin.zip.ZipReader.*;
+
+/**
+ * Writes a zip file entry by entry, directly to the disk. Entries coming from another archive are copied verbatim
+ * (compressed bytes and CRC are reused), so only the metadata of the written entries is kept in memory.
+ * <p>
+ * Like {@link org.jboss.shrinkwrap.api.exporter.ZipExporter}, the parent directories of the entries are created
+ * on demand. An entry name can only be written once, use {@link #contains(String)} to check whether or not a name
+ * has already been written.
+ * <p>
+ * When {@link #setCompressionThreads(int)} is called with more than one thread, the entries added with
+ * {@link #addEntry(String, byte[], long)} are deflated on worker threads, and written in the order in which they have
+ * been added as soon as their compressed bytes are available.
+ */
+public class ZipWriter implements Closeable {
+
+    private static final int FLAG_DATA_DESCRIPTOR = 1 << 3;
+    private static final int FLAG_UTF8 = 1 << 11;
+    private static final long MAX_PENDING_BYTES = 64 * 1024 * 1024;
+
+    private final OutputStream out;
+    private final List<ZipRecord> records = new ArrayList<>();
+    private final Set<String> names = new HashSet<>();
+    private final Deque<PendingEntry> pending = new ArrayDeque<>();
+    private long pendingBytes;
+    private long position;
+    private int level = Deflater.DEFAULT_COMPRESSION;
+    private ParallelDeflater deflater;
+    private int maxPendingEntries;
+
+    /**
+     * Creates a writer writing to the given file. The file is created or truncated.
+     *
+     * @param file the output file
+     * @throws IOException if the file cannot be opened
+     */
+    public ZipWriter(File file) throws IOException {
+        this.out = new BufferedOutputStream(new FileOutputStream(file), 64 * 1024);
+    }
+
+    /**
+     * Sets the deflate level used for the entries compressed by this writer.
+     *
+     * @param level the level, from 0 to 9, -1 for the default level
+     * @return the current {@link ZipWriter}
+     */
+    public ZipWriter setLevel(int level) {
+        this.level = level;
+        return this;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * Configures the number of threads used to deflate the added entries. Must be called before adding entries.
+     *
+     * @param threads the number of threads, if lower than 2 the entries are deflated on the calling thread
+     * @return the current {@link ZipWriter}
+     */
+    public ZipWriter setCompressionThreads(int threads) {
+        if (deflater != null) {
+            deflater.close();
+            deflater = null;
+        }
+        if (threads > 1) {
+            deflater = new ParallelDeflater(threads);
+            maxPendingEntries = 64 * threads;
+        }
+        return this;
+    }
+
+    /**
+     * Checks whether the given entry has already been written.
+     *
+     * @param name the name, directories end with {@code /}
+     * @return {@code true} if the name has been written
+     */
+    public boolean contains(String name) {
+        return names.contains(name);
+    }
+
+    /**
+     * @return the names of the entries written or being written
+     */
+    public Set<String> getNames() {
+        return Collections.unmodifiableSet(names);
+    }
+
+    /**
+     * @return the current position in the file, i.e. the number of bytes written so far, excluding the entries
+     * still being compressed (see {@link #flush()})
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * @return the records written so far, excluding the entries still being compressed (see {@link #flush()})
+     */
+    public List<ZipRecord> getRecords() {
+        return Collections.unmodifiableList(records);
+    }
+
+    /**
+     * Adds a directory entry (and its parents).
+     *
+     * @param name the name, a trailing {@code /} is added if missing
+     * @param time the last modification time (Java time)
+     * @throws IOException if the entry cannot be written
+     */
+    public void addDirectory(String name, long time) throws IOException {
+        String dir = name.endsWith("/") ? name : name + "/";
+        if (names.contains(dir)) {
+            return;
+        }
+        addParentDirectories(dir, time);
+        CRC32 crc = new CRC32();
+        enqueue(new PendingEntry(new ZipRecord(dir, ZipRecord.STORED, FLAG_UTF8, toDosTime(time), crc.getValue(),
+            0, 0, 0), null, null));
+    }
+
+    /**
+     * Adds an entry, the content is deflated using the configured level.
+     *
+     * @param name    the name
+     * @param content the uncompressed content
+     * @param time    the last modification time (Java time)
+     * @throws IOException if the entry cannot be written
+     */
+    public void addEntry(String name, byte[] content, long time) throws IOException {
+        addEntry(name, content, time, ZipRecord.DEFLATED, level);
+    }
+
+    /**
+     * Adds an entry.
+     *
+     * @param name    the name
+     * @param content the uncompressed content
+     * @param time    the last modification time (Java time)
+     * @param method  the compression method, {@link ZipRecord#STORED} or {@link ZipRecord#DEFLATED}
+     * @param level   the deflate level, ignored when the entry is stored
+     * @throws IOException if the entry cannot be written
+     */
+    public void addEntry(String name, byte[] content, long time, int method, int level) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        addParentDirectories(name, time);
+        ZipRecord record = new ZipRecord(name, method, FLAG_UTF8, toDosTime(time), crc.getValue(), 0,
+            content.length, 0);
+        if (method != ZipRecord.DEFLATED) {
+            enqueue(new PendingEntry(record, content, null));
+        } else if (deflater != null) {
+            enqueue(new PendingEntry(record, null, deflater.submit(content, level)));
+        } else {
+            enqueue(new PendingEntry(record, deflate(content, level), null));
+        }
+    }
+
+    /**
+     * Copies an entry from another archive without inflating it.
+     *
+     * @param record the record of the entry in the source archive
+     * @param source the source archive
+     * @throws IOException if the entry cannot be copied
+     */
+    public void copy(ZipRecord record, ZipReader source) throws IOException {
+        copy(record, source, record.getName());
+    }
+
+    /**
+     * Copies an entry from another archive without inflating it, but stores it under another name.
+     *
+     * @param record the record of the entry in the source archive
+     * @param source the source archive
+     * @param name   the name of the entry in the written archive
+     * @throws IOException if the entry cannot be copied
+     */
+    public void copy(ZipRecord record, ZipReader source, String name) throws IOException {
+        if (record.isDirectory()) {
+            addDirectory(name, fromDosTime(record.getDosTime()));
+            return;
+        }
+        addParentDirectories(name, fromDosTime(record.getDosTime()));
+        // The source is only guaranteed to be open during this call
+        flush();
+        int flags = (record.getFlags() & ~FLAG_DATA_DESCRIPTOR) | FLAG_UTF8;
+        ZipRecord copy = new ZipRecord(name, record.getMethod(), flags, record.getDosTime(), record.getCrc(),
+            record.getCompressedSize(), record.getSize(), position);
+        writeLocalHeader(copy);
+        source.copyRaw(record, counting());
+        register(copy);
+    }
+
+    /**
+     * Copies a region of another archive verbatim. As the local headers do not contain absolute offsets, a region
+     * made of complete entries can be moved in another archive as long as the central directory is updated.
+     *
+     * @param source  the source archive
+     * @param start   the offset of the first byte of the region in the source archive
+     * @param end     the offset of the first byte after the region in the source archive
+     * @param records the records of the entries contained in the region, in the source archive
+     * @throws IOException if the region cannot be copied
+     */
+    public void copyRegion(ZipReader source, long start, long end, List<ZipRecord> records) throws IOException {
+        flush();
+        long delta = position - start;
+        source.copyRange(start, end - start, counting());
+        for (ZipRecord record : records) {
+            register(record.relocate(record.getOffset() + delta));
+        }
+    }
+
+    /**
+     * Waits until the entries being compressed are written.
+     *
+     * @throws IOException if an entry cannot be compressed or written
+     */
+    public void flush() throws IOException {
+        while (!pending.isEmpty()) {
+            writePending();
+        }
+    }
+
+    /**
+     * Writes the central directory and closes the file.
+     *
+     * @throws IOException if the central directory cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+            long start = position;
+            for (ZipRecord record : records) {
+                writeCentralHeader(record);
+            }
+            writeEnd(start, position - start);
+            out.flush();
+        } finally {
+            pending.forEach(PendingEntry::cancel);
+            pending.clear();
+            if (deflater != null) {
+                deflater.close();
+            }
+            out.close();
+        }
+    }
+
+    /**
+     * Deflates the given content (raw deflate, as stored in zip files).
+     *
+     * @param content the content
+     * @param level   the level
+     * @return the compressed bytes
+     */
+    public static byte[] deflate(byte[] content, int level) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            deflater.setInput(content);
+            deflater.finish();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.max(64, content.length / 2));
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                int count = deflater.deflate(buffer);
+                bytes.write(buffer, 0, count);
+            }
+            return bytes.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Converts a Java time to the MS-DOS format used in zip files.
+     *
+     * @param time the time in milliseconds
+     * @return the MS-DOS time
+     */
+    public static long toDosTime(long time) {
+        LocalDateTime date = LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault());
+        int year = date.getYear();
+        if (year < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return ((year - 1980) << 25 | date.getMonthValue() << 21 | date.getDayOfMonth() << 16
+            | date.getHour() << 11 | date.getMinute() << 5 | date.getSecond() >> 1) & MAX_32;
+    }
+
+    /**
+     * Converts a MS-DOS time to a Java time.
+     *
+     * @param dosTime the MS-DOS time
+     * @return the time in milliseconds
+     */
+    public static long fromDosTime(long dosTime) {
+        LocalDateTime date = LocalDateTime.of(
+            (int) ((dosTime >> 25) & 0x7f) + 1980,
+            Math.max(1, Math.min(12, (int) ((dosTime >> 21) & 0x0f))),
+            Math.max(1, (int) ((dosTime >> 16) & 0x1f)),
+            Math.min(23, (int) ((dosTime >> 11) & 0x1f)),
+            Math.min(59, (int) ((dosTime >> 5) & 0x3f)),
+            Math.min(59, (int) ((dosTime << 1) & 0x3e)));
+        return date.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private void addParentDirectories(String name, long time) throws IOException {
+        int index = name.lastIndexOf('/', name.endsWith("/") ? name.length() - 2 : name.length() - 1);
+        if (index <= 0) {
+            return;
+        }
+        String parent = name.substring(0, index + 1);
+        if (!names.contains(parent)) {
+            addDirectory(parent, time);
+        }
+    }
+
+    private void enqueue(PendingEntry entry) throws IOException {
+        names.add(entry.record.getName());
+        pending.add(entry);
+        pendingBytes += entry.record.getSize();
+        // Bound the memory used by the entries waiting to be written
+        while (pending.size() > maxPendingEntries || pendingBytes > MAX_PENDING_BYTES) {
+            writePending();
+        }
+    }
+
+    private void writePending() throws IOException {
+        PendingEntry entry = pending.poll();
+        pendingBytes -= entry.record.getSize();
+        byte[] data = entry.data();
+        ZipRecord record = new ZipRecord(entry.record.getName(), entry.record.getMethod(), entry.record.getFlags(),
+            entry.record.getDosTime(), entry.record.getCrc(), data == null ? 0 : data.length,
+            entry.record.getSize(), position);
+        writeLocalHeader(record);
+        if (data != null) {
+            write(data);
+        }
+        records.add(record);
+    }
+
+    private void register(ZipRecord record) {
+        records.add(record);
+        names.add(record.getName());
+    }
+
+    private void writeLocalHeader(ZipRecord record) throws IOException {
+        byte[] name = record.getName().getBytes(StandardCharsets.UTF_8);
+        boolean zip64 = record.getSize() >= MAX_32 || record.getCompressedSize() >= MAX_32;
+        ByteBuffer header = buffer(LOCAL_HEADER_SIZE + name.length + (zip64 ? 20 : 0));
+        header.putInt(LOCAL_HEADER_SIGNATURE);
+        header.putShort((short) versionNeeded(record, zip64));
+        header.putShort((short) record.getFlags());
+        header.putShort((short) record.getMethod());
+        header.putInt((int) record.getDosTime());
+        header.putInt((int) record.getCrc());
+        header.putInt((int) (zip64 ? MAX_32 : record.getCompressedSize()));
+        header.putInt((int) (zip64 ? MAX_32 : record.getSize()));
+        header.putShort((short) name.length);
+        header.putShort((short) (zip64 ? 20 : 0));
+        header.put(name);
+        if (zip64) {
+            header.putShort((short) ZIP64_EXTRA_ID);
+            header.putShort((short) 16);
+            header.putLong(record.getSize());
+            header.putLong(record.getCompressedSize());
+        }
+        write(header.array());
+    }
+
+    private void writeCentralHeader(ZipRecord record) throws IOException {
+        byte[] name = record.getName().getBytes(StandardCharsets.UTF_8);
+        boolean largeSize = record.getSize() >= MAX_32;
+        boolean largeCompressedSize = record.getCompressedSize() >= MAX_32;
+        boolean largeOffset = record.getOffset() >= MAX_32;
+        int extra = (largeSize ? 8 : 0) + (largeCompressedSize ? 8 : 0) + (largeOffset ? 8 : 0);
+        boolean zip64 = extra > 0;
+        ByteBuffer header = buffer(CENTRAL_HEADER_SIZE + name.length + (zip64 ? extra + 4 : 0));
+        header.putInt(CENTRAL_HEADER_SIGNATURE);
+        header.putShort((short) (zip64 ? 45 : 20));
+        header.putShort((short) versionNeeded(record, zip64));
+        header.putShort((short) record.getFlags());
+        header.putShort((short) record.getMethod());
+        header.putInt((int) record.getDosTime());
+        header.putInt((int) record.getCrc());
+        header.putInt((int) (largeCompressedSize ? MAX_32 : record.getCompressedSize()));
+        header.putInt((int) (largeSize ? MAX_32 : record.getSize()));
+        header.putShort((short) name.length);
+        header.putShort((short) (zip64 ? extra + 4 : 0));
+        // comment length, disk number, internal and external attributes
+        header.putShort((short) 0);
+        header.putShort((short) 0);
+        header.putShort((short) 0);
+        header.putInt(0);
+        header.putInt((int) (largeOffset ? MAX_32 : record.getOffset()));
+        header.put(name);
+        if (zip64) {
+            header.putShort((short) ZIP64_EXTRA_ID);
+            header.putShort((short) extra);
+            if (largeSize) {
+                header.putLong(record.getSize());
+            }
+            if (largeCompressedSize) {
+                header.putLong(record.getCompressedSize());
+            }
+            if (largeOffset) {
+                header.putLong(record.getOffset());
+            }
+        }
+        write(header.array());
+    }
+
+    private void writeEnd(long directoryOffset, long directorySize) throws IOException {
+        boolean zip64 = records.size() >= MAX_16 || directoryOffset >= MAX_32 || directorySize >= MAX_32;
+        if (zip64) {
+            long zip64Offset = position;
+            ByteBuffer end = buffer(56 + ZIP64_LOCATOR_SIZE);
+            end.putInt(ZIP64_END_SIGNATURE);
+            end.putLong(44);
+            end.putShort((short) 45);
+            end.putShort((short) 45);
+            end.putInt(0);
+            end.putInt(0);
+            end.putLong(records.size());
+            end.putLong(records.size());
+            end.putLong(directorySize);
+            end.putLong(directoryOffset);
+            end.putInt(ZIP64_LOCATOR_SIGNATURE);
+            end.putInt(0);
+            end.putLong(zip64Offset);
+            end.putInt(1);
+            write(end.array());
+        }
+        ByteBuffer end = buffer(END_SIZE);
+        end.putInt(END_SIGNATURE);
+        end.putShort((short) 0);
+        end.putShort((short) 0);
+        end.putShort((short) Math.min(records.size(), MAX_16));
+        end.putShort((short) Math.min(records.size(), MAX_16));
+        end.putInt((int) Math.min(directorySize, MAX_32));
+        end.putInt((int) Math.min(directoryOffset, MAX_32));
+        end.putShort((short) 0);
+        write(end.array());
+    }
+
+    private static int versionNeeded(ZipRecord record, boolean zip64) {
+        if (zip64) {
+            return 45;
+        }
+        return record.getMethod() == ZipRecord.DEFLATED ? 20 : 10;
+    }
+
+    private static ByteBuffer buffer(int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private void write(byte[] bytes) throws IOException {
+        out.write(bytes);
+        position += bytes.length;
+    }
+
+    /**
+     * An entry waiting to be written, its data may still be compressed by the workers.
+     */
+    private static class PendingEntry {
+
+        private final ZipRecord record;
+        private final byte[] data;
+        private final ParallelDeflater.Compressed compressed;
+
+        private PendingEntry(ZipRecord record, byte[] data, ParallelDeflater.Compressed compressed) {
+            this.record = record;
+            this.data = data;
+            this.compressed = compressed;
+        }
+
+        private byte[] data() throws IOException {
+            return compressed != null ? compressed.get() : data;
+        }
+
+        private void cancel() {
+            if (compressed != null) {
+                compressed.cancel();
+            }
+        }
+    }
+
+    private OutputStream counting() {
+        return new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                position++;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                position += len;
+            }
+        };
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ *
+ *   Copyright (c) 2016-2017 Red Hat, Inc.
+ *
+ *   Red Hat licenses this file to you under the Apache License, version
+ *   2.0 (the "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *   implied.  See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package io.reactiverse.vertx.maven.plugin;
+
+import io.reactiverse.vertx.maven.plugin.cds.AppCdsBuilder;
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.StringAsset;
+import org.jboss.shrinkwrap.api.exporter.ZipExporter;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks the creation of the class data sharing archive of a jar, and its invalidation.
+ */
+public class AppCdsBuilderTest {
+
+    private final File root = new File("target/app-cds");
+
+    private File jar;
+
+    @Before
+    public void setUp() {
+        FileUtils.deleteQuietly(root);
+        root.mkdirs();
+        JavaArchive archive = ShrinkWrap.create(JavaArchive.class);
+        archive.addClass(Main.class);
+        archive.setManifest(new StringAsset("Manifest-Version: 1.0\nMain-Class: " + Main.class.getName() + "\n"));
+        jar = new File(root, "app.jar");
+        archive.as(ZipExporter.class).exportTo(jar, true);
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(root);
+    }
+
+    @Test
+    public void testBuild() throws Exception {
+        Assume.assumeTrue(AppCdsBuilder.isSupported());
+
+        AppCdsBuilder builder = new AppCdsBuilder(jar, new SystemStreamLog())
+            .setDependencies("first")
+            .setTimeout(30000);
+        assertThat(builder.build()).isFile().isEqualTo(builder.getArchive());
+        assertThat(builder.getLaunchScript()).isFile();
+        assertThat(FileUtils.readFileToString(builder.getLaunchScript(), StandardCharsets.UTF_8))
+            .contains("-XX:SharedArchiveFile=\"$DIR/app.jsa\"", "-jar \"$DIR/app.jar\"");
+        assertThat(FileUtils.readFileToString(builder.getClassList(), StandardCharsets.UTF_8))
+            .contains(Main.class.getName().replace('.', '/'));
+
+        // Same dependencies: the class list is reused
+        File classList = builder.getClassList();
+        assertThat(classList.setLastModified(0)).isTrue();
+        builder.build();
+        assertThat(classList.lastModified()).isEqualTo(0);
+        assertThat(builder.getArchive()).isFile();
+
+        // Other dependencies: the class list is recorded again
+        builder.setDependencies("second").build();
+        assertThat(classList.lastModified()).isNotEqualTo(0);
+        assertThat(FileUtils.readFileToString(builder.getFingerprint(), StandardCharsets.UTF_8)).isEqualTo("second");
+    }
+
+    @Test
+    public void testFingerprint() throws IOException {
+        File file = new File(root, "lib.jar");
+        FileUtils.write(file, "lib", StandardCharsets.UTF_8);
+        Artifact artifact = new DefaultArtifact("org.acme", "lib", "1.0", "compile", "jar", "", null);
+        artifact.setFile(file);
+        Artifact other = new DefaultArtifact("org.acme", "lib", "1.1", "compile", "jar", "", null);
+        other.setFile(file);
+
+        String fingerprint = AppCdsBuilder.fingerprint(Collections.singleton(artifact));
+        assertThat(AppCdsBuilder.fingerprint(Collections.singleton(artifact))).isEqualTo(fingerprint);
+        assertThat(AppCdsBuilder.fingerprint(Collections.singleton(other))).isNotEqualTo(fingerprint);
+        FileUtils.write(file, "modified lib", StandardCharsets.UTF_8);
+        assertThat(AppCdsBuilder.fingerprint(Collections.singleton(artifact))).isNotEqualTo(fingerprint);
+    }
+
+    /**
+     * The application of the training run, reporting its readiness like the Vert.x launcher.
+     */
+    public static class Main {
+
+        public static void main(String[] args) throws InterruptedException {
+            System.out.println("Succeeded in deploying verticle Main");
+            Thread.sleep(60000);
+        }
+    }
+}
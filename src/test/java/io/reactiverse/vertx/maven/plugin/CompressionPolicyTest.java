@@ -0,0 +1,184 @@
+/*
+ *
+ *   Copyright (c) 2016-2017 Red Hat, Inc.
+ *
+ *   Red Hat licenses this file to you under the Apache License, version
+ *   2.0 (the "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *   implied.  See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package io.reactiverse.vertx.maven.plugin;
+
+import io.reactiverse.vertx.maven.plugin.components.PackageConfig;
+import io.reactiverse.vertx.maven.plugin.components.PackageService;
+import io.reactiverse.vertx.maven.plugin.components.ServiceUtils;
+import io.reactiverse.vertx.maven.plugin.components.impl.ShrinkWrapFatJarPackageService;
+import io.reactiverse.vertx.maven.plugin.components.impl.StreamingFatJarPackageService;
+import io.reactiverse.vertx.maven.plugin.model.CompressionMethod;
+import io.reactiverse.vertx.maven.plugin.mojos.AbstractVertxMojo;
+import io.reactiverse.vertx.maven.plugin.mojos.Archive;
+import io.reactiverse.vertx.maven.plugin.mojos.CompressionOptions;
+import io.reactiverse.vertx.maven.plugin.mojos.CompressionRule;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.model.Build;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.apache.maven.project.MavenProject;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.StringAsset;
+import org.jboss.shrinkwrap.api.exporter.ZipExporter;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.zip.ZipEntry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks the fat jar engines write each entry with the method selected by the compression options of the archive.
+ */
+public class CompressionPolicyTest {
+
+    private static final String TEXT = "Lorem ipsum dolor sit amet, consectetur adipiscing elit. ";
+
+    private final File root = new File("target/compression-policy");
+
+    private Set<Artifact> artifacts;
+
+    private MavenProject project;
+
+    private AbstractVertxMojo mojo;
+
+    @Before
+    public void setUp() throws IOException {
+        FileUtils.deleteQuietly(root);
+        File classes = new File(root, "classes");
+        FileUtils.write(new File(classes, "org/acme/App.class"), repeat(TEXT), StandardCharsets.UTF_8);
+        FileUtils.write(new File(classes, "webroot/logo.png"), repeat(TEXT), StandardCharsets.UTF_8);
+        FileUtils.write(new File(classes, "webroot/index.html"), repeat(TEXT), StandardCharsets.UTF_8);
+        FileUtils.write(new File(classes, "data/model.bin"), repeat(TEXT), StandardCharsets.UTF_8);
+
+        JavaArchive dependency = ShrinkWrap.create(JavaArchive.class);
+        dependency.add(new StringAsset(repeat(TEXT)), "org/lib/Lib.class");
+        dependency.add(new StringAsset(repeat(TEXT)), "org/lib/font.woff2");
+        dependency.add(new StringAsset(repeat(TEXT)), "org/lib/lib.properties");
+        File jar = new File(root, "dep.jar");
+        dependency.as(ZipExporter.class).exportTo(jar, true);
+
+        artifacts = new LinkedHashSet<>();
+        Artifact artifact = new DefaultArtifact("org.acme", "lib", "1.0",
+            "compile", "jar", "", null);
+        artifact.setFile(jar);
+        artifacts.add(artifact);
+
+        project = new MavenProject();
+        project.setVersion("1.0");
+        project.setArtifactId("foo");
+        Build build = new Build();
+        build.setOutputDirectory(classes.getAbsolutePath());
+        project.setBuild(build);
+
+        mojo = new AbstractVertxMojo() {
+            @Override
+            public void execute() throws MojoExecutionException, MojoFailureException {
+
+            }
+        };
+        mojo.setLog(new SystemStreamLog());
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(root);
+    }
+
+    @Test
+    public void testDefaultPolicy() throws Exception {
+        for (PackageService service : Arrays.asList(new StreamingFatJarPackageService(),
+            new ShrinkWrapFatJarPackageService())) {
+            Map<String, Integer> methods = methods(doPackage(service, new CompressionOptions()));
+            assertThat(methods).containsEntry("webroot/logo.png", ZipEntry.STORED);
+            assertThat(methods).containsEntry("org/lib/font.woff2", ZipEntry.STORED);
+            assertThat(methods).containsEntry("webroot/index.html", ZipEntry.DEFLATED);
+            assertThat(methods).containsEntry("org/acme/App.class", ZipEntry.DEFLATED);
+            assertThat(methods).containsEntry("org/lib/Lib.class", ZipEntry.DEFLATED);
+        }
+    }
+
+    @Test
+    public void testStoreClassesAndRules() throws Exception {
+        CompressionOptions options = new CompressionOptions()
+            .setStoreClasses(true)
+            .addRule(new CompressionRule().addPattern("**/*.bin").setMethod(CompressionMethod.STORED))
+            .addRule(new CompressionRule().addPattern("**/*.png").setMethod(CompressionMethod.DEFLATED).setLevel(9));
+        for (PackageService service : Arrays.asList(new StreamingFatJarPackageService(),
+            new ShrinkWrapFatJarPackageService())) {
+            File jar = doPackage(service, options);
+            Map<String, Integer> methods = methods(jar);
+            assertThat(methods).containsEntry("org/acme/App.class", ZipEntry.STORED);
+            // Inflated from the dependency and stored
+            assertThat(methods).containsEntry("org/lib/Lib.class", ZipEntry.STORED);
+            assertThat(methods).containsEntry("data/model.bin", ZipEntry.STORED);
+            // The first matching rule wins over the default stored patterns
+            assertThat(methods).containsEntry("webroot/logo.png", ZipEntry.DEFLATED);
+            assertThat(methods).containsEntry("org/lib/lib.properties", ZipEntry.DEFLATED);
+
+            try (JarFile file = new JarFile(jar)) {
+                for (String name : Arrays.asList("org/acme/App.class", "org/lib/Lib.class", "webroot/logo.png")) {
+                    assertThat(IOUtils.toString(file.getInputStream(file.getEntry(name)), StandardCharsets.UTF_8))
+                        .isEqualTo(repeat(TEXT));
+                }
+            }
+        }
+    }
+
+    private File doPackage(PackageService service, CompressionOptions options) throws Exception {
+        Archive archive = ServiceUtils.getDefaultFatJar().setCompression(options);
+        return service.doPackage(new PackageConfig()
+            .setArtifacts(artifacts)
+            .setMojo(mojo)
+            .setOutput(new File(root, "compression.jar"))
+            .setProject(project)
+            .setArchive(archive));
+    }
+
+    private static Map<String, Integer> methods(File jar) throws IOException {
+        Map<String, Integer> methods = new HashMap<>();
+        try (JarFile file = new JarFile(jar)) {
+            Enumeration<JarEntry> entries = file.entries();
+            while (entries.hasMoreElements()) {
+                JarEntry entry = entries.nextElement();
+                methods.put(entry.getName(), entry.getMethod());
+            }
+        }
+        return methods;
+    }
+
+    private static String repeat(String text) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            builder.append(text);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ *
+ *   Copyright (c) 2016-2017 Red Hat, Inc.
+ *
+ *   Red Hat licenses this file to you under the Apache License, version
+ *   2.0 (the "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *   implied.  See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package io.reactiverse.vertx.maven.plugin;
+
+import io.reactiverse.vertx.maven.plugin.components.PackageConfig;
+import io.reactiverse.vertx.maven.plugin.components.PackageService;
+import io.reactiverse.vertx.maven.plugin.components.PackageType;
+import io.reactiverse.vertx.maven.plugin.components.ServiceUtils;
+import io.reactiverse.vertx.maven.plugin.components.impl.ExplodedPackageService;
+import io.reactiverse.vertx.maven.plugin.components.impl.LayeredPackageService;
+import io.reactiverse.vertx.maven.plugin.components.impl.ShrinkWrapFatJarPackageService;
+import io.reactiverse.vertx.maven.plugin.components.impl.StreamingFatJarPackageService;
+import io.reactiverse.vertx.maven.plugin.mojos.AbstractVertxMojo;
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.model.Build;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.apache.maven.project.MavenProject;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.StringAsset;
+import org.jboss.shrinkwrap.api.exporter.ZipExporter;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks the report of the entries provided by several dependencies of the packages.
+ */
+public class DuplicateContentTest {
+
+    private final File root = new File("target/duplicate-content");
+
+    private final List<String> warnings = new ArrayList<>();
+
+    private final List<String> infos = new ArrayList<>();
+
+    private Set<Artifact> artifacts;
+
+    private MavenProject project;
+
+    private AbstractVertxMojo mojo;
+
+    @Before
+    public void setUp() throws IOException {
+        FileUtils.deleteQuietly(root);
+        File classes = new File(root, "classes");
+        FileUtils.write(new File(classes, "org/acme/Overridden.class"), "project", StandardCharsets.UTF_8);
+
+        JavaArchive first = ShrinkWrap.create(JavaArchive.class);
+        first.add(new StringAsset("same"), "org/lib/Same.txt");
+        first.add(new StringAsset("first"), "org/lib/Conflict.class");
+        first.add(new StringAsset("first"), "org/acme/Overridden.class");
+        first.add(new StringAsset("first license"), "META-INF/LICENSE");
+        File jar1 = new File(root, "dep1.jar");
+        first.as(ZipExporter.class).exportTo(jar1, true);
+
+        JavaArchive second = ShrinkWrap.create(JavaArchive.class);
+        second.add(new StringAsset("same"), "org/lib/Same.txt");
+        second.add(new StringAsset("second"), "org/lib/Conflict.class");
+        second.add(new StringAsset("second"), "org/acme/Overridden.class");
+        second.add(new StringAsset("second license"), "META-INF/LICENSE");
+        second.add(new StringAsset("same"), "org/other/Copy.txt");
+        File jar2 = new File(root, "dep2.jar");
+        second.as(ZipExporter.class).exportTo(jar2, true);
+
+        artifacts = new LinkedHashSet<>();
+        Artifact a1 = new DefaultArtifact("org.acme", "a1", "1.0",
+            "compile", "jar", "", null);
+        a1.setFile(jar1);
+        Artifact a2 = new DefaultArtifact("org.acme", "a2", "1.0",
+            "compile", "jar", "", null);
+        a2.setFile(jar2);
+        artifacts.add(a1);
+        artifacts.add(a2);
+
+        project = new MavenProject();
+        project.setVersion("1.0");
+        project.setArtifactId("foo");
+        Build build = new Build();
+        build.setOutputDirectory(classes.getAbsolutePath());
+        project.setBuild(build);
+
+        mojo = new AbstractVertxMojo() {
+            @Override
+            public void execute() throws MojoExecutionException, MojoFailureException {
+
+            }
+        };
+        mojo.setLog(new SystemStreamLog() {
+            @Override
+            public void warn(CharSequence content) {
+                warnings.add(content.toString());
+                super.warn(content);
+            }
+
+            @Override
+            public void info(CharSequence content) {
+                infos.add(content.toString());
+                super.info(content);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(root);
+    }
+
+    @Test
+    public void testDuplicateReport() throws Exception {
+        for (PackageService service : Arrays.asList(new StreamingFatJarPackageService(),
+            new ShrinkWrapFatJarPackageService(), new ExplodedPackageService(), new LayeredPackageService())) {
+            warnings.clear();
+            infos.clear();
+            service.doPackage(config(service.type() == PackageType.FAT_JAR ? "foo.jar" : "foo")
+                .setDuplicateReport(true));
+
+            // The project entries override the dependency entries, and the license conflict is not a warning
+            assertThat(warnings).hasSize(1);
+            assertThat(warnings.get(0)).contains("org/lib/Conflict.class", "org.acme:a1", "org.acme:a2");
+            assertThat(infos).contains("Duplicate content: 1 entries provided by several dependencies (4 bytes " +
+                "embedded once), 1 entries identical to an entry stored under another name (4 bytes), 2 " +
+                "conflicting entries");
+        }
+    }
+
+    @Test
+    public void testNoReportByDefault() throws Exception {
+        new ShrinkWrapFatJarPackageService().doPackage(config("foo.jar"));
+        assertThat(warnings).isEmpty();
+        assertThat(infos.stream().noneMatch(message -> message.startsWith("Duplicate content"))).isTrue();
+    }
+
+    @Test
+    public void testNoReportWhenTheDependenciesAreReused() throws Exception {
+        new StreamingFatJarPackageService().doPackage(config("foo.jar").setDuplicateReport(true)
+            .setIncremental(true));
+        assertThat(infos.stream().anyMatch(message -> message.startsWith("Duplicate content"))).isTrue();
+
+        warnings.clear();
+        infos.clear();
+        new StreamingFatJarPackageService().doPackage(config("foo.jar").setDuplicateReport(true)
+            .setIncremental(true));
+        assertThat(infos).contains("Dependencies unchanged, reusing the dependency region of foo.jar");
+        assertThat(infos.stream().noneMatch(message -> message.startsWith("Duplicate content"))).isTrue();
+    }
+
+    private PackageConfig config(String output) {
+        return new PackageConfig()
+            .setArtifacts(artifacts)
+            .setMojo(mojo)
+            .setOutput(new File(root, output))
+            .setProject(project)
+            .setArchive(ServiceUtils.getDefaultFatJar());
+    }
+}
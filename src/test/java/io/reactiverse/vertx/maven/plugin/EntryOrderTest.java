@@ -0,0 +1,176 @@
+/*
+ *
+ *   Copyright (c) 2016-2017 Red Hat, Inc.
+ *
+ *   Red Hat licenses this file to you under the Apache License, version
+ *   2.0 (the "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *   implied.  See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package io.reactiverse.vertx.maven.plugin;
+
+import io.reactiverse.vertx.maven.plugin.components.PackageConfig;
+import io.reactiverse.vertx.maven.plugin.components.PackageService;
+import io.reactiverse.vertx.maven.plugin.components.ServiceUtils;
+import io.reactiverse.vertx.maven.plugin.components.impl.ShrinkWrapFatJarPackageService;
+import io.reactiverse.vertx.maven.plugin.components.impl.StreamingFatJarPackageService;
+import io.reactiverse.vertx.maven.plugin.mojos.AbstractVertxMojo;
+import io.reactiverse.vertx.maven.plugin.utils.ClassLoadOrder;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.model.Build;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.apache.maven.project.MavenProject;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.StringAsset;
+import org.jboss.shrinkwrap.api.exporter.ZipExporter;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks the entries of the class load order are written first in the fat jar, and the parsing of the class loading
+ * logs.
+ */
+public class EntryOrderTest {
+
+    private final File root = new File("target/entry-order");
+
+    private Set<Artifact> artifacts;
+
+    private MavenProject project;
+
+    private AbstractVertxMojo mojo;
+
+    @Before
+    public void setUp() throws IOException {
+        FileUtils.deleteQuietly(root);
+        File classes = new File(root, "classes");
+        FileUtils.write(new File(classes, "org/acme/Main.class"), "main", StandardCharsets.UTF_8);
+        FileUtils.write(new File(classes, "org/acme/Shared.class"), "project", StandardCharsets.UTF_8);
+        FileUtils.write(new File(classes, "org/acme/Unused.class"), "unused", StandardCharsets.UTF_8);
+
+        JavaArchive first = ShrinkWrap.create(JavaArchive.class);
+        first.add(new StringAsset("lib"), "org/lib/Lib.class");
+        first.add(new StringAsset("dependency"), "org/acme/Shared.class");
+        first.add(new StringAsset("first"), "org/lib/Duplicate.class");
+        File jar1 = new File(root, "dep1.jar");
+        first.as(ZipExporter.class).exportTo(jar1, true);
+
+        JavaArchive second = ShrinkWrap.create(JavaArchive.class);
+        second.add(new StringAsset("second"), "org/lib/Duplicate.class");
+        second.add(new StringAsset("other"), "org/other/Other.class");
+        File jar2 = new File(root, "dep2.jar");
+        second.as(ZipExporter.class).exportTo(jar2, true);
+
+        artifacts = new LinkedHashSet<>();
+        Artifact a1 = new DefaultArtifact("org.acme", "a1", "1.0",
+            "compile", "jar", "", null);
+        a1.setFile(jar1);
+        Artifact a2 = new DefaultArtifact("org.acme", "a2", "1.0",
+            "compile", "jar", "", null);
+        a2.setFile(jar2);
+        artifacts.add(a1);
+        artifacts.add(a2);
+
+        project = new MavenProject();
+        project.setVersion("1.0");
+        project.setArtifactId("foo");
+        Build build = new Build();
+        build.setOutputDirectory(classes.getAbsolutePath());
+        project.setBuild(build);
+
+        mojo = new AbstractVertxMojo() {
+            @Override
+            public void execute() throws MojoExecutionException, MojoFailureException {
+
+            }
+        };
+        mojo.setLog(new SystemStreamLog());
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(root);
+    }
+
+    @Test
+    public void testEntryOrder() throws Exception {
+        List<String> order = Arrays.asList("org/acme/Main.class", "org/lib/Duplicate.class", "org/acme/Shared.class",
+            "org/missing/Missing.class", "org/lib/Lib.class");
+        for (PackageService service : Arrays.asList(new StreamingFatJarPackageService(),
+            new ShrinkWrapFatJarPackageService())) {
+            File jar = service.doPackage(new PackageConfig()
+                .setArtifacts(artifacts)
+                .setMojo(mojo)
+                .setOutput(new File(root, "ordered.jar"))
+                .setProject(project)
+                .setArchive(ServiceUtils.getDefaultFatJar())
+                .setEntryOrder(order));
+
+            try (JarFile file = new JarFile(jar)) {
+                List<String> files = new ArrayList<>();
+                Enumeration<JarEntry> entries = file.entries();
+                while (entries.hasMoreElements()) {
+                    JarEntry entry = entries.nextElement();
+                    if (!entry.isDirectory()) {
+                        files.add(entry.getName());
+                    }
+                }
+                assertThat(files.subList(0, 5)).containsExactly("META-INF/MANIFEST.MF", "org/acme/Main.class",
+                    "org/lib/Duplicate.class", "org/acme/Shared.class", "org/lib/Lib.class");
+                assertThat(files).contains("org/acme/Unused.class", "org/other/Other.class");
+                assertThat(files).doesNotHaveDuplicates();
+
+                // The order does not change the content: the project wins, then the first dependency
+                assertThat(read(file, "org/acme/Shared.class")).isEqualTo("project");
+                assertThat(read(file, "org/lib/Duplicate.class")).isEqualTo("first");
+            }
+        }
+    }
+
+    @Test
+    public void testParseClassLoadingLogs() throws Exception {
+        File jar = new File(root, "app.jar");
+        List<String> output = Arrays.asList(
+            "[Loaded java.lang.Object from /opt/jdk/jre/lib/rt.jar]",
+            "[Loaded org.acme.Main from file:" + jar.getAbsolutePath() + "]",
+            "[Loaded org.acme.Main$$Lambda$1/1705736037 from org.acme.Main]",
+            "[0.063s][info][class,load] org.acme.Main$Inner source: file:" + jar.getAbsolutePath(),
+            "[0.070s][info][class,load] java.lang.Thread source: shared objects file",
+            "[0.072s][info][class,load] org.acme.Main source: file:" + jar.getAbsolutePath(),
+            "Succeeded in deploying verticle");
+        List<String> order = ClassLoadOrder.parse(output, jar);
+        assertThat(order).containsExactly("org/acme/Main.class", "org/acme/Main$Inner.class");
+
+        File file = new File(root, "order/class-load-order.txt");
+        ClassLoadOrder.write(file, order);
+        assertThat(ClassLoadOrder.read(file)).isEqualTo(order);
+    }
+
+    private static String read(JarFile file, String name) throws IOException {
+        return IOUtils.toString(file.getInputStream(file.getEntry(name)), StandardCharsets.UTF_8);
+    }
+}
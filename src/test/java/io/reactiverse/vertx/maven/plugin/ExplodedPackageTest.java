@@ -0,0 +1,186 @@
+/*
+ *
+ *   Copyright (c) 2016-2017 Red Hat, Inc.
+ *
+ *   Red Hat licenses this file to you under the Apache License, version
+ *   2.0 (the "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *   implied.  See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package io.reactiverse.vertx.maven.plugin;
+
+import io.reactiverse.vertx.maven.plugin.components.PackageConfig;
+import io.reactiverse.vertx.maven.plugin.components.ServiceUtils;
+import io.reactiverse.vertx.maven.plugin.components.impl.ExplodedPackageService;
+import io.reactiverse.vertx.maven.plugin.mojos.AbstractVertxMojo;
+import io.reactiverse.vertx.maven.plugin.mojos.Archive;
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.model.Build;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.apache.maven.project.MavenProject;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.StringAsset;
+import org.jboss.shrinkwrap.api.exporter.ZipExporter;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.jar.Manifest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks the behavior of the {@link ExplodedPackageService}.
+ */
+public class ExplodedPackageTest {
+
+    private final File root = new File("target/exploded-package");
+
+    private final File classes = new File(root, "classes");
+
+    private final File output = new File(root, "out/foo-1.0");
+
+    private Set<Artifact> artifacts;
+
+    private MavenProject project;
+
+    private AbstractVertxMojo mojo;
+
+    @Before
+    public void setUp() throws IOException {
+        FileUtils.deleteQuietly(root);
+        FileUtils.write(new File(classes, "org/acme/App.txt"), "app", StandardCharsets.UTF_8);
+        FileUtils.write(new File(classes, "META-INF/services/org.acme.Spi"), "org.acme.Impl",
+            StandardCharsets.UTF_8);
+
+        JavaArchive archive = ShrinkWrap.create(JavaArchive.class);
+        archive.add(new StringAsset("lib"), "org/lib/Lib.txt");
+        File jar = new File(root, "repository/dep-1.0.jar");
+        jar.getParentFile().mkdirs();
+        archive.as(ZipExporter.class).exportTo(jar, true);
+
+        artifacts = new LinkedHashSet<>();
+        Artifact artifact = new DefaultArtifact("org.acme", "dep", "1.0", "compile", "jar", "", null);
+        artifact.setFile(jar);
+        artifacts.add(artifact);
+
+        project = new MavenProject();
+        project.setVersion("1.0");
+        project.setArtifactId("foo");
+        Build build = new Build();
+        build.setOutputDirectory(classes.getAbsolutePath());
+        project.setBuild(build);
+
+        mojo = new AbstractVertxMojo() {
+            @Override
+            public void execute() throws MojoExecutionException, MojoFailureException {
+
+            }
+        };
+        mojo.setLog(new SystemStreamLog());
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(root);
+    }
+
+    @Test
+    public void testExplodedApplication() throws Exception {
+        File directory = doPackage();
+        assertThat(directory).isEqualTo(output);
+
+        assertThat(new File(output, "classes/org/acme/App.txt")).hasContent("app");
+        assertThat(new File(output, "classes/META-INF/services/org.acme.Spi")).hasContent("org.acme.Impl");
+        assertThat(new File(output, "lib/dep-1.0.jar")).isFile();
+        assertThat(new File(output, "bin/launch")).isFile().canRead();
+        assertThat(new File(output, "bin/launch.bat")).isFile();
+
+        try (InputStream stream = new FileInputStream(new File(output, "classes/META-INF/MANIFEST.MF"))) {
+            Manifest manifest = new Manifest(stream);
+            assertThat(manifest.getMainAttributes().getValue("Main-Verticle")).isEqualTo("org.acme.Verticle");
+        }
+
+        File args = new File(output, ExplodedPackageService.LAUNCH_ARGS);
+        assertThat(FileUtils.readLines(args, StandardCharsets.UTF_8)).endsWith("io.vertx.core.Launcher");
+        assertThat(ExplodedPackageService.getClassPath(output)).containsExactly(
+            new File(output, "classes").getAbsoluteFile(),
+            new File(output, "lib/dep-1.0.jar").getAbsoluteFile());
+    }
+
+    @Test
+    public void testExplodedApplicationIsUpdated() throws Exception {
+        doPackage();
+        File unchanged = new File(output, "classes/META-INF/services/org.acme.Spi");
+        long lastModified = unchanged.lastModified();
+
+        FileUtils.deleteDirectory(new File(classes, "org"));
+        FileUtils.write(new File(classes, "org/acme/Other.txt"), "other", StandardCharsets.UTF_8);
+        artifacts.clear();
+        doPackage();
+
+        assertThat(new File(output, "classes/org/acme/App.txt")).doesNotExist();
+        assertThat(new File(output, "classes/org/acme/Other.txt")).hasContent("other");
+        assertThat(unchanged.lastModified()).isEqualTo(lastModified);
+        assertThat(new File(output, "lib/dep-1.0.jar")).doesNotExist();
+        assertThat(ExplodedPackageService.getClassPath(output))
+            .containsExactly(new File(output, "classes").getAbsoluteFile());
+    }
+
+    @Test
+    public void testIdenticalDependenciesShareTheirFile() throws Exception {
+        File jar = new File(root, "repository/dep-1.0.jar");
+        File copy = new File(root, "repository/copy-1.0.jar");
+        FileUtils.copyFile(jar, copy);
+        Artifact artifact = new DefaultArtifact("org.acme", "copy", "1.0", "compile", "jar", "", null);
+        artifact.setFile(copy);
+        artifacts.add(artifact);
+
+        doPackage();
+        File first = new File(output, "lib/dep-1.0.jar");
+        File second = new File(output, "lib/copy-1.0.jar");
+        assertThat(second).hasBinaryContent(Files.readAllBytes(copy.toPath()));
+        assertThat(Files.isSameFile(first.toPath(), second.toPath())).isTrue();
+
+        // Up to date
+        doPackage();
+        assertThat(Files.isSameFile(first.toPath(), second.toPath())).isTrue();
+    }
+
+    @Test
+    public void testNoExplodedApplication() throws Exception {
+        assertThat(ExplodedPackageService.getClassPath(output)).isNull();
+    }
+
+    private File doPackage() throws Exception {
+        Archive archive = ServiceUtils.getDefaultFatJar();
+        archive.getManifest().put("Main-Verticle", "org.acme.Verticle");
+        return new ExplodedPackageService().doPackage(new PackageConfig()
+            .setArtifacts(artifacts)
+            .setMojo(mojo)
+            .setOutput(output)
+            .setProject(project)
+            .setArchive(archive));
+    }
+}
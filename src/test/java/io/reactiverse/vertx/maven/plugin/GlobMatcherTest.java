@@ -0,0 +1,119 @@
+/*
+ *
+ *   Copyright (c) 2016-2017 Red Hat, Inc.
+ *
+ *   Red Hat licenses this file to you under the Apache License, version
+ *   2.0 (the "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *   implied.  See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package io.reactiverse.vertx.maven.plugin;
+
+import io.reactiverse.vertx.maven.plugin.components.impl.DependencyEntryFilter;
+import io.reactiverse.vertx.maven.plugin.mojos.DependencySet;
+import io.reactiverse.vertx.maven.plugin.mojos.DependencySetOptions;
+import io.reactiverse.vertx.maven.plugin.utils.GlobMatcher;
+import org.apache.maven.shared.utils.io.SelectorUtils;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks the behavior of the {@link GlobMatcher}, which must match exactly like
+ * {@link SelectorUtils#match(String, String)}.
+ */
+public class GlobMatcherTest {
+
+    @Test
+    public void testPatterns() {
+        GlobMatcher matcher = GlobMatcher.compile(Arrays.asList("**/*.SF", "/META-INF/services/*", "/a?c",
+            "/exact.txt"));
+        assertThat(matcher.matches("/META-INF/FOO.SF")).isTrue();
+        assertThat(matcher.matches("/FOO.SF")).isTrue();
+        assertThat(matcher.matches("FOO.SF")).isFalse();
+        assertThat(matcher.matches("/META-INF/services/org.acme.Spi")).isTrue();
+        assertThat(matcher.matches("/META-INF/services/nested/org.acme.Spi")).isTrue();
+        assertThat(matcher.matches("META-INF/services/org.acme.Spi")).isFalse();
+        assertThat(matcher.matches("/abc")).isTrue();
+        assertThat(matcher.matches("/a/c")).isTrue();
+        assertThat(matcher.matches("/abbc")).isFalse();
+        assertThat(matcher.matches("/exact.txt")).isTrue();
+        assertThat(matcher.matches("/exact.TXT")).isFalse();
+        assertThat(matcher.matches("/org/acme/App.class")).isFalse();
+    }
+
+    @Test
+    public void testEmpty() {
+        assertThat(GlobMatcher.compile(null).isEmpty()).isTrue();
+        assertThat(GlobMatcher.compile(Collections.emptyList()).matches("")).isFalse();
+        assertThat(GlobMatcher.compile(Collections.singletonList("")).matches("")).isTrue();
+        assertThat(GlobMatcher.compile(Collections.singletonList("*")).matches("")).isTrue();
+    }
+
+    @Test
+    public void testSameResultsAsSelectorUtils() {
+        List<String> paths = Arrays.asList("", "/", "/a", "/.git", "/.git/config", "/src/.svn/entries",
+            "/META-INF/MANIFEST.MF", "/META-INF/INDEX.LIST", "/META-INF/BC.RSA", "/META-INF/BC.SF", "/a/b/c~",
+            "/#tmp#", "/org/acme/.#App.java", "/org/acme/App.class", "/.DS_Store", "/x/._foo", "/%backup%");
+        List<String> patterns = new ArrayList<>(FileUtils.getDefaultExcludesAsList());
+        patterns.addAll(Arrays.asList("**/*.DSA", "**/*.RSA", "**/INDEX.LIST", "**/*.SF", "/META-INF/*",
+            "/org/**/*.class", "/?", "*a*a*", "**"));
+        for (String pattern : patterns) {
+            GlobMatcher matcher = GlobMatcher.compile(Collections.singletonList(pattern));
+            for (String path : paths) {
+                assertThat(matcher.matches(path)).as(pattern + " / " + path)
+                    .isEqualTo(SelectorUtils.match(pattern, path));
+            }
+        }
+
+        // Random patterns and paths over a small alphabet, to cover overlapping literals
+        Random random = new Random(0);
+        for (int i = 0; i < 20000; i++) {
+            List<String> set = Arrays.asList(random(random, "ab/.*?", 6), random(random, "ab/.*?", 6));
+            String path = random(random, "ab/.", 8);
+            boolean expected = SelectorUtils.match(set.get(0), path) || SelectorUtils.match(set.get(1), path);
+            assertThat(GlobMatcher.compile(set).matches(path)).as(set + " / " + path).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    public void testDependencyEntryFilter() {
+        DependencySetOptions options = new DependencySetOptions();
+        DependencySet set = new DependencySet();
+        set.setOptions(options);
+        DependencyEntryFilter filter = new DependencyEntryFilter(set);
+        assertThat(filter.toExclude("/org/acme/App.class")).isFalse();
+        assertThat(filter.toExclude("/META-INF/MANIFEST.MF")).isTrue();
+        assertThat(filter.toExclude("/META-INF/BC.SF")).isTrue();
+        assertThat(filter.toExclude("/.git/config")).isTrue();
+
+        options.addInclude("/org/**");
+        filter = new DependencyEntryFilter(set);
+        assertThat(filter.toExclude("/org/acme/App.class")).isFalse();
+        assertThat(filter.toExclude("/com/acme/App.class")).isTrue();
+
+        options.setUseDefaultExcludes(false);
+        filter = new DependencyEntryFilter(set);
+        assertThat(filter.toExclude("/org/BC.SF")).isFalse();
+    }
+
+    private static String random(Random random, String alphabet, int maxLength) {
+        StringBuilder builder = new StringBuilder();
+        int length = random.nextInt(maxLength + 1);
+        for (int i = 0; i < length; i++) {
+            builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return builder.toString();
+    }
+}
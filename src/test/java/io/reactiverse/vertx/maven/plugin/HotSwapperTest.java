@@ -0,0 +1,125 @@
+/*
+ *
+ *   Copyright (c) 2016-2017 Red Hat, Inc.
+ *
+ *   Red Hat licenses this file to you under the Apache License, version
+ *   2.0 (the "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *   implied.  See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package io.reactiverse.vertx.maven.plugin;
+
+import io.reactiverse.vertx.maven.plugin.utils.HotSwapper;
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.tools.ToolProvider;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.jayway.awaitility.Awaitility.await;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks the classes whose method bodies only have changed are redefined in the running application, and that the
+ * other changes trigger the redeployment.
+ */
+public class HotSwapperTest {
+
+    private final File root = new File("target/hot-swap").getAbsoluteFile();
+
+    private final File classes = new File(root, "classes");
+
+    private final File trigger = new File(root, "work/redeploy");
+
+    private final AtomicReference<String> output = new AtomicReference<>();
+
+    private HotSwapper swapper;
+
+    private Process application;
+
+    @Before
+    public void setUp() throws IOException {
+        FileUtils.deleteQuietly(root);
+        compile("return \"v1\";");
+        swapper = HotSwapper.start(classes, new File(root, "work"), new SystemStreamLog());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (application != null) {
+            application.destroy();
+        }
+        swapper.close();
+        FileUtils.deleteQuietly(root);
+    }
+
+    @Test
+    public void testHotSwap() throws Exception {
+        application = new ProcessBuilder(new File(System.getProperty("java.home"), "bin/java").getAbsolutePath(),
+            swapper.getAgentOption(), "-cp", classes.getAbsolutePath(), "App").redirectErrorStream(true).start();
+        Thread reader = new Thread(() -> {
+            try (BufferedReader lines = new BufferedReader(new InputStreamReader(application.getInputStream()))) {
+                String line;
+                while ((line = lines.readLine()) != null) {
+                    output.set(line);
+                }
+            } catch (IOException e) {
+                // Stopped
+            }
+        });
+        reader.setDaemon(true);
+        reader.start();
+        await().atMost(10, TimeUnit.SECONDS).until(() -> "v1".equals(output.get()) && swapper.isConnected());
+
+        // Method body only
+        compile("return \"v2\";");
+        swapper.build(Collections.emptySet());
+        await().atMost(10, TimeUnit.SECONDS).until(() -> "v2".equals(output.get()));
+        assertThat(trigger.list()).isEmpty();
+
+        // New method
+        compile("return helper(); } static String helper() { return \"v3\";");
+        swapper.build(Collections.emptySet());
+        assertThat(trigger.list()).hasSize(1);
+    }
+
+    @Test
+    public void testRedeployWithoutAgent() throws Exception {
+        swapper.build(Collections.emptySet());
+        assertThat(trigger.list()).isEmpty();
+
+        compile("return \"v2\";");
+        swapper.build(Collections.emptySet());
+        assertThat(trigger.list()).hasSize(1);
+    }
+
+    private void compile(String body) throws IOException {
+        File source = new File(root, "src/App.java");
+        FileUtils.write(source, "public class App { public static void main(String[] args) throws Exception { "
+            + "while (true) { System.out.println(message()); Thread.sleep(50); } } "
+            + "static String message() { " + body + " } }", "UTF-8");
+        long before = new File(classes, "App.class").lastModified();
+        FileUtils.forceMkdir(classes);
+        assertThat(ToolProvider.getSystemJavaCompiler().run(null, null, null, "-d", classes.getAbsolutePath(),
+            source.getAbsolutePath())).isEqualTo(0);
+        // The changes are detected from the size and last modification time of the files
+        new File(classes, "App.class").setLastModified(Math.max(before + 1000, System.currentTimeMillis()));
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ *
+ *   Copyright (c) 2016-2017 Red Hat, Inc.
+ *
+ *   Red Hat licenses this file to you under the Apache License, version
+ *   2.0 (the "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *   implied.  See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package io.reactiverse.vertx.maven.plugin;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.reactiverse.vertx.maven.plugin.image.ImageBuilder;
+import io.reactiverse.vertx.maven.plugin.image.OciLayout;
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks the behavior of the {@link ImageBuilder}.
+ */
+public class ImageBuilderTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final File root = new File("target/image-builder");
+
+    private final File application = new File(root, "app");
+
+    private final File output = new File(root, "image");
+
+    @Before
+    public void setUp() throws IOException {
+        FileUtils.deleteQuietly(root);
+        FileUtils.write(new File(application, "dependencies/lib/dep-1.0.jar"), "dep", StandardCharsets.UTF_8);
+        FileUtils.write(new File(application, "application/classes/org/acme/App.class"), "app",
+            StandardCharsets.UTF_8);
+        FileUtils.write(new File(application, "application/launch.args"), "-cp", StandardCharsets.UTF_8);
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(root);
+    }
+
+    @Test
+    public void testImageLayout() throws Exception {
+        String digest = build(output, null);
+
+        assertThat(new File(output, "oci-layout")).hasContent("{\"imageLayoutVersion\":\"1.0.0\"}");
+        JsonNode index = MAPPER.readTree(new File(output, "index.json"));
+        JsonNode descriptor = index.path("manifests").get(0);
+        assertThat(descriptor.path("digest").asText()).isEqualTo(digest);
+        assertThat(descriptor.path("annotations").path(OciLayout.REF_NAME).asText()).isEqualTo("1.0");
+
+        JsonNode manifest = read(output, digest);
+        assertThat(manifest.path("layers")).hasSize(2);
+        JsonNode config = read(output, manifest.path("config").path("digest").asText());
+        assertThat(config.path("config").path("WorkingDir").asText()).isEqualTo("/app");
+        assertThat(config.path("config").path("Entrypoint").get(1).asText()).isEqualTo("@application/launch.args");
+        assertThat(config.path("rootfs").path("diff_ids")).hasSize(2);
+
+        List<String> names = entries(blob(output, manifest.path("layers").get(1).path("digest").asText()));
+        assertThat(names).containsExactly("app/", "app/application/", "app/application/classes/",
+            "app/application/classes/org/", "app/application/classes/org/acme/",
+            "app/application/classes/org/acme/App.class", "app/application/launch.args");
+    }
+
+    @Test
+    public void testUnchangedLayersAreReused() throws Exception {
+        String digest = build(output, null);
+        JsonNode manifest = read(output, digest);
+        File dependencies = blob(output, manifest.path("layers").get(0).path("digest").asText());
+        long lastModified = dependencies.lastModified();
+
+        // Same files: same image
+        assertThat(build(output, null)).isEqualTo(digest);
+
+        FileUtils.write(new File(application, "application/classes/org/acme/App.class"), "changed",
+            StandardCharsets.UTF_8);
+        String updated = build(output, null);
+        assertThat(updated).isNotEqualTo(digest);
+        JsonNode newManifest = read(output, updated);
+        assertThat(newManifest.path("layers").get(0)).isEqualTo(manifest.path("layers").get(0));
+        assertThat(newManifest.path("layers").get(1)).isNotEqualTo(manifest.path("layers").get(1));
+        assertThat(dependencies.lastModified()).isEqualTo(lastModified);
+        // The blobs of the previous image are removed
+        assertThat(blob(output, manifest.path("layers").get(1).path("digest").asText())).doesNotExist();
+        assertThat(blob(output, digest)).doesNotExist();
+    }
+
+    @Test
+    public void testLayersAreReproducible() throws Exception {
+        String digest = build(output, null);
+        FileUtils.deleteQuietly(output);
+        FileUtils.deleteQuietly(new File(root, "image.idx"));
+        FileUtils.touch(new File(application, "dependencies/lib/dep-1.0.jar"));
+        assertThat(build(output, null)).isEqualTo(digest);
+    }
+
+    @Test
+    public void testBaseImage() throws Exception {
+        File base = new File(root, "base");
+        String baseDigest = build(base, null);
+        JsonNode baseManifest = read(base, baseDigest);
+
+        String digest = build(output, base);
+        JsonNode manifest = read(output, digest);
+        assertThat(manifest.path("layers")).hasSize(4);
+        assertThat(manifest.path("layers").get(0)).isEqualTo(baseManifest.path("layers").get(0));
+        assertThat(manifest.path("layers").get(1)).isEqualTo(baseManifest.path("layers").get(1));
+        JsonNode config = read(output, manifest.path("config").path("digest").asText());
+        assertThat(config.path("rootfs").path("diff_ids")).hasSize(4);
+        assertThat(config.path("history")).hasSize(4);
+    }
+
+    private String build(File layout, File base) throws IOException {
+        return new ImageBuilder(application, Arrays.asList("dependencies", "application"), layout,
+            new SystemStreamLog())
+            .setTag("1.0")
+            .setThreads(2)
+            .setBaseImage(base)
+            .build();
+    }
+
+    private static File blob(File layout, String digest) {
+        return new OciLayout(layout).getBlob(digest);
+    }
+
+    private static JsonNode read(File layout, String digest) throws IOException {
+        return MAPPER.readTree(blob(layout, digest));
+    }
+
+    private static List<String> entries(File layer) throws IOException {
+        ByteArrayOutputStream tar = new ByteArrayOutputStream();
+        try (InputStream in = new GZIPInputStream(new FileInputStream(layer))) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                tar.write(buffer, 0, read);
+            }
+        }
+        byte[] bytes = tar.toByteArray();
+        List<String> names = new ArrayList<>();
+        int offset = 0;
+        while (offset + 512 <= bytes.length && bytes[offset] != 0) {
+            String name = new String(bytes, offset, 100, StandardCharsets.US_ASCII).trim();
+            long size = Long.parseLong(new String(bytes, offset + 124, 11, StandardCharsets.US_ASCII), 8);
+            names.add(name.replace("\u0000", ""));
+            offset += 512 + (size + 511) / 512 * 512;
+        }
+        return names;
+    }
+}
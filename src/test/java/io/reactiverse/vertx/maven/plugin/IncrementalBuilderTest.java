@@ -0,0 +1,142 @@
+/*
+ *
+ *   Copyright (c) 2016-2017 Red Hat, Inc.
+ *
+ *   Red Hat licenses this file to you under the Apache License, version
+ *   2.0 (the "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *   implied.  See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package io.reactiverse.vertx.maven.plugin;
+
+import io.reactiverse.vertx.maven.plugin.utils.IncrementalBuilder;
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.jayway.awaitility.Awaitility.await;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks the incremental builder triggers a build when the watched directories change.
+ */
+public class IncrementalBuilderTest {
+
+    private final File root = new File("target/incremental");
+
+    private final AtomicInteger builds = new AtomicInteger();
+
+    private final List<Set<Path>> batches = new CopyOnWriteArrayList<>();
+
+    private final AtomicBoolean building = new AtomicBoolean();
+
+    private final AtomicBoolean overlap = new AtomicBoolean();
+
+    private volatile long buildDuration;
+
+    private IncrementalBuilder builder;
+
+    @Before
+    public void setUp() throws IOException {
+        FileUtils.deleteQuietly(root);
+        FileUtils.forceMkdir(new File(root, "java/org/acme"));
+        builder = new IncrementalBuilder(Collections.singleton(root.toPath()),
+            Collections.singletonList(changes -> {
+                if (!building.compareAndSet(false, true)) {
+                    overlap.set(true);
+                }
+                batches.add(changes);
+                Thread.sleep(buildDuration);
+                building.set(false);
+                builds.incrementAndGet();
+            }), new SystemStreamLog(), 100, 300);
+        builder.run();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        builder.close();
+        FileUtils.deleteQuietly(root);
+    }
+
+    @Test
+    public void testFileChanges() throws IOException {
+        File file = new File(root, "java/org/acme/Foo.java");
+        FileUtils.write(file, "class Foo {}", "UTF-8");
+        awaitBuild();
+
+        FileUtils.write(file, "class Foo { }", "UTF-8");
+        awaitBuild();
+
+        FileUtils.forceDelete(file);
+        awaitBuild();
+    }
+
+    @Test
+    public void testNewDirectoriesAreWatched() throws IOException {
+        // The file may be created before the new directories are watched
+        File file = new File(root, "resources/webroot/index.html");
+        FileUtils.write(file, "<html></html>", "UTF-8");
+        awaitBuild();
+
+        FileUtils.write(file, "<html><body></body></html>", "UTF-8");
+        awaitBuild();
+
+        FileUtils.deleteDirectory(new File(root, "resources"));
+        awaitBuild();
+    }
+
+    @Test
+    public void testChangesAreBuiltTogether() throws IOException {
+        for (int i = 0; i < 50; i++) {
+            FileUtils.write(new File(root, "java/org/acme/Foo" + i + ".java"), "class Foo" + i + " {}", "UTF-8");
+        }
+        awaitBuild();
+
+        assertThat(batches).hasSize(1);
+        assertThat(batches.get(0)).hasSize(50)
+            .contains(new File(root, "java/org/acme/Foo0.java").toPath().toAbsolutePath());
+    }
+
+    @Test
+    public void testChangesDuringABuildAreBuiltOnceItCompletes() throws Exception {
+        buildDuration = 1000;
+        FileUtils.write(new File(root, "java/org/acme/Foo.java"), "class Foo {}", "UTF-8");
+        await().atMost(10, TimeUnit.SECONDS).until(building::get);
+
+        FileUtils.write(new File(root, "java/org/acme/Bar.java"), "class Bar {}", "UTF-8");
+        FileUtils.write(new File(root, "java/org/acme/Baz.java"), "class Baz {}", "UTF-8");
+        await().atMost(10, TimeUnit.SECONDS).until(() -> builds.get() == 2);
+        Thread.sleep(1000);
+
+        assertThat(builds.get()).isEqualTo(2);
+        assertThat(overlap.get()).isFalse();
+        assertThat(batches.get(1)).contains(new File(root, "java/org/acme/Bar.java").toPath().toAbsolutePath(),
+            new File(root, "java/org/acme/Baz.java").toPath().toAbsolutePath());
+    }
+
+    private void awaitBuild() {
+        await().atMost(10, TimeUnit.SECONDS).until(() -> builds.getAndSet(0) > 0);
+    }
+}
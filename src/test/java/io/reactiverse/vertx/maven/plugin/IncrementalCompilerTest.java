@@ -0,0 +1,118 @@
+/*
+ *
+ *   Copyright (c) 2016-2017 Red Hat, Inc.
+ *
+ *   Red Hat licenses this file to you under the Apache License, version
+ *   2.0 (the "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *   implied.  See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package io.reactiverse.vertx.maven.plugin;
+
+import io.reactiverse.vertx.maven.plugin.utils.IncrementalCompiler;
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.model.Build;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.apache.maven.project.MavenProject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ * Checks the in-process compilation only compiles the changed sources and their dependents.
+ */
+public class IncrementalCompilerTest {
+
+    private final File root = new File("target/incremental-compiler").getAbsoluteFile();
+
+    private final File classes = new File(root, "target/classes");
+
+    private MavenProject project;
+
+    @Before
+    public void setUp() throws IOException {
+        FileUtils.deleteQuietly(root);
+        project = new MavenProject();
+        project.setFile(new File(root, "pom.xml"));
+        Build build = new Build();
+        build.setDirectory(new File(root, "target").getAbsolutePath());
+        build.setOutputDirectory(classes.getAbsolutePath());
+        project.setBuild(build);
+        project.addCompileSourceRoot(new File(root, "src/main/java").getAbsolutePath());
+        project.getProperties().setProperty("maven.compiler.source", "1.8");
+        project.getProperties().setProperty("maven.compiler.target", "1.8");
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(root);
+    }
+
+    @Test
+    public void testChangedSourcesAndDependents() throws Exception {
+        Path a = write("A", "public class A { public static String hello() { return \"hello\"; } class Inner { } }");
+        Path b = write("B", "public class B { String s = A.hello(); }");
+        Path c = write("C", "public class C { }");
+        IncrementalCompiler compiler = IncrementalCompiler.create(project, new SystemStreamLog());
+        assertThat(compiler.compile(new LinkedHashSet<>(Arrays.asList(a, b, c)))).containsOnly(a, b, c);
+        assertThat(new File(classes, "org/acme/A$Inner.class")).isFile();
+        compiler.close();
+
+        // A new compiler reads the dependencies from the classes
+        compiler = IncrementalCompiler.create(project, new SystemStreamLog());
+        write("A", "public class A { public static String hello() { return \"hi\"; } }");
+        assertThat(compiler.compile(Collections.singleton(a))).containsOnly(a, b);
+        assertThat(new File(classes, "org/acme/A$Inner.class")).doesNotExist();
+
+        FileUtils.forceDelete(c.toFile());
+        assertThat(compiler.compile(Collections.singleton(c))).isEmpty();
+        assertThat(new File(classes, "org/acme/C.class")).doesNotExist();
+        compiler.close();
+    }
+
+    @Test
+    public void testCompilationFailure() throws Exception {
+        Path a = write("A", "public class A { public static String hello() { return \"hello\"; } }");
+        Path b = write("B", "public class B { String s = A.hello(); }");
+        IncrementalCompiler compiler = IncrementalCompiler.create(project, new SystemStreamLog());
+        compiler.compile(new LinkedHashSet<>(Arrays.asList(a, b)));
+
+        write("A", "public class A { }");
+        try {
+            compiler.compile(Collections.singleton(a));
+            fail("Compilation failure expected");
+        } catch (MojoExecutionException e) {
+            // Expected, the classes are left untouched
+            assertThat(new File(classes, "org/acme/A.class")).isFile();
+        }
+
+        write("A", "public class A { public static String hello() { return \"hi\"; } }");
+        assertThat(compiler.compile(Collections.singleton(a))).containsOnly(a, b);
+        compiler.close();
+    }
+
+    private Path write(String name, String content) throws IOException {
+        File file = new File(root, "src/main/java/org/acme/" + name + ".java");
+        FileUtils.write(file, "package org.acme; " + content, "UTF-8");
+        return file.toPath();
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ *
+ *   Copyright (c) 2016-2017 Red Hat, Inc.
+ *
+ *   Red Hat licenses this file to you under the Apache License, version
+ *   2.0 (the "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *   implied.  See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package io.reactiverse.vertx.maven.plugin;
+
+import io.reactiverse.vertx.maven.plugin.utils.WebJars;
+import io.reactiverse.vertx.maven.plugin.zip.JarIndex;
+import io.reactiverse.vertx.maven.plugin.zip.JarIndexCache;
+import io.reactiverse.vertx.maven.plugin.zip.ZipRecord;
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.StringAsset;
+import org.jboss.shrinkwrap.api.exporter.ZipExporter;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks the behavior of the {@link JarIndexCache}.
+ */
+public class JarIndexCacheTest {
+
+    private final File root = new File("target/jar-index-cache");
+
+    private final File directory = new File(root, "cache");
+
+    private File jar;
+
+    @Before
+    public void setUp() {
+        FileUtils.deleteQuietly(root);
+        root.mkdirs();
+        JavaArchive archive = ShrinkWrap.create(JavaArchive.class);
+        archive.addAsServiceProvider("com.test.demo.DemoSPI", "com.test.demo.DemoSPI.impl.DemoSPIImpl");
+        archive.add(new StringAsset("body {}"), "META-INF/resources/webjars/acme/1.0/acme.css");
+        archive.add(new StringAsset("hello"), "hello.txt");
+        jar = new File(root, "dep.jar");
+        archive.as(ZipExporter.class).exportTo(jar, true);
+    }
+
+    @Test
+    public void testIndexIsStoredOnDisk() throws Exception {
+        JarIndex index = new JarIndexCache(directory).get(jar);
+        assertThat(index.getRecords()).extracting("name").contains("hello.txt",
+            "META-INF/services/com.test.demo.DemoSPI");
+        assertThat(FileUtils.listFiles(directory, new String[]{"json"}, true)).hasSize(1);
+
+        // A new cache (i.e. another build) reads the index from the disk
+        JarIndex reloaded = new JarIndexCache(directory).get(jar);
+        assertThat(reloaded).isNotSameAs(index);
+        assertThat(reloaded.getRecords()).extracting("name").isEqualTo(
+            index.getRecords().stream().map(ZipRecord::getName).collect(Collectors.toList()));
+        assertThat(reloaded.getWebJarLibraries()).containsExactly("acme-1.0");
+    }
+
+    @Test
+    public void testIndexIsInvalidatedWhenTheJarChanges() throws Exception {
+        JarIndexCache cache = new JarIndexCache(directory);
+        JarIndex index = cache.get(jar);
+        assertThat(cache.get(jar)).isSameAs(index);
+
+        JavaArchive archive = ShrinkWrap.create(JavaArchive.class);
+        archive.add(new StringAsset("updated"), "updated.txt");
+        archive.as(ZipExporter.class).exportTo(jar, true);
+
+        JarIndex updated = cache.get(jar);
+        assertThat(updated).isNotSameAs(index);
+        assertThat(updated.getRecords()).extracting("name").containsExactly("updated.txt");
+        assertThat(updated.getWebJarLibraries()).isEmpty();
+        assertThat(new JarIndexCache(directory).get(jar).getRecords()).extracting("name")
+            .containsExactly("updated.txt");
+    }
+
+    @Test
+    public void testDescriptors() throws Exception {
+        // Like the archive, match both the relative and absolute path
+        List<String> patterns = Arrays.asList("META-INF/services/*", "/META-INF/services/*");
+        Map<String, List<String>> descriptors = new JarIndexCache(directory).getDescriptors(jar, patterns);
+        assertThat(descriptors).containsOnlyKeys("/META-INF/services/com.test.demo.DemoSPI");
+        assertThat(descriptors.get("/META-INF/services/com.test.demo.DemoSPI"))
+            .containsExactly("com.test.demo.DemoSPI.impl.DemoSPIImpl");
+
+        // The content is stored in the index
+        JarIndex index = new JarIndexCache(directory).get(jar);
+        assertThat(index.getDescriptorPatterns()).containsExactly("META-INF/services/*", "/META-INF/services/*");
+        assertThat(index.getDescriptors()).isEqualTo(descriptors);
+    }
+
+    @Test
+    public void testWebJarDetection() throws Exception {
+        JarIndexCache cache = new JarIndexCache(directory);
+        assertThat(WebJars.isWebJar(new SystemStreamLog(), jar, cache)).isTrue();
+        assertThat(WebJars.isWebJar(new SystemStreamLog(), jar, cache))
+            .isEqualTo(WebJars.isWebJar(new SystemStreamLog(), jar));
+
+        File other = new File(root, "other.jar");
+        ShrinkWrap.create(JavaArchive.class).add(new StringAsset("hello"), "hello.txt")
+            .as(ZipExporter.class).exportTo(other, true);
+        assertThat(WebJars.isWebJar(new SystemStreamLog(), other, cache)).isFalse();
+    }
+}
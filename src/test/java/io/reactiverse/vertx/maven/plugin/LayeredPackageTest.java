@@ -0,0 +1,207 @@
+/*
+ *
+ *   Copyright (c) 2016-2017 Red Hat, Inc.
+ *
+ *   Red Hat licenses this file to you under the Apache License, version
+ *   2.0 (the "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *   implied.  See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package io.reactiverse.vertx.maven.plugin;
+
+import io.reactiverse.vertx.maven.plugin.components.PackageConfig;
+import io.reactiverse.vertx.maven.plugin.components.PackagingException;
+import io.reactiverse.vertx.maven.plugin.components.ServiceUtils;
+import io.reactiverse.vertx.maven.plugin.components.impl.LayeredPackageService;
+import io.reactiverse.vertx.maven.plugin.mojos.AbstractVertxMojo;
+import io.reactiverse.vertx.maven.plugin.mojos.Archive;
+import io.reactiverse.vertx.maven.plugin.mojos.DependencySet;
+import io.reactiverse.vertx.maven.plugin.mojos.Layer;
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.model.Build;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.apache.maven.project.MavenProject;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.StringAsset;
+import org.jboss.shrinkwrap.api.exporter.ZipExporter;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks the behavior of the {@link LayeredPackageService}.
+ */
+public class LayeredPackageTest {
+
+    private final File root = new File("target/layered-package");
+
+    private final File classes = new File(root, "classes");
+
+    private final File output = new File(root, "out/foo-1.0");
+
+    private Set<Artifact> artifacts;
+
+    private List<Layer> layers;
+
+    private MavenProject project;
+
+    private AbstractVertxMojo mojo;
+
+    @Before
+    public void setUp() throws IOException {
+        FileUtils.deleteQuietly(root);
+        FileUtils.write(new File(classes, "org/acme/App.class"), "app", StandardCharsets.UTF_8);
+        FileUtils.write(new File(classes, "META-INF/services/org.acme.Spi"), "org.acme.Impl",
+            StandardCharsets.UTF_8);
+
+        artifacts = new LinkedHashSet<>();
+        artifacts.add(artifact("io.vertx", "vertx-core", "3.5.0"));
+        artifacts.add(artifact("org.acme", "common", "1.0"));
+        artifacts.add(artifact("org.acme", "snapshot", "1.0-SNAPSHOT"));
+        layers = new ArrayList<>();
+
+        project = new MavenProject();
+        project.setVersion("1.0");
+        project.setArtifactId("foo");
+        Build build = new Build();
+        build.setOutputDirectory(classes.getAbsolutePath());
+        project.setBuild(build);
+
+        mojo = new AbstractVertxMojo() {
+            @Override
+            public void execute() throws MojoExecutionException, MojoFailureException {
+
+            }
+        };
+        mojo.setLog(new SystemStreamLog());
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(root);
+    }
+
+    @Test
+    public void testLayers() throws Exception {
+        File directory = doPackage();
+        assertThat(directory).isEqualTo(output);
+
+        assertThat(new File(output, "dependencies/lib/vertx-core-3.5.0.jar")).isFile();
+        assertThat(new File(output, "dependencies/lib/common-1.0.jar")).isFile();
+        assertThat(new File(output, "snapshot-dependencies/lib/snapshot-1.0-SNAPSHOT.jar")).isFile();
+        assertThat(new File(output, "resources/classes/META-INF/services/org.acme.Spi")).hasContent("org.acme.Impl");
+        assertThat(new File(output, "resources/classes/META-INF/MANIFEST.MF")).isFile();
+        assertThat(new File(output, "resources/classes/org/acme/App.class")).doesNotExist();
+        assertThat(new File(output, "application/classes/org/acme/App.class")).hasContent("app");
+        assertThat(new File(output, "application/classes/META-INF")).doesNotExist();
+
+        assertThat(FileUtils.readLines(new File(output, LayeredPackageService.LAYERS_INDEX), StandardCharsets.UTF_8))
+            .containsExactly(
+                "- \"dependencies\":", "  - \"dependencies/\"",
+                "- \"snapshot-dependencies\":", "  - \"snapshot-dependencies/\"",
+                "- \"resources\":", "  - \"resources/\"",
+                "- \"application\":", "  - \"application/\"");
+
+        List<String> args = FileUtils.readLines(new File(output, "application/launch.args"), StandardCharsets.UTF_8);
+        assertThat(args).containsExactly("-cp", "\"" + String.join(File.pathSeparator,
+            path("application/classes"),
+            path("resources/classes"),
+            path("dependencies/lib/vertx-core-3.5.0.jar"),
+            path("dependencies/lib/common-1.0.jar"),
+            path("snapshot-dependencies/lib/snapshot-1.0-SNAPSHOT.jar")).replace("\\", "\\\\") + "\"",
+            "io.vertx.core.Launcher");
+    }
+
+    @Test
+    public void testCustomLayers() throws Exception {
+        layers.add(new Layer().setName("company").setDependencies(new DependencySet().addInclude("org.acme:*")));
+        doPackage();
+
+        assertThat(new File(output, "dependencies/lib/vertx-core-3.5.0.jar")).isFile();
+        assertThat(new File(output, "company/lib/common-1.0.jar")).isFile();
+        // The custom layer wins over the snapshot layer
+        assertThat(new File(output, "company/lib/snapshot-1.0-SNAPSHOT.jar")).isFile();
+        assertThat(new File(output, "snapshot-dependencies/lib")).isDirectory();
+        assertThat(new File(output, "snapshot-dependencies/lib").list()).isEmpty();
+        assertThat(FileUtils.readFileToString(new File(output, LayeredPackageService.LAYERS_INDEX),
+            StandardCharsets.UTF_8)).contains("- \"dependencies\":\n  - \"dependencies/\"\n- \"company\":");
+
+        // Removing the custom layer removes its directory
+        layers.clear();
+        doPackage();
+        assertThat(new File(output, "company")).doesNotExist();
+        assertThat(new File(output, "dependencies/lib/common-1.0.jar")).isFile();
+        assertThat(new File(output, "snapshot-dependencies/lib/snapshot-1.0-SNAPSHOT.jar")).isFile();
+    }
+
+    @Test
+    public void testApplicationChangeOnlyUpdatesTheApplicationLayer() throws Exception {
+        doPackage();
+        File resource = new File(output, "resources/classes/META-INF/services/org.acme.Spi");
+        File index = new File(output, LayeredPackageService.LAYERS_INDEX);
+        File args = new File(output, "application/launch.args");
+        long resourceLastModified = resource.lastModified();
+        long indexLastModified = index.lastModified();
+        long argsLastModified = args.lastModified();
+
+        FileUtils.write(new File(classes, "org/acme/Other.class"), "other", StandardCharsets.UTF_8);
+        doPackage();
+
+        assertThat(new File(output, "application/classes/org/acme/Other.class")).hasContent("other");
+        assertThat(resource.lastModified()).isEqualTo(resourceLastModified);
+        assertThat(index.lastModified()).isEqualTo(indexLastModified);
+        assertThat(args.lastModified()).isEqualTo(argsLastModified);
+    }
+
+    @Test(expected = PackagingException.class)
+    public void testReservedLayerName() throws Exception {
+        layers.add(new Layer().setName("application").setDependencies(new DependencySet()));
+        doPackage();
+    }
+
+    private String path(String path) {
+        return new File(path).getPath();
+    }
+
+    private Artifact artifact(String groupId, String artifactId, String version) {
+        JavaArchive archive = ShrinkWrap.create(JavaArchive.class);
+        archive.add(new StringAsset(artifactId), artifactId + ".txt");
+        File file = new File(root, "repository/" + groupId + "/" + artifactId + "-" + version + ".jar");
+        file.getParentFile().mkdirs();
+        archive.as(ZipExporter.class).exportTo(file, true);
+        Artifact artifact = new DefaultArtifact(groupId, artifactId, version, "compile", "jar", "", null);
+        artifact.setFile(file);
+        return artifact;
+    }
+
+    private File doPackage() throws Exception {
+        Archive archive = ServiceUtils.getDefaultFatJar();
+        return new LayeredPackageService().doPackage(new PackageConfig()
+            .setArtifacts(artifacts)
+            .setMojo(mojo)
+            .setOutput(output)
+            .setProject(project)
+            .setArchive(archive)
+            .setLayers(layers));
+    }
+}
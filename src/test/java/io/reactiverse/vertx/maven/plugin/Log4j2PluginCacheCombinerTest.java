@@ -0,0 +1,104 @@
+/*
+ *
+ *   Copyright (c) 2016-2017 Red Hat, Inc.
+ *
+ *   Red Hat licenses this file to you under the Apache License, version
+ *   2.0 (the "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *   implied.  See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package io.reactiverse.vertx.maven.plugin;
+
+import io.reactiverse.vertx.maven.plugin.components.impl.Log4j2PluginCacheCombiner;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks the combination of the Log4j2 plugin caches.
+ */
+public class Log4j2PluginCacheCombinerTest {
+
+    @Test
+    public void testCombine() throws Exception {
+        Map<String, List<String>> first = new LinkedHashMap<>();
+        first.put("Core", Arrays.asList("console", "org.acme.Console"));
+        first.put("Converter", Collections.singletonList("date"));
+        Map<String, List<String>> second = new LinkedHashMap<>();
+        second.put("core", Arrays.asList("console", "org.other.Console", "file"));
+        second.put("Lookup", Collections.singletonList("env"));
+
+        byte[] combined = new Log4j2PluginCacheCombiner().combine(Arrays.asList(cache(first), cache(second)));
+
+        // Categories are merged ignoring case, the first plugin registered with a key wins
+        Map<String, List<String>> plugins = read(combined);
+        assertThat(plugins).containsOnlyKeys("converter", "core", "lookup");
+        assertThat(plugins.get("core")).containsExactly("console=org.acme.Console", "file=org.acme.file");
+        assertThat(plugins.get("converter")).containsExactly("date=org.acme.date");
+        assertThat(plugins.get("lookup")).containsExactly("env=org.acme.env");
+    }
+
+    /**
+     * Writes a cache, each category listing plugin keys, an entry containing a dot being the class name of the
+     * previous key.
+     */
+    static byte[] cache(Map<String, List<String>> categories) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(categories.size());
+            for (Map.Entry<String, List<String>> category : categories.entrySet()) {
+                Map<String, String> plugins = new LinkedHashMap<>();
+                String last = null;
+                for (String item : category.getValue()) {
+                    if (item.contains(".")) {
+                        plugins.put(last, item);
+                    } else {
+                        plugins.put(item, "org.acme." + item);
+                        last = item;
+                    }
+                }
+                out.writeUTF(category.getKey());
+                out.writeInt(plugins.size());
+                for (Map.Entry<String, String> plugin : plugins.entrySet()) {
+                    out.writeUTF(plugin.getKey());
+                    out.writeUTF(plugin.getValue());
+                    out.writeUTF(plugin.getKey());
+                    out.writeBoolean(true);
+                    out.writeBoolean(false);
+                }
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    static Map<String, List<String>> read(byte[] cache) throws IOException {
+        Map<String, List<String>> categories = new LinkedHashMap<>();
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(cache));
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            List<String> plugins = categories.computeIfAbsent(in.readUTF(), c -> new ArrayList<>());
+            int entries = in.readInt();
+            for (int j = 0; j < entries; j++) {
+                String key = in.readUTF();
+                String className = in.readUTF();
+                assertThat(in.readUTF()).isEqualTo(key);
+                assertThat(in.readBoolean()).isTrue();
+                assertThat(in.readBoolean()).isFalse();
+                plugins.add(key + "=" + className);
+            }
+        }
+        assertThat(in.read()).isEqualTo(-1);
+        return categories;
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ *
+ *   Copyright (c) 2016-2017 Red Hat, Inc.
+ *
+ *   Red Hat licenses this file to you under the Apache License, version
+ *   2.0 (the "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *   implied.  See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package io.reactiverse.vertx.maven.plugin;
+
+import io.reactiverse.vertx.maven.plugin.components.PackageConfig;
+import io.reactiverse.vertx.maven.plugin.components.PackageService;
+import io.reactiverse.vertx.maven.plugin.components.ServiceUtils;
+import io.reactiverse.vertx.maven.plugin.components.impl.Log4j2PluginCacheCombiner;
+import io.reactiverse.vertx.maven.plugin.components.impl.ShrinkWrapFatJarPackageService;
+import io.reactiverse.vertx.maven.plugin.components.impl.StreamingFatJarPackageService;
+import io.reactiverse.vertx.maven.plugin.model.CombinationStrategy;
+import io.reactiverse.vertx.maven.plugin.mojos.AbstractVertxMojo;
+import io.reactiverse.vertx.maven.plugin.mojos.Archive;
+import io.reactiverse.vertx.maven.plugin.runtime.ServiceIndex;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.model.Build;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.apache.maven.project.MavenProject;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.ByteArrayAsset;
+import org.jboss.shrinkwrap.api.exporter.ZipExporter;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks the fat jar engines combine the service descriptors while embedding the dependencies.
+ */
+public class PackageDescriptorCombinationTest {
+
+    private final File root = new File("target/descriptor-combination");
+
+    private Set<Artifact> artifacts;
+
+    private MavenProject project;
+
+    private AbstractVertxMojo mojo;
+
+    private File local;
+
+    @Before
+    public void setUp() throws IOException {
+        FileUtils.deleteQuietly(root);
+        File classes = new File(root, "classes");
+        local = new File(classes, "META-INF/services/com.test.demo.DemoSPI");
+        FileUtils.writeLines(local, "UTF-8", Arrays.asList("com.test.demo.DemoSPI.impl.LocalImpl", "${combine}"));
+
+        JavaArchive jarArchive1 = ShrinkWrap.create(JavaArchive.class);
+        jarArchive1.addAsServiceProvider("com.test.demo.DemoSPI", "com.test.demo.DemoSPI.impl.DemoSPIImpl");
+        jarArchive1.addAsServiceProvider("com.test.demo.DemoSPI2", "com.test.demo.DemoSPI2.impl.DemoSPI2Impl");
+        File jar1 = new File(root, "dep1.jar");
+        jarArchive1.as(ZipExporter.class).exportTo(jar1, true);
+
+        JavaArchive jarArchive2 = ShrinkWrap.create(JavaArchive.class);
+        jarArchive2.addAsServiceProvider("com.test.demo.DemoSPI", "com.test.demo.DemoSPI.impl.DemoSPIImpl2");
+        jarArchive2.addAsServiceProvider("com.test.demo.DemoSPI2", "com.test.demo.DemoSPI2.impl.DemoSPI2Impl2");
+        File jar2 = new File(root, "dep2.jar");
+        jarArchive2.as(ZipExporter.class).exportTo(jar2, true);
+
+        artifacts = new LinkedHashSet<>();
+        Artifact a1 = new DefaultArtifact("org.acme", "a1", "1.0",
+            "compile", "jar", "", null);
+        a1.setFile(jar1);
+        Artifact a2 = new DefaultArtifact("org.acme", "a2", "1.0",
+            "compile", "jar", "", null);
+        a2.setFile(jar2);
+        artifacts.add(a1);
+        artifacts.add(a2);
+
+        project = new MavenProject();
+        project.setVersion("1.0");
+        project.setArtifactId("foo");
+        Build build = new Build();
+        build.setOutputDirectory(classes.getAbsolutePath());
+        project.setBuild(build);
+
+        mojo = new AbstractVertxMojo() {
+            @Override
+            public void execute() throws MojoExecutionException, MojoFailureException {
+
+            }
+        };
+        mojo.setLog(new SystemStreamLog());
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(root);
+    }
+
+    @Test
+    public void testStreamingPackage() throws Exception {
+        checkCombined(doPackage(new StreamingFatJarPackageService(), "streaming.jar", 1, false));
+        checkCombined(doPackage(new StreamingFatJarPackageService(), "streaming-parallel.jar", 4, false));
+    }
+
+    @Test
+    public void testShrinkWrapPackage() throws Exception {
+        checkCombined(doPackage(new ShrinkWrapFatJarPackageService(), "shrinkwrap.jar", 1, false));
+        checkCombined(doPackage(new ShrinkWrapFatJarPackageService(), "shrinkwrap-parallel.jar", 4, false));
+    }
+
+    @Test
+    public void testIncrementalPackage() throws Exception {
+        checkCombined(doPackage(new StreamingFatJarPackageService(), "incremental.jar", 1, true));
+        // The dependency region is reused, the descriptors are retrieved from the dependency indexes
+        checkCombined(doPackage(new StreamingFatJarPackageService(), "incremental.jar", 1, true));
+
+        FileUtils.writeLines(local, "UTF-8", Arrays.asList("${combine}", "com.test.demo.DemoSPI.impl.LocalImpl"));
+        File jar = doPackage(new StreamingFatJarPackageService(), "incremental.jar", 1, true);
+        assertThat(read(jar, "META-INF/services/com.test.demo.DemoSPI")).containsExactly(
+            "com.test.demo.DemoSPI.impl.DemoSPIImpl",
+            "com.test.demo.DemoSPI.impl.DemoSPIImpl2",
+            "com.test.demo.DemoSPI.impl.LocalImpl");
+    }
+
+    @Test
+    public void testWithoutCombination() throws Exception {
+        File jar = doPackage(new StreamingFatJarPackageService(), "none.jar", 1, false, CombinationStrategy.NONE);
+        // The project descriptor is embedded as it is, the other descriptors come from the first dependency
+        assertThat(read(jar, "META-INF/services/com.test.demo.DemoSPI")).containsExactly(
+            "com.test.demo.DemoSPI.impl.LocalImpl", "${combine}");
+        assertThat(read(jar, "META-INF/services/com.test.demo.DemoSPI2")).containsExactly(
+            "com.test.demo.DemoSPI2.impl.DemoSPI2Impl");
+    }
+
+    @Test
+    public void testServiceIndex() throws Exception {
+        for (PackageService service : Arrays.asList(new StreamingFatJarPackageService(),
+            new ShrinkWrapFatJarPackageService())) {
+            File jar = doPackage(service, "index.jar", 1, false, CombinationStrategy.COMBINE, true);
+            checkCombined(jar);
+            assertThat(read(jar, ServiceIndex.LOCATION)).containsExactly(
+                "com.test.demo.DemoSPI=com.test.demo.DemoSPI.impl.LocalImpl,com.test.demo.DemoSPI.impl.DemoSPIImpl," +
+                    "com.test.demo.DemoSPI.impl.DemoSPIImpl2",
+                "com.test.demo.DemoSPI2=com.test.demo.DemoSPI2.impl.DemoSPI2Impl," +
+                    "com.test.demo.DemoSPI2.impl.DemoSPI2Impl2");
+            try (JarFile file = new JarFile(jar)) {
+                assertThat(file.getJarEntry(ServiceIndex.class.getName().replace('.', '/') + ".class")).isNotNull();
+            }
+        }
+    }
+
+    @Test
+    public void testBinaryDescriptors() throws Exception {
+        Map<String, List<String>> fromProject = Collections.singletonMap("Core", Arrays.asList("console",
+            "org.project.Console"));
+        FileUtils.writeByteArrayToFile(new File(root, "classes" + Log4j2PluginCacheCombiner.PATH),
+            Log4j2PluginCacheCombinerTest.cache(fromProject));
+        Map<String, List<String>> fromDependency = new LinkedHashMap<>();
+        fromDependency.put("Core", Arrays.asList("console", "file"));
+        JavaArchive archive = ShrinkWrap.create(JavaArchive.class);
+        archive.add(new ByteArrayAsset(Log4j2PluginCacheCombinerTest.cache(fromDependency)),
+            Log4j2PluginCacheCombiner.PATH);
+        File jar3 = new File(root, "dep3.jar");
+        archive.as(ZipExporter.class).exportTo(jar3, true);
+        Artifact a3 = new DefaultArtifact("org.acme", "a3", "1.0",
+            "compile", "jar", "", null);
+        a3.setFile(jar3);
+        artifacts.add(a3);
+
+        for (PackageService service : Arrays.asList(new StreamingFatJarPackageService(),
+            new ShrinkWrapFatJarPackageService())) {
+            Archive fatJar = ServiceUtils.getDefaultFatJar();
+            File jar = service.doPackage(new PackageConfig()
+                .setArtifacts(artifacts)
+                .setMojo(mojo)
+                .setOutput(new File(root, "binary.jar"))
+                .setProject(project)
+                .setArchive(fatJar)
+                .setCombinationStrategy(CombinationStrategy.COMBINE)
+                .setBinaryDescriptorCombiners(Collections.singletonList(new Log4j2PluginCacheCombiner())));
+            checkCombined(jar);
+            try (JarFile file = new JarFile(jar)) {
+                byte[] content = IOUtils.toByteArray(file.getInputStream(
+                    file.getJarEntry(Log4j2PluginCacheCombiner.PATH.substring(1))));
+                assertThat(Log4j2PluginCacheCombinerTest.read(content).get("core"))
+                    .containsExactly("console=org.project.Console", "file=org.acme.file");
+            }
+        }
+    }
+
+    private void checkCombined(File jar) throws IOException {
+        assertThat(read(jar, "META-INF/services/com.test.demo.DemoSPI")).containsExactly(
+            "com.test.demo.DemoSPI.impl.LocalImpl",
+            "com.test.demo.DemoSPI.impl.DemoSPIImpl",
+            "com.test.demo.DemoSPI.impl.DemoSPIImpl2");
+        assertThat(read(jar, "META-INF/services/com.test.demo.DemoSPI2")).containsExactly(
+            "com.test.demo.DemoSPI2.impl.DemoSPI2Impl",
+            "com.test.demo.DemoSPI2.impl.DemoSPI2Impl2");
+
+        // The output directory is left untouched
+        assertThat(FileUtils.readLines(local, "UTF-8")).containsExactly(
+            "com.test.demo.DemoSPI.impl.LocalImpl", "${combine}");
+        assertThat(new File(root, "classes/META-INF/services/com.test.demo.DemoSPI2")).doesNotExist();
+    }
+
+    private File doPackage(PackageService service, String name, int threads, boolean incremental) throws Exception {
+        return doPackage(service, name, threads, incremental, CombinationStrategy.COMBINE);
+    }
+
+    private File doPackage(PackageService service, String name, int threads, boolean incremental,
+                           CombinationStrategy strategy) throws Exception {
+        return doPackage(service, name, threads, incremental, strategy, false);
+    }
+
+    private File doPackage(PackageService service, String name, int threads, boolean incremental,
+                           CombinationStrategy strategy, boolean serviceIndex) throws Exception {
+        Archive archive = ServiceUtils.getDefaultFatJar();
+        archive.getManifest().put("Main-Class", "org.acme.Main");
+        return service.doPackage(new PackageConfig()
+            .setArtifacts(artifacts)
+            .setMojo(mojo)
+            .setOutput(new File(root, name))
+            .setProject(project)
+            .setArchive(archive)
+            .setThreads(threads)
+            .setIncremental(incremental)
+            .setCombinationStrategy(strategy)
+            .setServiceIndex(serviceIndex));
+    }
+
+    private List<String> read(File jar, String name) throws IOException {
+        try (JarFile file = new JarFile(jar)) {
+            JarEntry entry = file.getJarEntry(name);
+            assertThat(entry).isNotNull();
+            return IOUtils.readLines(file.getInputStream(entry), StandardCharsets.UTF_8);
+        }
+    }
+}
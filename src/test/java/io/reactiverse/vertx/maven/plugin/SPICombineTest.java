@@ -36,6 +36,7 @@ import org.jboss.shrinkwrap.api.spec.JavaArchive;
 import org.junit.Test;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
@@ -276,4 +277,59 @@ public class SPICombineTest {
             "com.test.demo.DemoSPI.impl.DemoSPIImpl2");
         Stream.of(jar1, jar2, jar3, new File("target/junk")).forEach(FileUtils::deleteQuietly);
     }
+
+    @Test
+    public void testCombineInParallel() throws Exception {
+        List<File> jars = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        Set<Artifact> artifacts = new LinkedHashSet<>();
+        for (int i = 0; i < 20; i++) {
+            File jar = new File("target/testCombineInParallel" + i + ".jar");
+            JavaArchive archive = ShrinkWrap.create(JavaArchive.class);
+            archive.addAsServiceProvider("com.test.demo.DemoSPI", "com.test.demo.DemoSPI.impl.DemoSPIImpl" + i);
+            if (i % 3 == 0) {
+                archive.addClass(SPICombineTest.class);
+            }
+            archive.as(ZipExporter.class).exportTo(jar, true);
+            jars.add(jar);
+            expected.add("com.test.demo.DemoSPI.impl.DemoSPIImpl" + i);
+
+            Artifact artifact = new DefaultArtifact("org.acme", "a" + i, "1.0",
+                "compile", "jar", "", null);
+            artifact.setFile(jar);
+            artifacts.add(artifact);
+        }
+
+        MavenProject project = new MavenProject();
+        project.setVersion("1.0");
+        project.setArtifactId("foo");
+
+        AbstractVertxMojo mojo = new AbstractVertxMojo() {
+            @Override
+            public void execute() throws MojoExecutionException, MojoFailureException {
+
+            }
+        };
+
+        mojo.setLog(new SystemStreamLog());
+        Build build = new Build();
+        build.setOutputDirectory("target/junk");
+        project.setBuild(build);
+
+        ServiceFileCombinationConfig config = new ServiceFileCombinationConfig()
+            .setProject(project)
+            .setArtifacts(artifacts)
+            .setArchive(ServiceUtils.getDefaultFatJar())
+            .setMojo(mojo)
+            .setThreads(4);
+
+        combiner.doCombine(config);
+
+        // The dependencies are read concurrently, but the order is the dependency order
+        File merged = new File("target/junk/META-INF/services/com.test.demo.DemoSPI");
+        List<String> lines = FileUtils.readLines(merged, "UTF-8");
+        assertThat(lines).containsExactlyElementsOf(expected);
+        jars.forEach(FileUtils::deleteQuietly);
+        FileUtils.deleteQuietly(new File("target/junk"));
+    }
 }
@@ -0,0 +1,114 @@
+/*
+ *
+ *   Copyright (c) 2016-2017 Red Hat, Inc.
+ *
+ *   Red Hat licenses this file to you under the Apache License, version
+ *   2.0 (the "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *   implied.  See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package io.reactiverse.vertx.maven.plugin;
+
+import io.reactiverse.vertx.maven.plugin.runtime.ServiceIndex;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks the runtime lookup of the service providers from the service index.
+ */
+public class ServiceIndexTest {
+
+    private final File root = new File("target/service-index");
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(root);
+    }
+
+    @Test
+    public void testReadWrite() throws Exception {
+        Map<String, List<String>> index = new HashMap<>();
+        index.put("org.acme.B", Arrays.asList("org.acme.B2", "org.acme.B1"));
+        index.put("org.acme.A", Collections.singletonList("org.acme.A1"));
+        index.put("org.acme.Empty", Collections.emptyList());
+
+        byte[] content = ServiceIndex.write(index);
+        assertThat(new String(content, StandardCharsets.UTF_8))
+            .isEqualTo("org.acme.A=org.acme.A1\norg.acme.B=org.acme.B2,org.acme.B1\norg.acme.Empty=\n");
+        assertThat(ServiceIndex.read(new ByteArrayInputStream(content))).isEqualTo(index);
+    }
+
+    @Test
+    public void testLoad() throws Exception {
+        Map<String, List<String>> index = new HashMap<>();
+        index.put(Runnable.class.getName(), Arrays.asList(Second.class.getName(), First.class.getName()));
+        FileUtils.writeByteArrayToFile(new File(root, ServiceIndex.LOCATION), ServiceIndex.write(index));
+
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{root.toURI().toURL()},
+            ServiceIndexTest.class.getClassLoader())) {
+            List<Runnable> providers = ServiceIndex.load(Runnable.class, loader);
+            assertThat(providers).hasSize(2);
+            assertThat(providers.get(0)).isInstanceOf(Second.class);
+            assertThat(providers.get(1)).isInstanceOf(First.class);
+            assertThat(ServiceIndex.getProviders("org.acme.Missing", loader)).isNull();
+        }
+    }
+
+    @Test
+    public void testLoadWithoutIndex() throws Exception {
+        try (URLClassLoader loader = new URLClassLoader(new URL[0], ServiceIndexTest.class.getClassLoader())) {
+            assertThat(ServiceIndex.getProviders(Runnable.class.getName(), loader)).isNull();
+            // Falls back to the service loader
+            assertThat(ServiceIndex.load(Runnable.class, loader)).isEmpty();
+        }
+    }
+
+    @Test
+    public void testClassLoadersAreNotRetained() throws Exception {
+        URLClassLoader loader = new URLClassLoader(new URL[0], ServiceIndexTest.class.getClassLoader());
+        ServiceIndex.getProviders(Runnable.class.getName(), loader);
+        loader.close();
+        WeakReference<ClassLoader> reference = new WeakReference<>(loader);
+        loader = null;
+
+        // As the class loader of a redeployed application, it can be collected
+        for (int i = 0; i < 20 && reference.get() != null; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        assertThat(reference.get()).isNull();
+    }
+
+    public static class First implements Runnable {
+        @Override
+        public void run() {
+            // Nothing to do
+        }
+    }
+
+    public static class Second implements Runnable {
+        @Override
+        public void run() {
+            // Nothing to do
+        }
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ *
+ *   Copyright (c) 2016-2017 Red Hat, Inc.
+ *
+ *   Red Hat licenses this file to you under the Apache License, version
+ *   2.0 (the "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *   implied.  See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package io.reactiverse.vertx.maven.plugin;
+
+import io.reactiverse.vertx.maven.plugin.components.PackageConfig;
+import io.reactiverse.vertx.maven.plugin.components.PackageService;
+import io.reactiverse.vertx.maven.plugin.components.ServiceUtils;
+import io.reactiverse.vertx.maven.plugin.components.impl.ShrinkWrapFatJarPackageService;
+import io.reactiverse.vertx.maven.plugin.components.impl.StreamingFatJarPackageService;
+import io.reactiverse.vertx.maven.plugin.mojos.AbstractVertxMojo;
+import io.reactiverse.vertx.maven.plugin.mojos.Archive;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.model.Build;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.apache.maven.project.MavenProject;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.ByteArrayAsset;
+import org.jboss.shrinkwrap.api.asset.StringAsset;
+import org.jboss.shrinkwrap.api.exporter.ZipExporter;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks the unreachable classes of the dependencies are removed from the fat jar when it is shrunk.
+ */
+public class ShrinkTest {
+
+    private final File root = new File("target/shrink");
+
+    private Set<Artifact> artifacts;
+
+    private MavenProject project;
+
+    private AbstractVertxMojo mojo;
+
+    @Before
+    public void setUp() throws IOException {
+        FileUtils.deleteQuietly(root);
+        File classes = new File(root, "classes");
+        FileUtils.writeByteArrayToFile(new File(classes, entry(Entry.class)), bytes(Entry.class));
+
+        JavaArchive dependency = ShrinkWrap.create(JavaArchive.class);
+        for (Class<?> clazz : Arrays.asList(Used.class, Reflective.class, Unused.class, Provider.class, Kept.class,
+            Verticle.class)) {
+            dependency.add(new ByteArrayAsset(bytes(clazz)), entry(clazz));
+        }
+        dependency.add(new StringAsset("data"), "data.txt");
+        dependency.add(new StringAsset("# providers\n" + Provider.class.getName() + "\n"),
+            "META-INF/services/org.acme.Service");
+        File jar = new File(root, "dep.jar");
+        dependency.as(ZipExporter.class).exportTo(jar, true);
+
+        artifacts = new LinkedHashSet<>();
+        Artifact artifact = new DefaultArtifact("org.acme", "dep", "1.0",
+            "compile", "jar", "", null);
+        artifact.setFile(jar);
+        artifacts.add(artifact);
+
+        project = new MavenProject();
+        project.setVersion("1.0");
+        project.setArtifactId("foo");
+        Build build = new Build();
+        build.setOutputDirectory(classes.getAbsolutePath());
+        project.setBuild(build);
+
+        mojo = new AbstractVertxMojo() {
+            @Override
+            public void execute() throws MojoExecutionException, MojoFailureException {
+
+            }
+        };
+        mojo.setLog(new SystemStreamLog());
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(root);
+    }
+
+    @Test
+    public void testShrink() throws Exception {
+        for (PackageService service : Arrays.asList(new StreamingFatJarPackageService(),
+            new ShrinkWrapFatJarPackageService())) {
+            Archive archive = ServiceUtils.getDefaultFatJar();
+            archive.getManifest().put("Main-Verticle", "java:" + Verticle.class.getName());
+            File jar = service.doPackage(new PackageConfig()
+                .setArtifacts(artifacts)
+                .setMojo(mojo)
+                .setOutput(new File(root, "shrunk.jar"))
+                .setProject(project)
+                .setArchive(archive)
+                .setShrink(true)
+                .setShrinkKeeps(Collections.singletonList("*$Kept")));
+
+            assertThat(list(jar))
+                .contains(entry(Entry.class), entry(Used.class), entry(Reflective.class), entry(Provider.class),
+                    entry(Kept.class), entry(Verticle.class), "data.txt", "META-INF/services/org.acme.Service")
+                .doesNotContain(entry(Unused.class));
+        }
+    }
+
+    @Test
+    public void testNoShrink() throws Exception {
+        File jar = new StreamingFatJarPackageService().doPackage(new PackageConfig()
+            .setArtifacts(artifacts)
+            .setMojo(mojo)
+            .setOutput(new File(root, "full.jar"))
+            .setProject(project)
+            .setArchive(ServiceUtils.getDefaultFatJar()));
+        assertThat(list(jar)).contains(entry(Unused.class), entry(Kept.class));
+    }
+
+    private static List<String> list(File jar) throws IOException {
+        List<String> files = new ArrayList<>();
+        try (JarFile file = new JarFile(jar)) {
+            Enumeration<JarEntry> entries = file.entries();
+            while (entries.hasMoreElements()) {
+                JarEntry entry = entries.nextElement();
+                if (!entry.isDirectory()) {
+                    files.add(entry.getName());
+                }
+            }
+        }
+        return files;
+    }
+
+    private static String entry(Class<?> clazz) {
+        return clazz.getName().replace('.', '/') + ".class";
+    }
+
+    private static byte[] bytes(Class<?> clazz) throws IOException {
+        try (InputStream input = ShrinkTest.class.getResourceAsStream("/" + entry(clazz))) {
+            return IOUtils.toByteArray(input);
+        }
+    }
+
+    /**
+     * The project class.
+     */
+    static class Entry {
+        Used used = new Used();
+    }
+
+    static class Used {
+        String reflective = "io.reactiverse.vertx.maven.plugin.ShrinkTest$Reflective";
+    }
+
+    static class Reflective {
+    }
+
+    static class Unused {
+    }
+
+    static class Provider {
+    }
+
+    static class Kept {
+    }
+
+    static class Verticle {
+    }
+}
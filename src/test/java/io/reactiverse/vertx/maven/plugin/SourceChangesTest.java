@@ -0,0 +1,135 @@
+/*
+ *
+ *   Copyright (c) 2016-2017 Red Hat, Inc.
+ *
+ *   Red Hat licenses this file to you under the Apache License, version
+ *   2.0 (the "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *   implied.  See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package io.reactiverse.vertx.maven.plugin;
+
+import io.reactiverse.vertx.maven.plugin.utils.SourceChanges;
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.model.Build;
+import org.apache.maven.model.Resource;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.apache.maven.project.MavenProject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks the classification of the source changes, and the direct copy of the resources.
+ */
+public class SourceChangesTest {
+
+    private final File root = new File("target/source-changes").getAbsoluteFile();
+
+    private final File classes = new File(root, "target/classes");
+
+    private MavenProject project;
+
+    @Before
+    public void setUp() throws IOException {
+        FileUtils.deleteQuietly(root);
+        project = new MavenProject();
+        project.setFile(new File(root, "pom.xml"));
+        project.setBuild(new Build());
+        project.addCompileSourceRoot(new File(root, "src/main/java").getAbsolutePath());
+
+        Resource resources = new Resource();
+        resources.setDirectory(new File(root, "src/main/resources").getAbsolutePath());
+        resources.addExclude("**/*.properties");
+        project.addResource(resources);
+
+        Resource filtered = new Resource();
+        filtered.setDirectory(new File(root, "src/main/resources").getAbsolutePath());
+        filtered.addInclude("**/*.properties");
+        filtered.setFiltering(true);
+        project.addResource(filtered);
+
+        Resource webroot = new Resource();
+        webroot.setDirectory(new File(root, "src/main/web").getAbsolutePath());
+        webroot.setTargetPath("webroot");
+        project.addResource(webroot);
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(root);
+    }
+
+    @Test
+    public void testResourcesOnly() throws IOException {
+        File html = write("src/main/resources/templates/index.html");
+        File css = write("src/main/web/style.css");
+        FileUtils.write(new File(classes, "webroot/old.css"), "old", "UTF-8");
+        File deleted = new File(root, "src/main/web/old.css");
+
+        SourceChanges changes = classify(html, css, deleted, new File(root, "src/main/web/style.css~"));
+        assertThat(changes.hasClassesToBuild()).isFalse();
+        assertThat(changes.hasResourcesToProcess()).isFalse();
+        assertThat(changes.getCopies()).hasSize(3);
+
+        assertThat(changes.copyResources(new SystemStreamLog())).isEqualTo(3);
+        assertThat(new File(classes, "templates/index.html")).hasContent("content");
+        assertThat(new File(classes, "webroot/style.css")).hasContent("content");
+        assertThat(new File(classes, "webroot/old.css")).doesNotExist();
+    }
+
+    @Test
+    public void testFilteredResources() throws IOException {
+        SourceChanges changes = classify(write("src/main/resources/application.properties"));
+        assertThat(changes.hasClassesToBuild()).isFalse();
+        assertThat(changes.hasResourcesToProcess()).isTrue();
+        assertThat(changes.getCopies()).isEmpty();
+    }
+
+    @Test
+    public void testSources() throws IOException {
+        SourceChanges changes = classify(write("src/main/java/org/acme/Foo.java"),
+            write("src/main/resources/index.html"));
+        assertThat(changes.hasClassesToBuild()).isTrue();
+        assertThat(changes.hasResourcesToProcess()).isFalse();
+        assertThat(changes.getSources()).hasSize(1);
+        assertThat(changes.getCopies()).hasSize(1);
+    }
+
+    @Test
+    public void testOtherChanges() throws IOException {
+        SourceChanges changes = classify(write("src/main/proto/service.proto"));
+        assertThat(changes.hasClassesToBuild()).isTrue();
+        assertThat(changes.hasResourcesToProcess()).isTrue();
+        assertThat(changes.getOthers()).hasSize(1);
+    }
+
+    private SourceChanges classify(File... files) {
+        Set<Path> paths = new LinkedHashSet<>();
+        Arrays.stream(files).forEach(file -> paths.add(file.toPath()));
+        return SourceChanges.classify(paths, project, classes);
+    }
+
+    private File write(String path) throws IOException {
+        File file = new File(root, path);
+        FileUtils.write(file, "content", "UTF-8");
+        return file;
+    }
+}
@@ -0,0 +1,369 @@
+/*
+ *
+ *   Copyright (c) 2016-2017 Red Hat, Inc.
+ *
+ *   Red Hat licenses this file to you under the Apache License, version
+ *   2.0 (the "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *   implied.  See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package io.reactiverse.vertx.maven.plugin;
+
+import io.reactiverse.vertx.maven.plugin.components.PackageConfig;
+import io.reactiverse.vertx.maven.plugin.components.PackageService;
+import io.reactiverse.vertx.maven.plugin.components.ServiceUtils;
+import io.reactiverse.vertx.maven.plugin.components.impl.PackageIndex;
+import io.reactiverse.vertx.maven.plugin.components.impl.ShrinkWrapFatJarPackageService;
+import io.reactiverse.vertx.maven.plugin.components.impl.StreamingFatJarPackageService;
+import io.reactiverse.vertx.maven.plugin.mojos.AbstractVertxMojo;
+import io.reactiverse.vertx.maven.plugin.mojos.Archive;
+import io.reactiverse.vertx.maven.plugin.zip.ZipReader;
+import io.reactiverse.vertx.maven.plugin.zip.ZipRecord;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.model.Build;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.apache.maven.project.MavenProject;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.StringAsset;
+import org.jboss.shrinkwrap.api.exporter.ZipExporter;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks the streaming package service produces the same content as the ShrinkWrap one.
+ */
+public class StreamingPackageTest {
+
+    private final File root = new File("target/streaming-package");
+
+    private Set<Artifact> artifacts;
+
+    private MavenProject project;
+
+    private AbstractVertxMojo mojo;
+
+    @Before
+    public void setUp() throws IOException {
+        FileUtils.deleteQuietly(root);
+        File classes = new File(root, "classes");
+        FileUtils.write(new File(classes, "config.json"), "{\"from\":\"project\"}", StandardCharsets.UTF_8);
+        FileUtils.write(new File(classes, "org/acme/App.txt"), "app", StandardCharsets.UTF_8);
+
+        JavaArchive jarArchive1 = ShrinkWrap.create(JavaArchive.class);
+        jarArchive1.add(new StringAsset("first"), "shared.txt");
+        jarArchive1.add(new StringAsset("{\"from\":\"dependency\"}"), "config.json");
+        jarArchive1.add(new StringAsset("signature"), "META-INF/SIGNER.SF");
+        jarArchive1.addAsManifestResource(new StringAsset("Manifest-Version: 1.0\nMain-Class: org.acme.Other\n"),
+            "MANIFEST.MF");
+        File jar1 = new File(root, "dep1.jar");
+        jarArchive1.as(ZipExporter.class).exportTo(jar1, true);
+
+        JavaArchive jarArchive2 = ShrinkWrap.create(JavaArchive.class);
+        jarArchive2.add(new StringAsset("second"), "shared.txt");
+        jarArchive2.add(new StringAsset("lib"), "org/lib/Lib.txt");
+        File jar2 = new File(root, "dep2.jar");
+        jarArchive2.as(ZipExporter.class).exportTo(jar2, true);
+
+        artifacts = new LinkedHashSet<>();
+        Artifact a1 = new DefaultArtifact("org.acme", "a1", "1.0",
+            "compile", "jar", "", null);
+        a1.setFile(jar1);
+        Artifact a2 = new DefaultArtifact("org.acme", "a2", "1.0",
+            "compile", "jar", "", null);
+        a2.setFile(jar2);
+        artifacts.add(a1);
+        artifacts.add(a2);
+
+        project = new MavenProject();
+        project.setVersion("1.0");
+        project.setArtifactId("foo");
+        Build build = new Build();
+        build.setOutputDirectory(classes.getAbsolutePath());
+        project.setBuild(build);
+
+        mojo = new AbstractVertxMojo() {
+            @Override
+            public void execute() throws MojoExecutionException, MojoFailureException {
+
+            }
+        };
+        mojo.setLog(new SystemStreamLog());
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(root);
+    }
+
+    @Test
+    public void testStreamingPackage() throws Exception {
+        File jar = doPackage(new StreamingFatJarPackageService(), "streaming.jar");
+
+        Map<String, String> content = read(jar);
+        assertThat(content).containsEntry("config.json", "{\"from\":\"project\"}");
+        assertThat(content).containsEntry("org/acme/App.txt", "app");
+        assertThat(content).containsEntry("shared.txt", "first");
+        assertThat(content).containsEntry("org/lib/Lib.txt", "lib");
+        assertThat(content).doesNotContainKey("META-INF/SIGNER.SF");
+
+        try (JarFile file = new JarFile(jar)) {
+            assertThat(file.getManifest().getMainAttributes().getValue("Main-Class")).isEqualTo("org.acme.Main");
+        }
+    }
+
+    @Test
+    public void testStreamingPackageOverridesExistingFile() throws Exception {
+        doPackage(new StreamingFatJarPackageService(), "streaming.jar");
+        File jar = doPackage(new StreamingFatJarPackageService(), "streaming.jar");
+        assertThat(new File(root, "streaming.jar.tmp")).doesNotExist();
+        assertThat(read(jar)).containsEntry("shared.txt", "first");
+    }
+
+    @Test
+    public void testEntryNamesWithoutTheUtf8Flag() throws Exception {
+        // Names are only written in UTF-8 (with the general purpose flag 11) when the charset is UTF-8
+        Charset cp437 = Charset.forName("IBM437");
+        File legacy = new File(root, "legacy.jar");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(legacy), cp437)) {
+            out.putNextEntry(new ZipEntry("caf\u00e9.txt"));
+            out.write("legacy".getBytes(StandardCharsets.UTF_8));
+            out.closeEntry();
+        }
+
+        List<String> expected;
+        try (ZipFile file = new ZipFile(legacy, cp437)) {
+            expected = file.stream().map(ZipEntry::getName).collect(Collectors.toList());
+        }
+        try (ZipReader reader = new ZipReader(legacy)) {
+            assertThat(reader.getRecords()).allMatch(record -> (record.getFlags() & (1 << 11)) == 0);
+            assertThat(reader.getRecords()).extracting(ZipRecord::getName)
+                .containsExactlyElementsOf(expected)
+                .containsExactly("caf\u00e9.txt");
+        }
+
+        Artifact artifact = new DefaultArtifact("org.acme", "legacy", "1.0",
+            "compile", "jar", "", null);
+        artifact.setFile(legacy);
+        artifacts.add(artifact);
+        File jar = doPackage(new StreamingFatJarPackageService(), "streaming.jar");
+        assertThat(read(jar)).containsEntry("caf\u00e9.txt", "legacy");
+    }
+
+    @Test
+    public void testSameContentAsShrinkWrap() throws Exception {
+        File streaming = doPackage(new StreamingFatJarPackageService(), "streaming.jar");
+        File shrinkwrap = doPackage(new ShrinkWrapFatJarPackageService(), "shrinkwrap.jar");
+
+        Map<String, String> expected = read(shrinkwrap);
+        Map<String, String> actual = read(streaming);
+        expected.remove("META-INF/MANIFEST.MF");
+        actual.remove("META-INF/MANIFEST.MF");
+        // The default compression policy stores some entries, so the archive is not written by the ZipExporter
+        assertThat(expected).containsEntry("config.json", "{\"from\":\"project\"}");
+        assertThat(actual).isEqualTo(expected);
+    }
+
+    @Test
+    public void testParallelIngestion() throws Exception {
+        File sequential = doPackage(new StreamingFatJarPackageService(), "sequential.jar");
+        File parallel = doPackage(new StreamingFatJarPackageService(), "parallel.jar", 4);
+        File shrinkwrap = doPackage(new ShrinkWrapFatJarPackageService(), "shrinkwrap-parallel.jar", 4);
+
+        assertThat(entries(parallel)).containsExactlyElementsOf(entries(sequential));
+        assertThat(read(parallel)).containsEntry("shared.txt", "first");
+
+        Map<String, String> expected = read(sequential);
+        Map<String, String> actual = read(shrinkwrap);
+        expected.remove("META-INF/MANIFEST.MF");
+        actual.remove("META-INF/MANIFEST.MF");
+        assertThat(actual).isEqualTo(expected);
+    }
+
+    @Test
+    public void testReadingThreadsDoNotChangeTheJar() throws Exception {
+        FileUtils.write(new File(root, "classes/large.txt"), large(), StandardCharsets.UTF_8);
+
+        for (PackageService service : Arrays.asList(new ShrinkWrapFatJarPackageService(),
+            new StreamingFatJarPackageService())) {
+            File sequential = doPackage(service, "sequential.jar", 1);
+            File parallel = doPackage(service, "parallel.jar", 4);
+            assertThat(withoutTimes(parallel)).isEqualTo(withoutTimes(sequential));
+        }
+    }
+
+    @Test
+    public void testParallelCompression() throws Exception {
+        String large = large();
+        FileUtils.write(new File(root, "classes/large.txt"), large, StandardCharsets.UTF_8);
+
+        File sequential = doPackage(new StreamingFatJarPackageService(), "sequential.jar");
+        File streaming = doPackage(new StreamingFatJarPackageService(), "streaming.jar", 4, 4, 9);
+        File shrinkwrap = doPackage(new ShrinkWrapFatJarPackageService(), "shrinkwrap.jar", 4, 4, 9);
+
+        assertThat(read(streaming)).containsEntry("large.txt", large);
+        assertThat(read(shrinkwrap)).containsEntry("large.txt", large);
+        assertThat(entries(streaming)).containsExactlyElementsOf(entries(sequential));
+        assertThat(streaming.length()).isLessThanOrEqualTo(sequential.length());
+        try (JarFile file = new JarFile(shrinkwrap)) {
+            assertThat(file.getManifest().getMainAttributes().getValue("Main-Class")).isEqualTo("org.acme.Main");
+        }
+    }
+
+    @Test
+    public void testIncrementalPackage() throws Exception {
+        File jar = doIncrementalPackage();
+        assertThat(PackageIndex.getIndexFile(jar)).isFile();
+        PackageIndex index = PackageIndex.load(jar);
+        assertThat(index).isNotNull();
+        assertThat(index.getEntry("shared.txt").getSource()).contains("org.acme:a1");
+
+        // Update a project file, the dependency region is reused
+        File app = new File(root, "classes/org/acme/App.txt");
+        FileUtils.write(app, "updated", StandardCharsets.UTF_8);
+        app.setLastModified(app.lastModified() + 2000);
+        jar = doIncrementalPackage();
+        Map<String, String> content = read(jar);
+        assertThat(content).containsEntry("org/acme/App.txt", "updated");
+        assertThat(content).containsEntry("shared.txt", "first");
+        assertThat(content).containsEntry("org/lib/Lib.txt", "lib");
+
+        // A new project file shadows a dependency entry, the dependencies are embedded again
+        FileUtils.write(new File(root, "classes/shared.txt"), "project", StandardCharsets.UTF_8);
+        jar = doIncrementalPackage();
+        assertThat(read(jar)).containsEntry("shared.txt", "project");
+        assertThat(PackageIndex.load(jar).getShadowed()).contains("shared.txt");
+
+        // Removing it restores the dependency entry
+        FileUtils.deleteQuietly(new File(root, "classes/shared.txt"));
+        jar = doIncrementalPackage();
+        assertThat(read(jar)).containsEntry("shared.txt", "first");
+
+        File full = doPackage(new StreamingFatJarPackageService(), "full.jar");
+        assertThat(entries(jar)).containsExactlyElementsOf(entries(full));
+        Map<String, String> expected = read(full);
+        Map<String, String> actual = read(jar);
+        expected.remove("META-INF/MANIFEST.MF");
+        actual.remove("META-INF/MANIFEST.MF");
+        assertThat(actual).isEqualTo(expected);
+    }
+
+    private File doIncrementalPackage() throws Exception {
+        Archive archive = ServiceUtils.getDefaultFatJar();
+        archive.getManifest().put("Main-Class", "org.acme.Main");
+        return new StreamingFatJarPackageService().doPackage(new PackageConfig()
+            .setArtifacts(artifacts)
+            .setMojo(mojo)
+            .setOutput(new File(root, "incremental.jar"))
+            .setProject(project)
+            .setArchive(archive)
+            .setIncremental(true));
+    }
+
+    private File doPackage(PackageService service, String name) throws Exception {
+        return doPackage(service, name, 1);
+    }
+
+    private File doPackage(PackageService service, String name, int threads) throws Exception {
+        return doPackage(service, name, threads, 1, -1);
+    }
+
+    private File doPackage(PackageService service, String name, int threads, int compressionThreads, int level)
+        throws Exception {
+        Archive archive = ServiceUtils.getDefaultFatJar();
+        archive.getManifest().put("Main-Class", "org.acme.Main");
+        return service.doPackage(new PackageConfig()
+            .setArtifacts(artifacts)
+            .setMojo(mojo)
+            .setOutput(new File(root, name))
+            .setProject(project)
+            .setArchive(archive)
+            .setThreads(threads)
+            .setCompressionThreads(compressionThreads)
+            .setCompressionLevel(level));
+    }
+
+    private static String large() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 50000; i++) {
+            builder.append("line ").append(i).append('\n');
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Reads the bytes of a jar, without the modification times of the entries, which are the packaging time.
+     */
+    private static byte[] withoutTimes(File jar) throws IOException {
+        byte[] bytes = Files.readAllBytes(jar.toPath());
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        // The end of central directory record, the jars have no comment
+        int end = bytes.length - 22;
+        int position = buffer.getInt(end + 16);
+        for (int i = 0; i < (buffer.getShort(end + 10) & 0xFFFF); i++) {
+            // Time and date of the central directory header, and of the local header
+            buffer.putInt(position + 12, 0);
+            buffer.putInt(buffer.getInt(position + 42) + 10, 0);
+            position += 46 + (buffer.getShort(position + 28) & 0xFFFF) + (buffer.getShort(position + 30) & 0xFFFF)
+                + (buffer.getShort(position + 32) & 0xFFFF);
+        }
+        return bytes;
+    }
+
+    private List<String> entries(File jar) throws IOException {
+        List<String> names = new ArrayList<>();
+        try (JarFile file = new JarFile(jar)) {
+            Enumeration<JarEntry> entries = file.entries();
+            while (entries.hasMoreElements()) {
+                names.add(entries.nextElement().getName());
+            }
+        }
+        return names;
+    }
+
+    private Map<String, String> read(File jar) throws IOException {
+        Map<String, String> content = new TreeMap<>();
+        try (JarFile file = new JarFile(jar)) {
+            Enumeration<JarEntry> entries = file.entries();
+            while (entries.hasMoreElements()) {
+                JarEntry entry = entries.nextElement();
+                if (!entry.isDirectory()) {
+                    content.put(entry.getName(), IOUtils.toString(file.getInputStream(entry), StandardCharsets.UTF_8));
+                }
+            }
+        }
+        return content;
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ *
+ *   Copyright (c) 2016-2017 Red Hat, Inc.
+ *
+ *   Red Hat licenses this file to you under the Apache License, version
+ *   2.0 (the "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *   implied.  See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package io.reactiverse.vertx.maven.plugin;
+
+import io.reactiverse.vertx.maven.plugin.components.PackageConfig;
+import io.reactiverse.vertx.maven.plugin.components.ServiceUtils;
+import io.reactiverse.vertx.maven.plugin.components.impl.ThinJarPackageService;
+import io.reactiverse.vertx.maven.plugin.mojos.AbstractVertxMojo;
+import io.reactiverse.vertx.maven.plugin.mojos.Archive;
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.model.Build;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.apache.maven.project.MavenProject;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.StringAsset;
+import org.jboss.shrinkwrap.api.exporter.ZipExporter;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks the behavior of the {@link ThinJarPackageService}.
+ */
+public class ThinJarPackageTest {
+
+    private final File root = new File("target/thin-jar-package");
+
+    private final File repository = new File(root, "repository");
+
+    private Set<Artifact> artifacts;
+
+    private MavenProject project;
+
+    private AbstractVertxMojo mojo;
+
+    @Before
+    public void setUp() throws IOException {
+        FileUtils.deleteQuietly(root);
+        File classes = new File(root, "classes");
+        FileUtils.write(new File(classes, "org/acme/App.txt"), "app", StandardCharsets.UTF_8);
+
+        artifacts = new LinkedHashSet<>();
+        artifacts.add(artifact("org.acme", "a1", "first"));
+        artifacts.add(artifact("org.acme", "a2", "second"));
+
+        project = new MavenProject();
+        project.setVersion("1.0");
+        project.setArtifactId("foo");
+        Build build = new Build();
+        build.setOutputDirectory(classes.getAbsolutePath());
+        project.setBuild(build);
+
+        mojo = new AbstractVertxMojo() {
+            @Override
+            public void execute() throws MojoExecutionException, MojoFailureException {
+
+            }
+        };
+        mojo.setLog(new SystemStreamLog());
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(root);
+    }
+
+    @Test
+    public void testThinJar() throws Exception {
+        File jar = doPackage();
+
+        try (JarFile file = new JarFile(jar)) {
+            assertThat(file.getEntry("org/acme/App.txt")).isNotNull();
+            assertThat(file.getEntry("shared.txt")).isNull();
+            Manifest manifest = file.getManifest();
+            assertThat(manifest.getMainAttributes().getValue("Main-Class")).isEqualTo("org.acme.Main");
+            assertThat(manifest.getMainAttributes().getValue("Class-Path"))
+                .isEqualTo("lib/a1-1.0.jar lib/a2-1.0.jar");
+        }
+
+        File lib = new File(root, "out/lib");
+        assertThat(new File(lib, "a1-1.0.jar"))
+            .hasBinaryContent(Files.readAllBytes(new File(repository, "org.acme/a1-1.0.jar").toPath()));
+        assertThat(new File(lib, "a2-1.0.jar"))
+            .hasBinaryContent(Files.readAllBytes(new File(repository, "org.acme/a2-1.0.jar").toPath()));
+    }
+
+    @Test
+    public void testLibraryDirectoryIsUpdated() throws Exception {
+        doPackage();
+        File lib = new File(root, "out/lib");
+        File stale = new File(lib, "removed-1.0.jar");
+        FileUtils.write(stale, "stale", StandardCharsets.UTF_8);
+
+        artifacts.remove(artifacts.iterator().next());
+        File jar = doPackage();
+
+        assertThat(stale).doesNotExist();
+        assertThat(new File(lib, "a1-1.0.jar")).doesNotExist();
+        assertThat(new File(lib, "a2-1.0.jar")).isFile();
+        try (JarFile file = new JarFile(jar)) {
+            assertThat(file.getManifest().getMainAttributes().getValue("Class-Path")).isEqualTo("lib/a2-1.0.jar");
+        }
+    }
+
+    @Test
+    public void testSameFileNameInDifferentGroups() throws Exception {
+        artifacts.add(artifact("org.other", "a1", "other"));
+        File jar = doPackage();
+
+        try (JarFile file = new JarFile(jar)) {
+            assertThat(file.getManifest().getMainAttributes().getValue("Class-Path"))
+                .isEqualTo("lib/a1-1.0.jar lib/a2-1.0.jar lib/org.other.a1-1.0.jar");
+        }
+        assertThat(new File(root, "out/lib/org.other.a1-1.0.jar")).isFile();
+    }
+
+    private Artifact artifact(String groupId, String artifactId, String content) {
+        JavaArchive archive = ShrinkWrap.create(JavaArchive.class);
+        archive.add(new StringAsset(content), "shared.txt");
+        File file = new File(repository, groupId + "/" + artifactId + "-1.0.jar");
+        file.getParentFile().mkdirs();
+        archive.as(ZipExporter.class).exportTo(file, true);
+        Artifact artifact = new DefaultArtifact(groupId, artifactId, "1.0", "compile", "jar", "", null);
+        artifact.setFile(file);
+        return artifact;
+    }
+
+    private File doPackage() throws Exception {
+        Archive archive = ServiceUtils.getDefaultFatJar();
+        archive.getManifest().put("Main-Class", "org.acme.Main");
+        return new ThinJarPackageService().doPackage(new PackageConfig()
+            .setArtifacts(artifacts)
+            .setMojo(mojo)
+            .setOutput(new File(root, "out/foo-1.0.jar"))
+            .setProject(project)
+            .setArchive(archive));
+    }
+}
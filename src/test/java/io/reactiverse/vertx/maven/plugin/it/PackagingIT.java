@@ -41,6 +41,7 @@ public class PackagingIT extends VertxMojoTestBase {
 
     private String PACKAGING_META_INF = "projects/packaging-meta-inf-it";
     private String PACKAGING_DUPLICATE = "projects/packaging-duplicate-it";
+    private String PACKAGING_ARCHIVES = "projects/packaging-archives-it";
 
     private Verifier verifier;
 
@@ -113,6 +114,39 @@ public class PackagingIT extends VertxMojoTestBase {
 
     }
 
+    @Test
+    public void testArchives() throws IOException, VerificationException {
+        File testDir = initProject(PACKAGING_ARCHIVES);
+        assertThat(testDir).isDirectory();
+        initVerifier(testDir);
+        prepareProject(testDir, verifier);
+        runPackage(verifier);
+
+        File out = new File(testDir, "target/vertx-demo-start-0.0.1.BUILD-SNAPSHOT.jar");
+        assertThat(out).isFile();
+        try (JarFile jar = new JarFile(out)) {
+            assertThat(jar.getJarEntry("org/apache/commons/io/CopyUtils.class")).isNotNull();
+            assertThat(jar.getJarEntry("debug.properties")).isNull();
+        }
+
+        File thin = new File(testDir, "target/vertx-demo-start-0.0.1.BUILD-SNAPSHOT-thin.jar");
+        assertThat(thin).isFile();
+        try (JarFile jar = new JarFile(thin)) {
+            assertThat(jar.getJarEntry("demo/SimpleVerticle.class")).isNotNull();
+            assertThat(jar.getJarEntry("org/apache/commons/io/CopyUtils.class")).isNull();
+            assertThat(jar.getManifest().getMainAttributes().getValue("Main-Verticle"))
+                .isEqualTo("demo.SimpleVerticle");
+        }
+        assertThat(new File(testDir, "target/lib/commons-io-2.5.jar")).isFile();
+
+        File debug = new File(testDir, "target/vertx-demo-start-0.0.1.BUILD-SNAPSHOT-debug.jar");
+        assertThat(debug).isFile();
+        try (JarFile jar = new JarFile(debug)) {
+            assertThat(jar.getJarEntry("org/apache/commons/io/CopyUtils.class")).isNotNull();
+            assertThat(jar.getJarEntry("debug.properties")).isNotNull();
+        }
+    }
+
     @Test
     public void testDuplicateManagement() throws VerificationException, IOException {
         File testDir = initProject(PACKAGING_DUPLICATE);